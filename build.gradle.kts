@@ -21,6 +21,13 @@ dependencies {
     implementation("info.picocli:picocli:4.6.2")
     implementation("org.apache.commons:commons-text:1.9")
     implementation("com.google.code.gson:gson:2.9.0")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 application {
@@ -44,4 +51,136 @@ tasks.jar {
 
     // This is used to make the jar fat.
     from(configurations.runtimeClasspath.get().map({ if (it.isDirectory) it else zipTree(it) }))
-}
\ No newline at end of file
+}
+
+// Application class-data sharing: the classes loaded by a few training runs of the fat jar are dumped into
+// build/libs/MediaDiff-<version>.jsa, which the launchers in src/launcher pass to the JVM so the classes are mapped
+// instead of loaded and verified on every start.  The archive is only valid for the jar it was dumped from and the
+// JVM that dumped it; when either changes the JVM silently falls back to normal class loading.
+//
+// The training runs take a while, so the archive is not part of "gradle build": run "gradle cdsArchive" to dump it.
+val cdsArchive by tasks.registering {
+    group = "build"
+    description = "Dumps an AppCDS archive of the classes used by the common commands."
+
+    val jar = tasks.jar.flatMap { it.archiveFile }
+    val jsa = jar.map { File(it.asFile.parentFile, it.asFile.nameWithoutExtension + ".jsa") }
+    val cds = layout.buildDirectory.dir("cds")
+    val javaLauncher = javaToolchains.launcherFor(java.toolchain)
+
+    inputs.file(jar)
+    outputs.file(jsa)
+    // The JVM rejects an archive dumped from a jar with a different modification time, even if the content is the same.
+    outputs.upToDateWhen { jsa.get().lastModified() >= jar.get().asFile.lastModified() }
+
+    doLast {
+        val java = javaLauncher.get().executablePath.asFile.absolutePath
+        val jarFile = jar.get().asFile
+        val archive = jsa.get()
+        val work = cds.get().asFile
+        val production = File(work, "production")
+
+        fun run(vararg args: String) {
+            val process = ProcessBuilder(java, *args).directory(work).redirectErrorStream(true)
+                    .redirectOutput(File(work, "training.log")).start()
+
+            if (process.waitFor() != 0) {
+                throw GradleException("AppCDS training run failed: ${args.joinToString(" ")} (see ${work}/training.log)")
+            }
+        }
+
+        work.deleteRecursively()
+        work.mkdirs()
+
+        val trainingRuns = listOf(
+                listOf("generate", "--output", production.path, "--rows", "200", "--volumes", "2", "--natives", "--differences", "5"),
+                listOf("--help"),
+                listOf("loadFile", "--path-1", "production/production-1/DATA", "--path-2", "production/production-2/DATA", "--count-rows"),
+                listOf("loadFile", "--path-1", "production/production-1/DATA", "--path-2", "production/production-2/DATA", "--dat-hash-comparison"),
+                listOf("loadFile", "--path-1", "production/production-1/DATA", "--path-2", "production/production-2/DATA", "--full-comparison"),
+                listOf("directory", "--path-1", "production/production-1/NATIVES", "--path-2", "production/production-2/NATIVES", "--full-comparison"),
+                listOf("json", "--json-path", "production/production-1/export.json", "--dat-path", "production/production-1/DATA", "--full-comparison"))
+        val classes = LinkedHashSet<String>()
+
+        trainingRuns.forEachIndexed { i, args ->
+            val classList = File(work, "training-$i.classlist")
+
+            run("-Xshare:off", "-XX:DumpLoadedClassList=${classList.path}", "-jar", jarFile.absolutePath, *args.toTypedArray())
+            classes.addAll(classList.readLines())
+        }
+
+        val classList = File(work, "classes.classlist")
+        classList.writeText(classes.joinToString("\n", postfix = "\n"))
+
+        run("-Xshare:dump", "-XX:SharedClassListFile=${classList.path}", "-XX:SharedArchiveFile=${archive.absolutePath}",
+                "-cp", jarFile.absolutePath)
+    }
+}
+
+val launchers by tasks.registering {
+    group = "build"
+    description = "Writes the launchers that use the AppCDS archive next to the fat jar."
+
+    val jar = tasks.jar.flatMap { it.archiveFile }
+    val sources = fileTree("src/launcher")
+
+    inputs.files(sources)
+    inputs.property("jarName", jar.map { it.asFile.name })
+    outputs.files(jar.map { jarFile -> sources.map { File(jarFile.asFile.parentFile, it.name) } })
+
+    doLast {
+        val jarFile = jar.get().asFile
+
+        sources.forEach {
+            val launcher = File(jarFile.parentFile, it.name)
+            launcher.writeText(it.readText().replace("@JAR_NAME@", jarFile.name))
+            launcher.setExecutable(true)
+        }
+    }
+}
+
+tasks.assemble {
+    dependsOn(launchers)
+}
+
+// Benchmarks live in src/jmh and run with "gradle jmh".  Pass -PjmhInclude=<regex> to run a subset and
+// -PjmhArgs="..." for any other JMH options.  Results are written to build/reports/jmh/results.json.
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+
+dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks with the GC profiler."
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val resultsFile = layout.buildDirectory.file("reports/jmh/results.json").get().asFile
+
+    val jar = tasks.jar.flatMap { it.archiveFile }
+
+    // StartupBenchmark launches the fat jar with and without the AppCDS archive.
+    dependsOn(cdsArchive)
+
+    doFirst {
+        environment("MEDIADIFF_JAR", jar.get().asFile.absolutePath)
+        resultsFile.parentFile.mkdirs()
+    }
+
+    args = listOf("-prof", "gc", "-rf", "json", "-rff", resultsFile.absolutePath) +
+            (project.findProperty("jmhArgs")?.toString()?.split(" ")?.filter { it.isNotBlank() } ?: listOf()) +
+            listOfNotNull(project.findProperty("jmhInclude")?.toString())
+}
+
+// Compile the benchmarks as part of the build so they do not fall behind the code they measure.
+tasks.check {
+    dependsOn(jmh.classesTaskName)
+}
@@ -0,0 +1,96 @@
+package com.rationalenterprise.mediadiff.benchmark;
+
+import com.rationalenterprise.mediadiff.generate.ProductionGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded fixtures shared by the benchmarks.  Files are written to a temporary directory and deleted on exit.
+ */
+class BenchmarkData {
+    static final char DELIMITER = ProductionGenerator.DELIMITER;
+
+    static final char QUOTE = ProductionGenerator.QUOTE;
+
+    static final long SEED = 20211;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * The synthetic production every load file and JSON benchmark reads, so a benchmark run can be reproduced with
+     * mediaDiff generate --seed 20211.
+     */
+    static ProductionGenerator generator(int rows, int columns, int cardinality) {
+        return new ProductionGenerator()
+                .setSeed(SEED)
+                .setRows(rows)
+                .setColumns(columns)
+                .setCardinality(cardinality)
+                .setJsonLayout(ProductionGenerator.JsonLayout.NONE);
+    }
+
+    /**
+     * Rows of a dat file (without the header).
+     */
+    static List<String> rows(int rows, int columns, int cardinality) {
+        ProductionGenerator generator = generator(rows, columns, cardinality);
+        List<String> lines = new ArrayList<>(rows);
+
+        for (int r = 0; r < rows; r++) {
+            lines.add(generator.getDatRow(r));
+        }
+
+        return lines;
+    }
+
+    /**
+     * A JSON export of a generated production, either as one array or as JSON Lines.
+     */
+    static Path writeJson(Path directory, String name, int objects, int columns, boolean lines) throws IOException {
+        Path production = directory.resolve(name);
+        generator(objects, columns, 1000)
+                .setJsonLayout(lines ? ProductionGenerator.JsonLayout.LINES : ProductionGenerator.JsonLayout.ARRAY)
+                .generate(production);
+
+        return production.resolve(lines ? "export.jsonl" : "export.json");
+    }
+
+    static Path writeRandomFile(Path directory, String name, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        new Random(SEED).nextBytes(bytes);
+
+        return Files.write(directory.resolve(name), bytes);
+    }
+
+    static Path createTempDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("mediadiff-jmh");
+        directory.toFile().deleteOnExit();
+
+        return directory;
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+
+        try (var paths = Files.walk(directory)) {
+            paths.sorted((p1, p2) -> p2.getNameCount() - p1.getNameCount()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * The commands print their reports to System.out; benchmarks that run a command swap this in.
+     */
+    static PrintStream nullPrintStream() {
+        return new PrintStream(OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,83 @@
+package com.rationalenterprise.mediadiff.benchmark;
+
+import com.rationalenterprise.mediadiff.service.DirectoryService;
+import com.rationalenterprise.mediadiff.service.LoadFileService;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File hashing in the style of DirectoryService.getMd5OrWhiteSpaceKey() at several file sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashingBenchmark {
+    @Param({"512", "65536", "1048576", "16777216"})
+    int fileSize;
+
+    private Path directory;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createTempDirectory();
+        file = BenchmarkData.writeRandomFile(directory, "DOC00000001" + DirectoryService.EXTRACTED_TEXT_EXTENSION, fileSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public String md5Hex() throws IOException {
+        try (InputStream fileInputStream = new FileInputStream(file.toFile())) {
+            return DigestUtils.md5Hex(fileInputStream);
+        }
+    }
+
+    /**
+     * Extracted text under 1000 bytes is read into a String and checked for white space before it is hashed.
+     */
+    @Benchmark
+    public String md5OrWhiteSpaceKey() throws IOException {
+        File extractedText = file.toFile();
+
+        if (extractedText.getName().endsWith(DirectoryService.EXTRACTED_TEXT_EXTENSION) && extractedText.length() < 1000) {
+            String fileContents = Files.readString(extractedText.toPath());
+
+            if (!fileContents.isEmpty() && fileContents.charAt(0) == LoadFileService.UTF_8_BOM) {
+                fileContents = fileContents.substring(1);
+            }
+
+            if (fileContents.isBlank()) {
+                return "WHITE_SPACE_ONLY_EXTRACTED_TEXT";
+            }
+        }
+
+        return md5Hex();
+    }
+}
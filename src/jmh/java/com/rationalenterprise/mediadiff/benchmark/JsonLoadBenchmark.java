@@ -0,0 +1,84 @@
+package com.rationalenterprise.mediadiff.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.rationalenterprise.mediadiff.json.JsonArrayReader;
+import com.rationalenterprise.mediadiff.json.JsonLinesReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading JSON exports the way JsonService does: the original single-threaded Gson load of the whole array, the
+ * parallel array reader and the parallel JSON Lines reader.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonLoadBenchmark {
+    @Param({"10000", "100000"})
+    int objects;
+
+    @Param({"1", "4"})
+    int threads;
+
+    private Path directory;
+
+    private Path array;
+
+    private Path lines;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createTempDirectory();
+        array = BenchmarkData.writeJson(directory, "export.json", objects, 20, false);
+        lines = BenchmarkData.writeJson(directory, "export.jsonl", objects, 20, true);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> gsonWholeFile() throws IOException {
+        String fileContents = Files.readString(array, StandardCharsets.UTF_8);
+
+        return new Gson().fromJson(fileContents, new TypeToken<List<Map<String, Object>>>() {}.getType());
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> arrayReader() throws IOException {
+        return new JsonArrayReader(array, threads).readAll();
+    }
+
+    @Benchmark
+    public long arrayReaderCount() throws IOException {
+        return new JsonArrayReader(array, threads).count();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> linesReader() throws IOException {
+        return new JsonLinesReader(lines, threads).readAll();
+    }
+}
@@ -0,0 +1,74 @@
+package com.rationalenterprise.mediadiff.benchmark;
+
+import com.rationalenterprise.mediadiff.service.LoadFileService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The column counting modes of LoadFileService run end to end on two load files: --inventory is getHeaderToCountMap()
+ * for both files and --column-comparison is getValueToCountMap() for both files.  The two load files are a generated
+ * production pair that differ in one percent of their documents.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadFileBenchmark {
+    @Param({"10000", "100000"})
+    int rows;
+
+    @Param({"20"})
+    int columns;
+
+    private Path directory;
+
+    private Path dat1;
+
+    private Path dat2;
+
+    private PrintStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createTempDirectory();
+        BenchmarkData.generator(rows, columns, 1000).setDifferences(rows / 100).generate(directory);
+        dat1 = directory.resolve("production-1").resolve("DATA");
+        dat2 = directory.resolve("production-2").resolve("DATA");
+        out = System.out;
+        System.setOut(BenchmarkData.nullPrintStream());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(out);
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int headerToCountMap() {
+        return new CommandLine(new LoadFileService()).execute("--path-1", dat1.toString(), "--path-2", dat2.toString(), "--inventory");
+    }
+
+    @Benchmark
+    public int valueToCountMap() {
+        return new CommandLine(new LoadFileService()).execute("--path-1", dat1.toString(), "--path-2", dat2.toString(), "--column-comparison", "--column-name", "CUSTODIAN");
+    }
+}
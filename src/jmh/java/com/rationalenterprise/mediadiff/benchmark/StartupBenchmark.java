@@ -0,0 +1,86 @@
+package com.rationalenterprise.mediadiff.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time of a whole mediaDiff process for the quick checks that orchestration scripts run thousands of times, with
+ * the JDK's default class-data sharing and with the AppCDS archive built by the cdsArchive task.  The jmh task passes
+ * the fat jar in MEDIADIFF_JAR.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    @Param({"default", "appcds"})
+    String classDataSharing;
+
+    @Param({"--count-rows", "--dat-hash-comparison"})
+    String check;
+
+    private Path directory;
+
+    private List<String> command;
+
+    @Setup
+    public void setUp() throws IOException {
+        String jar = System.getenv("MEDIADIFF_JAR");
+
+        if (jar == null || !Files.exists(Path.of(jar))) {
+            throw new IllegalStateException("MEDIADIFF_JAR must point to the fat jar (run the benchmarks with gradle jmh)");
+        }
+
+        Path archive = Path.of(jar.replaceAll("\\.jar$", ".jsa"));
+
+        if ("appcds".equals(classDataSharing) && !Files.exists(archive)) {
+            throw new IllegalStateException("Missing AppCDS archive " + archive + " (run gradle cdsArchive)");
+        }
+
+        directory = BenchmarkData.createTempDirectory();
+        BenchmarkData.generator(1000, 20, 100).setDifferences(10).generate(directory);
+
+        command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+
+        if ("appcds".equals(classDataSharing)) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-Xshare:auto");
+        }
+
+        command.addAll(List.of("-jar", jar, "loadFile",
+                "--path-1", directory.resolve("production-1").resolve("DATA").toString(),
+                "--path-2", directory.resolve("production-2").resolve("DATA").toString(), check));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int run() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+
+        return process.waitFor();
+    }
+}
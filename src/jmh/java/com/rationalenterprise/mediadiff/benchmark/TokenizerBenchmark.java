@@ -0,0 +1,52 @@
+package com.rationalenterprise.mediadiff.benchmark;
+
+import org.apache.commons.text.StringTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dat row tokenization as done by LoadFileService: a reused StringTokenizer on the 0x14 delimiter and the 0xFE (thorn) quote.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizerBenchmark {
+    @Param({"10", "50", "200"})
+    int columns;
+
+    private List<String> rows;
+
+    private StringTokenizer tokenizer;
+
+    @Setup
+    public void setUp() {
+        rows = BenchmarkData.rows(1000, columns, 1000);
+        tokenizer = new StringTokenizer("", BenchmarkData.DELIMITER, BenchmarkData.QUOTE).setIgnoreEmptyTokens(false);
+    }
+
+    /**
+     * One operation is 1000 rows.
+     */
+    @Benchmark
+    public void getTokenArray(Blackhole blackhole) {
+        for (String row : rows) {
+            blackhole.consume(tokenizer.reset(row).getTokenArray());
+        }
+    }
+}
@@ -0,0 +1,8 @@
+@echo off
+rem Runs the mediaDiff fat jar with the AppCDS archive built next to it (see the cdsArchive task).  If the archive is
+rem missing or does not match the jar or the JVM, the JVM ignores it and starts normally.
+set "DIR=%~dp0"
+set "JAR=%DIR%@JAR_NAME@"
+set "JAVA=java"
+if defined JAVA_HOME set "JAVA=%JAVA_HOME%\bin\java"
+"%JAVA%" -XX:SharedArchiveFile="%JAR:.jar=.jsa%" -Xshare:auto %JAVA_OPTS% -jar "%JAR%" %*
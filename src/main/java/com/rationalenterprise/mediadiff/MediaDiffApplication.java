@@ -1,23 +1,39 @@
 package com.rationalenterprise.mediadiff;
 
+import com.rationalenterprise.mediadiff.service.ClientService;
 import com.rationalenterprise.mediadiff.service.DirectoryService;
+import com.rationalenterprise.mediadiff.service.GenerateService;
 import com.rationalenterprise.mediadiff.service.JsonService;
 import com.rationalenterprise.mediadiff.service.LoadFileService;
+import com.rationalenterprise.mediadiff.service.ServeService;
 import picocli.CommandLine;
 import picocli.CommandLine.Spec;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Model.CommandSpec;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 @Command(name = "mediaDiff", version = "mediaDiff 1.0", description = "Media diff tool for comparing components and load files.",
-        mixinStandardHelpOptions = true,
-        subcommands = {
-            DirectoryService.class,
-            LoadFileService.class,
-            JsonService.class
-        })
+        mixinStandardHelpOptions = true)
 class MediaDiffApplication implements Callable<Integer> {
+    /**
+     * The subcommands in the order they are listed by --help.  They are registered on demand because picocli
+     * introspects every registered command, which is a noticeable part of the startup time of a quick check.
+     */
+    private static final Map<String, Supplier<Object>> SUBCOMMANDS = new LinkedHashMap<>();
+
+    static {
+        SUBCOMMANDS.put("directory", DirectoryService::new);
+        SUBCOMMANDS.put("loadFile", LoadFileService::new);
+        SUBCOMMANDS.put("json", JsonService::new);
+        SUBCOMMANDS.put("generate", GenerateService::new);
+        SUBCOMMANDS.put("serve", () -> new ServeService(MediaDiffApplication::commandLine));
+        SUBCOMMANDS.put("client", ClientService::new);
+    }
+
     @Spec
     CommandSpec spec;
 
@@ -26,8 +42,33 @@ class MediaDiffApplication implements Callable<Integer> {
         throw new CommandLine.ParameterException(spec.commandLine(), "Specify a subcommand");
     }
 
+    /**
+     * Creates the command line for args.  When the first argument names a subcommand only that subcommand is
+     * registered, otherwise (eg: --help or a misspelled subcommand) all of them are.
+     *
+     * @param args
+     * @return
+     */
+    static CommandLine commandLine(String... args) {
+        CommandLine commandLine = new CommandLine(new MediaDiffApplication());
+        boolean named = args.length > 0 && SUBCOMMANDS.containsKey(args[0]);
+
+        for (Map.Entry<String, Supplier<Object>> subcommand : SUBCOMMANDS.entrySet()) {
+            if (!named || subcommand.getKey().equals(args[0])) {
+                commandLine.addSubcommand(subcommand.getKey(), subcommand.getValue().get());
+            }
+        }
+
+        if (commandLine.getSubcommands().containsKey("client")) {
+            // Everything after the command given to client is forwarded as is.
+            commandLine.getSubcommands().get("client").setStopAtPositional(true);
+        }
+
+        return commandLine;
+    }
+
     public static void main(String... args) {
-        int exitCode = new CommandLine(new MediaDiffApplication()).execute(args);
+        int exitCode = commandLine(args).execute(args);
         System.exit(exitCode);
     }
 }
@@ -0,0 +1,192 @@
+package com.rationalenterprise.mediadiff.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * A least recently used cache of values derived from files (eg: the lines of a dat volume or the MD5 of a native),
+ * bounded by an estimate of the memory the values use.
+ *
+ * An entry is only returned while the file has the same size and modification time it had when the entry was loaded.
+ * The shared cache is disabled (a limit of 0) unless the process is running as a daemon, so one-shot commands load
+ * everything directly.  Loading is not synchronized: two threads that miss on the same file both load it.
+ */
+public class FileCache {
+    private static volatile FileCache shared = new FileCache(0);
+
+    private final long limitBytes;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedBytes = 0;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    public FileCache(long limitBytes) {
+        this.limitBytes = limitBytes;
+    }
+
+    public static FileCache shared() {
+        return shared;
+    }
+
+    /**
+     * Replaces the shared cache with an empty cache of limitBytes.
+     *
+     * @param limitBytes
+     */
+    public static void enableShared(long limitBytes) {
+        shared = new FileCache(limitBytes);
+    }
+
+    public boolean isEnabled() {
+        return limitBytes > 0;
+    }
+
+    /**
+     * Returns the cached value of kind for path, or loads, caches and returns it.  Values heavier than the whole cache
+     * are returned without being cached.
+     *
+     * @param kind Distinguishes values derived from the same file (eg: "lines" and "md5").
+     * @param path
+     * @param loader
+     * @param weigher The estimated size of a value in bytes.
+     * @return
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String kind, Path path, Loader<T> loader, ToLongFunction<T> weigher) throws IOException {
+        if (!isEnabled()) {
+            return loader.load();
+        }
+
+        Key key = new Key(kind, path.toAbsolutePath().normalize());
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+
+            if (entry != null && entry.size == size && entry.modified == modified) {
+                hits++;
+
+                return (T) entry.value;
+            }
+
+            if (entry != null) {
+                remove(key);
+            }
+
+            misses++;
+        }
+
+        T value = loader.load();
+        long weight = weigher.applyAsLong(value);
+
+        if (weight <= limitBytes) {
+            synchronized (this) {
+                remove(key);
+                entries.put(key, new Entry(value, weight, size, modified));
+                usedBytes += weight;
+                evict();
+            }
+        }
+
+        return value;
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+
+        if (entry != null) {
+            usedBytes -= entry.weight;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+
+        while (usedBytes > limitBytes && iterator.hasNext()) {
+            usedBytes -= iterator.next().getValue().weight;
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private static class Key {
+        final String kind;
+
+        final Path path;
+
+        Key(String kind, Path path) {
+            this.kind = kind;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+
+            return kind.equals(key.kind) && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind.hashCode() + path.hashCode();
+        }
+    }
+
+    private static class Entry {
+        final Object value;
+
+        final long weight;
+
+        final long size;
+
+        final long modified;
+
+        Entry(Object value, long weight, long size, long modified) {
+            this.value = value;
+            this.weight = weight;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+}
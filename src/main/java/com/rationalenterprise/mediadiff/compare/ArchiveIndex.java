@@ -0,0 +1,201 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+import com.rationalenterprise.mediadiff.metrics.Phase;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * The entries of the ZIP archives of a directory, seen as the files of a subdirectory named after the archive (eg: the
+ * entry "mail/a.msg" of "001/DOC1.zip" is the file "001/DOC1.zip/mail/a.msg", with the platform's separator like
+ * the paths of the files).  Entries are read in place with ZipFile, never extracted to disk.
+ *
+ * Listing an archive (see expand()) only reads its central directory, which gives the size and CRC32 of every entry,
+ * so two entries can be told apart without decompressing them (see mayBeEqual()).  MD5s are computed by hash(), on
+ * several threads, one archive per task.  Archives inside archives are entries like any other.
+ */
+public class ArchiveIndex {
+    private final Path root;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final Map<String, String> md5s = new HashMap<>();
+
+    public ArchiveIndex(Path root) {
+        this.root = root;
+    }
+
+    public static boolean isArchive(String name) {
+        return name.toLowerCase(Locale.ROOT).endsWith(".zip");
+    }
+
+    /**
+     * Lists the files of the archive at path (relative to the root), or returns null when it cannot be read as a ZIP
+     * archive (including an entry name that is not valid UTF-8), so it can be compared as a file.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public List<String> expand(String path) throws IOException {
+        Map<String, Entry> archiveEntries = new LinkedHashMap<>();
+
+        try (ZipFile zipFile = new ZipFile(root.resolve(path).toFile())) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+
+                if (!zipEntry.isDirectory()) {
+                    archiveEntries.put(entryPath(path, zipEntry.getName()), new Entry(path, zipEntry.getName(), zipEntry.getSize(), zipEntry.getCrc()));
+                }
+            }
+        } catch (ZipException | IllegalArgumentException e) {
+            // ZipFile throws IllegalArgumentException for an entry name it cannot decode.
+            return null;
+        }
+
+        entries.putAll(archiveEntries);
+
+        return new ArrayList<>(archiveEntries.keySet());
+    }
+
+    /**
+     * The path of the entry named name (as in the archive, with '/' separators) of the archive at archive.
+     */
+    private static String entryPath(String archive, String name) {
+        return archive + File.separator + name.replace('/', File.separatorChar);
+    }
+
+    /**
+     * Whether the path is an entry of an archive listed by expand().
+     *
+     * @param path
+     * @return
+     */
+    public boolean isEntry(String path) {
+        return entries.containsKey(path);
+    }
+
+    /**
+     * False when the central directories give the entries different sizes or CRC32s, so they certainly differ.
+     * Entries whose size or CRC32 is unknown (-1) may be equal.
+     *
+     * @param path
+     * @param other
+     * @param otherPath
+     * @return
+     */
+    public boolean mayBeEqual(String path, ArchiveIndex other, String otherPath) {
+        Entry entry = entries.get(path);
+        Entry otherEntry = other.entries.get(otherPath);
+
+        return (entry.size == -1 || otherEntry.size == -1 || entry.size == otherEntry.size)
+                && (entry.crc == -1 || otherEntry.crc == -1 || entry.crc == otherEntry.crc);
+    }
+
+    /**
+     * The uncompressed size of the entry, -1 when unknown.
+     *
+     * @param path
+     * @return
+     */
+    public long getSize(String path) {
+        return entries.get(path).size;
+    }
+
+    public long getCrc(String path) {
+        return entries.get(path).crc;
+    }
+
+    /**
+     * Computes the MD5s of the entries, on threads threads, each archive opened once.
+     *
+     * @param paths entries listed by expand().
+     * @param threads
+     * @param phase
+     * @throws IOException
+     */
+    public void hash(Collection<String> paths, int threads, Phase phase) throws IOException {
+        Map<String, List<Entry>> archiveToEntries = new LinkedHashMap<>();
+
+        for (String path : paths) {
+            Entry entry = entries.get(path);
+
+            archiveToEntries.computeIfAbsent(entry.archive, archive -> new ArrayList<>()).add(entry);
+        }
+
+        List<Callable<Map<String, String>>> tasks = new ArrayList<>();
+
+        for (Map.Entry<String, List<Entry>> archive : archiveToEntries.entrySet()) {
+            tasks.add(() -> {
+                Map<String, String> archiveMd5s = new HashMap<>();
+
+                try (ZipFile zipFile = new ZipFile(root.resolve(archive.getKey()).toFile())) {
+                    for (Entry entry : archive.getValue()) {
+                        ZipEntry zipEntry = zipFile.getEntry(entry.name);
+
+                        try (InputStream in = zipFile.getInputStream(zipEntry)) {
+                            archiveMd5s.put(entryPath(archive.getKey(), entry.name), DigestUtils.md5Hex(in));
+                        }
+
+                        phase.addFiles(1);
+                        phase.addBytes(Math.max(0, zipEntry.getSize()));
+                    }
+                }
+
+                return archiveMd5s;
+            });
+        }
+
+        for (Map<String, String> archiveMd5s : Parallel.invokeAll(threads, tasks)) {
+            md5s.putAll(archiveMd5s);
+        }
+    }
+
+    /**
+     * The MD5 of the entry, which must have been hashed by hash().
+     *
+     * @param path
+     * @return
+     */
+    public String getMd5(String path) {
+        return md5s.get(path);
+    }
+
+    private static class Entry {
+        private final String archive;
+
+        /**
+         * The name in the archive, for ZipFile.getEntry().
+         */
+        private final String name;
+
+        private final long size;
+
+        private final long crc;
+
+        Entry(String archive, String name, long size, long crc) {
+            this.archive = archive;
+            this.name = name;
+            this.size = size;
+            this.crc = crc;
+        }
+    }
+}
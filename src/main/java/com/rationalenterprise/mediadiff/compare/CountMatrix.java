@@ -0,0 +1,154 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The number of occurrences of each key (an MD5, a column, a value) in each of several inputs, for comparing more
+ * than two productions at once: a key is in agreement when every input has it the same number of times.
+ *
+ * Each input is counted once and added with add() or addAll(), so comparing n inputs costs n reads instead of the
+ * n * (n - 1) / 2 reads of pairwise comparisons.  A matrix is not thread-safe: inputs are counted concurrently and
+ * added from one thread.
+ */
+public class CountMatrix {
+    private final int inputs;
+
+    private final Map<String, long[]> counts = new HashMap<>();
+
+    public CountMatrix(int inputs) {
+        this.inputs = inputs;
+    }
+
+    public void add(int input, String key, long count) {
+        counts.computeIfAbsent(key, k -> new long[inputs])[input] += count;
+    }
+
+    public void addAll(int input, Map<String, ? extends Number> keyToCount) {
+        for (Map.Entry<String, ? extends Number> entry : keyToCount.entrySet()) {
+            add(input, entry.getKey(), entry.getValue().longValue());
+        }
+    }
+
+    /**
+     * The number of distinct keys in all inputs.
+     *
+     * @return
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * The count of the key in each input (zeros when no input has it).
+     *
+     * @param key
+     * @return
+     */
+    public long[] getCounts(String key) {
+        return counts.getOrDefault(key, new long[inputs]);
+    }
+
+    /**
+     * Every key, ordered like the other reports (case-insensitive, then case-sensitive).
+     *
+     * @return
+     */
+    public List<String> getKeys() {
+        return sort(new ArrayList<>(counts.keySet()));
+    }
+
+    private static List<String> sort(List<String> keys) {
+        keys.sort((k1, k2) -> {
+            int compareTo = k1.compareToIgnoreCase(k2);
+
+            if (compareTo == 0) {
+                compareTo = k1.compareTo(k2);
+            }
+
+            return compareTo;
+        });
+
+        return keys;
+    }
+
+    /**
+     * The keys that do not occur the same number of times in every input, ordered like getKeys().
+     *
+     * @return
+     */
+    public List<String> getDifferentKeys() {
+        return sort(counts.keySet().stream().filter(key -> !isUniform(key)).collect(Collectors.toList()));
+    }
+
+    /**
+     * Whether every input has the key the same number of times.
+     *
+     * @param key
+     * @return
+     */
+    public boolean isUniform(String key) {
+        long[] keyCounts = getCounts(key);
+
+        return Arrays.stream(keyCounts).allMatch(count -> count == keyCounts[0]);
+    }
+
+    /**
+     * The number of keys of getDifferentKeys() per presence pattern, the inputs (numbered from 1) that have them, eg:
+     * "Only in 1, 3: 2" for two keys that only the second input is missing.  Keys that every input has with different
+     * counts are counted last.
+     *
+     * @return
+     */
+    public List<String> formatPresencePatterns() {
+        Map<String, Integer> patterns = new TreeMap<>();
+        int differentCounts = 0;
+
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            long[] keyCounts = entry.getValue();
+            List<String> present = new ArrayList<>();
+
+            if (isUniform(entry.getKey())) {
+                continue;
+            }
+
+            for (int i = 0; i < inputs; i++) {
+                if (keyCounts[i] > 0) {
+                    present.add(String.valueOf(i + 1));
+                }
+            }
+
+            if (present.size() == inputs) {
+                differentCounts++;
+            } else {
+                patterns.merge(String.join(", ", present), 1, Integer::sum);
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+
+        patterns.forEach((pattern, keys) -> lines.add(String.format("Only in %s: %s", pattern, keys)));
+
+        if (differentCounts > 0) {
+            lines.add(String.format("In every input, different counts: %s", differentCounts));
+        }
+
+        return lines;
+    }
+
+    /**
+     * The key and its count in each input, eg: "abc: 1 | 0 | 1".
+     *
+     * @param key
+     * @return
+     */
+    public String format(String key) {
+        return String.format("%s: %s", key.isBlank() ? "[blank string]" : key,
+                Arrays.stream(getCounts(key)).mapToObj(String::valueOf).collect(Collectors.joining(" | ")));
+    }
+}
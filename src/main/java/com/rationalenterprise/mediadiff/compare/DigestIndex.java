@@ -0,0 +1,145 @@
+package com.rationalenterprise.mediadiff.compare;
+
+/**
+ * Counts MD5s in open addressing arrays: each 128 bit digest is kept as two longs, so a digest takes about 40 bytes
+ * instead of the 140 or so of a HashMap entry of its hex String, and a lookup allocates nothing.
+ *
+ * Digests are added and looked up by their 32 character hex form (either case).  An instance is not thread-safe.
+ */
+public class DigestIndex {
+    private long[] highs = new long[1024];
+
+    private long[] lows = new long[1024];
+
+    /**
+     * The count of the digest in each slot, 0 for an empty slot.
+     */
+    private int[] counts = new int[1024];
+
+    private int size = 0;
+
+    /**
+     * Whether the value is the hex of an MD5.
+     *
+     * @param md5
+     * @return
+     */
+    public static boolean isValid(CharSequence md5) {
+        if (md5.length() != 32) {
+            return false;
+        }
+
+        for (int i = 0; i < 32; i++) {
+            if (hexDigit(md5.charAt(i)) == -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds an occurrence of the digest, which must be valid (see isValid()), and returns its count.
+     *
+     * @param md5
+     * @return
+     */
+    public int add(CharSequence md5) {
+        long high = parse(md5, 0);
+        long low = parse(md5, 16);
+
+        if ((size + 1) * 2 > counts.length) {
+            grow();
+        }
+
+        int slot = find(high, low);
+
+        if (counts[slot] == 0) {
+            highs[slot] = high;
+            lows[slot] = low;
+            size++;
+        }
+
+        return ++counts[slot];
+    }
+
+    /**
+     * The number of occurrences of the digest (0 for an invalid one).
+     *
+     * @param md5
+     * @return
+     */
+    public int count(CharSequence md5) {
+        if (!isValid(md5)) {
+            return 0;
+        }
+
+        return counts[find(parse(md5, 0), parse(md5, 16))];
+    }
+
+    /**
+     * The number of distinct digests.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The slot of the digest, or the empty slot where it would go.
+     */
+    private int find(long high, long low) {
+        int mask = counts.length - 1;
+        // MD5 bits are already uniform, so no further mixing is needed.
+        int slot = (int) (high ^ low) & mask;
+
+        while (counts[slot] != 0 && (highs[slot] != high || lows[slot] != low)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        int[] oldCounts = counts;
+
+        highs = new long[oldCounts.length * 2];
+        lows = new long[oldCounts.length * 2];
+        counts = new int[oldCounts.length * 2];
+
+        for (int i = 0; i < oldCounts.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = find(oldHighs[i], oldLows[i]);
+
+                highs[slot] = oldHighs[i];
+                lows[slot] = oldLows[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static long parse(CharSequence md5, int from) {
+        long value = 0;
+
+        for (int i = from; i < from + 16; i++) {
+            value = (value << 4) | hexDigit(md5.charAt(i));
+        }
+
+        return value;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,38 @@
+package com.rationalenterprise.mediadiff.compare;
+
+/**
+ * How the values of a field are normalized before a JSON value is compared with a dat value.
+ */
+public enum FieldType {
+    /**
+     * Use the type of the JSON token: numbers, booleans and arrays are compared as such, strings as text (with a date
+     * comparison as a fallback when both sides look like dates).
+     */
+    AUTO,
+
+    /**
+     * Exact text.
+     */
+    TEXT,
+
+    /**
+     * Decimal numbers.  Leading zeros, trailing fractional zeros, a leading '+' and thousands separators are ignored.
+     */
+    NUMBER,
+
+    /**
+     * Dates and date times in ISO (yyyy-MM-dd), US (MM/dd/yyyy) or compact (yyyyMMdd) order, with an optional time.
+     * Time zone designators are ignored.
+     */
+    DATE,
+
+    /**
+     * true/false, yes/no, y/n, t/f and 1/0, ignoring case.
+     */
+    BOOLEAN,
+
+    /**
+     * A JSON array or delimited string compared with a delimited dat value, ignoring order and surrounding white space.
+     */
+    MULTI_VALUE
+}
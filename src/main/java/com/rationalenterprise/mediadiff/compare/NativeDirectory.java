@@ -0,0 +1,143 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import com.rationalenterprise.mediadiff.cache.FileCache;
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+import com.rationalenterprise.mediadiff.metrics.Phase;
+import com.rationalenterprise.mediadiff.service.DirectoryService;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The files of a natives directory (at any depth) with their MD5s, indexed for joining with the PATH and MD5SUM
+ * columns of a load file.  Extracted text files are not natives and are left out.
+ *
+ * Files are found by the path a load file gives them (see find()): separators can be "\" or "/" and the comparison
+ * ignores case, like the Windows file systems productions are made on.  The path may start with directories above the
+ * natives directory (eg: "NATIVES\001\DOC0001.msg" for the directory NATIVES).
+ */
+public class NativeDirectory {
+    private final List<String> paths;
+
+    private final List<String> md5s;
+
+    private final Map<String, Integer> pathToFile = new HashMap<>();
+
+    private final DigestIndex digests = new DigestIndex();
+
+    private NativeDirectory(List<String> paths, List<String> md5s) {
+        this.paths = paths;
+        this.md5s = md5s;
+
+        for (int i = 0; i < paths.size(); i++) {
+            pathToFile.put(paths.get(i).toLowerCase(Locale.ROOT), i);
+            digests.add(md5s.get(i));
+        }
+    }
+
+    /**
+     * Lists and hashes the files under root, on threads threads.  In the daemon the hashes are cached until the file's
+     * size or modification time changes.
+     *
+     * @param root
+     * @param threads
+     * @param phase
+     * @return
+     * @throws IOException
+     */
+    public static NativeDirectory hash(Path root, int threads, Phase phase) throws IOException {
+        List<Path> files;
+
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(DirectoryService.EXTRACTED_TEXT_EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        List<String> md5s = Parallel.mapChunks(threads, files, file -> {
+            String md5 = md5(file);
+
+            phase.addFiles(1);
+            phase.addBytes(Files.size(file));
+
+            return md5;
+        });
+
+        List<String> paths = files.stream().map(file -> root.relativize(file).toString().replace('\\', '/')).collect(Collectors.toList());
+
+        return new NativeDirectory(paths, md5s);
+    }
+
+    private static String md5(Path file) throws IOException {
+        return FileCache.shared().get("md5", file, () -> {
+            try (InputStream in = Files.newInputStream(file)) {
+                return DigestUtils.md5Hex(in);
+            }
+        }, hash -> 200L + file.toString().length());
+    }
+
+    /**
+     * The file at the path of a load file row, or -1.  The directories the path starts with are dropped one at a time
+     * until the rest is a path under the natives directory.
+     *
+     * @param path
+     * @return
+     */
+    public int find(String path) {
+        String key = path.replace('\\', '/').toLowerCase(Locale.ROOT);
+
+        while (true) {
+            Integer file = pathToFile.get(key);
+
+            if (file != null) {
+                return file;
+            }
+
+            int separator = key.indexOf('/');
+
+            if (separator == -1) {
+                return -1;
+            }
+
+            key = key.substring(separator + 1);
+        }
+    }
+
+    /**
+     * The number of files with the MD5.
+     *
+     * @param md5
+     * @return
+     */
+    public int count(String md5) {
+        return digests.count(md5);
+    }
+
+    public int size() {
+        return paths.size();
+    }
+
+    /**
+     * The path of the file relative to the natives directory, with "/" separators.
+     *
+     * @param file
+     * @return
+     */
+    public String getPath(int file) {
+        return paths.get(file);
+    }
+
+    public String getMd5(int file) {
+        return md5s.get(file);
+    }
+}
@@ -0,0 +1,91 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import com.rationalenterprise.mediadiff.sketch.MinHashSignature;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A locality sensitive hashing index of MinHash signatures: the signatures are split into BANDS bands of ROWS slots
+ * and a signature is a candidate for another when they have the same hash for any band.  With 16 bands of 4 slots, a
+ * pair with a similarity of 0.5 is a candidate with a probability of 64%, one of 0.8 with 99.9% and one of 0.2 with
+ * 2.5%, so finding the most similar signatures costs a few comparisons instead of one per signature.
+ *
+ * Empty bands (see MinHashSignature.hasBand()) are not indexed: small files leave most bands empty and would all be
+ * candidates for each other, whatever their contents.  So a signature with no filled band (an empty file) has no
+ * candidates.
+ *
+ * An index is not thread-safe: signatures are computed concurrently and added from one thread.
+ */
+public class NearDuplicateIndex {
+    private static final int ROWS = 4;
+
+    private static final int BANDS = MinHashSignature.SLOTS / ROWS;
+
+    private final List<MinHashSignature> signatures = new ArrayList<>();
+
+    private final List<Map<Long, List<Integer>>> buckets = new ArrayList<>(BANDS);
+
+    public NearDuplicateIndex() {
+        for (int band = 0; band < BANDS; band++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Adds the signature, which is numbered by the order of the additions from 0.
+     *
+     * @param signature
+     */
+    public void add(MinHashSignature signature) {
+        int number = signatures.size();
+
+        signatures.add(signature);
+
+        for (int band = 0; band < BANDS; band++) {
+            if (signature.hasBand(band, ROWS)) {
+                buckets.get(band).computeIfAbsent(signature.band(band, ROWS), hash -> new ArrayList<>()).add(number);
+            }
+        }
+    }
+
+    /**
+     * The number of the most similar candidate for the signature with a similarity of at least minSimilarity, or -1.
+     * Ties go to the signature added first.
+     *
+     * @param signature
+     * @param minSimilarity
+     * @return
+     */
+    public int findMostSimilar(MinHashSignature signature, double minSimilarity) {
+        int best = -1;
+        double bestSimilarity = minSimilarity;
+
+        for (int band = 0; band < BANDS; band++) {
+            if (!signature.hasBand(band, ROWS)) {
+                continue;
+            }
+
+            for (int candidate : buckets.get(band).getOrDefault(signature.band(band, ROWS), List.of())) {
+                double similarity = signature.similarity(signatures.get(candidate));
+
+                if (similarity > bestSimilarity || (similarity == bestSimilarity && (best == -1 || candidate < best))) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    public MinHashSignature get(int number) {
+        return signatures.get(number);
+    }
+
+    public int size() {
+        return signatures.size();
+    }
+}
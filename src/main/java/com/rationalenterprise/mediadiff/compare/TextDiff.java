@@ -0,0 +1,346 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A summary of how two text files differ: the first differing byte, line and column, the number of lines deleted and
+ * inserted, and the first hunk.  It is meant for extracted text files whose MD5s differ, which often differ by a
+ * single character or line.
+ *
+ * The first differing byte is found by streaming both files (Files.mismatch()), so it is always reported.  The lines
+ * are only compared when both files are at most maxBytes long, with the linear space variant of Myers' O(ND)
+ * algorithm (the middle snake, divide and conquer): it takes O((N + M) D) time for D edits and O(N + M) space.  The
+ * search gives up when there are more than maxEdits edits, so a pair of unrelated files costs a bounded time too.
+ * Lines are compared by an int id per distinct line (see lineIds()), so each comparison is one int comparison.
+ */
+public class TextDiff {
+    /**
+     * The number of lines of context and changes shown in the first hunk.
+     */
+    private static final int HUNK_LINES = 5;
+
+    private long firstMismatch = -1;
+
+    private int firstLine = -1;
+
+    private int firstColumn = -1;
+
+    private boolean compared = false;
+
+    private int deleted = 0;
+
+    private int inserted = 0;
+
+    private final List<String> hunk = new ArrayList<>();
+
+    private TextDiff() {
+    }
+
+    /**
+     * Compares the two files.
+     *
+     * @param file1
+     * @param file2
+     * @param maxBytes the largest file whose lines are compared.
+     * @param maxEdits the most deleted plus inserted lines to search for.
+     * @return
+     * @throws IOException
+     */
+    public static TextDiff diff(Path file1, Path file2, long maxBytes, int maxEdits) throws IOException {
+        TextDiff diff = new TextDiff();
+
+        diff.firstMismatch = Files.mismatch(file1, file2);
+
+        if (diff.firstMismatch == -1 || Files.size(file1) > maxBytes || Files.size(file2) > maxBytes) {
+            return diff;
+        }
+
+        List<String> lines1 = lines(file1);
+        List<String> lines2 = lines(file2);
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = lineIds(lines1, ids);
+        int[] b = lineIds(lines2, ids);
+        BitSet deletedLines = new BitSet(a.length);
+        BitSet insertedLines = new BitSet(b.length);
+
+        if (new Diff(a, b, deletedLines, insertedLines).run(maxEdits)) {
+            diff.compared = true;
+            diff.deleted = deletedLines.cardinality();
+            diff.inserted = insertedLines.cardinality();
+            diff.addFirstHunk(lines1, lines2, deletedLines, insertedLines);
+        }
+
+        return diff;
+    }
+
+    /**
+     * The lines of the file, decoded as UTF-8 (malformed bytes are replaced).  A line keeps its "\r", so a change of
+     * line terminator is a change of the line.
+     */
+    private static List<String> lines(Path file) throws IOException {
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+
+        for (int end = text.indexOf('\n'); end != -1; end = text.indexOf('\n', start)) {
+            lines.add(text.substring(start, end));
+            start = end + 1;
+        }
+
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+
+        return lines;
+    }
+
+    private static int[] lineIds(List<String> lines, Map<String, Integer> ids) {
+        int[] lineIds = new int[lines.size()];
+
+        for (int i = 0; i < lineIds.length; i++) {
+            lineIds[i] = ids.computeIfAbsent(lines.get(i), line -> ids.size());
+        }
+
+        return lineIds;
+    }
+
+    /**
+     * Walks both files in step to the first deleted or inserted line, then collects the lines of the first hunk.
+     */
+    private void addFirstHunk(List<String> lines1, List<String> lines2, BitSet deletedLines, BitSet insertedLines) {
+        int i = 0;
+        int j = 0;
+
+        while (i < lines1.size() && j < lines2.size() && !deletedLines.get(i) && !insertedLines.get(j)) {
+            i++;
+            j++;
+        }
+
+        firstLine = i + 1;
+
+        for (int context = Math.max(0, i - 2); context < i; context++) {
+            hunk.add("  " + lines1.get(context));
+        }
+
+        int deletedEnd = deletedLines.nextClearBit(i);
+        int insertedEnd = insertedLines.nextClearBit(j);
+
+        deletedEnd = i < lines1.size() ? Math.min(deletedEnd, lines1.size()) : i;
+        insertedEnd = j < lines2.size() ? Math.min(insertedEnd, lines2.size()) : j;
+
+        // A changed line: the column of the first differing character.
+        if (deletedEnd > i && insertedEnd > j) {
+            String line1 = lines1.get(i);
+            String line2 = lines2.get(j);
+            int column = 0;
+
+            while (column < line1.length() && column < line2.length() && line1.charAt(column) == line2.charAt(column)) {
+                column++;
+            }
+
+            firstColumn = column + 1;
+        }
+
+        for (int k = i; k < deletedEnd && k < i + HUNK_LINES; k++) {
+            hunk.add("- " + lines1.get(k));
+        }
+
+        for (int k = j; k < insertedEnd && k < j + HUNK_LINES; k++) {
+            hunk.add("+ " + lines2.get(k));
+        }
+    }
+
+    /**
+     * The offset of the first differing byte, or -1 when the files are identical.
+     *
+     * @return
+     */
+    public long getFirstMismatch() {
+        return firstMismatch;
+    }
+
+    /**
+     * Whether the lines were compared (the files were small enough and had at most maxEdits edits).
+     *
+     * @return
+     */
+    public boolean isCompared() {
+        return compared;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    /**
+     * A one line summary followed by the first hunk ("- " for deleted lines, "+ " for inserted lines, "  " for
+     * context).
+     *
+     * @return
+     */
+    public List<String> format() {
+        List<String> lines = new ArrayList<>();
+
+        if (firstMismatch == -1) {
+            lines.add("identical");
+
+            return lines;
+        }
+
+        String first = String.format("first difference at byte %s", firstMismatch);
+
+        if (!compared) {
+            lines.add(first + " (too large or too different to compare the lines)");
+
+            return lines;
+        }
+
+        lines.add(String.format("%s (line %s%s), %s lines deleted, %s lines inserted", first, firstLine,
+                firstColumn == -1 ? "" : ", column " + firstColumn, deleted, inserted));
+        lines.addAll(hunk);
+
+        return lines;
+    }
+
+    /**
+     * Myers' linear space diff of two int sequences, marking the deleted elements of a and the inserted elements of
+     * b.
+     */
+    private static class Diff {
+        private final int[] a;
+
+        private final int[] b;
+
+        private final BitSet deleted;
+
+        private final BitSet inserted;
+
+        /**
+         * The furthest reaching paths of the forward and the reverse searches, indexed by diagonal (modulo their
+         * length, which is enough for the diagonals of one search step).
+         */
+        private final int[] forward;
+
+        private final int[] reverse;
+
+        Diff(int[] a, int[] b, BitSet deleted, BitSet inserted) {
+            this.a = a;
+            this.b = b;
+            this.deleted = deleted;
+            this.inserted = inserted;
+            this.forward = new int[2 * Math.min(a.length, b.length) + 2];
+            this.reverse = new int[forward.length];
+        }
+
+        /**
+         * Diffs the sequences, unless there are more than maxEdits edits.
+         *
+         * @return whether the sequences were diffed.
+         */
+        boolean run(int maxEdits) {
+            return diff(0, a.length, 0, b.length, maxEdits);
+        }
+
+        private boolean diff(int aStart, int aEnd, int bStart, int bEnd, int maxEdits) {
+            while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+                aStart++;
+                bStart++;
+            }
+
+            while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+                aEnd--;
+                bEnd--;
+            }
+
+            if (aStart == aEnd || bStart == bEnd) {
+                if ((aEnd - aStart) + (bEnd - bStart) > maxEdits) {
+                    return false;
+                }
+
+                deleted.set(aStart, aEnd);
+                inserted.set(bStart, bEnd);
+
+                return true;
+            }
+
+            int[] snake = middleSnake(aStart, aEnd, bStart, bEnd, maxEdits);
+
+            if (snake == null) {
+                return false;
+            }
+
+            // Both halves have fewer edits than the whole, which is within maxEdits.
+            diff(aStart, aStart + snake[0], bStart, bStart + snake[1], Integer.MAX_VALUE);
+            diff(aStart + snake[2], aEnd, bStart + snake[3], bEnd, Integer.MAX_VALUE);
+
+            return true;
+        }
+
+        /**
+         * The middle snake of a[aStart, aEnd) and b[bStart, bEnd) (which differ at both ends) as the offsets {x, y, u,
+         * v} of its start and end, or null when the sequences have more than maxEdits edits.
+         */
+        private int[] middleSnake(int aStart, int aEnd, int bStart, int bEnd, int maxEdits) {
+            int n = aEnd - aStart;
+            int m = bEnd - bStart;
+            int total = n + m;
+            int delta = n - m;
+            int size = 2 * Math.min(n, m) + 2;
+            boolean odd = (total & 1) == 1;
+
+            Arrays.fill(forward, 0, size, 0);
+            Arrays.fill(reverse, 0, size, 0);
+
+            for (int h = 0; h <= total / 2 + (odd ? 1 : 0); h++) {
+                for (int pass = 0; pass < 2; pass++) {
+                    boolean isForward = pass == 0;
+
+                    // A snake found at step h has 2h - 1 edits in the forward search and 2h in the reverse search.
+                    if ((isForward ? 2 * h - 1 : 2 * h) > maxEdits) {
+                        return null;
+                    }
+
+                    int[] paths = isForward ? forward : reverse;
+                    int[] other = isForward ? reverse : forward;
+
+                    for (int k = -(h - 2 * Math.max(0, h - m)); k <= h - 2 * Math.max(0, h - n); k += 2) {
+                        int x = k == -h || (k != h && paths[Math.floorMod(k - 1, size)] < paths[Math.floorMod(k + 1, size)])
+                                ? paths[Math.floorMod(k + 1, size)] : paths[Math.floorMod(k - 1, size)] + 1;
+                        int y = x - k;
+                        int startX = x;
+                        int startY = y;
+
+                        while (x < n && y < m && (isForward ? a[aStart + x] == b[bStart + y] : a[aEnd - 1 - x] == b[bEnd - 1 - y])) {
+                            x++;
+                            y++;
+                        }
+
+                        paths[Math.floorMod(k, size)] = x;
+
+                        int z = -(k - delta);
+
+                        if (odd == isForward && z >= -(h - (isForward ? 1 : 0)) && z <= h - (isForward ? 1 : 0)
+                                && x + other[Math.floorMod(z, size)] >= n) {
+                            return isForward ? new int[] {startX, startY, x, y} : new int[] {n - x, m - y, n - startX, m - startY};
+                        }
+                    }
+                }
+            }
+
+            return null;
+        }
+    }
+}
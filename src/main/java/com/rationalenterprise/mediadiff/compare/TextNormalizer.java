@@ -0,0 +1,151 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.text.Normalizer;
+
+/**
+ * The MD5 of a text file after the differences that extraction tools introduce without changing the content are taken
+ * out, so two extracted text files with the same normalized MD5 differ only in white space or encoding:
+ *
+ * - the byte order mark is dropped and the text is decoded by it (UTF-8 without one) and encoded as UTF-8,
+ * - "\r\n" and "\r" become "\n",
+ * - each run of spaces and tabs (any Unicode space) becomes one space, and spaces at the end of a line are dropped,
+ * - blank lines at the end of the file are dropped,
+ * - the text is in Unicode normalization form C (composed characters).
+ *
+ * The file is streamed: text is normalized and digested in chunks of about CHUNK_CHARS chars, each ended before an
+ * ASCII char (no character composes with a following ASCII char, so normalizing the chunks apart is normalizing the
+ * whole).  The pending space or newline before a char counts, so text without ASCII letters (Greek, Cyrillic, ...) is
+ * still cut at its spaces and line breaks.  Malformed bytes are replaced.
+ */
+public class TextNormalizer {
+    private static final int CHUNK_CHARS = 8192;
+
+    private final MessageDigest digest = DigestUtils.getMd5Digest();
+
+    private final StringBuilder chunk = new StringBuilder();
+
+    private boolean pendingSpace = false;
+
+    private int pendingNewlines = 0;
+
+    private TextNormalizer() {
+    }
+
+    public static String md5(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return md5(in);
+        }
+    }
+
+    /**
+     * The normalized MD5 of the text read from in, which is not closed.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static String md5(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        Charset charset = readByteOrderMark(buffered);
+        Reader reader = new InputStreamReader(buffered, charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE));
+        TextNormalizer normalizer = new TextNormalizer();
+        char[] buffer = new char[CHUNK_CHARS];
+        boolean afterCarriageReturn = false;
+        int read;
+
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+
+                if (c == '\n' && afterCarriageReturn) {
+                    afterCarriageReturn = false;
+
+                    continue;
+                }
+
+                afterCarriageReturn = c == '\r';
+                normalizer.add(c);
+            }
+        }
+
+        normalizer.flush();
+
+        return Hex.encodeHexString(normalizer.digest.digest());
+    }
+
+    /**
+     * Skips the byte order mark and returns the charset it stands for, UTF-8 when there is none.
+     */
+    private static Charset readByteOrderMark(BufferedInputStream in) throws IOException {
+        in.mark(3);
+
+        int b1 = in.read();
+        int b2 = in.read();
+        int b3 = in.read();
+
+        if (b1 == 0xEF && b2 == 0xBB && b3 == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+
+        in.reset();
+
+        if (b1 == 0xFE && b2 == 0xFF) {
+            in.skip(2);
+
+            return StandardCharsets.UTF_16BE;
+        } else if (b1 == 0xFF && b2 == 0xFE) {
+            in.skip(2);
+
+            return StandardCharsets.UTF_16LE;
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    private void add(char c) {
+        if (c == '\n' || c == '\r') {
+            pendingSpace = false;
+            pendingNewlines++;
+        } else if (c == '\t' || c == '\f' || c == 0x0B || Character.isSpaceChar(c)) {
+            pendingSpace = true;
+        } else {
+            if (chunk.length() >= CHUNK_CHARS && (c < 0x80 || pendingNewlines > 0 || pendingSpace)) {
+                flush();
+            }
+
+            for (; pendingNewlines > 0; pendingNewlines--) {
+                chunk.append('\n');
+            }
+
+            if (pendingSpace) {
+                chunk.append(' ');
+                pendingSpace = false;
+            }
+
+            chunk.append(c);
+        }
+    }
+
+    /**
+     * Digests the chunk.  Pending spaces and newlines wait for the next char, so they are dropped at the end.
+     */
+    private void flush() {
+        digest.update(Normalizer.normalize(chunk, Normalizer.Form.NFC).getBytes(StandardCharsets.UTF_8));
+        chunk.setLength(0);
+    }
+}
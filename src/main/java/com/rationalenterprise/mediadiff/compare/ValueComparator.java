@@ -0,0 +1,495 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import com.google.gson.stream.JsonToken;
+import com.rationalenterprise.mediadiff.json.JsonFields;
+import com.rationalenterprise.mediadiff.loadfile.ByteFields;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a JSON value with the bytes of a dat field using the field's normalizer.
+ *
+ * JSON values arrive as their token text (the literal text of a number) and dat values as the bytes of the field, so
+ * text is compared to the bytes as it is encoded and numbers, dates and booleans by walking the characters of both
+ * sides.  No Double, Boolean or date objects are created for the common cases.  The scratch arrays make an instance
+ * unsafe to share between threads.
+ */
+public class ValueComparator {
+    private static final int NEGATIVE = 0;
+    private static final int INTEGER_START = 1;
+    private static final int INTEGER_END = 2;
+    private static final int FRACTION_START = 3;
+    private static final int FRACTION_END = 4;
+
+    private static final int MAX_DATE_GROUPS = 8;
+
+    private static final String[] TRUE_WORDS = {"true", "yes", "y", "t", "1"};
+
+    private static final String[] FALSE_WORDS = {"false", "no", "n", "f", "0"};
+
+    private final Map<String, FieldType> fieldTypes;
+
+    private final String multiValueDelimiter;
+
+    private final int[] left = new int[5];
+
+    private final int[] right = new int[5];
+
+    private final int[] groupValues = new int[MAX_DATE_GROUPS];
+
+    private final int[] groupDigits = new int[MAX_DATE_GROUPS];
+
+    private final char[] groupSeparators = new char[MAX_DATE_GROUPS];
+
+    public ValueComparator(Map<String, FieldType> fieldTypes, String multiValueDelimiter) {
+        this.fieldTypes = fieldTypes;
+        this.multiValueDelimiter = multiValueDelimiter;
+    }
+
+    /**
+     * Returns true when the JSON value and the dat value of the column are the same value for the field.  A missing or
+     * null JSON value matches a blank dat value.  The dat value is compared as bytes (see ByteFields.contentEquals()
+     * and ByteFields.charSequence()) and only decoded for multi-value fields.
+     *
+     * @param field
+     * @param json
+     * @param dat
+     * @param column
+     * @return
+     */
+    public boolean matches(String field, JsonFields json, ByteFields dat, int column) {
+        JsonToken type = json.getType(column);
+
+        if (type == null || type == JsonToken.NULL) {
+            return dat.isBlank(column);
+        }
+
+        switch (fieldTypes.getOrDefault(field, FieldType.AUTO)) {
+            case TEXT:
+                return dat.contentEquals(column, text(json, column));
+            case NUMBER:
+                return numbersEqual(text(json, column), dat.charSequence(column));
+            case DATE:
+                return datesEqual(text(json, column), dat.charSequence(column));
+            case BOOLEAN:
+                return booleansEqual(text(json, column), dat.charSequence(column));
+            case MULTI_VALUE:
+                return multiValuesEqual(json, column, dat.toString(column));
+            default:
+                if (type == JsonToken.NUMBER) {
+                    return numbersEqual(json.getText(column), dat.charSequence(column));
+                } else if (type == JsonToken.BOOLEAN) {
+                    return booleansEqual(json.getText(column), dat.charSequence(column));
+                } else if (type == JsonToken.BEGIN_ARRAY) {
+                    return multiValuesEqual(json, column, dat.toString(column));
+                }
+
+                String text = text(json, column);
+
+                return dat.contentEquals(column, text) || datesEqual(text, dat.charSequence(column));
+        }
+    }
+
+    private String text(JsonFields json, int column) {
+        if (json.getType(column) == JsonToken.BEGIN_ARRAY) {
+            List<String> items = new ArrayList<>();
+
+            for (String item : json.getItems(column)) {
+                items.add(String.valueOf(item));
+            }
+
+            return String.join(multiValueDelimiter, items);
+        }
+
+        return json.getText(column);
+    }
+
+    /**
+     * Compares two decimal numbers without parsing them.  Exponent notation falls back to BigDecimal (without
+     * thousands separators).
+     */
+    boolean numbersEqual(CharSequence a, CharSequence b) {
+        if (!scanDecimal(a, left) || !scanDecimal(b, right)) {
+            try {
+                return new BigDecimal(stripNumber(a)).compareTo(new BigDecimal(stripNumber(b))) == 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        boolean leftZero = left[INTEGER_START] == left[INTEGER_END] && left[FRACTION_START] == left[FRACTION_END];
+        boolean rightZero = right[INTEGER_START] == right[INTEGER_END] && right[FRACTION_START] == right[FRACTION_END];
+
+        if (leftZero || rightZero) {
+            return leftZero && rightZero;
+        }
+
+        return left[NEGATIVE] == right[NEGATIVE]
+                && digitsEqual(a, left[INTEGER_START], left[INTEGER_END], b, right[INTEGER_START], right[INTEGER_END])
+                && digitsEqual(a, left[FRACTION_START], left[FRACTION_END], b, right[FRACTION_START], right[FRACTION_END]);
+    }
+
+    /**
+     * Records the significant integer and fraction digits of a plain decimal, whose integer digits may be grouped by
+     * thousands separators.  Returns false for anything else.
+     */
+    private static boolean scanDecimal(CharSequence s, int[] parts) {
+        int start = 0;
+        int end = s.length();
+
+        while (start < end && Character.isWhitespace(s.charAt(start))) {
+            start++;
+        }
+
+        while (end > start && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+
+        if (start == end) {
+            return false;
+        }
+
+        parts[NEGATIVE] = 0;
+
+        if (s.charAt(start) == '-' || s.charAt(start) == '+') {
+            parts[NEGATIVE] = s.charAt(start) == '-' ? 1 : 0;
+            start++;
+        }
+
+        int i = start;
+
+        while (i < end && (Character.isDigit(s.charAt(i)) || s.charAt(i) == ',')) {
+            i++;
+        }
+
+        if (!isGrouped(s, start, i)) {
+            return false;
+        }
+
+        boolean digits = i > start;
+        int significant = start;
+
+        while (significant < i && (s.charAt(significant) == '0' || s.charAt(significant) == ',')) {
+            significant++;
+        }
+
+        parts[INTEGER_START] = significant;
+        parts[INTEGER_END] = i;
+        parts[FRACTION_START] = i;
+        parts[FRACTION_END] = i;
+
+        if (i < end && s.charAt(i) == '.') {
+            i++;
+            parts[FRACTION_START] = i;
+
+            while (i < end && Character.isDigit(s.charAt(i))) {
+                digits = true;
+                i++;
+            }
+
+            int fractionEnd = i;
+
+            while (fractionEnd > parts[FRACTION_START] && s.charAt(fractionEnd - 1) == '0') {
+                fractionEnd--;
+            }
+
+            parts[FRACTION_END] = fractionEnd;
+        }
+
+        return digits && i == end;
+    }
+
+    /**
+     * Whether the commas of the integer digits s[start, end) are thousands separators: there are none, or a first group
+     * of 1 to 3 digits is followed by groups of exactly 3 digits ("1,234,567", not "1,2,3" or ",5").
+     */
+    private static boolean isGrouped(CharSequence s, int start, int end) {
+        boolean grouped = false;
+        int group = 0;
+
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) != ',') {
+                group++;
+            } else if (group == 0 || group > 3 || (grouped && group != 3)) {
+                return false;
+            } else {
+                grouped = true;
+                group = 0;
+            }
+        }
+
+        return !grouped || group == 3;
+    }
+
+    private static boolean digitsEqual(CharSequence a, int aStart, int aEnd, CharSequence b, int bStart, int bEnd) {
+        int i = aStart;
+        int j = bStart;
+
+        while (true) {
+            while (i < aEnd && a.charAt(i) == ',') {
+                i++;
+            }
+
+            while (j < bEnd && b.charAt(j) == ',') {
+                j++;
+            }
+
+            if (i == aEnd || j == bEnd) {
+                return i == aEnd && j == bEnd;
+            }
+
+            if (a.charAt(i++) != b.charAt(j++)) {
+                return false;
+            }
+        }
+    }
+
+    private static String stripNumber(CharSequence s) {
+        String stripped = s.toString().strip();
+
+        return stripped.startsWith("+") ? stripped.substring(1) : stripped;
+    }
+
+    /**
+     * Compares two dates after reducing both to yyyyMMddHHmmss.  Returns false when either side is not a date.
+     */
+    boolean datesEqual(CharSequence a, CharSequence b) {
+        long left = parseDate(a);
+
+        return left != -1 && left == parseDate(b);
+    }
+
+    /**
+     * Reduces a date or date time to yyyyMMddHHmmss, or -1 when the text is not a date.  Fractional seconds and time
+     * zone designators are ignored.
+     */
+    long parseDate(CharSequence s) {
+        int groups = 0;
+        boolean pm = false;
+        boolean am = false;
+        char separator = 0;
+        int i = 0;
+        int length = s.length();
+
+        while (i < length && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+
+        if (i == length || !Character.isDigit(s.charAt(i))) {
+            return -1;
+        }
+
+        while (i < length) {
+            char c = s.charAt(i);
+
+            if (Character.isDigit(c)) {
+                if (groups == MAX_DATE_GROUPS) {
+                    return -1;
+                }
+
+                int value = 0;
+                int digits = 0;
+
+                while (i < length && Character.isDigit(s.charAt(i))) {
+                    if (digits == 9) {
+                        return -1;
+                    }
+
+                    value = value * 10 + (s.charAt(i) - '0');
+                    digits++;
+                    i++;
+                }
+
+                groupValues[groups] = value;
+                groupDigits[groups] = digits;
+                groupSeparators[groups] = separator;
+                groups++;
+                separator = 0;
+
+                continue;
+            }
+
+            char upper = Character.toUpperCase(c);
+
+            if (upper == 'P' || upper == 'A') {
+                if (i + 1 < length && Character.toUpperCase(s.charAt(i + 1)) == 'M') {
+                    pm = upper == 'P';
+                    am = upper == 'A';
+                    i += 2;
+
+                    continue;
+                }
+
+                return -1;
+            } else if (Character.isLetter(c) && "TZUCG".indexOf(upper) == -1) {
+                return -1;
+            }
+
+            if (separator == 0) {
+                separator = c;
+            }
+
+            i++;
+        }
+
+        int year;
+        int month;
+        int day;
+        int timeStart;
+
+        if (groupDigits[0] == 8) {
+            year = groupValues[0] / 10000;
+            month = groupValues[0] / 100 % 100;
+            day = groupValues[0] % 100;
+            timeStart = 1;
+        } else if (groups >= 3 && groupDigits[0] == 4) {
+            year = groupValues[0];
+            month = groupValues[1];
+            day = groupValues[2];
+            timeStart = 3;
+        } else if (groups >= 3 && groupDigits[0] <= 2 && groupDigits[1] <= 2 && groupDigits[2] == 4) {
+            month = groupValues[0];
+            day = groupValues[1];
+            year = groupValues[2];
+            timeStart = 3;
+        } else {
+            return -1;
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return -1;
+        }
+
+        int hour = timeStart < groups ? groupValues[timeStart] : 0;
+        boolean hasMinute = timeStart + 1 < groups && groupSeparators[timeStart + 1] == ':';
+        int minute = hasMinute ? groupValues[timeStart + 1] : 0;
+        int second = hasMinute && timeStart + 2 < groups && groupSeparators[timeStart + 2] == ':' ? groupValues[timeStart + 2] : 0;
+
+        if (pm && hour < 12) {
+            hour += 12;
+        } else if (am && hour == 12) {
+            hour = 0;
+        }
+
+        if (hour > 23 || minute > 59 || second > 60) {
+            return -1;
+        }
+
+        return ((((year * 100L + month) * 100 + day) * 100 + hour) * 100 + minute) * 100 + second;
+    }
+
+    /**
+     * Compares booleans written as true/false, yes/no, y/n, t/f or 1/0.
+     */
+    boolean booleansEqual(String a, CharSequence b) {
+        int left = parseBoolean(a);
+
+        return left != -1 ? left == parseBoolean(b) : a.contentEquals(b);
+    }
+
+    private static int parseBoolean(CharSequence s) {
+        int start = 0;
+        int end = s.length();
+
+        while (start < end && Character.isWhitespace(s.charAt(start))) {
+            start++;
+        }
+
+        while (end > start && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+
+        for (String word : TRUE_WORDS) {
+            if (equalsIgnoreCase(s, start, end, word)) {
+                return 1;
+            }
+        }
+
+        for (String word : FALSE_WORDS) {
+            if (equalsIgnoreCase(s, start, end, word)) {
+                return 0;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence s, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.toLowerCase(s.charAt(start + i)) != word.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares the items of a JSON array (or delimited JSON string) with a delimited dat value, ignoring order, blank
+     * items and white space around items.
+     */
+    boolean multiValuesEqual(JsonFields json, int column, String datValue) {
+        List<String> jsonItems = new ArrayList<>();
+
+        if (json.getType(column) == JsonToken.BEGIN_ARRAY) {
+            for (String item : json.getItems(column)) {
+                if (item != null && !item.isBlank()) {
+                    jsonItems.add(item.strip());
+                }
+            }
+        } else {
+            jsonItems = split(json.getText(column));
+        }
+
+        List<String> datItems = split(datValue);
+
+        if (jsonItems.size() != datItems.size()) {
+            return false;
+        }
+
+        Collections.sort(jsonItems);
+        Collections.sort(datItems);
+
+        return jsonItems.equals(datItems);
+    }
+
+    private List<String> split(String value) {
+        List<String> items = new ArrayList<>();
+
+        if (multiValueDelimiter.isEmpty()) {
+            if (!value.isBlank()) {
+                items.add(value.strip());
+            }
+
+            return items;
+        }
+
+        int start = 0;
+
+        while (start <= value.length()) {
+            int end = value.indexOf(multiValueDelimiter, start);
+
+            if (end == -1) {
+                end = value.length();
+            }
+
+            String item = value.substring(start, end).strip();
+
+            if (!item.isEmpty()) {
+                items.add(item);
+            }
+
+            start = end + multiValueDelimiter.length();
+        }
+
+        return items;
+    }
+}
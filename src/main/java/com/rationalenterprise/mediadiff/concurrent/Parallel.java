@@ -0,0 +1,297 @@
+package com.rationalenterprise.mediadiff.concurrent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Small helpers for running independent IO bound tasks on a bounded pool.
+ */
+public class Parallel {
+    private Parallel() {
+    }
+
+    /**
+     * Runs the tasks on at most threads threads and returns their results in task order.  The first failure cancels
+     * the remaining tasks and is rethrown with its original type when it is an IOException or a RuntimeException.
+     *
+     * @param threads
+     * @param tasks
+     * @return
+     * @throws IOException
+     */
+    public static <T> List<T> invokeAll(int threads, List<? extends Callable<T>> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+
+            List<T> results = new ArrayList<>();
+
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted while waiting for parallel tasks", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the tasks on at most threads threads and returns the first non-null result to complete (not necessarily
+     * the first task's), or null when every task returns null.  As soon as a result is found the queued tasks are
+     * cancelled and the running ones are interrupted.  Failures are rethrown like invokeAll().
+     *
+     * @param threads
+     * @param tasks
+     * @return
+     * @throws IOException
+     */
+    public static <T> T firstNonNull(int threads, List<? extends Callable<T>> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return null;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+
+        try {
+            CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+
+            for (Callable<T> task : tasks) {
+                completionService.submit(task);
+            }
+
+            for (int i = 0; i < tasks.size(); i++) {
+                T result = completionService.take().get();
+
+                if (result != null) {
+                    return result;
+                }
+            }
+
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted while waiting for parallel tasks", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits list into about 4 consecutive chunks per thread (fewer for a short list), so a slow chunk does not hold
+     * back the others for long.  The chunks are views of list, in order.
+     *
+     * @param threads
+     * @param list
+     * @return
+     */
+    public static <T> List<List<T>> chunks(int threads, List<T> list) {
+        int chunks = Math.min(list.size(), Math.max(1, threads) * 4);
+        List<List<T>> result = new ArrayList<>(chunks);
+
+        for (int c = 0; c < chunks; c++) {
+            result.add(list.subList(list.size() * c / chunks, list.size() * (c + 1) / chunks));
+        }
+
+        return result;
+    }
+
+    /**
+     * Applies function to each element of list, in chunks (see chunks()) on at most threads threads, and returns the
+     * results in the order of list.  Failures are rethrown like invokeAll().
+     *
+     * @param threads
+     * @param list
+     * @param function
+     * @return
+     * @throws IOException
+     */
+    public static <T, R> List<R> mapChunks(int threads, List<T> list, ElementFunction<T, R> function) throws IOException {
+        List<Callable<List<R>>> tasks = new ArrayList<>();
+
+        for (List<T> chunk : chunks(threads, list)) {
+            tasks.add(() -> {
+                List<R> results = new ArrayList<>(chunk.size());
+
+                for (T element : chunk) {
+                    results.add(function.apply(element));
+                }
+
+                return results;
+            });
+        }
+
+        List<R> results = new ArrayList<>(list.size());
+
+        for (List<R> chunkResults : invokeAll(threads, tasks)) {
+            results.addAll(chunkResults);
+        }
+
+        return results;
+    }
+
+    /**
+     * Runs first on the calling thread and second on its own thread at the same time, then waits for both.  This is
+     * the join point for modes that process --path-1 and --path-2 independently before comparing them, so the wall
+     * time is the slower of the two instead of their sum.  If first fails, second is cancelled and waited for.  When
+     * one fails, a result the other has produced is closed if it is AutoCloseable (eg: a JsonObjectIndex), so it does
+     * not leak.
+     *
+     * @param first
+     * @param second
+     * @return
+     * @throws IOException
+     */
+    public static <A, B> Pair<A, B> both(Callable<A> first, Callable<B> second) throws IOException {
+        // Kept apart from the task, which drops the result of a call that completes after it is cancelled.
+        AtomicReference<B> secondResult = new AtomicReference<>();
+        FutureTask<B> secondTask = new FutureTask<>(() -> {
+            B result = second.call();
+
+            secondResult.set(result);
+
+            return result;
+        });
+        Thread thread = new Thread(secondTask, "parallel-second");
+        thread.setDaemon(true);
+        thread.start();
+
+        A firstResult;
+
+        try {
+            firstResult = first.call();
+        } catch (IOException | RuntimeException | Error e) {
+            cancel(secondTask, thread, secondResult, e);
+
+            throw e;
+        } catch (Exception e) {
+            IOException failure = new IOException(e);
+
+            cancel(secondTask, thread, secondResult, failure);
+
+            throw failure;
+        }
+
+        try {
+            return new Pair<>(firstResult, secondTask.get());
+        } catch (InterruptedException e) {
+            IOException failure = new IOException("Interrupted while waiting for parallel tasks", e);
+
+            cancel(secondTask, thread, secondResult, failure);
+            close(firstResult, failure);
+            Thread.currentThread().interrupt();
+
+            throw failure;
+        } catch (ExecutionException e) {
+            close(firstResult, e.getCause());
+
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Cancels the second task of both(), waits for its thread to end and closes the result it produced.
+     */
+    private static void cancel(FutureTask<?> task, Thread thread, AtomicReference<?> result, Throwable failure) {
+        task.cancel(true);
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        close(result.get(), failure);
+    }
+
+    /**
+     * Closes a result of both() when it is AutoCloseable.  A failure to close is added to failure.
+     */
+    private static void close(Object result, Throwable failure) {
+        if (result instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) result).close();
+            } catch (Exception e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * The function of mapChunks().
+     */
+    @FunctionalInterface
+    public interface ElementFunction<T, R> {
+        R apply(T element) throws IOException;
+    }
+
+    /**
+     * The results of both().
+     */
+    public static class Pair<A, B> {
+        private final A first;
+
+        private final B second;
+
+        Pair(A first, B second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        public A getFirst() {
+            return first;
+        }
+
+        public B getSecond() {
+            return second;
+        }
+    }
+
+    /**
+     * Rethrows the cause of an ExecutionException when it is unchecked, otherwise returns it as an IOException.
+     *
+     * @param e
+     * @return
+     */
+    public static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        return new IOException(cause);
+    }
+}
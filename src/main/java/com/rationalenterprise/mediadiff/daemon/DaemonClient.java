@@ -0,0 +1,86 @@
+package com.rationalenterprise.mediadiff.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Sends one command to a DaemonServer and copies its output to this process as it arrives.
+ */
+public class DaemonClient {
+    private final Path socket;
+
+    public DaemonClient(Path socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Runs args in the daemon.
+     *
+     * @param args The arguments of the command, or null to stop the daemon.
+     * @param out
+     * @param err
+     * @return The command's exit code.
+     * @throws IOException
+     */
+    public int run(List<String> args, PrintStream out, PrintStream err) throws IOException {
+        if (!Files.exists(socket)) {
+            throw new IOException(String.format("No daemon is listening on %s (start one with: mediaDiff serve)", socket));
+        }
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+            Protocol.writeRequest(data, Path.of("").toAbsolutePath(), args);
+
+            byte[] buffer = new byte[8192];
+
+            while (true) {
+                byte type;
+
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    throw new IOException("The daemon closed the connection before the command finished", e);
+                }
+
+                if (type == Protocol.EXIT) {
+                    out.flush();
+                    err.flush();
+
+                    return in.readInt();
+                }
+
+                PrintStream target = type == Protocol.ERR ? err : out;
+                int length = in.readInt();
+
+                while (length > 0) {
+                    int read = in.read(buffer, 0, Math.min(buffer.length, length));
+
+                    if (read == -1) {
+                        throw new IOException("The daemon closed the connection before the command finished");
+                    }
+
+                    target.write(buffer, 0, read);
+                    length -= read;
+                }
+
+                target.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.rationalenterprise.mediadiff.daemon;
+
+import com.rationalenterprise.mediadiff.cache.FileCache;
+import picocli.CommandLine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs mediaDiff commands sent by clients over a Unix domain socket in this JVM, so the JIT, the loaded classes and
+ * the shared FileCache stay warm between commands.
+ *
+ * The commands print to System.out, so requests are run one at a time with System.out and System.err redirected to
+ * the client.  Relative Path options are resolved against the client's working directory.
+ */
+public class DaemonServer {
+    private final Path socket;
+
+    private final Function<String[], CommandLine> commandLineFactory;
+
+    /**
+     * @param socket
+     * @param commandLineFactory Creates a new mediaDiff command line for the arguments of each request.
+     */
+    public DaemonServer(Path socket, Function<String[], CommandLine> commandLineFactory) {
+        this.socket = socket;
+        this.commandLineFactory = commandLineFactory;
+    }
+
+    /**
+     * Serves requests until a client asks the daemon to stop.
+     *
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        // A socket file left by a daemon that was killed would make bind fail.
+        Files.deleteIfExists(socket);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+
+            System.out.println(String.format("Listening on %s", socket));
+
+            boolean running = true;
+
+            while (running) {
+                try (SocketChannel channel = server.accept()) {
+                    running = handle(channel);
+                } catch (IOException e) {
+                    System.out.println(String.format("Request failed: %s", e.getMessage()));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+        }
+
+        System.out.println("Stopped.");
+    }
+
+    /**
+     * Runs one request.
+     *
+     * @return false when the client asked the daemon to stop.
+     */
+    private boolean handle(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        Path workingDirectory = Path.of(in.readUTF());
+        List<String> args = Protocol.readArgs(in);
+
+        if (args == null) {
+            writeExit(data, 0);
+
+            return false;
+        }
+
+        long start = System.nanoTime();
+        PrintStream out = new PrintStream(new Protocol.FrameOutputStream(Protocol.OUT, data), true, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new Protocol.FrameOutputStream(Protocol.ERR, data), true, StandardCharsets.UTF_8);
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        int exitCode;
+
+        System.setOut(out);
+        System.setErr(err);
+
+        try {
+            String[] arguments = args.toArray(new String[0]);
+            CommandLine commandLine = commandLineFactory.apply(arguments);
+            commandLine.setOut(new PrintWriter(out, true));
+            commandLine.setErr(new PrintWriter(err, true));
+            commandLine.setExecutionStrategy(parseResult -> {
+                resolvePaths(parseResult, workingDirectory);
+
+                return new CommandLine.RunLast().execute(parseResult);
+            });
+
+            exitCode = commandLine.execute(arguments);
+        } finally {
+            out.flush();
+            err.flush();
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+        }
+
+        writeExit(data, exitCode);
+
+        FileCache cache = FileCache.shared();
+
+        System.out.println(String.format("%s (exit %s, %.3f s, cache: %s entries, %.1f MB, %s hits, %s misses)", String.join(" ", args), exitCode,
+                (System.nanoTime() - start) / 1e9, cache.size(), cache.getUsedBytes() / (1024.0 * 1024.0), cache.getHits(), cache.getMisses()));
+
+        return true;
+    }
+
+    private static void writeExit(DataOutputStream data, int exitCode) throws IOException {
+        synchronized (data) {
+            data.writeByte(Protocol.EXIT);
+            data.writeInt(exitCode);
+            data.flush();
+        }
+    }
+
+    /**
+     * Makes every relative Path option (and every relative Path of a repeated option, like --path) absolute against
+     * the client's working directory, and refuses to run the daemon commands inside the daemon.
+     */
+    static void resolvePaths(CommandLine.ParseResult parseResult, Path workingDirectory) {
+        for (CommandLine.ParseResult result = parseResult; result != null; result = result.subcommand()) {
+            String name = result.commandSpec().name();
+
+            if ("serve".equals(name) || "client".equals(name)) {
+                throw new CommandLine.ParameterException(result.commandSpec().commandLine(), String.format("%s cannot be run by the daemon", name));
+            }
+
+            for (CommandLine.Model.OptionSpec option : result.matchedOptions()) {
+                Object value = option.getValue();
+
+                if (option.type() == Path.class && value != null) {
+                    option.setValue(workingDirectory.resolve((Path) value));
+                } else if (value instanceof Collection && option.auxiliaryTypes()[0] == Path.class) {
+                    @SuppressWarnings("unchecked")
+                    Collection<Path> paths = (Collection<Path>) value;
+                    List<Path> resolved = new ArrayList<>();
+
+                    for (Path path : paths) {
+                        resolved.add(workingDirectory.resolve(path));
+                    }
+
+                    paths.clear();
+                    paths.addAll(resolved);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.rationalenterprise.mediadiff.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The wire format between the client command and the daemon.
+ *
+ * A request is the client's working directory followed by the argument count and the arguments (a count of -1 asks
+ * the daemon to stop).  The response is a stream of frames: standard output and standard error chunks, then the exit
+ * code.
+ */
+public class Protocol {
+    static final byte OUT = 1;
+
+    static final byte ERR = 2;
+
+    static final byte EXIT = 3;
+
+    static final int SHUTDOWN = -1;
+
+    private Protocol() {
+    }
+
+    /**
+     * The socket used when --socket is not given: mediadiff-USER.sock in the temporary directory.
+     *
+     * @return
+     */
+    public static Path defaultSocket() {
+        return Path.of(System.getProperty("java.io.tmpdir"), String.format("mediadiff-%s.sock", System.getProperty("user.name")));
+    }
+
+    static void writeRequest(DataOutputStream out, Path workingDirectory, List<String> args) throws IOException {
+        out.writeUTF(workingDirectory.toString());
+
+        if (args == null) {
+            out.writeInt(SHUTDOWN);
+        } else {
+            out.writeInt(args.size());
+
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Reads the arguments of a request, or returns null for a shutdown request.
+     */
+    static List<String> readArgs(DataInputStream in) throws IOException {
+        int count = in.readInt();
+
+        if (count == SHUTDOWN) {
+            return null;
+        }
+
+        List<String> args = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            args.add(in.readUTF());
+        }
+
+        return args;
+    }
+
+    /**
+     * Writes everything written to it as frames of one type.  Frames from several FrameOutputStreams may share the
+     * same DataOutputStream.
+     */
+    static class FrameOutputStream extends OutputStream {
+        private final byte type;
+
+        private final DataOutputStream out;
+
+        FrameOutputStream(byte type, DataOutputStream out) {
+            this.type = type;
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
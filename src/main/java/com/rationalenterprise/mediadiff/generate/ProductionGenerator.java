@@ -0,0 +1,490 @@
+package com.rationalenterprise.mediadiff.generate;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.rationalenterprise.mediadiff.service.DirectoryService;
+import com.rationalenterprise.mediadiff.service.LoadFileService;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes deterministic synthetic productions: dat volumes, a matching JSON export and a natives directory with
+ * extracted text.
+ *
+ * Every document is derived from (seed, row number) only, so the same settings always produce byte identical files
+ * and a second production can differ from the first in exactly the documents chosen for injected differences.
+ */
+public class ProductionGenerator {
+    public static final char DELIMITER = Character.toChars(20)[0];
+
+    public static final char QUOTE = Character.toChars(254)[0];
+
+    public static final List<String> FIXED_HEADERS = Collections.unmodifiableList(Arrays.asList("ID", "BATES", "PATH",
+            "NATIVE_PATH", "MD5SUM", "FILE_SIZE", "DATE_SENT", "HAS_ATTACHMENTS", "CUSTODIAN", "EMAIL_BODY"));
+
+    private static final String[] NATIVE_EXTENSIONS = {".msg", ".pdf", ".docx", ".xls", ".pst"};
+
+    private static final String[] CUSTODIANS = {"Smith, John", "Doe, Jane", "Garcia, Maria", "Chen, Wei", "Okafor, Ada", "Novak, Petr"};
+
+    private static final String[] WORDS = {"invoice", "meeting", "contract", "review", "schedule", "budget", "report",
+            "draft", "approval", "shipment", "forecast", "agenda", "minutes", "proposal", "payment", "audit"};
+
+    /**
+     * The kinds of differences injected into the second production, applied round robin.
+     */
+    public enum Difference {
+        VALUE, DELETE, INSERT, NATIVE, TEXT
+    }
+
+    public enum JsonLayout {
+        NONE, ARRAY, LINES
+    }
+
+    private long seed = 1;
+
+    private int rows = 1000;
+
+    private int columns = FIXED_HEADERS.size() + 10;
+
+    private int cardinality = 100;
+
+    private double blankRatio = 0.3;
+
+    private double multiLineRatio = 0;
+
+    private int volumes = 1;
+
+    private JsonLayout jsonLayout = JsonLayout.ARRAY;
+
+    private boolean natives = false;
+
+    private int nativeSize = 1024;
+
+    private int differences = 0;
+
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    public ProductionGenerator setSeed(long seed) {
+        this.seed = seed;
+
+        return this;
+    }
+
+    public ProductionGenerator setRows(int rows) {
+        this.rows = rows;
+
+        return this;
+    }
+
+    public ProductionGenerator setColumns(int columns) {
+        this.columns = Math.max(columns, FIXED_HEADERS.size());
+
+        return this;
+    }
+
+    public ProductionGenerator setCardinality(int cardinality) {
+        this.cardinality = Math.max(1, cardinality);
+
+        return this;
+    }
+
+    public ProductionGenerator setBlankRatio(double blankRatio) {
+        this.blankRatio = blankRatio;
+
+        return this;
+    }
+
+    public ProductionGenerator setMultiLineRatio(double multiLineRatio) {
+        this.multiLineRatio = multiLineRatio;
+
+        return this;
+    }
+
+    public ProductionGenerator setVolumes(int volumes) {
+        this.volumes = Math.max(1, volumes);
+
+        return this;
+    }
+
+    public ProductionGenerator setJsonLayout(JsonLayout jsonLayout) {
+        this.jsonLayout = jsonLayout;
+
+        return this;
+    }
+
+    public ProductionGenerator setNatives(boolean natives) {
+        this.natives = natives;
+
+        return this;
+    }
+
+    public ProductionGenerator setNativeSize(int nativeSize) {
+        this.nativeSize = Math.max(0, nativeSize);
+
+        return this;
+    }
+
+    public ProductionGenerator setDifferences(int differences) {
+        this.differences = Math.max(0, differences);
+
+        return this;
+    }
+
+    public List<String> getHeader() {
+        List<String> header = new ArrayList<>(FIXED_HEADERS);
+
+        for (int i = header.size(); i < columns; i++) {
+            header.add("FIELD_" + i);
+        }
+
+        return header;
+    }
+
+    /**
+     * Writes production-1 to output.  When differences is not zero, production-1 and production-2 are written to
+     * subdirectories of output along with differences.txt, which lists every injected difference.  Documents are
+     * generated while they are written, so memory use does not grow with the row count.
+     *
+     * @param output
+     * @return The injected differences.
+     * @throws IOException
+     */
+    public List<String> generate(Path output) throws IOException {
+        if (differences == 0) {
+            write(output, new HashMap<>(), 0, new ArrayList<>());
+
+            return new ArrayList<>();
+        }
+
+        write(output.resolve("production-1"), new HashMap<>(), 0, new ArrayList<>());
+
+        Map<Integer, Difference> plan = new HashMap<>();
+        int inserts = planDifferences(plan);
+        List<String> manifest = new ArrayList<>();
+
+        write(output.resolve("production-2"), plan, inserts, manifest);
+        Files.write(output.resolve("differences.txt"), manifest, StandardCharsets.UTF_8);
+
+        return manifest;
+    }
+
+    /**
+     * Chooses the rows that differ in production-2.  The kinds of differences are assigned round robin.
+     *
+     * @return The number of inserted rows.
+     */
+    private int planDifferences(Map<Integer, Difference> plan) {
+        Random random = new Random(~seed);
+        int inserts = 0;
+
+        for (int i = 0; i < differences; i++) {
+            Difference difference = Difference.values()[i % Difference.values().length];
+
+            if (difference == Difference.INSERT) {
+                inserts++;
+            } else if (plan.size() < rows) {
+                int row;
+
+                do {
+                    row = random.nextInt(rows);
+                } while (plan.containsKey(row));
+
+                plan.put(row, difference);
+            }
+        }
+
+        return inserts;
+    }
+
+    /**
+     * The dat row (without a line break) for a row number.
+     *
+     * @param row
+     * @return
+     */
+    public String getDatRow(int row) {
+        return datRow(document(row).values);
+    }
+
+    public String getDatHeader() {
+        return datRow(getHeader().toArray(new String[0]));
+    }
+
+    private Document document(int row) {
+        Random random = new Random(seed * 1_000_003L + row);
+        String[] values = new String[columns];
+        String id = String.format("DOC%08d", row + 1);
+        String folder = String.format("%03d", row / 1000 + 1);
+        String extension = NATIVE_EXTENSIONS[random.nextInt(NATIVE_EXTENSIONS.length)];
+
+        Document document = new Document();
+        document.id = id;
+        document.folder = folder;
+        document.extension = extension;
+        document.extractedText = text(random, 5 + random.nextInt(40), random.nextDouble() < multiLineRatio);
+        document.nativeBytes = nativeBytes(random, id);
+
+        values[0] = id;
+        values[1] = String.format("PROD%08d", row + 1);
+        values[2] = String.format("NATIVES\\%s\\%s%s", folder, id, extension);
+        values[3] = String.format("\\\\fileserver\\collections\\%s\\%s%s", folder, id, extension);
+        values[4] = DigestUtils.md5Hex(document.nativeBytes);
+        values[5] = String.valueOf(document.nativeBytes.length);
+        values[6] = random.nextDouble() < blankRatio ? "" : String.format("%02d/%02d/20%02d %02d:%02d %s",
+                1 + random.nextInt(12), 1 + random.nextInt(28), 10 + random.nextInt(12), 1 + random.nextInt(12), random.nextInt(60), random.nextBoolean() ? "AM" : "PM");
+        values[7] = random.nextBoolean() ? "Y" : "N";
+        values[8] = custodians(random);
+        values[9] = document.extractedText;
+
+        for (int i = FIXED_HEADERS.size(); i < values.length; i++) {
+            values[i] = random.nextDouble() < blankRatio ? "" : "value " + random.nextInt(cardinality);
+        }
+
+        document.values = values;
+
+        return document;
+    }
+
+    private String custodians(Random random) {
+        int count = random.nextInt(3);
+        List<String> custodians = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            String custodian = CUSTODIANS[random.nextInt(CUSTODIANS.length)];
+
+            if (!custodians.contains(custodian)) {
+                custodians.add(custodian);
+            }
+        }
+
+        return String.join("; ", custodians);
+    }
+
+    private static String text(Random random, int words, boolean multiLine) {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(multiLine && i % 8 == 0 ? "\r\n" : " ");
+            }
+
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        return text.toString();
+    }
+
+    private byte[] nativeBytes(Random random, String id) {
+        byte[] bytes = new byte[nativeSize];
+        byte[] prefix = ("Native for " + id + "\n").getBytes(StandardCharsets.UTF_8);
+
+        random.nextBytes(bytes);
+        System.arraycopy(prefix, 0, bytes, 0, Math.min(prefix.length, bytes.length));
+
+        return bytes;
+    }
+
+    private void applyDifference(Difference difference, int row, Document document, List<String> manifest) {
+        Random random = new Random(~seed * 1_000_003L + row);
+
+        if (difference == Difference.INSERT) {
+            manifest.add(String.format("%s %s", difference, document.id));
+        } else if (difference == Difference.VALUE) {
+            int column = FIXED_HEADERS.size() < document.values.length ? FIXED_HEADERS.size() + random.nextInt(document.values.length - FIXED_HEADERS.size()) : 8;
+            String value = "changed " + random.nextInt(cardinality);
+
+            manifest.add(String.format("%s %s %s: \"%s\" -> \"%s\"", difference, document.id, getHeader().get(column), document.values[column], value));
+            document.values[column] = value;
+        } else if (difference == Difference.NATIVE) {
+            String originalMD5 = document.values[4];
+
+            if (document.nativeBytes.length > 0) {
+                document.nativeBytes[random.nextInt(document.nativeBytes.length)] ^= 1;
+            } else {
+                document.nativeBytes = new byte[] {1};
+            }
+
+            document.values[4] = DigestUtils.md5Hex(document.nativeBytes);
+            document.values[5] = String.valueOf(document.nativeBytes.length);
+            manifest.add(String.format("%s %s MD5SUM: %s -> %s", difference, document.id, originalMD5, document.values[4]));
+        } else if (difference == Difference.TEXT) {
+            document.extractedText = document.extractedText + " ";
+            document.values[9] = document.extractedText;
+            manifest.add(String.format("%s %s extracted text has a trailing space", difference, document.id));
+        }
+    }
+
+    private void write(Path directory, Map<Integer, Difference> plan, int inserts, List<String> manifest) throws IOException {
+        Files.createDirectories(directory.resolve("DATA"));
+
+        long deletes = plan.values().stream().filter(d -> d == Difference.DELETE).count();
+        long total = rows - deletes + inserts;
+        long written = 0;
+        int volume = 0;
+        BufferedWriter dat = openVolume(directory, volume);
+        BufferedWriter json = null;
+
+        try {
+            if (jsonLayout != JsonLayout.NONE) {
+                json = Files.newBufferedWriter(directory.resolve(jsonLayout == JsonLayout.ARRAY ? "export.json" : "export.jsonl"), StandardCharsets.UTF_8);
+
+                if (jsonLayout == JsonLayout.ARRAY) {
+                    json.write("[\n");
+                }
+            }
+
+            List<String> header = getHeader();
+
+            for (int row = 0; row < rows + inserts; row++) {
+                Difference difference = row < rows ? plan.get(row) : Difference.INSERT;
+                Document document = document(row);
+
+                if (difference == Difference.DELETE) {
+                    manifest.add(String.format("%s %s", difference, document.id));
+
+                    continue;
+                } else if (difference != null) {
+                    applyDifference(difference, row, document, manifest);
+                }
+
+                int documentVolume = (int) (written * volumes / total);
+
+                if (documentVolume != volume) {
+                    dat.close();
+                    volume = documentVolume;
+                    dat = openVolume(directory, volume);
+                }
+
+                dat.write(datRow(document.values));
+                dat.write("\r\n");
+
+                if (json != null) {
+                    if (written > 0) {
+                        json.write(jsonLayout == JsonLayout.ARRAY ? ",\n" : "\n");
+                    }
+
+                    json.write(gson.toJson(jsonObject(header, document.values)));
+                }
+
+                if (natives) {
+                    Path folder = directory.resolve("NATIVES").resolve(document.folder);
+                    Files.createDirectories(folder);
+                    Files.write(folder.resolve(document.id + document.extension), document.nativeBytes);
+                    Files.write(folder.resolve(document.id + DirectoryService.EXTRACTED_TEXT_EXTENSION), document.extractedText.getBytes(StandardCharsets.UTF_8));
+                }
+
+                written++;
+            }
+
+            if (json != null) {
+                json.write(jsonLayout == JsonLayout.ARRAY ? "\n]\n" : "\n");
+            }
+        } finally {
+            dat.close();
+
+            if (json != null) {
+                json.close();
+            }
+        }
+
+        // Volumes that received no rows still get a header so the volume count is what was asked for.
+        for (int i = volume + 1; i < volumes; i++) {
+            openVolume(directory, i).close();
+        }
+    }
+
+    private BufferedWriter openVolume(Path directory, int volume) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(directory.resolve("DATA").resolve(String.format("VOL%03d.dat", volume + 1)), StandardCharsets.UTF_8);
+        writer.write(LoadFileService.UTF_8_BOM);
+        writer.write(getDatHeader());
+        writer.write("\r\n");
+
+        return writer;
+    }
+
+    /**
+     * The JSON form of a document uses typed values where the dat uses text: FILE_SIZE is a number, HAS_ATTACHMENTS a
+     * boolean, CUSTODIAN an array and DATE_SENT an ISO date time.  Blank values are left out.
+     */
+    private static Map<String, Object> jsonObject(List<String> header, String[] values) {
+        Map<String, Object> object = new LinkedHashMap<>();
+
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+
+            if (value.isBlank()) {
+                continue;
+            }
+
+            switch (header.get(i)) {
+                case "FILE_SIZE":
+                    object.put(header.get(i), Long.parseLong(value));
+                    break;
+                case "HAS_ATTACHMENTS":
+                    object.put(header.get(i), "Y".equals(value));
+                    break;
+                case "CUSTODIAN":
+                    object.put(header.get(i), Arrays.asList(value.split("; ")));
+                    break;
+                case "DATE_SENT":
+                    object.put(header.get(i), isoDate(value));
+                    break;
+                default:
+                    object.put(header.get(i), value);
+            }
+        }
+
+        return object;
+    }
+
+    /**
+     * MM/dd/yyyy hh:mm AM to yyyy-MM-ddTHH:mm:00Z.
+     */
+    private static String isoDate(String value) {
+        String[] parts = value.split("[/ :]");
+        int hour = Integer.parseInt(parts[3]) % 12 + ("PM".equals(parts[5]) ? 12 : 0);
+
+        return String.format("%s-%s-%sT%02d:%s:00Z", parts[2], parts[0], parts[1], hour, parts[4]);
+    }
+
+    private static String datRow(String[] values) {
+        StringBuilder row = new StringBuilder();
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(DELIMITER);
+            }
+
+            row.append(QUOTE).append(values[i]).append(QUOTE);
+        }
+
+        return row.toString();
+    }
+
+    private static class Document {
+        String id;
+
+        String folder;
+
+        String extension;
+
+        String[] values;
+
+        String extractedText;
+
+        byte[] nativeBytes;
+    }
+}
@@ -0,0 +1,243 @@
+package com.rationalenterprise.mediadiff.json;
+
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads a file containing one top-level JSON array in parallel.
+ *
+ * A single structural pass over the memory-mapped file tracks strings, escapes and nesting depth to find where each
+ * element of the top-level array starts and ends.  No objects are built during the pass, so counting stops there.
+ * Parsing hands contiguous batches of elements to a pool of workers and returns the objects in file order.
+ */
+public class JsonArrayReader {
+    /**
+     * Files larger than this are mapped one window at a time.
+     */
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final Path path;
+
+    private final int threads;
+
+    private final ObjectParser parser = new ObjectParser();
+
+    public JsonArrayReader(Path path, int threads) {
+        this.path = path;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Counts the elements of the top-level array using the structural scan only.
+     *
+     * @return
+     * @throws IOException
+     */
+    public long count() throws IOException {
+        return scan(false).count;
+    }
+
+    /**
+     * Parses every element of the top-level array into a map.
+     *
+     * @return
+     * @throws IOException
+     */
+    public List<Map<String, Object>> readAll() throws IOException {
+        Elements elements = scan(true);
+        int batches = (int) Math.min(elements.count, threads * 4L);
+        List<Callable<List<Map<String, Object>>>> tasks = new ArrayList<>();
+
+        for (int b = 0; b < batches; b++) {
+            int from = (int) (elements.count * b / batches);
+            int to = (int) (elements.count * (b + 1) / batches);
+
+            tasks.add(() -> parse(elements, from, to));
+        }
+
+        List<Map<String, Object>> objects = new ArrayList<>((int) elements.count);
+
+        for (List<Map<String, Object>> batch : Parallel.invokeAll(threads, tasks)) {
+            objects.addAll(batch);
+        }
+
+        return objects;
+    }
+
+    private List<Map<String, Object>> parse(Elements elements, int from, int to) throws IOException {
+        List<Map<String, Object>> objects = new ArrayList<>(to - from);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int i = from; i < to; i++) {
+                long start = elements.starts[i];
+                ByteBuffer buffer = ByteBuffer.allocate((int) (elements.ends[i] - start));
+
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of file in " + path);
+                    }
+                }
+
+                objects.add(parser.parse(new String(buffer.array(), StandardCharsets.UTF_8)));
+            }
+        }
+
+        return objects;
+    }
+
+    /**
+     * Walks the file once and records the [start, end) byte offsets of each depth 1 element.  Only bytes that can
+     * change the structure are inspected: quotes, backslashes inside strings, brackets, braces and commas.
+     */
+    Elements scan(boolean recordOffsets) throws IOException {
+        Elements elements = new Elements(recordOffsets);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = JsonLinesReader.hasBom(channel) ? 3 : 0;
+            int depth = 0;
+            boolean inString = false;
+            boolean escaped = false;
+            boolean started = false;
+            long elementStart = -1;
+            long lastNonWhiteSpace = -1;
+
+            while (position < size) {
+                long windowSize = Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+
+                for (int i = 0; i < windowSize; i++) {
+                    byte b = window.get(i);
+                    long offset = position + i;
+
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                            lastNonWhiteSpace = offset;
+                        }
+
+                        continue;
+                    }
+
+                    if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                        continue;
+                    }
+
+                    if (depth == 0) {
+                        if (started) {
+                            throw new IOException(String.format("Unexpected content after the top-level array at byte %s in %s", offset, path));
+                        } else if (b != '[') {
+                            throw new IOException(String.format("Expected a top-level array at byte %s in %s", offset, path));
+                        }
+
+                        started = true;
+                        depth = 1;
+                        lastNonWhiteSpace = offset;
+
+                        continue;
+                    }
+
+                    if (depth == 1 && elementStart == -1 && b != ']' && b != ',') {
+                        elementStart = offset;
+                    }
+
+                    if (b == '"') {
+                        inString = true;
+                    } else if (b == '[' || b == '{') {
+                        depth++;
+                    } else if (b == ']' || b == '}') {
+                        depth--;
+
+                        if (depth == 0 && elementStart != -1) {
+                            elements.add(elementStart, lastNonWhiteSpace + 1);
+                            elementStart = -1;
+                        }
+                    } else if (b == ',' && depth == 1) {
+                        if (elementStart == -1) {
+                            throw new IOException(String.format("Empty array element at byte %s in %s", offset, path));
+                        }
+
+                        elements.add(elementStart, lastNonWhiteSpace + 1);
+                        elementStart = -1;
+                    }
+
+                    lastNonWhiteSpace = offset;
+                }
+
+                position += windowSize;
+            }
+
+            if (!started || depth != 0 || inString) {
+                throw new IOException("Unterminated top-level array in " + path);
+            }
+        }
+
+        return elements;
+    }
+
+    /**
+     * Element offsets kept in growable primitive arrays.
+     */
+    static class Elements {
+        long count;
+
+        long[] starts;
+
+        long[] ends;
+
+        private final boolean recordOffsets;
+
+        Elements(boolean recordOffsets) {
+            this.recordOffsets = recordOffsets;
+            this.starts = new long[recordOffsets ? 1024 : 0];
+            this.ends = new long[recordOffsets ? 1024 : 0];
+        }
+
+        void add(long start, long end) throws IOException {
+            if (recordOffsets) {
+                if (count == Integer.MAX_VALUE - 8) {
+                    throw new IOException("Too many array elements to parse");
+                }
+
+                if (count == starts.length) {
+                    int length = (int) Math.min(Integer.MAX_VALUE - 8, starts.length * 2L);
+                    starts = Arrays.copyOf(starts, length);
+                    ends = Arrays.copyOf(ends, length);
+                }
+
+                starts[(int) count] = start;
+                ends[(int) count] = end;
+            }
+
+            count++;
+        }
+
+        void addAll(Elements other) throws IOException {
+            if (!recordOffsets) {
+                count += other.count;
+
+                return;
+            }
+
+            for (int i = 0; i < other.count; i++) {
+                add(other.starts[i], other.ends[i]);
+            }
+        }
+    }
+}
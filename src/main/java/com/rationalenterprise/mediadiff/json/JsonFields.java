@@ -0,0 +1,193 @@
+package com.rationalenterprise.mediadiff.json;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of one JSON object by the columns of a dat header, read token by token from a JsonReader so no map or
+ * value objects are built per object.  A value is kept as its token type and its text: the literal text of a number
+ * (so "1.50" stays "1.50"), "true" or "false" for a boolean and the JSON text of a nested object.  An array is kept as
+ * the texts of its items.  The keys that are not columns are kept by name.
+ *
+ * An instance is reused from object to object and is not thread-safe.  When a key is repeated the last value is kept.
+ */
+public class JsonFields {
+    private final Map<String, Integer> columns = new HashMap<>();
+
+    private final String[] names;
+
+    private final JsonToken[] types;
+
+    private final String[] texts;
+
+    private final List<List<String>> items = new ArrayList<>();
+
+    /**
+     * The columns of the current object, so the next object only clears those.
+     */
+    private final int[] present;
+
+    private int presentCount = 0;
+
+    private final List<String> otherKeys = new ArrayList<>();
+
+    public JsonFields(List<String> header) {
+        names = header.toArray(new String[0]);
+        types = new JsonToken[names.length];
+        texts = new String[names.length];
+        present = new int[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i], i);
+            items.add(null);
+        }
+    }
+
+    /**
+     * Reads the object the reader is at, replacing the previous object.
+     *
+     * @param reader
+     * @throws IOException
+     */
+    public void read(JsonReader reader) throws IOException {
+        for (int i = 0; i < presentCount; i++) {
+            types[present[i]] = null;
+            texts[present[i]] = null;
+        }
+
+        presentCount = 0;
+        otherKeys.clear();
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            Integer column = columns.get(key);
+
+            if (column == null) {
+                otherKeys.add(key);
+                reader.skipValue();
+
+                continue;
+            }
+
+            if (types[column] == null) {
+                present[presentCount++] = column;
+            }
+
+            types[column] = reader.peek();
+
+            if (types[column] == JsonToken.BEGIN_ARRAY) {
+                List<String> columnItems = items.get(column);
+
+                if (columnItems == null) {
+                    columnItems = new ArrayList<>();
+                    items.set(column, columnItems);
+                }
+
+                columnItems.clear();
+                reader.beginArray();
+
+                while (reader.hasNext()) {
+                    columnItems.add(readText(reader));
+                }
+
+                reader.endArray();
+            } else {
+                texts[column] = readText(reader);
+            }
+        }
+
+        reader.endObject();
+    }
+
+    /**
+     * Reads the value the reader is at as text: the literal text of a number, "true" or "false", the JSON text of an
+     * object or array and null for null.
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     */
+    public static String readText(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(reader.nextBoolean());
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            default:
+                return JsonParser.parseReader(reader).toString();
+        }
+    }
+
+    /**
+     * The token type of the value of the column (BEGIN_ARRAY for an array, BEGIN_OBJECT for an object), or null when
+     * the object has no such key.
+     *
+     * @param column
+     * @return
+     */
+    public JsonToken getType(int column) {
+        return types[column];
+    }
+
+    /**
+     * The text of the value of the column (see readText()), null for an array.
+     *
+     * @param column
+     * @return
+     */
+    public String getText(int column) {
+        return texts[column];
+    }
+
+    /**
+     * The texts of the items of the array of the column.
+     *
+     * @param column
+     * @return
+     */
+    public List<String> getItems(int column) {
+        return items.get(column);
+    }
+
+    /**
+     * The keys of the object that are not among the first columnCount columns (the keys that are not columns first).
+     *
+     * @param columnCount
+     * @return
+     */
+    public List<String> getKeysNotIn(int columnCount) {
+        List<String> keys = new ArrayList<>(otherKeys);
+
+        for (int i = 0; i < presentCount; i++) {
+            if (present[i] >= columnCount) {
+                keys.add(names[present[i]]);
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * The value of the column for printing, like the parsed value would print: "null" when it is missing or null and
+     * "[a, b]" for an array.
+     *
+     * @param column
+     * @return
+     */
+    public String format(int column) {
+        return types[column] == JsonToken.BEGIN_ARRAY ? items.get(column).toString() : String.valueOf(texts[column]);
+    }
+}
@@ -0,0 +1,48 @@
+package com.rationalenterprise.mediadiff.json;
+
+import com.rationalenterprise.mediadiff.service.LoadFileService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The layouts a JSON export can come in.
+ */
+public enum JsonFormat {
+    /**
+     * One top-level array containing every object (the legacy export format).
+     */
+    ARRAY,
+
+    /**
+     * JSON Lines / NDJSON: one object per line.
+     */
+    LINES;
+
+    /**
+     * Detects the format by looking at the first non-white space character after the BOM.  A '[' means a top-level
+     * array, anything else is treated as JSON Lines.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static JsonFormat detect(Path path) throws IOException {
+        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            int c;
+
+            while ((c = br.read()) != -1) {
+                if (c == LoadFileService.UTF_8_BOM || Character.isWhitespace(c)) {
+                    continue;
+                }
+
+                return c == '[' ? ARRAY : LINES;
+            }
+        }
+
+        return LINES;
+    }
+}
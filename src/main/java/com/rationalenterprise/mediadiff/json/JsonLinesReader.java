@@ -0,0 +1,259 @@
+package com.rationalenterprise.mediadiff.json;
+
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads JSON Lines (NDJSON) files in parallel.
+ *
+ * Every line is a complete document, so the file is split into byte ranges that end on a newline and each range is
+ * handled by its own worker.  A newline byte never occurs inside a multi-byte UTF-8 sequence, so the ranges can be
+ * decoded independently.  Results are returned in file order.
+ */
+public class JsonLinesReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+
+    private final int threads;
+
+    private final ObjectParser parser = new ObjectParser();
+
+    public JsonLinesReader(Path path, int threads) {
+        this.path = path;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Counts the non-blank lines without parsing them.
+     *
+     * @return
+     * @throws IOException
+     */
+    public long count() throws IOException {
+        return scan(false).count;
+    }
+
+    /**
+     * Records the [start, end) byte offsets of each non-blank line (without its "\n"), one range per worker, in file
+     * order.
+     */
+    JsonArrayReader.Elements scan(boolean recordOffsets) throws IOException {
+        List<JsonArrayReader.Elements> ranges = runPerRange((channel, start, end) -> {
+            JsonArrayReader.Elements elements = new JsonArrayReader.Elements(recordOffsets);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = start;
+            long lineStart = start;
+            boolean hasContent = false;
+
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+
+                int read = channel.read(buffer, position);
+
+                if (read <= 0) {
+                    break;
+                }
+
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+
+                    if (b == '\n') {
+                        if (hasContent) {
+                            elements.add(lineStart, position + i);
+                        }
+
+                        hasContent = false;
+                        lineStart = position + i + 1;
+                    } else if (b != ' ' && b != '\t' && b != '\r') {
+                        hasContent = true;
+                    }
+                }
+
+                position += read;
+            }
+
+            if (hasContent) {
+                elements.add(lineStart, position);
+            }
+
+            return elements;
+        });
+
+        if (ranges.size() == 1) {
+            return ranges.get(0);
+        }
+
+        JsonArrayReader.Elements elements = new JsonArrayReader.Elements(recordOffsets);
+
+        for (JsonArrayReader.Elements range : ranges) {
+            elements.addAll(range);
+        }
+
+        return elements;
+    }
+
+    /**
+     * Parses every non-blank line into a map.
+     *
+     * @return
+     * @throws IOException
+     */
+    public List<Map<String, Object>> readAll() throws IOException {
+        List<List<Map<String, Object>>> chunks = runPerRange((channel, start, end) -> {
+            List<Map<String, Object>> objects = new ArrayList<>();
+
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new RangeInputStream(channel, start, end), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                String line;
+
+                while ((line = br.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        objects.add(parser.parse(line));
+                    }
+                }
+            }
+
+            return objects;
+        });
+
+        List<Map<String, Object>> objects = new ArrayList<>();
+
+        for (List<Map<String, Object>> chunk : chunks) {
+            objects.addAll(chunk);
+        }
+
+        return objects;
+    }
+
+    private interface RangeTask<T> {
+        T run(FileChannel channel, long start, long end) throws IOException;
+    }
+
+    /**
+     * Runs the task once per range and returns the results in range order.
+     */
+    private <T> List<T> runPerRange(RangeTask<T> task) throws IOException {
+        List<Callable<T>> tasks = new ArrayList<>();
+
+        for (long[] range : split()) {
+            tasks.add(() -> {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    return task.run(channel, range[0], range[1]);
+                }
+            });
+        }
+
+        return Parallel.invokeAll(threads, tasks);
+    }
+
+    /**
+     * Splits the file into one range per thread.  Each boundary is moved forward to just after the next newline so no
+     * line is shared by two ranges.  A leading BOM is excluded from the first range.
+     */
+    List<long[]> split() throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = hasBom(channel) ? 3 : 0;
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            for (int i = 1; i <= threads && start < size; i++) {
+                long end = i == threads ? size : Math.max(start, size / threads * i);
+
+                if (end < size) {
+                    end = nextLineStart(channel, end, size, buffer);
+                }
+
+                if (end > start) {
+                    ranges.add(new long[] {start, end});
+                    start = end;
+                }
+            }
+        }
+
+        return ranges;
+    }
+
+    static boolean hasBom(FileChannel channel) throws IOException {
+        ByteBuffer bom = ByteBuffer.allocate(3);
+        channel.read(bom, 0);
+
+        return bom.position() == 3 && (bom.get(0) & 0xFF) == 0xEF && (bom.get(1) & 0xFF) == 0xBB && (bom.get(2) & 0xFF) == 0xBF;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer buffer) throws IOException {
+        while (position < size) {
+            buffer.clear();
+
+            int read = channel.read(buffer, position);
+
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+
+            position += read;
+        }
+
+        return size;
+    }
+
+    /**
+     * An input stream over [start, end) of a channel that does not move the channel's position.
+     */
+    static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+
+        private long position;
+
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+
+            if (read > 0) {
+                position += read;
+            }
+
+            return read;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.rationalenterprise.mediadiff.json;
+
+import com.google.gson.stream.JsonReader;
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * The objects of one or more JSON volumes by their "ID", kept as byte ranges so they can be streamed one at a time in
+ * another order (the order of a dat) instead of all being parsed up front.
+ *
+ * scan() finds the objects with the structural scan of the readers (see JsonArrayReader and JsonLinesReader), so
+ * counting them parses nothing.  readIds() streams every object with a JsonReader on several threads, reading its "ID"
+ * and skipping every other value.  read() reads the object of an ID again, token by token into a JsonFields.  When
+ * two objects have the same ID the last one is kept.
+ *
+ * read() shares one buffer and the open volumes, so it is not thread-safe.
+ */
+public class JsonObjectIndex implements Closeable {
+    private final List<Path> volumes;
+
+    private final List<JsonArrayReader.Elements> elements;
+
+    private final int threads;
+
+    /**
+     * The volume (high 32 bits) and element (low 32 bits) of the object of each ID.
+     */
+    private final Map<String, Long> objects = new HashMap<>();
+
+    private final FileChannel[] channels;
+
+    private byte[] buffer = new byte[1 << 12];
+
+    private JsonObjectIndex(List<Path> volumes, List<JsonArrayReader.Elements> elements, int threads) {
+        this.volumes = volumes;
+        this.elements = elements;
+        this.threads = Math.max(1, threads);
+        this.channels = new FileChannel[volumes.size()];
+    }
+
+    /**
+     * Finds the objects of the volumes, without reading their IDs.
+     *
+     * @param volumes
+     * @param threads
+     * @return
+     * @throws IOException
+     */
+    public static JsonObjectIndex scan(List<Path> volumes, int threads) throws IOException {
+        List<JsonArrayReader.Elements> elements = new ArrayList<>();
+
+        for (Path volume : volumes) {
+            elements.add(JsonFormat.detect(volume) == JsonFormat.LINES ? new JsonLinesReader(volume, threads).scan(true)
+                    : new JsonArrayReader(volume, threads).scan(true));
+        }
+
+        return new JsonObjectIndex(volumes, elements, threads);
+    }
+
+    /**
+     * The number of objects, counting the objects with the same ID.
+     *
+     * @return
+     */
+    public long getObjectCount() {
+        long count = 0;
+
+        for (JsonArrayReader.Elements volumeElements : elements) {
+            count += volumeElements.count;
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads the ID of every object, in contiguous batches of objects per worker.
+     *
+     * @throws IOException
+     */
+    public void readIds() throws IOException {
+        for (int volume = 0; volume < volumes.size(); volume++) {
+            Path path = volumes.get(volume);
+            JsonArrayReader.Elements volumeElements = elements.get(volume);
+            int batches = (int) Math.min(volumeElements.count, threads * 4L);
+            List<Callable<String[]>> tasks = new ArrayList<>();
+
+            for (int b = 0; b < batches; b++) {
+                int from = (int) (volumeElements.count * b / batches);
+                int to = (int) (volumeElements.count * (b + 1) / batches);
+
+                tasks.add(() -> {
+                    String[] ids = new String[to - from];
+                    byte[] bytes = new byte[1 << 12];
+
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                        for (int i = from; i < to; i++) {
+                            bytes = readBytes(channel, path, volumeElements.starts[i], volumeElements.ends[i], bytes);
+
+                            try {
+                                ids[i - from] = readId(newReader(bytes, (int) (volumeElements.ends[i] - volumeElements.starts[i])));
+                            } catch (IOException | IllegalStateException e) {
+                                throw new IOException(String.format("Invalid JSON object at byte %s in %s", volumeElements.starts[i], path), e);
+                            }
+                        }
+                    }
+
+                    return ids;
+                });
+            }
+
+            int element = 0;
+
+            for (String[] ids : Parallel.invokeAll(threads, tasks)) {
+                for (String id : ids) {
+                    objects.put(id, ((long) volume << 32) | element++);
+                }
+            }
+        }
+    }
+
+    /**
+     * The value of the object's "ID" (see JsonFields.readText()), skipping every other value.
+     */
+    private static String readId(JsonReader reader) throws IOException {
+        String id = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("ID")) {
+                id = JsonFields.readText(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        return id;
+    }
+
+    /**
+     * The number of distinct IDs, once readIds() has read them.
+     *
+     * @return
+     */
+    public int size() {
+        return objects.size();
+    }
+
+    /**
+     * Reads the object of the ID into fields.  Returns false when no object has the ID.
+     *
+     * @param id
+     * @param fields
+     * @return
+     * @throws IOException
+     */
+    public boolean read(String id, JsonFields fields) throws IOException {
+        Long object = objects.get(id);
+
+        if (object == null) {
+            return false;
+        }
+
+        int volume = (int) (object >>> 32);
+        int element = (int) (long) object;
+        JsonArrayReader.Elements volumeElements = elements.get(volume);
+
+        if (channels[volume] == null) {
+            channels[volume] = FileChannel.open(volumes.get(volume), StandardOpenOption.READ);
+        }
+
+        buffer = readBytes(channels[volume], volumes.get(volume), volumeElements.starts[element], volumeElements.ends[element], buffer);
+
+        try {
+            fields.read(newReader(buffer, (int) (volumeElements.ends[element] - volumeElements.starts[element])));
+        } catch (IOException | IllegalStateException e) {
+            throw new IOException(String.format("Invalid JSON object at byte %s in %s", volumeElements.starts[element], volumes.get(volume)), e);
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads [start, end) of the channel into bytes, or into a larger array when it does not fit, which is returned.
+     */
+    private static byte[] readBytes(FileChannel channel, Path path, long start, long end, byte[] bytes) throws IOException {
+        if (bytes.length < end - start) {
+            bytes = new byte[(int) Math.max(end - start, bytes.length * 2L)];
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) (end - start));
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file in " + path);
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * A lenient reader (like Gson.fromJson()) of the UTF-8 JSON in bytes[0, length).
+     */
+    private static JsonReader newReader(byte[] bytes, int length) {
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes, 0, length), StandardCharsets.UTF_8));
+
+        reader.setLenient(true);
+
+        return reader;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i] != null) {
+                channels[i].close();
+                channels[i] = null;
+            }
+        }
+    }
+}
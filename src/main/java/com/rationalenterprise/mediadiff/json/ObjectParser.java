@@ -0,0 +1,27 @@
+package com.rationalenterprise.mediadiff.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Parses a single JSON document into a map.
+ *
+ * Number tokens are kept as their literal text (a lazily parsed number) instead of being converted to a Double, so
+ * "5" stays "5" and large IDs keep their precision.  Values are compared as typed tokens by ValueComparator.
+ */
+class ObjectParser {
+    private static final Type OBJECT_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
+
+    private final Gson gson = new GsonBuilder()
+            .setObjectToNumberStrategy(ToNumberPolicy.LAZILY_PARSED_NUMBER)
+            .create();
+
+    Map<String, Object> parse(String json) {
+        return gson.fromJson(json, OBJECT_TYPE);
+    }
+}
@@ -0,0 +1,417 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.search.AhoCorasick;
+import com.rationalenterprise.mediadiff.sketch.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits a UTF-8 dat row into its values without decoding it, for the modes that never print a value.
+ *
+ * The rules are the ones ColumnCounter.newTokenizer() applies to the decoded row: values are separated by 0x14, a
+ * value that starts with a thorn is quoted until the next thorn that is not doubled, and a doubled thorn inside quotes
+ * is a literal thorn.  The delimiter is ASCII and the thorn is always the two bytes C3 BE, neither of which can occur
+ * inside the encoding of another character, so splitting the bytes gives the encodings of the values the tokenizer
+ * would return.
+ *
+ * The unquoted values are copied into one reused buffer, so splitting a row allocates nothing.  An instance is not
+ * thread-safe.
+ *
+ * An instance made with ByteFields(int...) only copies the values of the projected fields: the others are skipped
+ * (they read as empty) and splitting stops after the last projected field, so size() counts the values up to it.
+ */
+public class ByteFields {
+    private static final byte DELIMITER = 0x14;
+
+    private static final byte THORN_1 = (byte) 0xC3;
+
+    private static final byte THORN_2 = (byte) 0xBE;
+
+    private byte[] content = new byte[1024];
+
+    private int length = 0;
+
+    private int[] starts = new int[64];
+
+    private int[] ends = new int[64];
+
+    private int size = 0;
+
+    private final AsciiView asciiView = new AsciiView();
+
+    /**
+     * Whether each field up to the last projected one is copied, or null when every field is.
+     */
+    private final boolean[] projected;
+
+    public ByteFields() {
+        projected = null;
+    }
+
+    /**
+     * Splits rows into the values of the fields (indexes in the row) only.  Negative fields are ignored.
+     *
+     * @param fields
+     */
+    public ByteFields(int... fields) {
+        projected = new boolean[Arrays.stream(fields).max().orElse(-1) + 1];
+
+        for (int field : fields) {
+            if (field >= 0) {
+                projected[field] = true;
+            }
+        }
+    }
+
+    /**
+     * Splits the row in bytes[from, to) (without its line terminator), replacing the previous row.
+     *
+     * @param bytes
+     * @param from
+     * @param to
+     * @return this
+     */
+    public ByteFields split(byte[] bytes, int from, int to) {
+        length = 0;
+        size = 0;
+
+        if (content.length < to - from) {
+            content = new byte[Math.max(to - from, content.length * 2)];
+        }
+
+        int position = from;
+
+        // Like the tokenizer, a row that ends with a delimiter ends with an empty value and an empty row has none.
+        while (position >= 0 && position < to) {
+            if (projected == null) {
+                position = readValue(bytes, position, to);
+            } else if (size >= projected.length) {
+                break;
+            } else {
+                position = projected[size] ? readValue(bytes, position, to) : skipValue(bytes, position, to);
+            }
+
+            if (position >= to) {
+                addValue(length);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Reads the value starting at position and returns the position after its delimiter, or -1 at the end of the row.
+     */
+    private int readValue(byte[] bytes, int position, int to) {
+        int start = length;
+
+        if (bytes[position] == DELIMITER) {
+            addValue(start);
+
+            return position + 1;
+        }
+
+        // Only a value that starts with a thorn is quoted.  A thorn anywhere else in an unquoted value is kept.
+        boolean quoted = isThorn(bytes, position, to);
+        boolean quoting = quoted;
+
+        if (quoted) {
+            position += 2;
+        }
+
+        while (position < to) {
+            if (quoting) {
+                if (isThorn(bytes, position, to)) {
+                    if (isThorn(bytes, position + 2, to)) {
+                        content[length++] = THORN_1;
+                        content[length++] = THORN_2;
+                        position += 4;
+                    } else {
+                        quoting = false;
+                        position += 2;
+                    }
+
+                    continue;
+                }
+
+                content[length++] = bytes[position++];
+            } else {
+                if (bytes[position] == DELIMITER) {
+                    addValue(start);
+
+                    return position + 1;
+                }
+
+                if (quoted && isThorn(bytes, position, to)) {
+                    quoting = true;
+                    position += 2;
+
+                    continue;
+                }
+
+                content[length++] = bytes[position++];
+            }
+        }
+
+        addValue(start);
+
+        return -1;
+    }
+
+    /**
+     * readValue() without copying the value, which reads as empty.
+     */
+    private int skipValue(byte[] bytes, int position, int to) {
+        boolean quoted = isThorn(bytes, position, to);
+        boolean quoting = quoted;
+
+        if (quoted) {
+            position += 2;
+        }
+
+        while (position < to) {
+            if (quoting) {
+                if (isThorn(bytes, position, to)) {
+                    quoting = isThorn(bytes, position + 2, to);
+                    position += quoting ? 4 : 2;
+                } else {
+                    position++;
+                }
+            } else if (bytes[position] == DELIMITER) {
+                addValue(length);
+
+                return position + 1;
+            } else if (quoted && isThorn(bytes, position, to)) {
+                quoting = true;
+                position += 2;
+            } else {
+                position++;
+            }
+        }
+
+        addValue(length);
+
+        return -1;
+    }
+
+    private static boolean isThorn(byte[] bytes, int position, int to) {
+        return position + 1 < to && bytes[position] == THORN_1 && bytes[position + 1] == THORN_2;
+    }
+
+    private void addValue(int start) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+
+        starts[size] = start;
+        ends[size] = length;
+        size++;
+    }
+
+    /**
+     * The number of values in the row.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Like String.isBlank() on the decoded value.  Only values with non-ASCII bytes are decoded to decide.
+     *
+     * @param field
+     * @return
+     */
+    public boolean isBlank(int field) {
+        for (int i = starts[field]; i < ends[field]; i++) {
+            byte b = content[i];
+
+            if (b < 0) {
+                return toString(field).isBlank();
+            }
+
+            // The ASCII characters Character.isWhitespace() accepts.
+            if (b != ' ' && (b < 0x09 || b > 0x0D) && (b < 0x1C || b > 0x1F)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether any of the terms occurs in the value (see AhoCorasick.contains()).
+     *
+     * @param field
+     * @param terms
+     * @return
+     */
+    public boolean contains(int field, AhoCorasick terms) {
+        return terms.contains(content, starts[field], ends[field]);
+    }
+
+    /**
+     * Passes the term of every occurrence of the terms in the value to the consumer (see AhoCorasick.search()).
+     *
+     * @param field
+     * @param terms
+     * @param consumer
+     */
+    public void search(int field, AhoCorasick terms, IntConsumer consumer) {
+        terms.search(content, starts[field], ends[field], consumer);
+    }
+
+    /**
+     * Hashes the UTF-8 bytes of the value (see Hashing.hash64(byte[], int, int)).
+     *
+     * @param field
+     * @return
+     */
+    public long hash64(int field) {
+        return Hashing.hash64(content, starts[field], ends[field]);
+    }
+
+    /**
+     * The number of bytes in the value.
+     *
+     * @param field
+     * @return
+     */
+    public int length(int field) {
+        return ends[field] - starts[field];
+    }
+
+    /**
+     * Like toString(field).equals(text), without decoding the value: the text is encoded to UTF-8 a char at a time as
+     * it is compared.  A value that is not valid UTF-8 never equals a text.
+     *
+     * @param field
+     * @param text
+     * @return
+     */
+    public boolean contentEquals(int field, String text) {
+        int position = starts[field];
+        int end = ends[field];
+
+        for (int i = 0; i < text.length(); i++) {
+            int c = text.charAt(i);
+
+            if (c < 0x80) {
+                if (position == end || content[position++] != c) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            if (Character.isHighSurrogate((char) c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, text.charAt(++i));
+            } else if (Character.isSurrogate((char) c)) {
+                // A decoded value has no unpaired surrogate.
+                return false;
+            }
+
+            int count = c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+
+            if (end - position < count) {
+                return false;
+            }
+
+            // The lead byte starts with count 1 bits, each continuation byte holds 6 bits.
+            if ((content[position++] & 0xFF) != ((0xFF00 >> count) & 0xFF | c >> 6 * (count - 1))) {
+                return false;
+            }
+
+            for (int shift = 6 * (count - 2); shift >= 0; shift -= 6) {
+                if ((content[position++] & 0xFF) != (0x80 | c >> shift & 0x3F)) {
+                    return false;
+                }
+            }
+        }
+
+        return position == end;
+    }
+
+    /**
+     * The value for parsing it as a number, date or boolean: a view of its bytes when it is ASCII, which is reused by
+     * the next call and must not be kept, and the decoded value otherwise.
+     *
+     * @param field
+     * @return
+     */
+    public CharSequence charSequence(int field) {
+        for (int i = starts[field]; i < ends[field]; i++) {
+            if (content[i] < 0) {
+                return toString(field);
+            }
+        }
+
+        asciiView.start = starts[field];
+        asciiView.end = ends[field];
+
+        return asciiView;
+    }
+
+    /**
+     * Decodes the first maxBytes bytes of the value at most, without cutting a character.
+     *
+     * @param field
+     * @param maxBytes
+     * @return
+     */
+    public String toString(int field, int maxBytes) {
+        int end = Math.min(ends[field], starts[field] + maxBytes);
+
+        // Back off from the continuation bytes of a character cut at end.
+        if (end < ends[field]) {
+            while (end > starts[field] && (content[end] & 0xC0) == 0x80) {
+                end--;
+            }
+        }
+
+        return new String(content, starts[field], end - starts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the value.
+     *
+     * @param field
+     * @return
+     */
+    public String toString(int field) {
+        return new String(content, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The chars of ASCII content[start, end).
+     */
+    private class AsciiView implements CharSequence {
+        private int start;
+
+        private int end;
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) content[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new String(content, start + from, to - from, StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public String toString() {
+            return new String(content, start, end - start, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+import org.apache.commons.text.StringTokenizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Counts the rows and the non-blank values of every column of a load file.  Counts are kept in a long[] indexed by
+ * column, so counting a cell is an array increment instead of a map lookup with a boxed Integer.
+ *
+ * Columns are identified by index, so duplicate header names are counted separately.  labels() gives every column a
+ * unique name for reports: the first column with a name keeps it and later ones get " [2]", " [3]" and so on.
+ *
+ * Rows with fewer values than the header are counted by their number of values, so getMissing() can tell how many
+ * rows ended before a column.
+ *
+ * A counter is not thread-safe.  count() gives each worker thread its own counter and tokenizer and merges them at
+ * the end.  Subclasses that collect more per value (see ColumnProfiler) override addValue() and merge().
+ */
+public class ColumnCounter {
+    private static final int BATCH_SIZE = 4096;
+
+    private final List<String> header;
+
+    private final long[] nonBlank;
+
+    /**
+     * Rows with fewer values than the header, indexed by their number of values.
+     */
+    private final long[] shortRows;
+
+    private long rows = 0;
+
+    /**
+     * Rows with more values than the header.
+     */
+    private long longRows = 0;
+
+    /**
+     * Values beyond the last header column (malformed rows).
+     */
+    private long extraValues = 0;
+
+    public ColumnCounter(List<String> header) {
+        this.header = header;
+        this.nonBlank = new long[header.size()];
+        this.shortRows = new long[header.size()];
+    }
+
+    /**
+     * Counts one tokenized row.
+     *
+     * @param values
+     */
+    public void add(String[] values) {
+        rows++;
+
+        int columns = Math.min(values.length, nonBlank.length);
+
+        for (int i = 0; i < columns; i++) {
+            if (!values[i].isBlank()) {
+                nonBlank[i]++;
+                addValue(i, values[i]);
+            }
+        }
+
+        countFields(values.length);
+    }
+
+    /**
+     * Counts one row split by ByteFields.  Values are only decoded by subclasses that need them.
+     *
+     * @param fields
+     */
+    public void add(ByteFields fields) {
+        rows++;
+
+        int columns = Math.min(fields.size(), nonBlank.length);
+
+        for (int i = 0; i < columns; i++) {
+            if (!fields.isBlank(i)) {
+                nonBlank[i]++;
+                addValue(i, fields, i);
+            }
+        }
+
+        countFields(fields.size());
+    }
+
+    private void countFields(int values) {
+        if (values < nonBlank.length) {
+            shortRows[values]++;
+        } else if (values > nonBlank.length) {
+            longRows++;
+            extraValues += values - nonBlank.length;
+        }
+    }
+
+    /**
+     * Called by add(ByteFields) for every non-blank value.  By default the value is decoded and passed to
+     * addValue(int, String).
+     *
+     * @param column
+     * @param fields
+     * @param field
+     */
+    protected void addValue(int column, ByteFields fields, int field) {
+        addValue(column, fields.toString(field));
+    }
+
+    /**
+     * Called by add() for every non-blank value.
+     *
+     * @param column
+     * @param value
+     */
+    protected void addValue(int column, String value) {
+    }
+
+    /**
+     * Adds the counts of other, which must have been created for the same header.
+     *
+     * @param other
+     */
+    public void merge(ColumnCounter other) {
+        rows += other.rows;
+        longRows += other.longRows;
+        extraValues += other.extraValues;
+
+        for (int i = 0; i < nonBlank.length; i++) {
+            nonBlank[i] += other.nonBlank[i];
+            shortRows[i] += other.shortRows[i];
+        }
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getExtraValues() {
+        return extraValues;
+    }
+
+    /**
+     * The number of rows with more or fewer values than the header.
+     *
+     * @return
+     */
+    public long getWrongFieldCountRows() {
+        long wrong = longRows;
+
+        for (long count : shortRows) {
+            wrong += count;
+        }
+
+        return wrong;
+    }
+
+    /**
+     * The number of rows that ended before column (had no value for it, not even a blank one).
+     *
+     * @param column
+     * @return
+     */
+    public long getMissing(int column) {
+        long missing = 0;
+
+        for (int i = 0; i <= column; i++) {
+            missing += shortRows[i];
+        }
+
+        return missing;
+    }
+
+    /**
+     * The number of rows with a non-blank value in column.
+     *
+     * @param column
+     * @return
+     */
+    public long getNonBlank(int column) {
+        return nonBlank[column];
+    }
+
+    /**
+     * The non-blank counts keyed by column label, ordered by label (case-insensitive, then case-sensitive) like the
+     * other load file reports.
+     *
+     * @return
+     */
+    public LinkedHashMap<String, Integer> toSortedMap() {
+        List<String> labels = labels(header);
+        List<Integer> order = new ArrayList<>();
+
+        for (int i = 0; i < labels.size(); i++) {
+            order.add(i);
+        }
+
+        order.sort((i1, i2) -> {
+            int compareTo = labels.get(i1).compareToIgnoreCase(labels.get(i2));
+
+            if (compareTo == 0) {
+                compareTo = labels.get(i1).compareTo(labels.get(i2));
+            }
+
+            return compareTo;
+        });
+
+        LinkedHashMap<String, Integer> labelToCount = new LinkedHashMap<>();
+
+        for (int i : order) {
+            labelToCount.put(labels.get(i), Math.toIntExact(nonBlank[i]));
+        }
+
+        return labelToCount;
+    }
+
+    /**
+     * Unique names for the columns: duplicate header names after the first get " [n]" appended, where n is the
+     * occurrence of the name, or the next n whose label is not already used by another column (so the header
+     * ["A", "A [2]", "A"] gets the labels "A", "A [2]" and "A [3]").
+     *
+     * @param header
+     * @return
+     */
+    public static List<String> labels(List<String> header) {
+        Map<String, Integer> occurrences = new HashMap<>();
+        Set<String> used = new HashSet<>(header);
+        List<String> labels = new ArrayList<>(header.size());
+
+        for (String name : header) {
+            int occurrence = occurrences.merge(name, 1, Integer::sum);
+
+            if (occurrence == 1) {
+                labels.add(name);
+
+                continue;
+            }
+
+            String label = String.format("%s [%s]", name, occurrence);
+
+            while (!used.add(label)) {
+                label = String.format("%s [%s]", name, occurrences.merge(name, 1, Integer::sum));
+            }
+
+            labels.add(label);
+        }
+
+        return labels;
+    }
+
+    /**
+     * Counts the rows remaining in reader (the header must already have been read).  With more than one thread the
+     * calling thread reads batches of lines and the workers tokenize and count them, each into its own counter.
+     *
+     * @param reader
+     * @param header
+     * @param threads
+     * @return
+     * @throws IOException
+     */
+    public static ColumnCounter count(LoadFileReader reader, List<String> header, int threads) throws IOException {
+        return count(reader, threads, () -> new ColumnCounter(header));
+    }
+
+    /**
+     * Like count(reader, header, threads) for a subclass: newCounter creates the counter of each worker.
+     *
+     * @param reader
+     * @param threads
+     * @param newCounter
+     * @return
+     * @throws IOException
+     */
+    public static <C extends ColumnCounter> C count(LoadFileReader reader, int threads, Supplier<C> newCounter) throws IOException {
+        BatchSource<List<String>> batches = () -> {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            String row;
+
+            while (batch.size() < BATCH_SIZE && (row = reader.readLine()) != null) {
+                batch.add(row);
+            }
+
+            return batch.isEmpty() ? null : batch;
+        };
+
+        return count(batches, Collections.emptyList(), threads, newCounter, counter -> {
+            StringTokenizer t = newTokenizer();
+
+            return batch -> {
+                for (String row : batch) {
+                    counter.add(t.reset(row).getTokenArray());
+                }
+            };
+        });
+    }
+
+    /**
+     * Like count(reader, threads, newCounter) for the rows of a RawLoadFileReader, which are split without being
+     * decoded (see ByteFields).  The header must already have been read.
+     *
+     * @param reader
+     * @param threads
+     * @param newCounter
+     * @return
+     * @throws IOException
+     */
+    public static <C extends ColumnCounter> C count(RawLoadFileReader reader, int threads, Supplier<C> newCounter) throws IOException {
+        return count(reader::readChunk, RawLoadFileReader.Chunk.EMPTY, threads, newCounter, counter -> {
+            ByteFields fields = new ByteFields();
+
+            return chunk -> chunk.forEachRow((bytes, from, to) -> counter.add(fields.split(bytes, from, to)));
+        });
+    }
+
+    /**
+     * Counts the batches of source.  With more than one thread the calling thread reads the batches and each worker
+     * counts into its own counter with its own consumer (newWorker gets the worker's counter), until it takes end.
+     */
+    private static <B, C extends ColumnCounter> C count(BatchSource<B> source, B end, int threads, Supplier<C> newCounter,
+                                                        Function<C, Consumer<B>> newWorker) throws IOException {
+        if (threads <= 1) {
+            C counter = newCounter.get();
+            Consumer<B> worker = newWorker.apply(counter);
+            B batch;
+
+            while ((batch = source.next()) != null) {
+                worker.accept(batch);
+            }
+
+            return counter;
+        }
+
+        BlockingQueue<B> batches = new ArrayBlockingQueue<>(threads * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<C>> workers = new ArrayList<>();
+
+        try {
+            for (int w = 0; w < threads; w++) {
+                workers.add(executor.submit(() -> {
+                    C counter = newCounter.get();
+                    Consumer<B> worker = newWorker.apply(counter);
+                    B batch;
+
+                    while ((batch = batches.take()) != end) {
+                        worker.accept(batch);
+                    }
+
+                    return counter;
+                }));
+            }
+
+            B batch;
+
+            while ((batch = source.next()) != null) {
+                put(batches, batch, workers);
+            }
+
+            for (int w = 0; w < threads; w++) {
+                put(batches, end, workers);
+            }
+
+            C counter = newCounter.get();
+
+            for (Future<C> worker : workers) {
+                counter.merge(worker.get());
+            }
+
+            return counter;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted while counting columns", e);
+        } catch (ExecutionException e) {
+            throw Parallel.unwrap(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues a batch, failing instead of blocking forever when a worker has died.
+     */
+    private static <B> void put(BlockingQueue<B> batches, B batch, List<? extends Future<?>> workers)
+            throws InterruptedException, ExecutionException {
+        while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            for (Future<?> worker : workers) {
+                if (worker.isDone()) {
+                    worker.get();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the next batch of rows, or null at the end.
+     */
+    @FunctionalInterface
+    private interface BatchSource<B> {
+        B next() throws IOException;
+    }
+
+    /**
+     * A tokenizer for dat rows: 0x14 delimiter, 0xFE (thorn) quote, empty tokens kept.
+     */
+    public static StringTokenizer newTokenizer() {
+        return new StringTokenizer("", Character.toChars(20)[0], Character.toChars(254)[0]).setIgnoreEmptyTokens(false);
+    }
+}
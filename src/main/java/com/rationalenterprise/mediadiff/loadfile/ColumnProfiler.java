@@ -0,0 +1,136 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.sketch.HyperLogLog;
+import com.rationalenterprise.mediadiff.sketch.SpaceSaving;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A ColumnCounter that also profiles the non-blank values of every column: their lengths, an estimate of their
+ * distinct count (HyperLogLog) and their most frequent values (Space-Saving).  Both sketches have a fixed size, so
+ * the memory used per column is the same for an ID column as for a yes/no column.
+ *
+ * Like ColumnCounter, a profiler is not thread-safe: count() profiles on each worker and merges the profilers.
+ */
+public class ColumnProfiler extends ColumnCounter {
+    private final int topCapacity;
+
+    private final long[] totalLength;
+
+    private final int[] minLength;
+
+    private final int[] maxLength;
+
+    private final HyperLogLog[] distinct;
+
+    private final SpaceSaving[] top;
+
+    /**
+     * @param header
+     * @param topCapacity the number of heavy hitter counters per column.  A value is guaranteed to be reported when
+     *                    it occurs in more than rows / topCapacity rows.
+     */
+    public ColumnProfiler(List<String> header, int topCapacity) {
+        super(header);
+
+        int columns = header.size();
+
+        this.topCapacity = topCapacity;
+        this.totalLength = new long[columns];
+        this.minLength = new int[columns];
+        this.maxLength = new int[columns];
+        this.distinct = new HyperLogLog[columns];
+        this.top = new SpaceSaving[columns];
+
+        Arrays.fill(minLength, Integer.MAX_VALUE);
+
+        for (int i = 0; i < columns; i++) {
+            distinct[i] = new HyperLogLog();
+            top[i] = new SpaceSaving(topCapacity);
+        }
+    }
+
+    @Override
+    protected void addValue(int column, String value) {
+        int length = value.length();
+
+        totalLength[column] += length;
+        minLength[column] = Math.min(minLength[column], length);
+        maxLength[column] = Math.max(maxLength[column], length);
+        distinct[column].add(value);
+        top[column].add(value);
+    }
+
+    @Override
+    public void merge(ColumnCounter other) {
+        super.merge(other);
+
+        ColumnProfiler profiler = (ColumnProfiler) other;
+
+        for (int i = 0; i < totalLength.length; i++) {
+            totalLength[i] += profiler.totalLength[i];
+            minLength[i] = Math.min(minLength[i], profiler.minLength[i]);
+            maxLength[i] = Math.max(maxLength[i], profiler.maxLength[i]);
+            distinct[i].merge(profiler.distinct[i]);
+            top[i].merge(profiler.top[i]);
+        }
+    }
+
+    public int getTopCapacity() {
+        return topCapacity;
+    }
+
+    /**
+     * The length of the shortest non-blank value in column, or 0 when it has none.
+     *
+     * @param column
+     * @return
+     */
+    public int getMinLength(int column) {
+        return getNonBlank(column) == 0 ? 0 : minLength[column];
+    }
+
+    public int getMaxLength(int column) {
+        return maxLength[column];
+    }
+
+    /**
+     * The average length of the non-blank values in column, or 0 when it has none.
+     *
+     * @param column
+     * @return
+     */
+    public double getAverageLength(int column) {
+        return getNonBlank(column) == 0 ? 0 : (double) totalLength[column] / getNonBlank(column);
+    }
+
+    /**
+     * The number of distinct non-blank values in column.  It is exact when the column has no more distinct values than
+     * heavy hitter counters (see isDistinctExact()), otherwise it is the HyperLogLog estimate.
+     *
+     * @param column
+     * @return
+     */
+    public long getDistinct(int column) {
+        if (isDistinctExact(column)) {
+            return top[column].size();
+        }
+
+        return Math.min(distinct[column].estimate(), getNonBlank(column));
+    }
+
+    public boolean isDistinctExact(int column) {
+        return top[column].isExact();
+    }
+
+    /**
+     * The most frequent non-blank values of column.
+     *
+     * @param column
+     * @return
+     */
+    public SpaceSaving getTop(int column) {
+        return top[column];
+    }
+}
@@ -0,0 +1,114 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.sketch.CountMinSketch;
+import com.rationalenterprise.mediadiff.sketch.Hashing;
+import com.rationalenterprise.mediadiff.sketch.HyperLogLog;
+import com.rationalenterprise.mediadiff.sketch.MinHash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A ColumnCounter that summarizes the non-blank values of every column in fixed size sketches, for comparing load
+ * files too large to compare exactly: a Count-Min sketch of the value counts, a HyperLogLog of the distinct count
+ * and a MinHash of the value set.  Each value is hashed once for all three.  The sketches only need the values' hashes,
+ * so they are normally filled from rows that are never decoded.
+ *
+ * Sketches of two load files can only be compared when they were created with the same dimensions, so they are
+ * fixed here.  Per column this takes about 40 KB.
+ */
+public class ColumnSketcher extends ColumnCounter {
+    static final int COUNT_MIN_WIDTH = 1024;
+
+    static final int COUNT_MIN_DEPTH = 4;
+
+    static final int MIN_HASH_K = 256;
+
+    private final CountMinSketch[] counts;
+
+    private final HyperLogLog[] distinct;
+
+    private final MinHash[] values;
+
+    public ColumnSketcher(List<String> header) {
+        super(header);
+
+        int columns = header.size();
+
+        this.counts = new CountMinSketch[columns];
+        this.distinct = new HyperLogLog[columns];
+        this.values = new MinHash[columns];
+
+        for (int i = 0; i < columns; i++) {
+            counts[i] = new CountMinSketch(COUNT_MIN_WIDTH, COUNT_MIN_DEPTH);
+            distinct[i] = new HyperLogLog();
+            values[i] = new MinHash(MIN_HASH_K);
+        }
+    }
+
+    /**
+     * Values are hashed by their UTF-8 bytes, so a sketch filled from decoded rows can be compared with one filled
+     * from raw rows (see ByteFields).
+     */
+    @Override
+    protected void addValue(int column, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        addHash(column, Hashing.hash64(bytes, 0, bytes.length));
+    }
+
+    @Override
+    protected void addValue(int column, ByteFields fields, int field) {
+        addHash(column, fields.hash64(field));
+    }
+
+    private void addHash(int column, long hash) {
+        counts[column].addHash(hash);
+        distinct[column].addHash(hash);
+        values[column].addHash(hash);
+    }
+
+    @Override
+    public void merge(ColumnCounter other) {
+        super.merge(other);
+
+        ColumnSketcher sketcher = (ColumnSketcher) other;
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i].merge(sketcher.counts[i]);
+            distinct[i].merge(sketcher.distinct[i]);
+            values[i].merge(sketcher.values[i]);
+        }
+    }
+
+    public CountMinSketch getCounts(int column) {
+        return counts[column];
+    }
+
+    public HyperLogLog getDistinct(int column) {
+        return distinct[column];
+    }
+
+    public MinHash getValues(int column) {
+        return values[column];
+    }
+
+    /**
+     * The number of distinct non-blank values in column: exact when the MinHash holds the whole value set, otherwise
+     * the HyperLogLog estimate.
+     *
+     * @param column
+     * @return
+     */
+    public long getDistinctCount(int column) {
+        if (isDistinctExact(column)) {
+            return values[column].size();
+        }
+
+        return Math.min(distinct[column].estimate(), getNonBlank(column));
+    }
+
+    public boolean isDistinctExact(int column) {
+        return values[column].isExact();
+    }
+}
@@ -0,0 +1,88 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.sketch.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A ColumnCounter that also counts the occurrences of every non-blank value of every column, for comparing the
+ * values of several load files (see CountMatrix).
+ *
+ * A value longer than MAX_VALUE_BYTES bytes (an EMAIL_BODY, an inlined TEXT) is counted under its first
+ * MAX_VALUE_BYTES bytes followed by "..." and its hash, so the memory used per value is bounded and long values that
+ * only differ past their start are still counted apart.
+ */
+public class ColumnValueCounter extends ColumnCounter {
+    static final int MAX_VALUE_BYTES = 200;
+
+    private final List<Map<String, Long>> valueCounts;
+
+    public ColumnValueCounter(List<String> header) {
+        super(header);
+
+        this.valueCounts = new ArrayList<>(header.size());
+
+        for (int i = 0; i < header.size(); i++) {
+            valueCounts.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Keyed like addValue(int, ByteFields, int), from the UTF-8 bytes of the value.
+     */
+    @Override
+    protected void addValue(int column, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length > MAX_VALUE_BYTES) {
+            int end = MAX_VALUE_BYTES;
+
+            while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+                end--;
+            }
+
+            value = longValueKey(new String(bytes, 0, end, StandardCharsets.UTF_8), Hashing.hash64(bytes, 0, bytes.length));
+        }
+
+        valueCounts.get(column).merge(value, 1L, Long::sum);
+    }
+
+    @Override
+    protected void addValue(int column, ByteFields fields, int field) {
+        String value = fields.length(field) <= MAX_VALUE_BYTES ? fields.toString(field)
+                : longValueKey(fields.toString(field, MAX_VALUE_BYTES), fields.hash64(field));
+
+        valueCounts.get(column).merge(value, 1L, Long::sum);
+    }
+
+    private static String longValueKey(String start, long hash) {
+        return String.format("%s... [%016x]", start, hash);
+    }
+
+    @Override
+    public void merge(ColumnCounter other) {
+        super.merge(other);
+
+        ColumnValueCounter counter = (ColumnValueCounter) other;
+
+        for (int i = 0; i < valueCounts.size(); i++) {
+            Map<String, Long> counts = valueCounts.get(i);
+
+            counter.valueCounts.get(i).forEach((value, count) -> counts.merge(value, count, Long::sum));
+        }
+    }
+
+    /**
+     * The number of occurrences of each non-blank value of column (long values are keyed as described above).
+     *
+     * @param column
+     * @return
+     */
+    public Map<String, Long> getValueCounts(int column) {
+        return valueCounts.get(column);
+    }
+}
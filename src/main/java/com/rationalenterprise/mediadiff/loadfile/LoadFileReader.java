@@ -0,0 +1,272 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.cache.FileCache;
+import com.rationalenterprise.mediadiff.metrics.Phase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads the rows of one or more volumes as one file.
+ *
+ * Rows are framed by RecordReader, so a line break inside a thorn quoted value does not split its row.  The first row
+ * returned is the header of the first volume (with its BOM, like BufferedReader.readLine()).  The header of every
+ * later volume is skipped.  Each volume is read ahead on its own worker into a bounded queue of row batches, so
+ * decoding of later volumes overlaps with processing of earlier ones while memory stays bounded.  Values longer than
+ * maxFieldLength characters, quoted or not, are cut (see getTruncatedValues()).
+ *
+ * When a Phase is given, the volumes, their bytes and the rows read (not counting the header) are added to it and the
+ * phase ends when the reader is closed.
+ *
+ * When the shared FileCache is enabled (in the daemon), the lines of each volume are cached and later reads of an
+ * unchanged volume are served from memory.
+ */
+public class LoadFileReader implements Closeable {
+    private static final int BATCH_SIZE = 1024;
+
+    private static final int QUEUED_BATCHES = 16;
+
+    private final List<Path> volumes;
+
+    private final List<BlockingQueue<Batch>> queues = new ArrayList<>();
+
+    private final ExecutorService executor;
+
+    private final Phase phase;
+
+    private final int maxFieldLength;
+
+    private final LongAdder truncatedValues = new LongAdder();
+
+    private long linesRead = 0;
+
+    private int volumeIndex = 0;
+
+    private List<String> lines;
+
+    private int lineIndex = 0;
+
+    LoadFileReader(List<Path> volumes, int threads, Phase phase, int maxFieldLength) {
+        this.volumes = volumes;
+        this.phase = phase;
+        this.maxFieldLength = maxFieldLength;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, volumes.size())), runnable -> {
+            Thread thread = new Thread(runnable, "volume-reader");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        // Volumes are submitted in order, so the volume being consumed always has a worker.
+        for (int i = 0; i < volumes.size(); i++) {
+            BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+            Path volume = volumes.get(i);
+            boolean skipHeader = i > 0;
+
+            queues.add(queue);
+            executor.execute(() -> readVolume(volume, skipHeader, queue));
+        }
+    }
+
+    private void readVolume(Path volume, boolean skipHeader, BlockingQueue<Batch> queue) {
+        if (FileCache.shared().isEnabled()) {
+            readCachedVolume(volume, skipHeader, queue);
+
+            return;
+        }
+
+        try {
+            try (RecordReader records = new RecordReader(Files.newBufferedReader(volume, StandardCharsets.UTF_8), maxFieldLength)) {
+                if (phase != null) {
+                    phase.addFiles(1);
+                    phase.addBytes(Files.size(volume));
+                }
+
+                if (skipHeader) {
+                    records.readRecord();
+                }
+
+                List<String> lines = new ArrayList<>(BATCH_SIZE);
+                String line;
+
+                while ((line = records.readRecord()) != null) {
+                    lines.add(line);
+
+                    if (lines.size() == BATCH_SIZE) {
+                        queue.put(new Batch(lines, null));
+                        lines = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+
+                queue.put(new Batch(lines, null));
+                truncatedValues.add(records.getTruncatedValues());
+                queue.put(Batch.END);
+            } catch (IOException | RuntimeException | Error e) {
+                // Every failure but the interruption of close() (eg: an OutOfMemoryError on a huge value) must reach
+                // readLine(), which waits on the queue.
+                queue.put(new Batch(null, e));
+            }
+        } catch (InterruptedException e) {
+            // The reader was closed.
+        }
+    }
+
+    private void readCachedVolume(Path volume, boolean skipHeader, BlockingQueue<Batch> queue) {
+        try {
+            try {
+                List<String> lines = FileCache.shared().get("records " + maxFieldLength, volume, () -> readRecords(volume), LoadFileReader::weigh);
+
+                if (phase != null) {
+                    phase.addFiles(1);
+                    phase.addBytes(Files.size(volume));
+                }
+
+                for (int from = skipHeader ? 1 : 0; from < lines.size(); from += BATCH_SIZE) {
+                    queue.put(new Batch(lines.subList(from, Math.min(from + BATCH_SIZE, lines.size())), null));
+                }
+
+                queue.put(Batch.END);
+            } catch (IOException | RuntimeException | Error e) {
+                queue.put(new Batch(null, e));
+            }
+        } catch (InterruptedException e) {
+            // The reader was closed.
+        }
+    }
+
+    /**
+     * All rows of the volume, for the cache.  Cut values are only counted when the volume is read, not when it is
+     * served from the cache.
+     */
+    private List<String> readRecords(Path volume) throws IOException {
+        try (RecordReader records = new RecordReader(Files.newBufferedReader(volume, StandardCharsets.UTF_8), maxFieldLength)) {
+            List<String> lines = new ArrayList<>();
+            String line;
+
+            while ((line = records.readRecord()) != null) {
+                lines.add(line);
+            }
+
+            truncatedValues.add(records.getTruncatedValues());
+
+            return lines;
+        }
+    }
+
+    /**
+     * Estimated heap use of cached lines: a String and its Latin-1 array per line.
+     */
+    private static long weigh(List<String> lines) {
+        long weight = 16L + 8L * lines.size();
+
+        for (String line : lines) {
+            weight += 56 + line.length();
+        }
+
+        return weight;
+    }
+
+    /**
+     * Returns the next row of the logical file or null at the end of the last volume.  A row can contain line breaks
+     * inside quoted values.
+     *
+     * @return
+     * @throws IOException
+     */
+    public String readLine() throws IOException {
+        while (true) {
+            if (lines != null && lineIndex < lines.size()) {
+                return lines.get(lineIndex++);
+            }
+
+            if (volumeIndex >= volumes.size()) {
+                return null;
+            }
+
+            Batch batch;
+
+            try {
+                batch = queues.get(volumeIndex).take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new IOException("Interrupted while reading " + volumes.get(volumeIndex), e);
+            }
+
+            if (batch.error instanceof IOException) {
+                throw (IOException) batch.error;
+            } else if (batch.error instanceof RuntimeException) {
+                throw (RuntimeException) batch.error;
+            } else if (batch.error instanceof Error) {
+                throw (Error) batch.error;
+            } else if (batch.error != null) {
+                throw new IOException(batch.error);
+            }
+
+            if (batch == Batch.END) {
+                queues.set(volumeIndex, null);
+                volumeIndex++;
+                lines = null;
+            } else {
+                lines = batch.lines;
+                lineIndex = 0;
+                linesRead += lines.size();
+            }
+        }
+    }
+
+    /**
+     * The volume the last line returned by readLine() came from.
+     *
+     * @return
+     */
+    public Path getVolume() {
+        return volumes.get(Math.min(volumeIndex, volumes.size() - 1));
+    }
+
+    public boolean isMultiVolume() {
+        return volumes.size() > 1;
+    }
+
+    /**
+     * The number of values cut at maxFieldLength in the volumes read so far.
+     *
+     * @return
+     */
+    public long getTruncatedValues() {
+        return truncatedValues.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+
+        if (phase != null) {
+            phase.addRows(Math.max(0, linesRead - 1));
+            phase.close();
+        }
+    }
+
+    private static class Batch {
+        static final Batch END = new Batch(new ArrayList<>(), null);
+
+        final List<String> lines;
+
+        final Throwable error;
+
+        Batch(List<String> lines, Throwable error) {
+            this.lines = lines;
+            this.error = error;
+        }
+    }
+}
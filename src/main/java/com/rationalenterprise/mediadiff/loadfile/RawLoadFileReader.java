@@ -0,0 +1,652 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.metrics.Phase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the rows of one or more volumes as one file, as bytes.  It is the LoadFileReader of the modes that never
+ * print a value: rows are never decoded, so nothing is allocated per row or per value.
+ *
+ * Rows are framed like RecordReader frames them, on the bytes: a line break inside a thorn quoted value belongs to the
+ * value, and outside quotes a row ends at "\n", "\r" or "\r\n".  Rows are framed in place in the buffer the volume
+ * is read into, which becomes the chunk, so bytes are only moved when a row continues past the end of a chunk or a
+ * value is cut.  Values longer than maxFieldLength characters, quoted or not, are cut (see getTruncatedValues()).
+ *
+ * Rows come in chunks of whole rows of one volume.  The header of the first volume is read by readHeader() and the
+ * header of every later volume is skipped.  Unlike LoadFileReader, bytes that are not valid UTF-8 are not an error.
+ *
+ * When a Phase is given, the volumes, their bytes and the rows read (not counting the header) are added to it and the
+ * phase ends when the reader is closed.
+ */
+public class RawLoadFileReader implements Closeable {
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private static final byte DELIMITER = 0x14;
+
+    private static final byte THORN_1 = (byte) 0xC3;
+
+    private static final byte THORN_2 = (byte) 0xBE;
+
+    private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final List<Path> volumes;
+
+    private final Phase phase;
+
+    private final int maxFieldLength;
+
+    private int volumeIndex = -1;
+
+    private FileChannel channel;
+
+    /**
+     * The chunk being framed: bytes[0, limit) have been read, bytes[position, limit) are not framed yet.
+     */
+    private byte[] bytes = new byte[CHUNK_SIZE];
+
+    private int limit = 0;
+
+    private int position = 0;
+
+    /**
+     * The end of the kept bytes of the current row, which is position unless bytes of a cut value were dropped.
+     */
+    private int length = 0;
+
+    /**
+     * The start and end of each row framed in bytes.
+     */
+    private int[] bounds = new int[1 << 15];
+
+    private int rowCount = 0;
+
+    // The framing state of the current row, which can continue in the next chunk.
+    private int rowStart = 0;
+
+    private boolean inRow = false;
+
+    private boolean skipLineFeed = false;
+
+    private boolean atValueStart = true;
+
+    private boolean quoted = false;
+
+    private boolean quoting = false;
+
+    private boolean truncating = false;
+
+    private int valueStart = 0;
+
+    /**
+     * The characters of the current value, only counted once it is longer than maxFieldLength bytes (or -1).
+     */
+    private int valueChars = -1;
+
+    private String header;
+
+    private long rowsRead = 0;
+
+    private long truncatedValues = 0;
+
+    RawLoadFileReader(List<Path> volumes, Phase phase, int maxFieldLength) {
+        this.volumes = volumes;
+        this.phase = phase;
+        this.maxFieldLength = maxFieldLength;
+    }
+
+    /**
+     * The header of the first volume (without its BOM), or null when it is empty.  It must be read before the rows.
+     *
+     * @return
+     * @throws IOException
+     */
+    public String readHeader() throws IOException {
+        if (volumeIndex == -1) {
+            nextVolume();
+        }
+
+        return header;
+    }
+
+    /**
+     * Returns the next rows of the current volume, or null after the last volume.
+     *
+     * @return
+     * @throws IOException
+     */
+    public Chunk readChunk() throws IOException {
+        if (volumeIndex == -1) {
+            nextVolume();
+        }
+
+        while (volumeIndex < volumes.size()) {
+            while (frameSimpleRow() || frameRow()) {
+            }
+
+            if (channel != null && (rowCount == 0 || limit < bytes.length)) {
+                fill();
+
+                continue;
+            }
+
+            if (channel == null && inRow) {
+                endRow();
+                startRow(position);
+            }
+
+            if (rowCount > 0) {
+                Chunk chunk = new Chunk(bytes, Arrays.copyOf(bounds, 2 * rowCount), volumes.get(volumeIndex));
+
+                rowsRead += rowCount;
+                rowCount = 0;
+                startChunk();
+
+                return chunk;
+            }
+
+            nextVolume();
+        }
+
+        return null;
+    }
+
+    /**
+     * Frames the next row when it has the common shape: every value is either quoted with no thorn inside or not
+     * quoted with no thorn at all, and no value is long enough to be cut.  Returns false without framing anything
+     * otherwise (or when the row does not end in bytes[position, limit)), leaving the row to frameRow().
+     */
+    private boolean frameSimpleRow() {
+        if (inRow) {
+            return false;
+        }
+
+        byte[] bytes = this.bytes;
+        int limit = this.limit;
+
+        if (skipLineFeed && position < limit) {
+            skipLineFeed = false;
+
+            if (bytes[position] == '\n') {
+                startRow(position + 1);
+            }
+        }
+
+        int i = position;
+
+        while (true) {
+            if (i + 1 < limit && bytes[i] == THORN_1 && bytes[i + 1] == THORN_2) {
+                int valueStart = i;
+
+                i += 2;
+
+                while (i < limit && (bytes[i] != THORN_1 || i + 1 < limit && bytes[i + 1] != THORN_2)) {
+                    i++;
+                }
+
+                if (i + 1 >= limit || i + 2 - valueStart > maxFieldLength) {
+                    return false;
+                }
+
+                i += 2;
+            } else {
+                int valueStart = i;
+
+                while (i < limit) {
+                    byte b = bytes[i];
+
+                    if (b == '\n' || b == '\r' || b == DELIMITER || b == THORN_1) {
+                        break;
+                    }
+
+                    i++;
+                }
+
+                if (i - valueStart > maxFieldLength) {
+                    return false;
+                }
+            }
+
+            if (i == limit) {
+                return false;
+            }
+
+            byte b = bytes[i];
+
+            if (b == DELIMITER) {
+                i++;
+            } else if (b == '\n' || b == '\r') {
+                length = i;
+                endRow();
+                skipLineFeed = b == '\r';
+                startRow(i + 1);
+
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Frames the next row of bytes[position, limit).  Returns false when more bytes are needed first.
+     *
+     * Bytes that cannot change the framing state are found by a tight scan and kept in runs: inside quotes that is
+     * everything but a thorn, outside quotes everything but line breaks, delimiters and the first byte of a thorn.  The
+     * state is kept in locals while framing and saved when more bytes are needed.
+     */
+    private boolean frameRow() {
+        byte[] bytes = this.bytes;
+        int limit = this.limit;
+        boolean endOfVolume = channel == null;
+        int position = this.position;
+        boolean atValueStart = this.atValueStart;
+        boolean quoted = this.quoted;
+        boolean quoting = this.quoting;
+
+        while (position < limit) {
+            if (skipLineFeed) {
+                skipLineFeed = false;
+
+                if (bytes[position] == '\n') {
+                    startRow(position + 1);
+                    position = this.position;
+
+                    continue;
+                }
+            }
+
+            inRow = true;
+
+            int i = position;
+
+            if (quoting) {
+                // Other characters that start with the thorn's first byte (eg: an e acute) are part of the run.
+                while (i < limit && (bytes[i] != THORN_1 || (i + 1 < limit ? bytes[i + 1] != THORN_2 : endOfVolume))) {
+                    i++;
+                }
+
+                if (length == position && valueChars < 0 && i - valueStart <= maxFieldLength && !truncating) {
+                    length = i;
+                } else {
+                    this.position = position;
+                    keepValue(i);
+                }
+
+                position = i;
+
+                if (i + 1 >= limit) {
+                    // The end of the bytes read, or a thorn whose second byte is in the next read.
+                    break;
+                }
+
+                // Most values are quoted, so the next value usually starts right after the closing thorn.
+                if (i + 4 < limit && bytes[i + 2] == DELIMITER && bytes[i + 3] == THORN_1 && bytes[i + 4] == THORN_2) {
+                    position = keep(position, i + 5);
+                    valueStart = length - 2;
+                    truncating = false;
+                    valueChars = -1;
+
+                    continue;
+                }
+
+                position = keep(position, i + 2);
+                quoting = false;
+                // Counted again if the value is quoted again.
+                valueChars = -1;
+            } else {
+                while (i < limit) {
+                    byte b = bytes[i];
+
+                    if (b == '\n' || b == '\r' || b == DELIMITER || b == THORN_1) {
+                        break;
+                    }
+
+                    i++;
+                }
+
+                if (i > position) {
+                    position = keepUnquoted(position, i);
+                    atValueStart = false;
+                }
+
+                if (i == limit) {
+                    break;
+                }
+
+                byte b = bytes[i];
+
+                if (b == '\n' || b == '\r') {
+                    endRow();
+                    skipLineFeed = b == '\r';
+                    startRow(i + 1);
+
+                    return true;
+                } else if (b == DELIMITER) {
+                    position = keep(position, i + 1);
+                    atValueStart = true;
+                    quoted = false;
+                    truncating = false;
+                    valueStart = length;
+                    valueChars = -1;
+                } else if (i + 1 == limit && !endOfVolume) {
+                    break;
+                } else if (i + 1 < limit && bytes[i + 1] == THORN_2 && (atValueStart || quoted)) {
+                    position = keep(position, i + 2);
+                    atValueStart = false;
+                    quoting = true;
+                    quoted = true;
+                } else {
+                    position = keepUnquoted(position, i + 1);
+                    atValueStart = false;
+                }
+            }
+        }
+
+        this.position = position;
+        this.atValueStart = atValueStart;
+        this.quoted = quoted;
+        this.quoting = quoting;
+
+        return false;
+    }
+
+    /**
+     * Keeps bytes[position, to) of a value, up to maxFieldLength characters of the value.
+     */
+    private void keepValue(int to) {
+        if (truncating) {
+            position = to;
+
+            return;
+        }
+
+        int cut = to;
+
+        // A value can only have more than maxFieldLength characters once it has more bytes than that.
+        if (valueChars >= 0 || length - valueStart + to - position > maxFieldLength) {
+            if (valueChars < 0) {
+                valueChars = characters(bytes, valueStart, length);
+            }
+
+            for (cut = position; cut < to; cut++) {
+                byte b = bytes[cut];
+
+                // Values are cut before the first byte of a character, never inside one.
+                if ((b & 0xC0) != 0x80) {
+                    if (valueChars >= maxFieldLength) {
+                        break;
+                    }
+
+                    valueChars += (b & 0xF8) == 0xF0 ? 2 : 1;
+                }
+            }
+        }
+
+        keep(position, cut);
+        position = to;
+
+        if (cut < to) {
+            truncating = true;
+            truncatedValues++;
+        }
+    }
+
+    /**
+     * Keeps bytes[from, to) of a value outside quotes, which is cut like a quoted value, and returns to.
+     */
+    private int keepUnquoted(int from, int to) {
+        if (!truncating && valueChars < 0 && length - valueStart + to - from <= maxFieldLength) {
+            return keep(from, to);
+        }
+
+        position = from;
+        keepValue(to);
+
+        return to;
+    }
+
+    /**
+     * Keeps bytes[from, to) in the current row, after its kept bytes, and returns to.
+     */
+    private int keep(int from, int to) {
+        if (length != from) {
+            System.arraycopy(bytes, from, bytes, length, to - from);
+        }
+
+        length += to - from;
+
+        return to;
+    }
+
+    /**
+     * The number of UTF-16 characters in bytes[from, to), so values are cut at the same length as RecordReader cuts
+     * them.
+     */
+    private static int characters(byte[] bytes, int from, int to) {
+        int characters = 0;
+
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+
+            if ((b & 0xC0) != 0x80) {
+                characters += (b & 0xF8) == 0xF0 ? 2 : 1;
+            }
+        }
+
+        return characters;
+    }
+
+    private void endRow() {
+        if (2 * rowCount == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+
+        bounds[2 * rowCount] = rowStart;
+        bounds[2 * rowCount + 1] = length;
+        rowCount++;
+    }
+
+    private void startRow(int start) {
+        position = start;
+        length = start;
+        rowStart = start;
+        inRow = false;
+        atValueStart = true;
+        quoted = false;
+        quoting = false;
+        truncating = false;
+        valueStart = start;
+        valueChars = -1;
+    }
+
+    /**
+     * Moves the current row and the bytes not framed yet to the front of a new chunk.
+     */
+    private void startChunk() {
+        byte[] next = new byte[Math.max(CHUNK_SIZE, 2 * (length - rowStart + limit - position))];
+        int kept = length - rowStart;
+
+        System.arraycopy(bytes, rowStart, next, 0, kept);
+        System.arraycopy(bytes, position, next, kept, limit - position);
+        valueStart -= rowStart;
+        limit = kept + limit - position;
+        position = kept;
+        length = kept;
+        rowStart = 0;
+        bytes = next;
+    }
+
+    /**
+     * Reads more of the current volume after the bytes read so far, making room first when the chunk is full.
+     */
+    private void fill() throws IOException {
+        if (limit == bytes.length) {
+            if (rowStart > 0 || length < position) {
+                startChunk();
+            } else {
+                // The current row is longer than a chunk.
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+
+        int read = channel.read(ByteBuffer.wrap(bytes, limit, bytes.length - limit));
+
+        if (read == -1) {
+            channel.close();
+            channel = null;
+        } else {
+            limit += read;
+        }
+    }
+
+    /**
+     * Opens the next volume and frames its header row: kept for the first volume, skipped for the others.
+     */
+    private void nextVolume() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+
+        volumeIndex++;
+        limit = 0;
+        rowCount = 0;
+        skipLineFeed = false;
+        startRow(0);
+
+        if (volumeIndex >= volumes.size()) {
+            return;
+        }
+
+        Path volume = volumes.get(volumeIndex);
+
+        channel = FileChannel.open(volume, StandardOpenOption.READ);
+
+        if (phase != null) {
+            phase.addFiles(1);
+            phase.addBytes(channel.size());
+        }
+
+        while (channel != null && limit < UTF_8_BOM.length) {
+            fill();
+        }
+
+        // The BOM is not part of the header, so the header's first value can be quoted.
+        if (limit >= UTF_8_BOM.length && Arrays.equals(bytes, 0, UTF_8_BOM.length, UTF_8_BOM, 0, UTF_8_BOM.length)) {
+            startRow(UTF_8_BOM.length);
+        }
+
+        while (!frameRow() && channel != null) {
+            fill();
+        }
+
+        if (rowCount == 0 && inRow) {
+            endRow();
+            startRow(position);
+        }
+
+        if (rowCount > 0 && volumeIndex == 0) {
+            header = new String(bytes, bounds[0], bounds[1] - bounds[0], StandardCharsets.UTF_8);
+        }
+
+        rowCount = 0;
+    }
+
+    /**
+     * The number of rows in the chunks returned so far (not counting the header).
+     *
+     * @return
+     */
+    public long getRows() {
+        return rowsRead;
+    }
+
+    /**
+     * The number of values cut at maxFieldLength so far.
+     *
+     * @return
+     */
+    public long getTruncatedValues() {
+        return truncatedValues;
+    }
+
+    public boolean isMultiVolume() {
+        return volumes.size() > 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+
+        if (phase != null) {
+            phase.addRows(rowsRead);
+            phase.close();
+        }
+    }
+
+    /**
+     * Whole rows of one volume.
+     */
+    public static class Chunk {
+        static final Chunk EMPTY = new Chunk(new byte[0], new int[0], null);
+
+        private final byte[] bytes;
+
+        /**
+         * The start and end of each row in bytes.
+         */
+        private final int[] bounds;
+
+        private final Path volume;
+
+        Chunk(byte[] bytes, int[] bounds, Path volume) {
+            this.bytes = bytes;
+            this.bounds = bounds;
+            this.volume = volume;
+        }
+
+        /**
+         * Calls consumer with each row (without its line terminator), in order.
+         *
+         * @param consumer
+         */
+        public void forEachRow(RowConsumer consumer) {
+            for (int i = 0; i < bounds.length; i += 2) {
+                consumer.accept(bytes, bounds[i], bounds[i + 1]);
+            }
+        }
+
+        public int getRowCount() {
+            return bounds.length / 2;
+        }
+
+        /**
+         * The volume the rows came from.
+         *
+         * @return
+         */
+        public Path getVolume() {
+            return volume;
+        }
+    }
+
+    /**
+     * Receives the row in bytes[from, to).
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(byte[] bytes, int from, int to);
+    }
+}
@@ -0,0 +1,306 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the rows of a dat file, which are lines except that a line break inside a thorn quoted value (eg: an
+ * EMAIL_BODY or TEXT value) belongs to the value.
+ *
+ * Rows are framed with the quoting rules of the dat tokenizer (see ByteFields): a value that starts with a thorn is
+ * quoted, a thorn ends the quotes and a later thorn in the same value starts them again (so a doubled thorn stays
+ * quoted).  Outside quotes a row ends at "\n", "\r" or "\r\n", like BufferedReader.readLine().  A file without quoted
+ * line breaks gives the same rows as readLine().
+ *
+ * A value longer than maxFieldLength characters, quoted or not, keeps only its first maxFieldLength characters (and
+ * the thorns that quote it), so an unterminated quote or a huge inlined text cannot use unbounded memory.  The number
+ * of values cut is kept in getTruncatedValues().
+ */
+public class RecordReader implements Closeable {
+    public static final int DEFAULT_MAX_FIELD_LENGTH = 16 << 20;
+
+    private static final char DELIMITER = '\u0014';
+
+    private static final char THORN = '\u00FE';
+
+    private static final char BOM = '\uFEFF';
+
+    private final Reader reader;
+
+    private final int maxFieldLength;
+
+    private final char[] buffer = new char[1 << 16];
+
+    private int position = 0;
+
+    private int limit = 0;
+
+    private boolean firstRecord = true;
+
+    private boolean skipLineFeed = false;
+
+    private final StringBuilder record = new StringBuilder();
+
+    private long truncatedValues = 0;
+
+    public RecordReader(Reader reader, int maxFieldLength) {
+        this.reader = reader;
+        this.maxFieldLength = maxFieldLength;
+    }
+
+    /**
+     * Returns the next row without its line terminator, or null at the end of the file.  The BOM of the first row is
+     * kept, like BufferedReader.readLine().
+     *
+     * @return
+     * @throws IOException
+     */
+    public String readRecord() throws IOException {
+        if (skipLineFeed && position < limit) {
+            skipLineFeed = false;
+
+            if (buffer[position] == '\n') {
+                position++;
+            }
+        }
+
+        if (!firstRecord && !skipLineFeed) {
+            String simpleRecord = readSimpleRecord();
+
+            if (simpleRecord != null) {
+                return simpleRecord;
+            }
+        }
+
+        record.setLength(0);
+
+        boolean read = false;
+        boolean valueStart = true;
+        boolean quoted = false;
+        boolean quoting = false;
+        boolean truncating = false;
+        int valueOffset = 0;
+
+        while (true) {
+            if (position == limit && !fill()) {
+                return read ? record.toString() : null;
+            }
+
+            if (skipLineFeed) {
+                skipLineFeed = false;
+
+                if (buffer[position] == '\n') {
+                    position++;
+
+                    continue;
+                }
+            }
+
+            if (firstRecord) {
+                firstRecord = false;
+
+                if (buffer[position] == BOM) {
+                    record.append(BOM);
+                    position++;
+                    read = true;
+                    valueOffset = 1;
+
+                    continue;
+                }
+            }
+
+            read = true;
+
+            // Characters that cannot change the framing state are found by a tight scan and appended in runs.
+            int i = position;
+
+            if (quoting) {
+                while (i < limit && buffer[i] != THORN) {
+                    i++;
+                }
+
+                if (!truncating) {
+                    int cut = Math.min(i, position + Math.max(0, maxFieldLength - (record.length() - valueOffset)));
+
+                    // Values are not cut between the two halves of a surrogate pair.
+                    if (cut > position && cut < i && Character.isLowSurrogate(buffer[cut])) {
+                        cut++;
+                    }
+
+                    record.append(buffer, position, cut - position);
+
+                    if (cut < i) {
+                        truncating = true;
+                        truncatedValues++;
+                    }
+                }
+
+                position = i;
+
+                if (i < limit) {
+                    record.append(THORN);
+                    position++;
+                    quoting = false;
+                }
+            } else {
+                while (i < limit) {
+                    char c = buffer[i];
+
+                    if (c == '\n' || c == '\r' || c == DELIMITER || c == THORN) {
+                        break;
+                    }
+
+                    i++;
+                }
+
+                if (i > position) {
+                    if (!truncating) {
+                        int cut = Math.min(i, position + Math.max(0, maxFieldLength - (record.length() - valueOffset)));
+
+                        if (cut > position && cut < i && Character.isLowSurrogate(buffer[cut])) {
+                            cut++;
+                        }
+
+                        record.append(buffer, position, cut - position);
+
+                        if (cut < i) {
+                            truncating = true;
+                            truncatedValues++;
+                        }
+                    }
+
+                    position = i;
+                    valueStart = false;
+                }
+
+                if (i == limit) {
+                    continue;
+                }
+
+                char c = buffer[i];
+
+                position++;
+
+                if (c == '\n' || c == '\r') {
+                    skipLineFeed = c == '\r';
+
+                    return record.toString();
+                }
+
+                if (c == DELIMITER) {
+                    record.append(c);
+                    valueStart = true;
+                    quoted = false;
+                    truncating = false;
+                    valueOffset = record.length();
+                } else {
+                    if (valueStart || quoted) {
+                        record.append(c);
+                        quoting = true;
+                        quoted = true;
+                    } else if (!truncating) {
+                        // A thorn inside a value that is not quoted is one of its characters.
+                        if (record.length() - valueOffset < maxFieldLength) {
+                            record.append(c);
+                        } else {
+                            truncating = true;
+                            truncatedValues++;
+                        }
+                    }
+
+                    valueStart = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the next row when it has the common shape and ends in the buffer, like readLine() does: every value is
+     * either quoted with no thorn inside or not quoted with no thorn at all, and no value is long enough to be cut.
+     * Returns null without reading anything otherwise, leaving the row to readRecord().
+     */
+    private String readSimpleRecord() {
+        char[] buffer = this.buffer;
+        int limit = this.limit;
+        int i = position;
+
+        while (true) {
+            if (i < limit && buffer[i] == THORN) {
+                int valueStart = i;
+
+                do {
+                    i++;
+                } while (i < limit && buffer[i] != THORN);
+
+                if (i == limit || i - valueStart > maxFieldLength) {
+                    return null;
+                }
+
+                i++;
+            } else {
+                int valueStart = i;
+
+                while (i < limit) {
+                    char c = buffer[i];
+
+                    if (c == '\n' || c == '\r' || c == DELIMITER || c == THORN) {
+                        break;
+                    }
+
+                    i++;
+                }
+
+                if (i - valueStart > maxFieldLength) {
+                    return null;
+                }
+            }
+
+            if (i == limit) {
+                return null;
+            }
+
+            char c = buffer[i];
+
+            if (c == DELIMITER) {
+                i++;
+            } else if (c == '\n' || c == '\r') {
+                String simpleRecord = new String(buffer, position, i - position);
+
+                skipLineFeed = c == '\r';
+                position = i + 1;
+
+                return simpleRecord;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+
+        if (read <= 0) {
+            return false;
+        }
+
+        position = 0;
+        limit = read;
+
+        return true;
+    }
+
+    /**
+     * The number of values cut at maxFieldLength so far.
+     *
+     * @return
+     */
+    public long getTruncatedValues() {
+        return truncatedValues;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
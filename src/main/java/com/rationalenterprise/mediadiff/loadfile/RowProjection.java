@@ -0,0 +1,202 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import java.util.Arrays;
+
+/**
+ * Splits dat rows into the values of a few columns, for the modes that only look at one to three columns of a row.
+ *
+ * The rules are the ones ColumnCounter.newTokenizer() applies (see ByteFields), but only the projected values are
+ * copied out of the row: the values before them are skipped without copying, and splitting stops after the last
+ * projected column.  An instance is reused from row to row and is not thread-safe.
+ */
+public class RowProjection {
+    private static final char DELIMITER = '\u0014';
+
+    private static final char THORN = '\u00FE';
+
+    /**
+     * The index in values of each column up to the last projected one, or -1 for the columns that are skipped.
+     */
+    private final int[] slots;
+
+    private final String[] values;
+
+    private final StringBuilder value = new StringBuilder();
+
+    /**
+     * Projects the columns (header indexes).  Negative columns (not found in the header) are ignored.
+     *
+     * @param columns
+     */
+    public RowProjection(int... columns) {
+        int lastColumn = Arrays.stream(columns).max().orElse(-1);
+        int projected = 0;
+
+        slots = new int[lastColumn + 1];
+        Arrays.fill(slots, -1);
+
+        for (int column : columns) {
+            if (column >= 0 && slots[column] == -1) {
+                slots[column] = projected++;
+            }
+        }
+
+        values = new String[projected];
+    }
+
+    /**
+     * Splits the row (without its line terminator), replacing the values of the previous row.
+     *
+     * @param row
+     * @return this
+     */
+    public RowProjection split(String row) {
+        Arrays.fill(values, null);
+
+        int length = row.length();
+        int position = 0;
+        int column = 0;
+
+        while (position >= 0 && position < length && column < slots.length) {
+            position = readValue(row, position, slots[column]);
+            column++;
+        }
+
+        // Like the tokenizer, a row that ends with a delimiter ends with an empty value and an empty row has none.
+        if (position == length && length > 0 && column < slots.length && slots[column] >= 0) {
+            values[slots[column]] = "";
+        }
+
+        return this;
+    }
+
+    /**
+     * Reads the value starting at position into values[slot] (or skips it when slot is -1) and returns the position
+     * after its delimiter, or -1 at the end of the row.
+     */
+    private int readValue(String row, int position, int slot) {
+        int length = row.length();
+
+        if (row.charAt(position) != THORN) {
+            int end = row.indexOf(DELIMITER, position);
+
+            if (slot >= 0) {
+                values[slot] = row.substring(position, end == -1 ? length : end);
+            }
+
+            return end == -1 ? -1 : end + 1;
+        }
+
+        int end = row.indexOf(THORN, position + 1);
+
+        // Most quoted values have no thorn inside and end at the closing thorn.
+        if (end == -1 || end + 1 == length || row.charAt(end + 1) == DELIMITER) {
+            if (slot >= 0) {
+                values[slot] = row.substring(position + 1, end == -1 ? length : end);
+            }
+
+            return end == -1 || end + 1 == length ? -1 : end + 2;
+        }
+
+        return slot >= 0 ? readQuotedValue(row, position, slot) : skipQuotedValue(row, position);
+    }
+
+    /**
+     * readValue() for a quoted value with doubled thorns or characters after its closing thorn.
+     */
+    private int readQuotedValue(String row, int position, int slot) {
+        int length = row.length();
+        boolean quoting = true;
+
+        value.setLength(0);
+        position++;
+
+        while (position < length) {
+            char c = row.charAt(position);
+
+            if (quoting && c == THORN) {
+                if (position + 1 < length && row.charAt(position + 1) == THORN) {
+                    value.append(THORN);
+                    position += 2;
+                } else {
+                    quoting = false;
+                    position++;
+                }
+
+                continue;
+            }
+
+            if (!quoting) {
+                if (c == DELIMITER) {
+                    break;
+                }
+
+                if (c == THORN) {
+                    quoting = true;
+                    position++;
+
+                    continue;
+                }
+            }
+
+            value.append(c);
+            position++;
+        }
+
+        values[slot] = value.toString();
+
+        return position < length ? position + 1 : -1;
+    }
+
+    /**
+     * readQuotedValue() for a value that is not projected: it only looks for the end of the value, jumping from thorn
+     * to thorn while quoting instead of copying the value.
+     */
+    private static int skipQuotedValue(String row, int position) {
+        int length = row.length();
+        boolean quoting = true;
+
+        position++;
+
+        while (position < length) {
+            if (quoting) {
+                position = row.indexOf(THORN, position);
+
+                if (position == -1) {
+                    return -1;
+                }
+
+                if (position + 1 < length && row.charAt(position + 1) == THORN) {
+                    position += 2;
+                } else {
+                    quoting = false;
+                    position++;
+                }
+
+                continue;
+            }
+
+            char c = row.charAt(position);
+
+            if (c == DELIMITER) {
+                return position + 1;
+            }
+
+            quoting = c == THORN;
+            position++;
+        }
+
+        return -1;
+    }
+
+    /**
+     * The value of a projected column in the last row split, or null when the row ends before the column (or the
+     * column is not projected).
+     *
+     * @param column
+     * @return
+     */
+    public String get(int column) {
+        return column >= 0 && column < slots.length && slots[column] >= 0 ? values[slots[column]] : null;
+    }
+}
@@ -0,0 +1,419 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.sketch.Hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fingerprints of the rows of a load file by key, so a later delivery can be compared with it without the old load
+ * file.
+ *
+ * Each row has a 64 bit fingerprint and a 32 bit fingerprint per column.  The row fingerprint is a sum over the
+ * columns with a value of the hash of the column's label and value, so it does not depend on the column order and a
+ * column that is added or removed without values does not change it.  A blank value has the column fingerprint 0.
+ * Values past the header are not fingerprinted.
+ *
+ * A snapshot file holds the key label, the column labels and then a key, a row fingerprint and the column
+ * fingerprints per row: the key plus about 12 bytes and 4 bytes per column per row.  When it is read back only the
+ * first row of a key is kept (see getDuplicateKeys()).  The column fingerprints are kept in pages of about PAGE_INTS
+ * ints, so rows times columns is not limited by the size of an array; a snapshot larger than the maximum heap is
+ * refused before it is read.
+ */
+public class RowSnapshot {
+    private static final int MAGIC = 0x4D445331;
+
+    private static final int PAGE_INTS = 1 << 20;
+
+    /**
+     * The most rows an array (of row fingerprints) can index.
+     */
+    private static final int MAX_ROWS = Integer.MAX_VALUE - 8;
+
+    private final String keyLabel;
+
+    private final List<String> labels;
+
+    private final Map<String, Integer> keyToRow = new HashMap<>();
+
+    private final List<String> keys = new ArrayList<>();
+
+    private long[] fingerprints = new long[1024];
+
+    /**
+     * The column fingerprints of pageRows rows per page.
+     */
+    private final List<int[]> columnPages = new ArrayList<>();
+
+    private final int pageRows;
+
+    private int duplicateKeys = 0;
+
+    // The changes found by compare().
+    private final BitSet seen = new BitSet();
+
+    private final Set<String> inserted = new LinkedHashSet<>();
+
+    private final Map<String, List<String>> modified = new LinkedHashMap<>();
+
+    private final Map<String, Integer> modifiedColumns = new LinkedHashMap<>();
+
+    private int comparedDuplicateKeys = 0;
+
+    private List<String> newLabels;
+
+    private int[] oldColumns;
+
+    private List<String> removedLabels;
+
+    private RowSnapshot(String keyLabel, List<String> labels) {
+        this.keyLabel = keyLabel;
+        this.labels = labels;
+        this.pageRows = Math.max(1, PAGE_INTS / Math.max(1, labels.size()));
+    }
+
+    /**
+     * Whether the file starts like a snapshot written by Writer.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static boolean isSnapshot(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a snapshot written by Writer.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static RowSnapshot read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a load file snapshot", path));
+            }
+
+            // The fingerprints take about as much memory as they take on disk, and the keys more.
+            if (Files.size(path) > Runtime.getRuntime().maxMemory()) {
+                throw new IOException(String.format("%s (%s MB) is larger than the maximum heap (%s MB): run with a larger -Xmx",
+                        path, Files.size(path) >> 20, Runtime.getRuntime().maxMemory() >> 20));
+            }
+
+            String keyLabel = in.readUTF();
+            List<String> labels = new ArrayList<>();
+
+            for (int i = in.readInt(); i > 0; i--) {
+                labels.add(in.readUTF());
+            }
+
+            RowSnapshot snapshot = new RowSnapshot(keyLabel, labels);
+            int[] rowColumns = new int[labels.size()];
+
+            while (in.readBoolean()) {
+                String key = in.readUTF();
+                long fingerprint = in.readLong();
+
+                for (int i = 0; i < rowColumns.length; i++) {
+                    rowColumns[i] = in.readInt();
+                }
+
+                snapshot.add(path, key, fingerprint, rowColumns);
+            }
+
+            return snapshot;
+        } catch (EOFException e) {
+            throw new IOException(String.format("%s is not a complete load file snapshot", path), e);
+        }
+    }
+
+    private void add(Path path, String key, long fingerprint, int[] rowColumns) throws IOException {
+        if (keyToRow.containsKey(key)) {
+            duplicateKeys++;
+
+            return;
+        }
+
+        int row = keys.size();
+
+        if (row == MAX_ROWS) {
+            throw new IOException(String.format("%s has more than %s rows", path, MAX_ROWS));
+        }
+
+        if (row == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, (int) Math.min(row * 2L, MAX_ROWS));
+        }
+
+        if (row % pageRows == 0) {
+            columnPages.add(new int[pageRows * labels.size()]);
+        }
+
+        keyToRow.put(key, row);
+        keys.add(key);
+        fingerprints[row] = fingerprint;
+        System.arraycopy(rowColumns, 0, columnPages.get(row / pageRows), (row % pageRows) * labels.size(), labels.size());
+    }
+
+    /**
+     * Sets the column labels of the load file the snapshot is compared with (see compare()).  Columns are matched by
+     * label, so they can be reordered.
+     *
+     * @param newLabels
+     */
+    public void setLabels(List<String> newLabels) {
+        this.newLabels = newLabels;
+        oldColumns = new int[newLabels.size()];
+
+        for (int i = 0; i < oldColumns.length; i++) {
+            oldColumns[i] = labels.indexOf(newLabels.get(i));
+        }
+
+        removedLabels = new ArrayList<>(labels);
+        removedLabels.removeAll(newLabels);
+    }
+
+    /**
+     * Compares a row of the new load file, fingerprinted with fingerprint(), with the snapshot.  Only the first row of
+     * a key is compared.
+     *
+     * @param key
+     * @param fingerprint
+     * @param rowColumns
+     */
+    public void compare(String key, long fingerprint, int[] rowColumns) {
+        Integer row = keyToRow.get(key);
+
+        if (row == null) {
+            if (!inserted.add(key)) {
+                comparedDuplicateKeys++;
+            }
+
+            return;
+        }
+
+        if (seen.get(row)) {
+            comparedDuplicateKeys++;
+
+            return;
+        }
+
+        seen.set(row);
+
+        if (fingerprints[row] == fingerprint) {
+            return;
+        }
+
+        List<String> changedLabels = new ArrayList<>();
+        int[] columns = columnPages.get(row / pageRows);
+        int offset = (row % pageRows) * labels.size();
+
+        for (int i = 0; i < rowColumns.length; i++) {
+            int oldColumn = oldColumns[i] == -1 ? 0 : columns[offset + oldColumns[i]];
+
+            if (rowColumns[i] != oldColumn) {
+                changedLabels.add(newLabels.get(i));
+            }
+        }
+
+        for (String label : removedLabels) {
+            if (columns[offset + labels.indexOf(label)] != 0) {
+                changedLabels.add(label);
+            }
+        }
+
+        for (String label : changedLabels) {
+            modifiedColumns.merge(label, 1, Integer::sum);
+        }
+
+        modified.put(key, changedLabels);
+    }
+
+    /**
+     * Fingerprints the split row into rowColumns and returns its row fingerprint.
+     *
+     * @param fields
+     * @param labelHashes The hash of each column's label (see labelHashes()).
+     * @param rowColumns
+     * @return
+     */
+    public static long fingerprint(ByteFields fields, long[] labelHashes, int[] rowColumns) {
+        long fingerprint = 0;
+
+        for (int i = 0; i < rowColumns.length; i++) {
+            int column = 0;
+
+            if (i < fields.size() && !fields.isBlank(i)) {
+                long hash = fields.hash64(i);
+
+                fingerprint += Hashing.mix(labelHashes[i] ^ hash);
+                column = (int) (hash >>> 32);
+
+                // 0 is kept for blank values.
+                if (column == 0) {
+                    column = 1;
+                }
+            }
+
+            rowColumns[i] = column;
+        }
+
+        return fingerprint;
+    }
+
+    public static long[] labelHashes(List<String> labels) {
+        return labels.stream().mapToLong(Hashing::hash64).toArray();
+    }
+
+    public String getKeyLabel() {
+        return keyLabel;
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * The number of rows in the snapshot (one per key).
+     *
+     * @return
+     */
+    public int getRows() {
+        return keys.size();
+    }
+
+    /**
+     * The number of rows of the snapshot that were dropped because an earlier row had the same key.
+     *
+     * @return
+     */
+    public int getDuplicateKeys() {
+        return duplicateKeys;
+    }
+
+    /**
+     * The number of rows compare() skipped because an earlier row of the new load file had the same key.
+     *
+     * @return
+     */
+    public int getComparedDuplicateKeys() {
+        return comparedDuplicateKeys;
+    }
+
+    public Set<String> getInsertedKeys() {
+        return inserted;
+    }
+
+    /**
+     * The keys of the snapshot that compare() has not seen, in snapshot order.
+     *
+     * @return
+     */
+    public List<String> getDeletedKeys() {
+        List<String> deleted = new ArrayList<>();
+
+        for (int row = seen.nextClearBit(0); row < keys.size(); row = seen.nextClearBit(row + 1)) {
+            deleted.add(keys.get(row));
+        }
+
+        return deleted;
+    }
+
+    /**
+     * The modified keys with the labels of their changed columns.
+     *
+     * @return
+     */
+    public Map<String, List<String>> getModifiedKeys() {
+        return modified;
+    }
+
+    /**
+     * The number of modified rows per changed column label.
+     *
+     * @return
+     */
+    public Map<String, Integer> getModifiedColumns() {
+        return modifiedColumns;
+    }
+
+    /**
+     * Writes a snapshot one row at a time.  The rows are written to a temporary file that only replaces the snapshot
+     * when finish() is called, so a failed run leaves the previous snapshot as it was.
+     */
+    public static class Writer implements Closeable {
+        private final Path path;
+
+        private final Path temporary;
+
+        private final DataOutputStream out;
+
+        private boolean finished = false;
+
+        public Writer(Path path, String keyLabel, List<String> labels) throws IOException {
+            this.path = path;
+            this.temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16));
+
+            out.writeInt(MAGIC);
+            out.writeUTF(keyLabel);
+            out.writeInt(labels.size());
+
+            for (String label : labels) {
+                out.writeUTF(label);
+            }
+        }
+
+        public void add(String key, long fingerprint, int[] rowColumns) throws IOException {
+            out.writeBoolean(true);
+            out.writeUTF(key);
+            out.writeLong(fingerprint);
+
+            for (int column : rowColumns) {
+                out.writeInt(column);
+            }
+        }
+
+        /**
+         * Ends the snapshot and moves it to its path.
+         *
+         * @throws IOException
+         */
+        public void finish() throws IOException {
+            out.writeBoolean(false);
+            out.close();
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import com.rationalenterprise.mediadiff.metrics.Phase;
+import com.rationalenterprise.mediadiff.service.LoadFileService;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The volumes that make up one logical load file.
+ *
+ * A path option can name a single file, a directory (every file with one of the given extensions, in name order) or a
+ * glob in the last path segment (eg: "/productions/PROD001/DATA/VOL*.dat").  Volumes are read as if they were one
+ * file: the header of the first volume followed by the rows of every volume.
+ */
+public class VolumeSet {
+    public static final String[] LOAD_FILE_EXTENSIONS = {".dat"};
+
+    public static final String[] JSON_EXTENSIONS = {".json", ".jsonl", ".ndjson"};
+
+    private final Path path;
+
+    private final List<Path> volumes;
+
+    private VolumeSet(Path path, List<Path> volumes) {
+        this.path = path;
+        this.volumes = Collections.unmodifiableList(volumes);
+    }
+
+    /**
+     * Resolves a file, directory or glob to its volumes.  The set is empty when nothing matches.
+     *
+     * @param path
+     * @param extensions Used when path is a directory.
+     * @return
+     * @throws IOException
+     */
+    public static VolumeSet resolve(Path path, String... extensions) throws IOException {
+        List<Path> volumes = new ArrayList<>();
+
+        if (path == null) {
+            return new VolumeSet(null, volumes);
+        }
+
+        File file = path.toFile();
+
+        if (file.isFile()) {
+            volumes.add(path);
+        } else if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                if (child.isFile() && hasExtension(child.getName(), extensions)) {
+                    volumes.add(child.toPath());
+                }
+            }
+        } else if (path.getFileName() != null && isGlob(path.getFileName().toString())) {
+            Path parent = path.toAbsolutePath().getParent();
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName());
+
+            if (parent != null && parent.toFile().isDirectory()) {
+                for (File child : parent.toFile().listFiles()) {
+                    if (child.isFile() && matcher.matches(child.toPath().getFileName())) {
+                        volumes.add(child.toPath());
+                    }
+                }
+            }
+        }
+
+        volumes.sort((p1, p2) -> {
+            int compareTo = p1.getFileName().toString().compareToIgnoreCase(p2.getFileName().toString());
+
+            if (compareTo == 0) {
+                compareTo = p1.getFileName().toString().compareTo(p2.getFileName().toString());
+            }
+
+            return compareTo;
+        });
+
+        return new VolumeSet(path, volumes);
+    }
+
+    private static boolean hasExtension(String name, String... extensions) {
+        for (String extension : extensions) {
+            if (name.toLowerCase().endsWith(extension)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isGlob(String name) {
+        return name.contains("*") || name.contains("?") || name.contains("[") || name.contains("{");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public List<Path> getVolumes() {
+        return volumes;
+    }
+
+    public boolean isEmpty() {
+        return volumes.isEmpty();
+    }
+
+    public boolean isMultiVolume() {
+        return volumes.size() > 1;
+    }
+
+    /**
+     * Compares the header line of every volume with the header of the first volume.
+     *
+     * @return A description of each volume whose header does not match (empty when all match).
+     * @throws IOException
+     */
+    public List<String> findInconsistentHeaders() throws IOException {
+        List<String> inconsistencies = new ArrayList<>();
+        String firstHeader = null;
+
+        for (Path volume : volumes) {
+            String header;
+
+            try (BufferedReader br = Files.newBufferedReader(volume, StandardCharsets.UTF_8)) {
+                header = br.readLine();
+            }
+
+            if (header != null && !header.isEmpty() && header.charAt(0) == LoadFileService.UTF_8_BOM) {
+                header = header.substring(1);
+            }
+
+            if (firstHeader == null) {
+                firstHeader = header;
+            } else if (!firstHeader.equals(header)) {
+                inconsistencies.add(String.format("The header of %s does not match the header of %s", volume.getFileName(), volumes.get(0).getFileName()));
+            }
+        }
+
+        return inconsistencies;
+    }
+
+    /**
+     * Opens the volumes as one logical file.  Up to threads volumes are read ahead concurrently.
+     *
+     * @param threads
+     * @return
+     */
+    public LoadFileReader open(int threads) {
+        return open(threads, null);
+    }
+
+    /**
+     * Opens the volumes as one logical file and records the read in phase, which ends when the reader is closed.
+     *
+     * @param threads
+     * @param phase
+     * @return
+     */
+    public LoadFileReader open(int threads, Phase phase) {
+        return open(threads, phase, RecordReader.DEFAULT_MAX_FIELD_LENGTH);
+    }
+
+    /**
+     * Like open(threads, phase), cutting values (quoted or not) longer than maxFieldLength characters.
+     *
+     * @param threads
+     * @param phase
+     * @param maxFieldLength
+     * @return
+     */
+    public LoadFileReader open(int threads, Phase phase, int maxFieldLength) {
+        return new LoadFileReader(volumes, threads, phase, maxFieldLength);
+    }
+
+    /**
+     * Opens the volumes as one logical file of undecoded rows (see RawLoadFileReader) and records the read in phase,
+     * which ends when the reader is closed.
+     *
+     * @param phase
+     * @return
+     */
+    public RawLoadFileReader openRaw(Phase phase) {
+        return openRaw(phase, RecordReader.DEFAULT_MAX_FIELD_LENGTH);
+    }
+
+    /**
+     * Like openRaw(phase), cutting values (quoted or not) longer than maxFieldLength characters.
+     *
+     * @param phase
+     * @param maxFieldLength
+     * @return
+     */
+    public RawLoadFileReader openRaw(Phase phase, int maxFieldLength) {
+        return new RawLoadFileReader(volumes, phase, maxFieldLength);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(path);
+    }
+}
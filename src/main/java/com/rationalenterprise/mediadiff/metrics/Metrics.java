@@ -0,0 +1,209 @@
+package com.rationalenterprise.mediadiff.metrics;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Phase timings and throughput for one command run.  Phases are listed in the order they ended, which for phases that
+ * ran concurrently (eg: reading --path-1 and --path-2) is the order they finished.
+ *
+ * Every Phase is also a JFR event, so the same names show up in a flight recording.
+ *
+ * Memory and GC numbers are only collected when the stats are going to be reported, which keeps the management beans
+ * off the startup path of short commands.
+ */
+public class Metrics {
+    private static final double MEGABYTE = 1024 * 1024;
+
+    private final String command;
+
+    private final boolean collectMemory;
+
+    private final long startNanos = System.nanoTime();
+
+    private final long startGcMillis;
+
+    private final long startGcCount;
+
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * @param command
+     * @param collectMemory Collect the peak heap and GC numbers (ie: --stats or --stats-json was given).
+     */
+    public Metrics(String command, boolean collectMemory) {
+        this.command = command;
+        this.collectMemory = collectMemory;
+        this.startGcMillis = gcMillis();
+        this.startGcCount = gcCount();
+
+        if (collectMemory) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a phase.  Use it in a try-with-resources block.
+     *
+     * @param name
+     * @return
+     */
+    public Phase start(String name) {
+        return new Phase(this, name);
+    }
+
+    synchronized void ended(Phase phase) {
+        phases.add(phase);
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+
+    /**
+     * Prints the stats when print is set and writes them to jsonPath when it is not null.
+     *
+     * @param print
+     * @param jsonPath
+     * @throws IOException
+     */
+    public void report(boolean print, Path jsonPath) throws IOException {
+        if (print) {
+            print();
+        }
+
+        if (jsonPath != null) {
+            writeJson(jsonPath);
+        }
+    }
+
+    /**
+     * Prints the phase table followed by the totals for the run.
+     */
+    public void print() {
+        long nanos = System.nanoTime() - startNanos;
+
+        System.out.println(String.format("\nStats for %s:", command));
+        System.out.println(String.format("%-40s %10s %12s %10s %12s %12s %10s %8s", "Phase", "Time (s)", "Rows", "Files",
+                "MB", "Rows/s", "MB/s", "GC (ms)"));
+
+        for (Phase phase : getPhases()) {
+            System.out.println(String.format("%-40s %10.3f %12d %10d %12.1f %12.0f %10.1f %8d", phase.getName(), seconds(phase.getNanos()),
+                    phase.getRows(), phase.getFiles(), phase.getBytes() / MEGABYTE, perSecond(phase.getRows(), phase.getNanos()),
+                    perSecond(phase.getBytes() / MEGABYTE, phase.getNanos()), phase.getGcMillis()));
+        }
+
+        System.out.println(String.format("Total time: %.3f s, peak heap: %.1f MB, GC: %s ms in %s collections", seconds(nanos),
+                peakHeapBytes() / MEGABYTE, gcMillis() - startGcMillis, gcCount() - startGcCount));
+    }
+
+    /**
+     * Writes the same numbers as print() as a JSON object.
+     *
+     * @param path
+     * @throws IOException
+     */
+    public void writeJson(Path path) throws IOException {
+        long nanos = System.nanoTime() - startNanos;
+        Map<String, Object> run = new LinkedHashMap<>();
+        List<Map<String, Object>> phaseList = new ArrayList<>();
+
+        for (Phase phase : getPhases()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("name", phase.getName());
+            values.put("wallTimeMillis", phase.getNanos() / 1_000_000);
+            values.put("rows", phase.getRows());
+            values.put("files", phase.getFiles());
+            values.put("bytes", phase.getBytes());
+            values.put("rowsPerSecond", perSecond(phase.getRows(), phase.getNanos()));
+            values.put("megabytesPerSecond", perSecond(phase.getBytes() / MEGABYTE, phase.getNanos()));
+            values.put("gcTimeMillis", phase.getGcMillis());
+            phaseList.add(values);
+        }
+
+        run.put("command", command);
+        run.put("wallTimeMillis", nanos / 1_000_000);
+        run.put("peakHeapBytes", peakHeapBytes());
+        run.put("gcTimeMillis", gcMillis() - startGcMillis);
+        run.put("gcCount", gcCount() - startGcCount);
+        run.put("phases", phaseList);
+
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(run, writer);
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static double perSecond(double count, long nanos) {
+        return nanos == 0 ? 0 : count / seconds(nanos);
+    }
+
+    /**
+     * The sum of the peak usage of the heap pools since this run started.
+     *
+     * @return
+     */
+    long peakHeapBytes() {
+        long peak = 0;
+
+        if (!collectMemory) {
+            return peak;
+        }
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peak;
+    }
+
+    long gcMillis() {
+        long millis = 0;
+
+        if (!collectMemory) {
+            return millis;
+        }
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+
+        return millis;
+    }
+
+    long gcCount() {
+        long count = 0;
+
+        if (!collectMemory) {
+            return count;
+        }
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+
+        return count;
+    }
+}
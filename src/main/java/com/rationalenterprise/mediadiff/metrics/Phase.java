@@ -0,0 +1,116 @@
+package com.rationalenterprise.mediadiff.metrics;
+
+import jdk.jfr.FlightRecorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One timed unit of work (eg: reading --path-1 or hashing a directory).  Counters may be updated from any thread.
+ * The phase ends when it is closed; closing it again has no effect.
+ */
+public class Phase implements AutoCloseable {
+    private final Metrics metrics;
+
+    private final String name;
+
+    /**
+     * Null unless JFR was running when the phase started.  Creating the event otherwise loads most of jdk.jfr.
+     */
+    private final PhaseEvent event = FlightRecorder.isInitialized() ? new PhaseEvent() : null;
+
+    private final long startNanos = System.nanoTime();
+
+    private final long startGcMillis;
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder files = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    private long endNanos = -1;
+
+    private long gcMillis;
+
+    Phase(Metrics metrics, String name) {
+        this.metrics = metrics;
+        this.name = name;
+        this.startGcMillis = metrics.gcMillis();
+
+        if (event != null) {
+            event.begin();
+        }
+    }
+
+    public void addRows(long count) {
+        rows.add(count);
+    }
+
+    public void addFiles(long count) {
+        files.add(count);
+    }
+
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getFiles() {
+        return files.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Wall time in nanoseconds, up to now when the phase has not ended.
+     *
+     * @return
+     */
+    public synchronized long getNanos() {
+        return (endNanos == -1 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    /**
+     * GC time while the phase ran.  Collections are not per thread, so concurrent phases see the same collections.
+     *
+     * @return
+     */
+    public synchronized long getGcMillis() {
+        return endNanos == -1 ? metrics.gcMillis() - startGcMillis : gcMillis;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (endNanos != -1) {
+                return;
+            }
+
+            endNanos = System.nanoTime();
+            gcMillis = metrics.gcMillis() - startGcMillis;
+        }
+
+        if (event != null) {
+            event.end();
+        }
+
+        if (event != null && event.shouldCommit()) {
+            event.name = name;
+            event.rows = getRows();
+            event.files = getFiles();
+            event.bytes = getBytes();
+            event.commit();
+        }
+
+        metrics.ended(this);
+    }
+}
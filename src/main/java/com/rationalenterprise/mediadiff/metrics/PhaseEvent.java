@@ -0,0 +1,30 @@
+package com.rationalenterprise.mediadiff.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning one Phase, so a recording (eg: -XX:StartFlightRecording) can be lined up with the work being
+ * done.  The event is only recorded when JFR is running.
+ */
+@Name("com.rationalenterprise.mediadiff.Phase")
+@Label("MediaDiff Phase")
+@Category("MediaDiff")
+@Description("One phase of a mediaDiff command")
+class PhaseEvent extends jdk.jfr.Event {
+    @Label("Name")
+    String name;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Files")
+    long files;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,204 @@
+package com.rationalenterprise.mediadiff.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds any number of substrings in UTF-8 bytes in one pass with an Aho-Corasick automaton, so the cost of a search
+ * depends on the length of the text and not on the number of terms.
+ *
+ * The terms are matched on their UTF-8 encodings, like String.contains() on the decoded text (a whole encoded
+ * character can only match a whole encoded character).  The automaton is compiled to a transition table over the
+ * bytes that occur in the terms (every other byte goes back to the start), so a byte of text costs one table lookup.
+ * The table has a row per byte of the terms, so it uses about 4 bytes per byte of the terms per distinct byte in them.
+ * An instance is immutable and can be shared between threads.
+ */
+public class AhoCorasick {
+    private final List<String> terms;
+
+    /**
+     * The class of each byte value: 0 for the bytes that are in no term.
+     */
+    private final int[] byteClasses = new int[256];
+
+    private final int classes;
+
+    /**
+     * The next state for each state and byte class (state * classes + class).
+     */
+    private final int[] transitions;
+
+    /**
+     * The term that ends at each state, or -1.
+     */
+    private final int[] stateTerms;
+
+    /**
+     * The nearest state on each state's failure chain where a term ends, or -1.
+     */
+    private final int[] outputLinks;
+
+    /**
+     * Builds the automaton of the terms, which must be distinct and not empty.
+     *
+     * @param terms
+     */
+    public AhoCorasick(List<String> terms) {
+        this.terms = List.copyOf(terms);
+
+        byte[][] encodedTerms = new byte[terms.size()][];
+        long maxStates = 1;
+
+        for (int i = 0; i < encodedTerms.length; i++) {
+            encodedTerms[i] = terms.get(i).getBytes(StandardCharsets.UTF_8);
+
+            if (encodedTerms[i].length == 0) {
+                throw new IllegalArgumentException("terms must not be empty");
+            }
+
+            maxStates += encodedTerms[i].length;
+
+            for (byte b : encodedTerms[i]) {
+                byteClasses[b & 0xFF] = -1;
+            }
+        }
+
+        int classCount = 1;
+
+        for (int i = 0; i < byteClasses.length; i++) {
+            if (byteClasses[i] == -1) {
+                byteClasses[i] = classCount++;
+            }
+        }
+
+        if (maxStates * classCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("terms are too long: " + maxStates + " bytes");
+        }
+
+        this.classes = classCount;
+
+        // The trie: -1 for the transitions that are filled in from the failure links below.
+        int[] transitions = new int[(int) maxStates * classes];
+        int[] stateTerms = new int[(int) maxStates];
+        int states = 1;
+
+        Arrays.fill(transitions, -1);
+        Arrays.fill(stateTerms, -1);
+
+        for (int i = 0; i < encodedTerms.length; i++) {
+            int state = 0;
+
+            for (byte b : encodedTerms[i]) {
+                int transition = state * classes + byteClasses[b & 0xFF];
+
+                if (transitions[transition] == -1) {
+                    transitions[transition] = states++;
+                }
+
+                state = transitions[transition];
+            }
+
+            stateTerms[state] = i;
+        }
+
+        // Breadth first, so the failure state of a state is complete before its children are.
+        int[] failures = new int[states];
+        int[] outputLinks = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+
+        outputLinks[0] = -1;
+
+        for (int c = 0; c < classes; c++) {
+            int next = transitions[c];
+
+            if (next == -1) {
+                transitions[c] = 0;
+            } else {
+                failures[next] = 0;
+                outputLinks[next] = -1;
+                queue[tail++] = next;
+            }
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+
+            for (int c = 0; c < classes; c++) {
+                int transition = state * classes + c;
+                int next = transitions[transition];
+                int fallback = transitions[failures[state] * classes + c];
+
+                if (next == -1) {
+                    transitions[transition] = fallback;
+                } else {
+                    failures[next] = fallback;
+                    outputLinks[next] = stateTerms[fallback] != -1 ? fallback : outputLinks[fallback];
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(transitions, states * classes);
+        this.stateTerms = Arrays.copyOf(stateTerms, states);
+        this.outputLinks = outputLinks;
+    }
+
+    /**
+     * Whether any term occurs in bytes[from, to).  Stops at the first match.
+     *
+     * @param bytes
+     * @param from
+     * @param to
+     * @return
+     */
+    public boolean contains(byte[] bytes, int from, int to) {
+        int state = 0;
+
+        for (int i = from; i < to; i++) {
+            state = transitions[state * classes + byteClasses[bytes[i] & 0xFF]];
+
+            if (stateTerms[state] != -1 || outputLinks[state] != -1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Passes the index of the term of every occurrence in bytes[from, to) to the consumer, in the order the
+     * occurrences end.
+     *
+     * @param bytes
+     * @param from
+     * @param to
+     * @param consumer
+     */
+    public void search(byte[] bytes, int from, int to, IntConsumer consumer) {
+        int state = 0;
+
+        for (int i = from; i < to; i++) {
+            state = transitions[state * classes + byteClasses[bytes[i] & 0xFF]];
+
+            if (stateTerms[state] != -1) {
+                consumer.accept(stateTerms[state]);
+            }
+
+            for (int output = outputLinks[state]; output != -1; output = outputLinks[output]) {
+                consumer.accept(stateTerms[output]);
+            }
+        }
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    public String getTerm(int term) {
+        return terms.get(term);
+    }
+}
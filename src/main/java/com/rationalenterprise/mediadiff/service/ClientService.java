@@ -0,0 +1,35 @@
+package com.rationalenterprise.mediadiff.service;
+
+import com.rationalenterprise.mediadiff.daemon.DaemonClient;
+import com.rationalenterprise.mediadiff.daemon.Protocol;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(name = "client", description = "Run a command in the daemon started with serve (eg: client loadFile --path-1 a.dat --path-2 b.dat)")
+public class ClientService implements Callable<Integer> {
+    @CommandLine.Spec
+    CommandLine.Model.CommandSpec spec;
+
+    @CommandLine.Option(names = "--socket", description = "The daemon's Unix domain socket (defaults to mediadiff-USER.sock in the temporary directory).")
+    private Path socket = Protocol.defaultSocket();
+
+    @CommandLine.Option(names = "--shutdown", description = "Stop the daemon.")
+    private boolean shutdown;
+
+    @CommandLine.Parameters(description = "The command and its options.")
+    private List<String> arguments = new ArrayList<>();
+
+    @Override
+    public Integer call() throws IOException {
+        if (!shutdown && arguments.isEmpty()) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Specify a command to run or --shutdown");
+        }
+
+        return new DaemonClient(socket).run(shutdown ? null : arguments, System.out, System.err);
+    }
+}
@@ -1,5 +1,16 @@
 package com.rationalenterprise.mediadiff.service;
 
+import com.rationalenterprise.mediadiff.cache.FileCache;
+import com.rationalenterprise.mediadiff.compare.ArchiveIndex;
+import com.rationalenterprise.mediadiff.compare.CountMatrix;
+import com.rationalenterprise.mediadiff.compare.NearDuplicateIndex;
+import com.rationalenterprise.mediadiff.compare.TextDiff;
+import com.rationalenterprise.mediadiff.compare.TextNormalizer;
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+import com.rationalenterprise.mediadiff.metrics.Metrics;
+import com.rationalenterprise.mediadiff.metrics.Phase;
+import com.rationalenterprise.mediadiff.sketch.MinHashSignature;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Spec;
@@ -8,17 +19,26 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Model.CommandSpec;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Command(name = "directory", description = "Diff directories")
 public class DirectoryService implements Callable<Integer> {
     public static String EXTRACTED_TEXT_EXTENSION = "_extracted.txt";
 
+    /**
+     * The most deleted plus inserted lines --diff-text searches for per pair of files.
+     */
+    private static final int MAX_DIFF_EDITS = 1000;
+
     @Spec
     CommandSpec spec;
 
@@ -44,11 +64,60 @@ public class DirectoryService implements Callable<Integer> {
     @Option(names = {"--full-comparison"}, description = "Check if directories are equivalent by checking: subdirectory, file name, and MD5, for all files in both directories.")
     boolean fullComparison;
 
+    @Option(names = {"--n-way"}, description = "Compare the directories of every --path at once: each file is hashed once, on --threads threads, into a matrix of the counts per directory of every file name and MD5.  Use --verbose to print the names and MD5s that differ.")
+    boolean nWay;
+
+    @Option(names = {"--path"}, description = "A directory for --n-way.  Repeat it for each input.")
+    List<Path> paths = new ArrayList<>();
+
     @Option(names = {"--verbose"}, description = "Verbose output option.")
     boolean verbose;
 
     @Option(names = {"--ignore-white-space-files"}, description = "Ignore files with white space only when using --MD5.")
     boolean ignoreWhiteSpaceFiles;
+
+    @Option(names = {"--fail-fast"}, description = "Only decide whether the directories are identical (subdirectory, file name and contents, like --full-comparison), stopping at the first difference.  Exits with 3 when they differ.")
+    boolean failFast;
+
+    @Option(names = {"--expand-zip"}, description = "Used with --MD5 or --full-comparison to compare the entries of ZIP archives as the files of a subdirectory named after the archive (eg: 001/DOC1.zip/mail/a.msg), read in place without extracting them.  Entries are hashed on --threads threads, one archive per thread, and with --full-comparison entries whose CRC32s or sizes in the archives' central directories differ are reported without being hashed.  --normalize-text, --diff-text and --near-duplicates skip entries.")
+    boolean expandZip;
+
+    @Option(names = {"--normalize-text"}, description = "Used with --MD5 or --full-comparison to also hash the extracted text files normalized (byte order mark, line endings, runs of spaces, trailing spaces and blank lines, Unicode composition) and report the files that differ only in white space or encoding.")
+    boolean normalizeText;
+
+    @Option(names = {"--diff-text"}, description = "Used with --full-comparison or --MD5 to diff the extracted text files that have the same name but different MD5s, on --threads threads: the first differing byte, line and column, the number of lines deleted and inserted and the first hunk.")
+    boolean diffText;
+
+    @Option(names = {"--diff-text-max-bytes"}, description = "The largest extracted text file whose lines --diff-text compares (default 16777216).  Only the first differing byte of larger files is reported.")
+    long diffTextMaxBytes = 16 * 1024 * 1024;
+
+    @Option(names = {"--near-duplicates"}, description = "Used with --MD5 to pair each file that exists in --path-1 only with the most similar file that exists in --path-2 only, with the estimated similarity of their contents.  The files are signed with MinHash on --threads threads and indexed with LSH, so the pairs are found without comparing every file with every other.")
+    boolean nearDuplicates;
+
+    @Option(names = {"--near-duplicate-threshold"}, description = "The least similarity (0 to 1) reported by --near-duplicates (default 0.5).")
+    double nearDuplicateThreshold = 0.5;
+
+    @Option(names = {"--threads"}, description = "Number of threads used to compare files with --fail-fast and --diff-text, to sign files with --near-duplicates and to hash files with --n-way (defaults to the number of processors).")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = {"--stats"}, description = "Print the time, files, bytes and throughput of each phase, the peak heap and the GC time.")
+    boolean stats;
+
+    @Option(names = {"--stats-json"}, description = "Write the --stats numbers to this file as JSON.")
+    Path statsJson;
+
+    private Metrics metrics;
+
+    /**
+     * The archives of --path-1 and --path-2 with --expand-zip.
+     */
+    private final Map<Path, ArchiveIndex> archives = new HashMap<>();
+
+    /**
+     * The MD5 and normalized MD5 of the extracted text files read with --normalize-text (see getTextMD5s()).
+     */
+    private final Map<String, String[]> textMD5s = new ConcurrentHashMap<>();
+
     /**
      * Diff directories.
      *
@@ -57,6 +126,28 @@ public class DirectoryService implements Callable<Integer> {
      */
     @Override
     public Integer call() throws IOException {
+        metrics = new Metrics("directory", stats || statsJson != null);
+
+        if (nWay) {
+            if (paths.size() < 2) {
+                throw new ParameterException(spec.commandLine(), "Invalid option: --n-way needs at least two --path");
+            }
+
+            for (Path path : paths) {
+                if (!path.toFile().isDirectory()) {
+                    throw new ParameterException(spec.commandLine(), String.format("Invalid option: --path %s must be a directory", path));
+                }
+            }
+
+            try {
+                nWayComparison();
+            } finally {
+                metrics.report(stats, statsJson);
+            }
+
+            return ExitCode.OK;
+        }
+
         if (!path1.toFile().exists()) {
             throw new ParameterException(spec.commandLine(), String.format("Invalid option: --path-1 does not exist", path1.toString()));
         }
@@ -73,17 +164,253 @@ public class DirectoryService implements Callable<Integer> {
             throw new ParameterException(spec.commandLine(), String.format("Invalid option: --path-2 must be a directory", path2.toString()));
         }
 
-        if (inventory) {
-            inventory();
-        } else if (checkMD5Only) {
-            checkMD5Only();
-        } else if (nativesWithoutText) {
-            findNativesWithoutText();
-        } else if (fullComparison) {
-            fullComparison();
+        int exitCode = ExitCode.OK;
+
+        try {
+            if (failFast) {
+                exitCode = failFast();
+            } else if (inventory) {
+                inventory();
+            } else if (checkMD5Only) {
+                checkMD5Only();
+            } else if (nativesWithoutText) {
+                findNativesWithoutText();
+            } else if (fullComparison) {
+                fullComparison();
+            }
+        } finally {
+            metrics.report(stats, statsJson);
+        }
+
+        return exitCode;
+    }
+
+    /**
+     * Stops at the first difference.  The cheap checks run first: the file counts, the relative paths, then the file
+     * sizes.  Only then are the contents compared, on --threads threads, until one pair of files differs.  Nested
+     * directories are compared entry by entry, and a directory on one side and a file on the other differ.
+     *
+     * @return ExitCode.OK when the directories are identical, otherwise ExitCode.DIFFERENT.
+     * @throws IOException
+     */
+    private int failFast() throws IOException {
+        List<String> d1Names = getSortedRelativePaths(path1);
+        List<String> d2Names = getSortedRelativePaths(path2);
+        String difference = null;
+
+        if (d1Names.size() != d2Names.size()) {
+            difference = String.format("--path-1 has %s files, --path-2 has %s files", d1Names.size(), d2Names.size());
+        }
+
+        for (int i = 0; difference == null && i < d1Names.size(); i++) {
+            if (!d1Names.get(i).equals(d2Names.get(i))) {
+                difference = String.format("file names differ: --path-1 %s, --path-2 %s", d1Names.get(i), d2Names.get(i));
+            }
+        }
+
+        for (int i = 0; difference == null && i < d1Names.size(); i++) {
+            File file1 = new File(path1 + File.separator + d1Names.get(i));
+            File file2 = new File(path2 + File.separator + d1Names.get(i));
+
+            if (file1.isDirectory() || file2.isDirectory()) {
+                difference = file1.isDirectory() != file2.isDirectory() ? directoryDifference(d1Names.get(i), file1.isDirectory()) : null;
+            } else if (file1.length() != file2.length()) {
+                difference = String.format("%s sizes differ: %s, %s", d1Names.get(i), file1.length(), file2.length());
+            }
+        }
+
+        if (difference == null) {
+            try (Phase phase = metrics.start("Compare contents")) {
+                List<Callable<String>> tasks = new ArrayList<>();
+
+                for (List<String> chunk : Parallel.chunks(threads, d1Names)) {
+                    tasks.add(() -> findFirstMismatch(chunk, phase));
+                }
+
+                difference = Parallel.firstNonNull(threads, tasks);
+            }
+        }
+
+        if (difference != null) {
+            System.out.println("Different: " + difference);
+
+            return ExitCode.DIFFERENT;
+        }
+
+        System.out.println("Identical.");
+
+        return ExitCode.OK;
+    }
+
+    /**
+     * Returns a description of the first file in names whose contents differ between the directories, or null.  Stops
+     * early (returning null) when the thread is interrupted because another chunk found a difference.
+     */
+    private String findFirstMismatch(List<String> names, Phase phase) throws IOException {
+        for (String name : names) {
+            String difference = findMismatch(name, phase);
+
+            if (difference != null || Thread.currentThread().isInterrupted()) {
+                return difference;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a description of how the file at name differs between the directories, or null.  A nested directory,
+     * which the listing does not descend into, is compared entry by entry.
+     */
+    private String findMismatch(String name, Phase phase) throws IOException {
+        File file1 = new File(path1 + File.separator + name);
+        File file2 = new File(path2 + File.separator + name);
+
+        if (file1.isDirectory() != file2.isDirectory()) {
+            return directoryDifference(name, file1.isDirectory());
+        }
+
+        if (file1.isDirectory()) {
+            List<String> entries1 = listSorted(file1);
+            List<String> entries2 = listSorted(file2);
+
+            for (int i = 0; i < Math.max(entries1.size(), entries2.size()); i++) {
+                if (i >= entries1.size() || i >= entries2.size() || !entries1.get(i).equals(entries2.get(i))) {
+                    return String.format("%s directory entries differ: --path-1 %s, --path-2 %s", name,
+                            i < entries1.size() ? entries1.get(i) : "(none)", i < entries2.size() ? entries2.get(i) : "(none)");
+                }
+            }
+
+            for (String entry : entries1) {
+                String difference = findMismatch(name + File.separator + entry, phase);
+
+                if (difference != null || Thread.currentThread().isInterrupted()) {
+                    return difference;
+                }
+            }
+
+            return null;
+        }
+
+        if (file1.length() != file2.length()) {
+            return String.format("%s sizes differ: %s, %s", name, file1.length(), file2.length());
+        }
+
+        long mismatch = Files.mismatch(file1.toPath(), file2.toPath());
+
+        phase.addFiles(2);
+        phase.addBytes(2 * file1.length());
+
+        return mismatch == -1 ? null : String.format("%s contents differ at byte %s", name, mismatch);
+    }
+
+    private static List<String> listSorted(File directory) throws IOException {
+        String[] entries = directory.list();
+
+        if (entries == null) {
+            throw new IOException("Cannot list " + directory);
+        }
+
+        return sort(new ArrayList<>(Arrays.asList(entries)));
+    }
+
+    private static String directoryDifference(String name, boolean directory1) {
+        return String.format("%s is a directory in %s and a file in %s", name, directory1 ? "--path-1" : "--path-2", directory1 ? "--path-2" : "--path-1");
+    }
+
+    /**
+     * Compares every --path at once.  The files of all the directories are hashed together on --threads threads, each
+     * file once, and the names and MD5s are compared as matrices of the directories.
+     */
+    private void nWayComparison() throws IOException {
+        int inputs = paths.size();
+        List<List<String>> names = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+
+        for (Path path : paths) {
+            List<String> rootNames = getSortedRelativePaths(path);
+
+            names.add(rootNames);
+            rootNames.forEach(name -> files.add(path + File.separator + name));
+        }
+
+        List<String> hashes;
+
+        try (Phase phase = metrics.start("Hash")) {
+            hashes = Parallel.mapChunks(threads, files, file -> hash(file, phase));
+        }
+
+        CountMatrix nameCounts = new CountMatrix(inputs);
+        CountMatrix md5Counts = new CountMatrix(inputs);
+        Map<String, String[]> nameToHashes = new HashMap<>();
+        int file = 0;
+
+        System.out.println("Inputs:");
+
+        for (int i = 0; i < inputs; i++) {
+            System.out.println(String.format("[%s] %s: %s files", i + 1, paths.get(i), names.get(i).size()));
+
+            // The files of every input are hashed together, in the order of the inputs and their names.
+            for (String name : names.get(i)) {
+                String hash = hashes.get(file++);
+
+                nameCounts.add(i, name, 1);
+                md5Counts.add(i, hash, 1);
+                nameToHashes.computeIfAbsent(name, n -> new String[inputs])[i] = hash;
+            }
+        }
+
+        boolean passed = printMatrix("\nFiles not in every input", nameCounts);
+        List<String> differentContents = nameCounts.getKeys().stream()
+                .filter(name -> nameCounts.isUniform(name) && new HashSet<>(Arrays.asList(nameToHashes.get(name))).size() > 1)
+                .collect(Collectors.toList());
+
+        System.out.println(String.format("\nFiles in every input whose contents differ (%s):", differentContents.size()));
+
+        if (verbose) {
+            for (String name : differentContents) {
+                System.out.println(String.format("%s: %s", name, String.join(" | ", nameToHashes.get(name))));
+            }
+        }
+
+        passed &= differentContents.isEmpty();
+        passed &= printMatrix("\nMD5s whose counts differ", md5Counts);
+
+        if (passed) {
+            System.out.println("\nAll tests passed.");
+        } else {
+            System.out.println("\nTests complete.");
+        }
+    }
+
+    /**
+     * The MD5 (or white space key) of the file at path.
+     */
+    private String hash(String path, Phase phase) throws IOException {
+        String hash = getMd5OrWhiteSpaceKey(path);
+
+        phase.addFiles(1);
+        phase.addBytes(new File(path).length());
+
+        return hash;
+    }
+
+    /**
+     * Prints the number of keys whose counts differ by the inputs that have them (all of them with --verbose).
+     * Returns whether every key has the same count in every input.
+     */
+    private boolean printMatrix(String title, CountMatrix matrix) {
+        List<String> differentKeys = matrix.getDifferentKeys();
+
+        System.out.println(String.format("%s (%s of %s):", title, differentKeys.size(), matrix.size()));
+
+        matrix.formatPresencePatterns().forEach(line -> System.out.println("  " + line));
+
+        if (verbose) {
+            differentKeys.forEach(key -> System.out.println(matrix.format(key)));
         }
 
-        return 0;
+        return differentKeys.isEmpty();
     }
 
     private void findNativesWithoutText() {
@@ -222,18 +549,25 @@ public class DirectoryService implements Callable<Integer> {
         List<String> d1Paths = getSortedRelativePaths(path1);
         List<String> d2Paths = getSortedRelativePaths(path2);
 
+        if (expandZip) {
+            d1Paths = expandArchives(path1, d1Paths);
+            d2Paths = expandArchives(path2, d2Paths);
+        }
+
         System.out.println("--path-1 paths found: " + d1Paths.size());
         System.out.println("--path-2 paths found: " + d2Paths.size());
 
         LinkedHashMap<String, List<String>> d1HashToPaths = new LinkedHashMap<>();
         Map<String, String> d1NativeNameToPath = new HashMap<>();
+        Map<String, String> d1PathToNormalizedHash = new HashMap<>();
 
-        populateMD5ValidationMaps(path1, d1Paths, d1HashToPaths, d1NativeNameToPath);
+        populateMD5ValidationMaps(path1, d1Paths, d1HashToPaths, d1NativeNameToPath, d1PathToNormalizedHash);
 
         LinkedHashMap<String, List<String>> d2HashToPaths = new LinkedHashMap<>();
         Map<String, String> d2NativeNameToPath = new HashMap<>();
+        Map<String, String> d2PathToNormalizedHash = new HashMap<>();
 
-        populateMD5ValidationMaps(path2, d2Paths, d2HashToPaths, d2NativeNameToPath);
+        populateMD5ValidationMaps(path2, d2Paths, d2HashToPaths, d2NativeNameToPath, d2PathToNormalizedHash);
 
         List<String> d1Only = new ArrayList<>(d1HashToPaths.keySet());
         d1Only.removeAll(d2HashToPaths.keySet());
@@ -311,6 +645,18 @@ public class DirectoryService implements Callable<Integer> {
             System.out.println("\n" + nonMatchingDuplicateCounts);
         }
 
+        if (normalizeText) {
+            printNormalizedMatches(getPaths(d1HashToPaths, d1Only), d1PathToNormalizedHash, getPaths(d2HashToPaths, d2Only), d2PathToNormalizedHash);
+        }
+
+        if (diffText) {
+            printTextDiffs(getMismatchedTexts(d1HashToPaths, d2HashToPaths));
+        }
+
+        if (nearDuplicates) {
+            printNearDuplicates(getFilePaths(path1, getPaths(d1HashToPaths, d1Only)), getFilePaths(path2, getPaths(d2HashToPaths, d2Only)));
+        }
+
         if (passed) {
             System.out.println("\nAll tests passed.");
         } else {
@@ -393,32 +739,55 @@ public class DirectoryService implements Callable<Integer> {
      * @param paths
      * @param nativeNameToPath
      * @param hashToPaths
+     * @param pathToNormalizedHash the normalized MD5 of each extracted text file, with --normalize-text.
      * @throws IOException
      */
-    private void populateMD5ValidationMaps(Path root, List<String> paths, Map<String, List<String>> hashToPaths, Map<String, String> nativeNameToPath) throws IOException {
+    private void populateMD5ValidationMaps(Path root, List<String> paths, Map<String, List<String>> hashToPaths, Map<String, String> nativeNameToPath,
+                                           Map<String, String> pathToNormalizedHash) throws IOException {
         int count = 0;
 
-        for (String path : paths) {
-            count++;
+        try (Phase phase = metrics.start(String.format("Hash (%s)", optionName(root)))) {
+            ArchiveIndex index = archives.get(root);
 
-            if (count % 100 == 0) {
-                System.out.print(String.format("\rComputed hashes: %s of %s", count, paths.size()));
+            if (index != null) {
+                index.hash(paths.stream().filter(index::isEntry).collect(Collectors.toList()), threads, phase);
             }
 
-            // Put all native names in the nativeNameToPath map (don't put extracted text in it).
-            if (!path.endsWith(EXTRACTED_TEXT_EXTENSION)) {
-                int extensionIndex = path.lastIndexOf(".");
+            for (String path : paths) {
+                count++;
 
-                nativeNameToPath.put(extensionIndex == -1 ? path : path.substring(0, extensionIndex), path);
-            }
+                if (count % 100 == 0) {
+                    System.out.print(String.format("\rComputed hashes: %s of %s", count, paths.size()));
+                }
 
-            String hash = getMd5OrWhiteSpaceKey(root + File.separator + path);
+                // Put all native names in the nativeNameToPath map (don't put extracted text in it).
+                if (!path.endsWith(EXTRACTED_TEXT_EXTENSION)) {
+                    int extensionIndex = path.lastIndexOf(".");
 
-            if (!hashToPaths.containsKey(hash)) {
-                hashToPaths.put(hash, new ArrayList<>());
-            }
+                    nativeNameToPath.put(extensionIndex == -1 ? path : path.substring(0, extensionIndex), path);
+                }
+
+                String hash;
+
+                if (isArchiveEntry(root, path)) {
+                    hash = index.getMd5(path);
+                } else {
+                    hash = getMd5OrWhiteSpaceKey(root + File.separator + path);
+
+                    phase.addFiles(1);
+                    phase.addBytes(new File(root + File.separator + path).length());
+                }
+
+                if (!hashToPaths.containsKey(hash)) {
+                    hashToPaths.put(hash, new ArrayList<>());
+                }
 
-            hashToPaths.get(hash).add(path);
+                hashToPaths.get(hash).add(path);
+
+                if (normalizeText && path.endsWith(EXTRACTED_TEXT_EXTENSION) && !isArchiveEntry(root, path)) {
+                    pathToNormalizedHash.put(path, getNormalizedMD5(root + File.separator + path));
+                }
+            }
         }
 
         System.out.print("\rFinished computing hashes.                                              \n");
@@ -432,7 +801,8 @@ public class DirectoryService implements Callable<Integer> {
         String MD5 = "";
 
         if (file.getName().endsWith(EXTRACTED_TEXT_EXTENSION) && file.length() < 1000) {
-            String fileContents = Files.readString(file.toPath());
+            // Decoded leniently: text in another encoding (eg: UTF-16) is not white space only, and must not stop the check.
+            String fileContents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
 
             if (!fileContents.isEmpty() && fileContents.charAt(0) == LoadFileService.UTF_8_BOM) {
                 fileContents = fileContents.substring(1);
@@ -444,28 +814,73 @@ public class DirectoryService implements Callable<Integer> {
         }
 
         if (MD5.isEmpty()){
-            try (InputStream fileInputStream = new FileInputStream(path)) {
-                MD5 = DigestUtils.md5Hex(fileInputStream);
-            }
+            MD5 = getMD5(path);
         }
 
         return MD5;
     }
 
+    /**
+     * The file's MD5.  In the daemon the hash is cached until the file's size or modification time changes.  With
+     * --normalize-text the normalized MD5 of an extracted text file is computed in the same read (see getTextMD5s()).
+     */
     private String getMD5(String path) throws IOException {
-        try (InputStream fileInputStream = new FileInputStream(path)) {
-            return DigestUtils.md5Hex(fileInputStream);
+        if (normalizeText && path.endsWith(EXTRACTED_TEXT_EXTENSION)) {
+            return getTextMD5s(path)[0];
+        }
+
+        return FileCache.shared().get("md5", Path.of(path), () -> {
+            try (InputStream fileInputStream = new FileInputStream(path)) {
+                return DigestUtils.md5Hex(fileInputStream);
+            }
+        }, hash -> 200L + path.length());
+    }
+
+    /**
+     * The MD5 of the text file normalized by TextNormalizer.
+     */
+    private String getNormalizedMD5(String path) throws IOException {
+        return getTextMD5s(path)[1];
+    }
+
+    /**
+     * The MD5 and the normalized MD5 of the text file, from one read: the bytes TextNormalizer reads are digested on
+     * the way.  They are kept together for the rest of the run (and cached like getMD5() in the daemon), so the text is
+     * read once whichever is asked for first.
+     */
+    private String[] getTextMD5s(String path) throws IOException {
+        String[] md5s = textMD5s.get(path);
+
+        if (md5s == null) {
+            md5s = FileCache.shared().get("md5+normalized-md5", Path.of(path), () -> {
+                MessageDigest digest = DigestUtils.getMd5Digest();
+
+                try (InputStream in = new DigestInputStream(new FileInputStream(path), digest)) {
+                    String normalizedMD5 = TextNormalizer.md5(in);
+
+                    return new String[] {Hex.encodeHexString(digest.digest()), normalizedMD5};
+                }
+            }, hashes -> 400L + path.length());
+
+            textMD5s.put(path, md5s);
         }
+
+        return md5s;
     }
 
     /**
      * Check the contents to one subdirectory deep.  The subdirectory and file name and hash of the file are required to match to pass.
      * Missing files and files that don't pass will be logged.
      */
-    private void fullComparison() {
+    private void fullComparison() throws IOException {
         List<String> d1Names = getSortedRelativePaths(path1);
         List<String> d2Names = getSortedRelativePaths(path2);
 
+        if (expandZip) {
+            d1Names = expandArchives(path1, d1Names);
+            d2Names = expandArchives(path2, d2Names);
+        }
+
         System.out.println("--path-1 file count: " + d1Names.size());
         System.out.println("--path-2 file count: " + d2Names.size());
 
@@ -500,19 +915,51 @@ public class DirectoryService implements Callable<Integer> {
         }
 
         List<String> nonMatching = new ArrayList<>();
+        List<String> mismatchedTexts = new ArrayList<>();
+        int normalizedMatches = 0;
 
-        for (String name : d1AndD2Intersection) {
-            try (InputStream file1 = new FileInputStream(path1 + File.separator + name);
-                 InputStream file2 = new FileInputStream(path2 + File.separator + name)) {
+        try (Phase phase = metrics.start("Hash intersection")) {
+            if (expandZip) {
+                hashArchiveEntries(d1AndD2Intersection, phase);
+            }
+
+            for (String name : d1AndD2Intersection) {
+                try {
+                    boolean entry1 = isArchiveEntry(path1, name);
+                    boolean entry2 = isArchiveEntry(path2, name);
+
+                    if (entry1 && entry2 && !archives.get(path1).mayBeEqual(name, archives.get(path2), name)) {
+                        nonMatching.add(String.format("%s CRC32s or sizes do not match: %08x (%s bytes), %08x (%s bytes)", name,
+                                archives.get(path1).getCrc(name), archives.get(path1).getSize(name), archives.get(path2).getCrc(name), archives.get(path2).getSize(name)));
 
-                String hash1 = DigestUtils.md5Hex(file1);
-                String hash2 = DigestUtils.md5Hex(file2);
+                        continue;
+                    }
 
-                if (!hash1.equals(hash2)) {
-                    nonMatching.add(String.format("%s MD5 hashes do not match: %s, %s", name, hash1, hash2));
+                    String hash1 = entry1 ? archives.get(path1).getMd5(name) : getMD5(path1 + File.separator + name);
+                    String hash2 = entry2 ? archives.get(path2).getMd5(name) : getMD5(path2 + File.separator + name);
+
+                    phase.addFiles((entry1 ? 0 : 1) + (entry2 ? 0 : 1));
+                    phase.addBytes((entry1 ? 0 : new File(path1 + File.separator + name).length()) + (entry2 ? 0 : new File(path2 + File.separator + name).length()));
+
+                    if (!hash1.equals(hash2)) {
+                        String note = "";
+                        boolean files = !entry1 && !entry2;
+
+                        if (normalizeText && files && name.endsWith(EXTRACTED_TEXT_EXTENSION)
+                                && getNormalizedMD5(path1 + File.separator + name).equals(getNormalizedMD5(path2 + File.separator + name))) {
+                            note = " (differs only in white space or encoding)";
+                            normalizedMatches++;
+                        }
+
+                        nonMatching.add(String.format("%s MD5 hashes do not match: %s, %s%s", name, hash1, hash2, note));
+
+                        if (files && name.endsWith(EXTRACTED_TEXT_EXTENSION)) {
+                            mismatchedTexts.add(name);
+                        }
+                    }
+                } catch (IOException e) {
+                    // do something with the exception
                 }
-            } catch (IOException e) {
-                // do something with the exception
             }
         }
 
@@ -521,11 +968,19 @@ public class DirectoryService implements Callable<Integer> {
 
             System.out.println(String.format("\nDid not match %s: ", nonMatching.size()));
 
+            if (normalizeText) {
+                System.out.println(String.format("Differs only in white space or encoding: %s", normalizedMatches));
+            }
+
             if (verbose) {
                 System.out.println(nonMatching.stream().collect(Collectors.joining(", ")));
             }
         }
 
+        if (diffText) {
+            printTextDiffs(mismatchedTexts);
+        }
+
         if (passed) {
             System.out.println("\nAll tests passed.");
         } else {
@@ -533,6 +988,259 @@ public class DirectoryService implements Callable<Integer> {
         }
     }
 
+    /**
+     * Replaces the ZIP archives of names with their entries (see ArchiveIndex), sorted like getSortedRelativePaths().
+     * A file named like an archive that cannot be read as one stays a file.
+     */
+    private List<String> expandArchives(Path root, List<String> names) throws IOException {
+        ArchiveIndex index = new ArchiveIndex(root);
+        List<String> expanded = new ArrayList<>();
+
+        try (Phase phase = metrics.start(String.format("List archives (%s)", optionName(root)))) {
+            for (String name : names) {
+                List<String> entries = ArchiveIndex.isArchive(name) ? index.expand(name) : null;
+
+                if (entries == null) {
+                    expanded.add(name);
+                } else {
+                    for (String entry : entries) {
+                        if (!(nativeMd5 && entry.endsWith(EXTRACTED_TEXT_EXTENSION))) {
+                            expanded.add(entry);
+                            phase.addFiles(1);
+                        }
+                    }
+                }
+            }
+        }
+
+        archives.put(root, index);
+
+        return sort(expanded);
+    }
+
+    private boolean isArchiveEntry(Path root, String path) {
+        ArchiveIndex index = archives.get(root);
+
+        return index != null && index.isEntry(path);
+    }
+
+    /**
+     * The paths that are files, not archive entries.
+     */
+    private List<String> getFilePaths(Path root, List<String> paths) {
+        return paths.stream().filter(path -> !isArchiveEntry(root, path)).collect(Collectors.toList());
+    }
+
+    /**
+     * Hashes the archive entries of names on --threads threads, except the pairs of entries that differ by their
+     * CRC32s or sizes.
+     */
+    private void hashArchiveEntries(List<String> names, Phase phase) throws IOException {
+        List<String> d1Entries = new ArrayList<>();
+        List<String> d2Entries = new ArrayList<>();
+
+        for (String name : names) {
+            boolean entry1 = isArchiveEntry(path1, name);
+            boolean entry2 = isArchiveEntry(path2, name);
+
+            if (entry1 && entry2 && !archives.get(path1).mayBeEqual(name, archives.get(path2), name)) {
+                continue;
+            }
+
+            if (entry1) {
+                d1Entries.add(name);
+            }
+
+            if (entry2) {
+                d2Entries.add(name);
+            }
+        }
+
+        archives.get(path1).hash(d1Entries, threads, phase);
+        archives.get(path2).hash(d2Entries, threads, phase);
+    }
+
+    /**
+     * The paths of the files with the hashes, sorted.  Files keyed as white space only are left out.
+     */
+    private List<String> getPaths(Map<String, List<String>> hashToPaths, List<String> hashes) {
+        List<String> paths = new ArrayList<>();
+
+        for (String hash : hashes) {
+            if (!hash.equals("WHITE_SPACE_ONLY_EXTRACTED_TEXT")) {
+                paths.addAll(hashToPaths.get(hash));
+            }
+        }
+
+        Collections.sort(paths);
+
+        return paths;
+    }
+
+    /**
+     * Prints the extracted text files of --path-1 only whose normalized MD5 is the normalized MD5 of a text file of
+     * --path-2 only (the one with the same name, if it is one of them).
+     */
+    private void printNormalizedMatches(List<String> d1Paths, Map<String, String> d1PathToNormalizedHash, List<String> d2Paths, Map<String, String> d2PathToNormalizedHash) {
+        Map<String, List<String>> d2NormalizedHashToPaths = new HashMap<>();
+
+        for (String path : d2Paths) {
+            String normalizedHash = d2PathToNormalizedHash.get(path);
+
+            if (normalizedHash != null) {
+                d2NormalizedHashToPaths.computeIfAbsent(normalizedHash, hash -> new ArrayList<>()).add(path);
+            }
+        }
+
+        List<String> matches = new ArrayList<>();
+
+        for (String path : d1Paths) {
+            List<String> paths = d2NormalizedHashToPaths.get(d1PathToNormalizedHash.get(path));
+
+            if (paths != null) {
+                matches.add(String.format("%s, %s", path, paths.contains(path) ? path : paths.get(0)));
+            }
+        }
+
+        System.out.println(String.format("\nDiffers only in white space or encoding (%s):", matches.size()));
+
+        if (!matches.isEmpty()) {
+            System.out.println(String.join("\n", matches));
+        }
+    }
+
+    /**
+     * Prints the most similar --path-2 only file of each --path-1 only file (see NearDuplicateIndex), most similar
+     * first.
+     */
+    private void printNearDuplicates(List<String> d1Paths, List<String> d2Paths) throws IOException {
+        if (d1Paths.isEmpty() || d2Paths.isEmpty()) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        List<MinHashSignature> signatures;
+
+        d1Paths.forEach(name -> files.add(path1.resolve(name)));
+        d2Paths.forEach(name -> files.add(path2.resolve(name)));
+
+        try (Phase phase = metrics.start("Sign leftovers")) {
+            signatures = Parallel.mapChunks(threads, files, file -> sign(file, phase));
+        }
+
+        List<MinHashSignature> d1Signatures = signatures.subList(0, d1Paths.size());
+        NearDuplicateIndex d2Index = new NearDuplicateIndex();
+
+        signatures.subList(d1Paths.size(), signatures.size()).forEach(d2Index::add);
+
+        List<String> pairs = new ArrayList<>();
+        List<Double> similarities = new ArrayList<>();
+
+        for (int i = 0; i < d1Paths.size(); i++) {
+            int match = d2Index.findMostSimilar(d1Signatures.get(i), nearDuplicateThreshold);
+
+            if (match != -1) {
+                similarities.add(d1Signatures.get(i).similarity(d2Index.get(match)));
+                pairs.add(String.format("%s, %s", d1Paths.get(i), d2Paths.get(match)));
+            }
+        }
+
+        List<Integer> order = new ArrayList<>();
+
+        for (int i = 0; i < pairs.size(); i++) {
+            order.add(i);
+        }
+
+        // Stable, so equally similar pairs keep the order of the --path-1 paths.
+        order.sort((p1, p2) -> Double.compare(similarities.get(p2), similarities.get(p1)));
+
+        System.out.println(String.format("\nNear duplicates of --path-1 only files in --path-2 only files (%s of %s):", pairs.size(), d1Paths.size()));
+
+        for (int pair : order) {
+            System.out.println(String.format("%.2f %s", similarities.get(pair), pairs.get(pair)));
+        }
+    }
+
+    /**
+     * The MinHash signature of file.  In the daemon the signatures are cached until the file's size or modification
+     * time changes.
+     */
+    private static MinHashSignature sign(Path file, Phase phase) throws IOException {
+        MinHashSignature signature = FileCache.shared().get("minhash", file, () -> MinHashSignature.of(file),
+                s -> 800L + file.toString().length());
+
+        phase.addFiles(1);
+        phase.addBytes(Files.size(file));
+
+        return signature;
+    }
+
+    /**
+     * The extracted text files that have the same name in both directories but different MD5s, ordered like
+     * getSortedRelativePaths().  Files keyed as white space only (--ignore-white-space-files) are equal.
+     */
+    private List<String> getMismatchedTexts(Map<String, List<String>> d1HashToPaths, Map<String, List<String>> d2HashToPaths) {
+        Map<String, String> d2PathToHash = new HashMap<>();
+
+        d2HashToPaths.forEach((hash, paths) -> paths.forEach(path -> d2PathToHash.put(path, hash)));
+
+        List<String> mismatchedTexts = new ArrayList<>();
+
+        d1HashToPaths.forEach((hash, paths) -> {
+            for (String path : paths) {
+                String hash2 = d2PathToHash.get(path);
+
+                if (path.endsWith(EXTRACTED_TEXT_EXTENSION) && hash2 != null && !hash2.equals(hash)
+                        && !isArchiveEntry(path1, path) && !isArchiveEntry(path2, path)) {
+                    mismatchedTexts.add(path);
+                }
+            }
+        });
+
+        return sort(mismatchedTexts);
+    }
+
+    /**
+     * Diffs each pair of extracted text files on --threads threads (see TextDiff) and prints the summaries in order.
+     */
+    private void printTextDiffs(List<String> names) throws IOException {
+        if (names.isEmpty()) {
+            return;
+        }
+
+        List<Callable<List<String>>> tasks = new ArrayList<>();
+        List<List<String>> diffs;
+
+        try (Phase phase = metrics.start("Diff text")) {
+            for (String name : names) {
+                tasks.add(() -> {
+                    Path file1 = path1.resolve(name);
+                    Path file2 = path2.resolve(name);
+                    List<String> lines = TextDiff.diff(file1, file2, diffTextMaxBytes, MAX_DIFF_EDITS).format();
+
+                    phase.addFiles(2);
+                    phase.addBytes(Files.size(file1) + Files.size(file2));
+
+                    return lines;
+                });
+            }
+
+            diffs = Parallel.invokeAll(threads, tasks);
+        }
+
+        System.out.println(String.format("\nExtracted text differences (%s):", names.size()));
+
+        for (int i = 0; i < names.size(); i++) {
+            List<String> lines = diffs.get(i);
+
+            System.out.println(String.format("\n%s: %s", names.get(i), lines.get(0)));
+
+            for (String line : lines.subList(1, lines.size())) {
+                System.out.println("    " + line);
+            }
+        }
+    }
+
     /**
      * The current requirement is traverse one subdirectory deep only.
      * If the file is at the root level, the file name is put in the list (eg: "text.txt").  If the file is in a subdirectory,
@@ -541,26 +1249,39 @@ public class DirectoryService implements Callable<Integer> {
      * @return
      */
     private List<String> getSortedRelativePaths(Path path) {
-        List<String> names = new ArrayList<>();
+        try (Phase phase = metrics.start(String.format("List (%s)", optionName(path)))) {
+            List<String> names = new ArrayList<>();
 
-        for (File file : path.toFile().listFiles()) {
-            if (nativeMd5 && file.toPath().toString().endsWith(EXTRACTED_TEXT_EXTENSION)) {
-                continue;
-            }
+            for (File file : path.toFile().listFiles()) {
+                if (nativeMd5 && file.toPath().toString().endsWith(EXTRACTED_TEXT_EXTENSION)) {
+                    continue;
+                }
 
-            if (file.isDirectory()) {
-                for (File subdirectoryFile : file.listFiles()) {
-                    if (nativeMd5 && subdirectoryFile.toPath().toString().endsWith(EXTRACTED_TEXT_EXTENSION)) {
-                        continue;
-                    }
+                if (file.isDirectory()) {
+                    for (File subdirectoryFile : file.listFiles()) {
+                        if (nativeMd5 && subdirectoryFile.toPath().toString().endsWith(EXTRACTED_TEXT_EXTENSION)) {
+                            continue;
+                        }
 
-                    names.add(subdirectoryFile.getParentFile().getName() + File.separator + subdirectoryFile.getName());
+                        names.add(subdirectoryFile.getParentFile().getName() + File.separator + subdirectoryFile.getName());
+                    }
+                } else {
+                    names.add(file.getName());
                 }
-            } else {
-                names.add(file.getName());
             }
+
+            sort(names);
+
+            phase.addFiles(names.size());
+
+            return names;
         }
+    }
 
+    /**
+     * Sorts the names case-insensitively, then case-sensitively.
+     */
+    private static List<String> sort(List<String> names) {
         names.sort((n1, n2) -> {
             int compareTo = n1.compareToIgnoreCase(n2);
 
@@ -573,4 +1294,14 @@ public class DirectoryService implements Callable<Integer> {
 
         return names;
     }
+
+    private String optionName(Path path) {
+        if (path == path1) {
+            return "--path-1";
+        } else if (path == path2) {
+            return "--path-2";
+        }
+
+        return String.format("--path %s", paths.indexOf(path) + 1);
+    }
 }
@@ -0,0 +1,17 @@
+package com.rationalenterprise.mediadiff.service;
+
+/**
+ * Exit codes returned by the commands, in addition to picocli's 1 (the command threw an exception) and 2 (invalid
+ * options).
+ */
+public class ExitCode {
+    public static final int OK = 0;
+
+    /**
+     * --fail-fast found a difference, --changed-since found changed rows or --natives found natives that do not match.
+     */
+    public static final int DIFFERENT = 3;
+
+    private ExitCode() {
+    }
+}
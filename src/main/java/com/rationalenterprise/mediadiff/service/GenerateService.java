@@ -0,0 +1,88 @@
+package com.rationalenterprise.mediadiff.service;
+
+import com.rationalenterprise.mediadiff.generate.ProductionGenerator;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(name = "generate", description = "Generate a deterministic synthetic production (dat volumes, JSON export, natives and extracted text) for scale testing")
+public class GenerateService implements Callable<Integer> {
+    @CommandLine.Spec
+    CommandLine.Model.CommandSpec spec;
+
+    @CommandLine.Option(names = {"--output"}, required = true, description = "The directory to write the production to.")
+    private Path output;
+
+    @CommandLine.Option(names = "--seed", description = "Seed for every generated value (defaults to 1).  The same seed and options always produce the same files.")
+    private long seed = 1;
+
+    @CommandLine.Option(names = "--rows", description = "Number of documents (defaults to 1000).")
+    private int rows = 1000;
+
+    @CommandLine.Option(names = "--columns", description = "Number of dat columns, at least 10 (defaults to 20).")
+    private int columns = 20;
+
+    @CommandLine.Option(names = "--cardinality", description = "Number of distinct values in each FIELD_n column (defaults to 100).")
+    private int cardinality = 100;
+
+    @CommandLine.Option(names = "--blank-ratio", description = "Fraction of optional values left blank (defaults to 0.3).")
+    private double blankRatio = 0.3;
+
+    @CommandLine.Option(names = "--multi-line-ratio", description = "Fraction of EMAIL_BODY values containing line breaks (defaults to 0).")
+    private double multiLineRatio = 0;
+
+    @CommandLine.Option(names = "--volumes", description = "Number of dat volumes (defaults to 1).")
+    private int volumes = 1;
+
+    @CommandLine.Option(names = "--json", description = "JSON export layout: ${COMPLETION-CANDIDATES} (defaults to ARRAY).")
+    private ProductionGenerator.JsonLayout jsonLayout = ProductionGenerator.JsonLayout.ARRAY;
+
+    @CommandLine.Option(names = "--natives", description = "Also write the natives and extracted text directory.")
+    private boolean natives;
+
+    @CommandLine.Option(names = "--native-size", description = "Size of each native file in bytes (defaults to 1024).")
+    private int nativeSize = 1024;
+
+    @CommandLine.Option(names = "--differences", description = "Write a second production with this many injected differences (value changes, deleted and inserted documents, changed natives and changed extracted text).  Both productions and differences.txt are written to --output.")
+    private int differences = 0;
+
+    @Override
+    public Integer call() throws IOException {
+        if (rows < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--rows must not be negative");
+        }
+
+        if (columns < ProductionGenerator.FIXED_HEADERS.size()) {
+            throw new CommandLine.ParameterException(spec.commandLine(), String.format("--columns must be at least %s", ProductionGenerator.FIXED_HEADERS.size()));
+        }
+
+        if (volumes < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--volumes must be at least 1");
+        }
+
+        List<String> manifest = new ProductionGenerator()
+                .setSeed(seed)
+                .setRows(rows)
+                .setColumns(columns)
+                .setCardinality(cardinality)
+                .setBlankRatio(blankRatio)
+                .setMultiLineRatio(multiLineRatio)
+                .setVolumes(volumes)
+                .setJsonLayout(jsonLayout)
+                .setNatives(natives)
+                .setNativeSize(nativeSize)
+                .setDifferences(differences)
+                .generate(output);
+
+        System.out.println(String.format("Generated %s documents in %s", rows, output));
+
+        if (!manifest.isEmpty()) {
+            System.out.println(String.format("Injected differences (%s), listed in %s", manifest.size(), output.resolve("differences.txt")));
+        }
+
+        return ExitCode.OK;
+    }
+}
@@ -1,13 +1,26 @@
 package com.rationalenterprise.mediadiff.service;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.rationalenterprise.mediadiff.cache.FileCache;
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+import com.rationalenterprise.mediadiff.compare.FieldType;
+import com.rationalenterprise.mediadiff.compare.ValueComparator;
+import com.rationalenterprise.mediadiff.json.JsonArrayReader;
+import com.rationalenterprise.mediadiff.json.JsonFields;
+import com.rationalenterprise.mediadiff.json.JsonFormat;
+import com.rationalenterprise.mediadiff.json.JsonLinesReader;
+import com.rationalenterprise.mediadiff.json.JsonObjectIndex;
+import com.rationalenterprise.mediadiff.loadfile.ByteFields;
+import com.rationalenterprise.mediadiff.loadfile.ColumnCounter;
+import com.rationalenterprise.mediadiff.loadfile.LoadFileReader;
+import com.rationalenterprise.mediadiff.loadfile.RawLoadFileReader;
+import com.rationalenterprise.mediadiff.loadfile.VolumeSet;
+import com.rationalenterprise.mediadiff.metrics.Metrics;
+import com.rationalenterprise.mediadiff.metrics.Phase;
 import org.apache.commons.text.StringTokenizer;
 import picocli.CommandLine;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -19,10 +32,10 @@ public class JsonService implements Callable<Integer> {
     @CommandLine.Spec
     CommandLine.Model.CommandSpec spec;
 
-    @CommandLine.Option(names = {"--json-path"}, description = "The path to a load file.")
+    @CommandLine.Option(names = {"--json-path"}, description = "The path to a JSON export (a top-level array or JSON Lines, detected automatically), a directory of exports, or a glob of exports.")
     private Path JSONFile;
 
-    @CommandLine.Option(names = {"--dat-path"}, description = "The path to a load file.")
+    @CommandLine.Option(names = {"--dat-path"}, description = "The path to a load file, a directory of load file volumes, or a glob of volumes (eg: VOL*.dat).")
     private Path datPath;
 
     @CommandLine.Option(names = "--count-objects", description = "Count objects.")
@@ -37,43 +50,94 @@ public class JsonService implements Callable<Integer> {
     @CommandLine.Option(names = "--full-comparison", description = "Compare the JSON and dat down to the values.")
     private boolean fullComparison;
 
+    @CommandLine.Option(names = "--threads", description = "Number of threads used to read the JSON file (defaults to the number of processors).")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(names = "--field-type", description = "Normalizer used to compare a field, as FIELD=TYPE (repeatable).  TYPE is one of: AUTO, TEXT, NUMBER, DATE, BOOLEAN, MULTI_VALUE.  Fields default to AUTO, which uses the JSON value's type.")
+    private Map<String, FieldType> fieldTypes = new HashMap<>();
+
+    @CommandLine.Option(names = "--multi-value-delimiter", description = "Delimiter between the values of multi-value dat fields (defaults to \";\").")
+    private String multiValueDelimiter = ";";
+
+    @CommandLine.Option(names = "--fail-fast", description = "Only decide whether the JSON and dat match (like --full-comparison), stopping at the first difference.  Exits with 3 when they differ.")
+    private boolean failFast;
+
+    @CommandLine.Option(names = "--stats", description = "Print the time, rows, bytes and throughput of each phase, the peak heap and the GC time.")
+    private boolean stats;
+
+    @CommandLine.Option(names = "--stats-json", description = "Write the --stats numbers to this file as JSON.")
+    private Path statsJson;
+
+    private Metrics metrics;
+
     @Override
     public Integer call() throws IOException {
-        if (!JSONFile.toFile().exists()) {
+        metrics = new Metrics("json", stats || statsJson != null);
+
+        if (VolumeSet.resolve(JSONFile, VolumeSet.JSON_EXTENSIONS).isEmpty()) {
             throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: --json-path does not exist", JSONFile.toString()));
         }
 
-        if (!(false) && !datPath.toFile().exists()) {
-            throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: --dat-path does not exist", datPath.toString()));
+        VolumeSet datVolumes = VolumeSet.resolve(datPath, VolumeSet.LOAD_FILE_EXTENSIONS);
+
+        if (!countObjects && datVolumes.isEmpty()) {
+            throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: --dat-path does not exist", datPath));
+        }
+
+        List<String> inconsistentHeaders = datVolumes.findInconsistentHeaders();
+
+        if (!inconsistentHeaders.isEmpty()) {
+            throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: --dat-path volumes do not have the same header:\n%s",
+                    inconsistentHeaders.stream().collect(Collectors.joining("\n"))));
         }
 
-        if (countObjects) {
-            countObjects();
-        } else if (fullComparison) {
-            fullComparison();
-        } else if (printDataForID) {
-            printDataForID();
+        int exitCode = ExitCode.OK;
+
+        try {
+            if (failFast) {
+                exitCode = failFast();
+            } else if (countObjects) {
+                countObjects();
+            } else if (fullComparison) {
+                fullComparison();
+            } else if (printDataForID) {
+                printDataForID();
+            }
+        } finally {
+            metrics.report(stats, statsJson);
         }
 
-        return 0;
+        return exitCode;
     }
 
     private void countObjects() throws IOException {
-        String fileContents = Files.readString(JSONFile, StandardCharsets.UTF_8);
+        System.out.println("Objects count: " + getObjectCount());
+    }
 
-        if (fileContents.charAt(0) == LoadFileService.UTF_8_BOM) {
-            fileContents = fileContents.substring(1);
-        }
+    /**
+     * Counts the objects of every JSON volume with the structural scan only (no objects are built).
+     */
+    private long getObjectCount() throws IOException {
+        long count = 0;
 
-        List<Map<String, String>> data = new Gson().fromJson(fileContents, new TypeToken<List<Map<String, Object>>>() {}.getType());
+        try (Phase phase = metrics.start("Count JSON objects")) {
+            for (Path volume : VolumeSet.resolve(JSONFile, VolumeSet.JSON_EXTENSIONS).getVolumes()) {
+                long volumeCount = JsonFormat.detect(volume) == JsonFormat.LINES ? new JsonLinesReader(volume, threads).count() : new JsonArrayReader(volume, threads).count();
+
+                count += volumeCount;
+                phase.addRows(volumeCount);
+                phase.addFiles(1);
+                phase.addBytes(Files.size(volume));
+            }
+        }
 
-        System.out.println("Objects count: " + data.size());
+        return count;
     }
 
     public void printDataForID() throws IOException {
         System.out.println("Extracting JSON data.");
 
-        LinkedHashMap<String, Map<String, String>> IDToKeyValuesForJSON = getIDToKeyValuesForJson(JSONFile);
+        LinkedHashMap<String, Map<String, Object>> IDToKeyValuesForJSON = getIDToKeyValuesForJson(JSONFile);
 
         System.out.println("JSON data extraction complete.");
         System.out.println("Extracting dat data.");
@@ -83,7 +147,7 @@ public class JsonService implements Callable<Integer> {
         System.out.println("Dat data extraction complete.");
 
 
-        for (Map.Entry<String, String> entry : IDToKeyValuesForJSON.get(id).entrySet()) {
+        for (Map.Entry<String, Object> entry : IDToKeyValuesForJSON.get(id).entrySet()) {
             System.out.println(String.format("(json) %s: %s", entry.getKey(), entry.getValue()));
         }
 
@@ -104,73 +168,261 @@ public class JsonService implements Callable<Integer> {
         System.out.println(String.format("dat minus json: %s", datMinusJsonKeys.stream().collect(Collectors.joining(", "))));
     }
 
+    /**
+     * Compares the JSON and dat down to the values, streaming both: the JSON objects are indexed by ID as byte ranges
+     * (see JsonObjectIndex), then the dat rows are read as bytes and each ID's object is read token by token and
+     * compared with the row's fields.  Neither side is kept parsed.
+     *
+     * @throws IOException
+     */
     public void fullComparison() throws IOException {
         System.out.println("Extracting JSON.");
 
-        LinkedHashMap<String, Map<String, String>> IDToKeyValuesForJSON = getIDToKeyValuesForJson(JSONFile);
+        try (JsonObjectIndex json = scanJson()) {
+            readJsonIds(json);
 
-        System.out.println("Items found in JSON: " + IDToKeyValuesForJSON.size());
-        System.out.println("Extracting DAT.");
+            System.out.println("Items found in JSON: " + json.size());
+            System.out.println("Extracting DAT.");
 
-        LinkedHashMap<String, Map<String, String>> IDToKeyValuesForDat = getIDToKeyValuesForDat(datPath);
+            Set<String> datIds = getDatIds();
 
-        System.out.println("Items found in DAT: " + IDToKeyValuesForDat.size());
+            System.out.println("Items found in DAT: " + datIds.size());
 
-        if (IDToKeyValuesForJSON.size() != IDToKeyValuesForDat.size()) {
-            System.out.println(String.format("The JSON and dat file do not contain the same number of entries: " +
-                    "JSON (%s), Dat (%s)", IDToKeyValuesForJSON.size(), IDToKeyValuesForDat.size()));
+            if (json.size() != datIds.size()) {
+                System.out.println(String.format("The JSON and dat file do not contain the same number of entries: " +
+                        "JSON (%s), Dat (%s)", json.size(), datIds.size()));
 
-            return;
-        }
+                return;
+            }
+
+            List<String> notEqualIDs = new ArrayList<>();
+
+            int idsChecked = compareValues(json, datIds, new Differences() {
+                @Override
+                public boolean valueDiffers(String id, String key, String datValue, String jsonValue) {
+                    if (key == null) {
+                        System.out.println(String.format("%s found in dat but not found in JSON.", id));
+
+                        return true;
+                    }
+
+                    System.out.println(String.format("Value does not match: %s, %s, dat: %s, json: %s\n", id, key, datValue, jsonValue));
+
+                    if (notEqualIDs.isEmpty() || !notEqualIDs.get(notEqualIDs.size() - 1).equals(id)) {
+                        notEqualIDs.add(id);
+                    }
+
+                    return true;
+                }
+
+                @Override
+                public void keysNotInDat(String id, List<String> keys) {
+                    System.out.println(String.format("json minus dat: %s, %s", id, String.join(", ", new HashSet<>(keys))));
+                }
+            });
 
-        List<String> notEqualIDs = new ArrayList<>();
+            System.out.println("Comparison complete.  Items checked: " + idsChecked);
 
-        int idsChecked = 0;
-        for (Map.Entry<String, Map<String, String>> datEntry : IDToKeyValuesForDat.entrySet()) {
-            idsChecked ++;
-            if (!IDToKeyValuesForJSON.containsKey(datEntry.getKey())) {
-                System.out.println(String.format("%s found in dat but not found in JSON.", datEntry.getKey()));
+            if (!notEqualIDs.isEmpty()) {
+                System.out.println(String.format("IDs with values that do not match: \n%s", notEqualIDs.stream().collect(Collectors.joining(","))));
+            }
+        }
+    }
 
-                continue;
+    /**
+     * Stops at the first difference.  The dat IDs are read while the JSON objects are found, and the JSON values are
+     * only read when the number of distinct JSON IDs matches the number of distinct dat IDs (a repeated ID counts once,
+     * like --full-comparison).  Values are compared like --full-comparison.
+     *
+     * @return ExitCode.OK when the JSON and dat match, otherwise ExitCode.DIFFERENT.
+     * @throws IOException
+     */
+    private int failFast() throws IOException {
+        Parallel.Pair<Set<String>, JsonObjectIndex> datAndJson = Parallel.both(this::getDatIds, this::scanJson);
+        Set<String> datIds = datAndJson.getFirst();
+        String[] difference = {null};
+
+        try (JsonObjectIndex json = datAndJson.getSecond()) {
+            readJsonIds(json);
+
+            if (datIds.size() != json.size()) {
+                difference[0] = String.format("the JSON has %s IDs, the dat has %s IDs", json.size(), datIds.size());
+            } else {
+                compareValues(json, datIds, (id, key, datValue, jsonValue) -> {
+                    difference[0] = key == null ? String.format("%s found in dat but not found in JSON", id)
+                            : String.format("value does not match: %s, %s, dat: %s, json: %s", id, key, datValue, jsonValue);
+
+                    return false;
+                });
             }
+        }
+
+        if (difference[0] != null) {
+            System.out.println("Different: " + difference[0]);
+
+            return ExitCode.DIFFERENT;
+        }
+
+        System.out.println("Identical.");
 
-            boolean valuesEqual = true;
-            Set<String> datKeys = datEntry.getValue().keySet();
-            Set<String> jsonKeys = IDToKeyValuesForJSON.get(datEntry.getKey()).keySet();
+        return ExitCode.OK;
+    }
 
-            Set<String> jsonMinusDatKeys = new HashSet(jsonKeys);
-            jsonMinusDatKeys.removeAll(datKeys);
+    /**
+     * Receives the differences found by compareValues().
+     */
+    private interface Differences {
+        /**
+         * A value that does not match, or an ID that is not in the JSON when key is null.  Returns whether to go on.
+         */
+        boolean valueDiffers(String id, String key, String datValue, String jsonValue);
+
+        /**
+         * The keys of the ID's object that are not in its dat row.
+         */
+        default void keysNotInDat(String id, List<String> keys) {
+        }
+    }
 
-            if (!jsonMinusDatKeys.isEmpty()) {
-                System.out.println(String.format("json minus dat: %s, %s", datEntry.getKey(), jsonMinusDatKeys.stream().collect(Collectors.joining(", "))));
+    /**
+     * Reads the dat rows in order and compares the values of each ID (at its first row only) with its JSON object.
+     * The rows are split as bytes and only the IDs and the values that differ are decoded.  Each ID is removed from
+     * datIds as it is checked.  Returns the number of IDs checked.
+     */
+    private int compareValues(JsonObjectIndex json, Set<String> datIds, Differences differences) throws IOException {
+        ValueComparator comparator = new ValueComparator(fieldTypes, multiValueDelimiter);
+        int[] idsChecked = {0};
+        boolean[] stopped = {false};
+
+        try (Phase phase = metrics.start("Compare values");
+             RawLoadFileReader reader = VolumeSet.resolve(datPath, VolumeSet.LOAD_FILE_EXTENSIONS).openRaw(null)) {
+            List<String> header = readHeader(reader);
+            Map<String, Integer> columns = new HashMap<>();
+            JsonFields jsonFields = new JsonFields(header);
+            ByteFields datFields = new ByteFields();
+            RawLoadFileReader.Chunk chunk;
+
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i), i);
             }
 
-            for (Map.Entry<String, String> datData : datEntry.getValue().entrySet()) {
-                // Skip properties that have no value and were not included in the json object because they have no value.
-                if (datData.getValue().isBlank() && !IDToKeyValuesForJSON.get(datEntry.getKey()).containsKey(datData.getKey())) {
-                    continue;
-                }
+            while (!stopped[0] && (chunk = reader.readChunk()) != null) {
+                try {
+                    chunk.forEachRow((bytes, from, to) -> {
+                        if (stopped[0] || datFields.split(bytes, from, to).size() == 0) {
+                            return;
+                        }
+
+                        String id = datFields.toString(0);
+
+                        if (!datIds.remove(id)) {
+                            return;
+                        }
+
+                        idsChecked[0]++;
+
+                        try {
+                            if (!json.read(id, jsonFields)) {
+                                stopped[0] = !differences.valueDiffers(id, null, null, null);
+
+                                return;
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+
+                        List<String> keysNotInDat = jsonFields.getKeysNotIn(datFields.size());
 
-                if (!datData.getValue().equals(IDToKeyValuesForJSON.get(datEntry.getKey()).get(datData.getKey()))) {
-                    System.out.println(String.format("Value does not match: %s, %s, dat: %s, json: %s\n", datEntry.getKey(), datData.getKey(), datData.getValue(), IDToKeyValuesForJSON.get(datEntry.getKey()).get(datData.getKey())));
-                    valuesEqual = false;
+                        if (!keysNotInDat.isEmpty()) {
+                            differences.keysNotInDat(id, keysNotInDat);
+                        }
+
+                        for (Map.Entry<String, Integer> column : columns.entrySet()) {
+                            int index = column.getValue();
+
+                            // Skip properties that have no value and were not included in the json object because they have no value.
+                            if (index >= datFields.size() || (jsonFields.getType(index) == null && datFields.isBlank(index))) {
+                                continue;
+                            }
+
+                            if (!comparator.matches(column.getKey(), jsonFields, datFields, index)
+                                    && !differences.valueDiffers(id, column.getKey(), datFields.toString(index), jsonFields.format(index))) {
+                                stopped[0] = true;
+
+                                return;
+                            }
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
                 }
             }
 
-            if (!valuesEqual) {
-                notEqualIDs.add(datEntry.getKey());
+            phase.addRows(idsChecked[0]);
+        }
+
+        return idsChecked[0];
+    }
+
+    /**
+     * Finds the objects of every JSON volume with the structural scan (see JsonObjectIndex.scan()).
+     */
+    private JsonObjectIndex scanJson() throws IOException {
+        List<Path> volumes = VolumeSet.resolve(JSONFile, VolumeSet.JSON_EXTENSIONS).getVolumes();
+
+        try (Phase phase = metrics.start("Scan JSON")) {
+            JsonObjectIndex json = JsonObjectIndex.scan(volumes, threads);
+
+            for (Path volume : volumes) {
+                phase.addFiles(1);
+                phase.addBytes(Files.size(volume));
             }
+
+            phase.addRows(json.getObjectCount());
+
+            return json;
         }
+    }
 
-        System.out.println("Comparison complete.  Items checked: " + idsChecked);
+    private void readJsonIds(JsonObjectIndex json) throws IOException {
+        try (Phase phase = metrics.start("Read JSON IDs")) {
+            json.readIds();
+            phase.addRows(json.getObjectCount());
+        }
+    }
+
+    /**
+     * The distinct IDs (first values) of the dat rows.  The rows are read as bytes and only their first value is split.
+     */
+    private Set<String> getDatIds() throws IOException {
+        Set<String> ids = new HashSet<>();
 
-        if (!notEqualIDs.isEmpty()) {
-            System.out.println(String.format("IDs with values that do not match: \n%s", notEqualIDs.stream().collect(Collectors.joining(","))));
+        try (RawLoadFileReader reader = VolumeSet.resolve(datPath, VolumeSet.LOAD_FILE_EXTENSIONS).openRaw(metrics.start("Read dat"))) {
+            ByteFields fields = new ByteFields(0);
+            RawLoadFileReader.Chunk chunk;
+
+            reader.readHeader();
+
+            while ((chunk = reader.readChunk()) != null) {
+                chunk.forEachRow((bytes, from, to) -> {
+                    if (fields.split(bytes, from, to).size() > 0) {
+                        ids.add(fields.toString(0));
+                    }
+                });
+            }
         }
+
+        return ids;
+    }
+
+    private static List<String> readHeader(RawLoadFileReader reader) throws IOException {
+        String row = reader.readHeader();
+
+        return Arrays.asList(ColumnCounter.newTokenizer().reset(row == null ? "" : row).getTokenArray());
     }
 
     private List<String> getOrderedHeaders(Path metadataPath) throws IOException {
-        try (BufferedReader br = Files.newBufferedReader(metadataPath, StandardCharsets.UTF_8)) {
+        try (LoadFileReader br = VolumeSet.resolve(metadataPath, VolumeSet.LOAD_FILE_EXTENSIONS).open(threads)) {
             String row = br.readLine();
 
             if (row.charAt(0) == LoadFileService.UTF_8_BOM) {
@@ -208,7 +460,7 @@ public class JsonService implements Callable<Integer> {
     private LinkedHashMap<String, Map<String, String>> getIDToKeyValuesForDat(Path metadataPath) throws IOException {
         LinkedHashMap<String, Map<String, String>> datIDToKeyValues = new LinkedHashMap<>();
 
-        try (BufferedReader br = Files.newBufferedReader(metadataPath, StandardCharsets.UTF_8)) {
+        try (LoadFileReader br = VolumeSet.resolve(metadataPath, VolumeSet.LOAD_FILE_EXTENSIONS).open(threads, metrics.start("Read dat"))) {
             StringTokenizer t = new StringTokenizer("", Character.toChars(20)[0], Character.toChars(254)[0]);
             t.setIgnoreEmptyTokens(false);
 
@@ -246,20 +498,39 @@ public class JsonService implements Callable<Integer> {
      * @return
      * @throws IOException
      */
-    private LinkedHashMap<String, Map<String, String>> getIDToKeyValuesForJson(Path jsonPath) throws IOException {
-        LinkedHashMap<String, Map<String, String>> IDToKeyValues = new LinkedHashMap<>();
-        String fileContents = Files.readString(JSONFile, StandardCharsets.UTF_8);
+    private LinkedHashMap<String, Map<String, Object>> getIDToKeyValuesForJson(Path jsonPath) throws IOException {
+        LinkedHashMap<String, Map<String, Object>> IDToKeyValues = new LinkedHashMap<>();
+        List<Map<String, Object>> data = new ArrayList<>();
 
-        if (fileContents.charAt(0) == LoadFileService.UTF_8_BOM) {
-            fileContents = fileContents.substring(1);
-        }
+        try (Phase phase = metrics.start("Read JSON")) {
+            for (Path volume : VolumeSet.resolve(jsonPath, VolumeSet.JSON_EXTENSIONS).getVolumes()) {
+                // Parsed maps take roughly four times the size of the JSON text.
+                long weight = Files.size(volume) * 4;
+
+                data.addAll(FileCache.shared().get("json", volume, () -> readJson(volume), objects -> weight));
 
-        List<Map<String, String>> data = new Gson().fromJson(fileContents, new TypeToken<List<Map<String, Object>>>() {}.getType());
+                phase.addFiles(1);
+                phase.addBytes(Files.size(volume));
+            }
+
+            phase.addRows(data.size());
+        }
 
-        for (Map<String, String> jsonObject : data) {
-            IDToKeyValues.put(jsonObject.get("ID"), jsonObject);
+        for (Map<String, Object> jsonObject : data) {
+            IDToKeyValues.put(Objects.toString(jsonObject.get("ID"), null), jsonObject);
         }
 
         return IDToKeyValues;
     }
+
+    /**
+     * Parses every object of one JSON volume.  The objects are cached by the daemon, so they must not be modified.
+     */
+    private List<Map<String, Object>> readJson(Path volume) throws IOException {
+        if (JsonFormat.detect(volume) == JsonFormat.LINES) {
+            return new JsonLinesReader(volume, threads).readAll();
+        }
+
+        return new JsonArrayReader(volume, threads).readAll();
+    }
 }
\ No newline at end of file
@@ -1,16 +1,45 @@
 package com.rationalenterprise.mediadiff.service;
 
+import com.rationalenterprise.mediadiff.cache.FileCache;
+import com.rationalenterprise.mediadiff.compare.CountMatrix;
+import com.rationalenterprise.mediadiff.compare.DigestIndex;
+import com.rationalenterprise.mediadiff.compare.NativeDirectory;
+import com.rationalenterprise.mediadiff.concurrent.Parallel;
+import com.rationalenterprise.mediadiff.loadfile.ColumnCounter;
+import com.rationalenterprise.mediadiff.loadfile.ColumnProfiler;
+import com.rationalenterprise.mediadiff.loadfile.ColumnSketcher;
+import com.rationalenterprise.mediadiff.loadfile.ColumnValueCounter;
+import com.rationalenterprise.mediadiff.loadfile.ByteFields;
+import com.rationalenterprise.mediadiff.loadfile.LoadFileReader;
+import com.rationalenterprise.mediadiff.loadfile.RawLoadFileReader;
+import com.rationalenterprise.mediadiff.loadfile.RowProjection;
+import com.rationalenterprise.mediadiff.loadfile.RowSnapshot;
+import com.rationalenterprise.mediadiff.loadfile.VolumeSet;
+import com.rationalenterprise.mediadiff.metrics.Metrics;
+import com.rationalenterprise.mediadiff.metrics.Phase;
+import com.rationalenterprise.mediadiff.search.AhoCorasick;
+import com.rationalenterprise.mediadiff.sketch.CountMinSketch;
+import com.rationalenterprise.mediadiff.sketch.HyperLogLog;
+import com.rationalenterprise.mediadiff.sketch.MinHash;
+import com.rationalenterprise.mediadiff.sketch.SpaceSaving;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.text.StringTokenizer;
 import picocli.CommandLine;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 @CommandLine.Command(name = "loadFile", description = "Diff two load files")
@@ -20,10 +49,10 @@ public class LoadFileService implements Callable<Integer> {
     @CommandLine.Spec
     CommandLine.Model.CommandSpec spec;
 
-    @CommandLine.Option(names = {"--path-1"}, description = "The path to a load file.")
+    @CommandLine.Option(names = {"--path-1"}, description = "The path to a load file, a directory of load file volumes, or a glob of volumes (eg: VOL*.dat).")
     private Path datPath1;
 
-    @CommandLine.Option(names = {"--path-2"}, description = "The path to a load file.")
+    @CommandLine.Option(names = {"--path-2"}, description = "The path to a load file, a directory of load file volumes, or a glob of volumes (eg: VOL*.dat).")
     private Path datPath2;
 
     @CommandLine.Option(names = "--count-rows", description = "Count rows.")
@@ -44,11 +73,41 @@ public class LoadFileService implements Callable<Integer> {
     @CommandLine.Option(names = "--full-comparison", description = "Compare the load files down to the value occurrences.")
     private boolean fullComparison;
 
-    @CommandLine.Option(names = "--count-has-value", description = "Count rows with values for --column-name (use --verbose to print the rows).")
+    @CommandLine.Option(names = "--profile", description = "Profile every column of --path-1 (and --path-2 when given) in one pass: blank ratio, distinct count, value lengths, most frequent values (see --top) and rows with the wrong field count.  Distinct counts and frequencies are estimated in fixed memory for columns with many distinct values.")
+    private boolean profile;
+
+    @CommandLine.Option(names = "--approximate", description = "Compare the values of every column (or of --column-name) in fixed memory using sketches: Count-Min sketches of the value counts, HyperLogLog distinct counts and MinHash similarities of the value sets, each printed with its error bound.  A column reported as different is certainly different; use --full-comparison or --column-comparison to see how.")
+    private boolean approximate;
+
+    @CommandLine.Option(names = "--n-way", description = "Compare the load files of every --path at once: each is read once, all at the same time, into a matrix of the counts per input of every column, non-blank value count, MD5SUM and column value.  Use --verbose to print the MD5SUMs and values whose counts differ.")
+    private boolean nWay;
+
+    @CommandLine.Option(names = "--path", description = "A load file for --n-way (a file, a directory of volumes or a glob of volumes).  Repeat it for each input.")
+    private List<Path> nWayPaths = new ArrayList<>();
+
+    @CommandLine.Option(names = "--snapshot", description = "Write a snapshot of --path-1 to this file for a later --changed-since: a fingerprint of each row and of each of its columns, by --key-column.")
+    private Path snapshot;
+
+    @CommandLine.Option(names = "--changed-since", description = "Report the keys of the rows of --path-1 inserted, deleted and modified (with the modified columns) since this --snapshot, reading only the snapshot and not the load file it was made from.  Combine with --snapshot to write the next snapshot in the same pass.  Exits with 3 when rows changed.")
+    private Path changedSince;
+
+    @CommandLine.Option(names = "--natives", description = "Cross-check --path-1 with this natives directory in one run: the MD5SUM, PATH (or NATIVE_PATH) and --key-column of every row are read while every file of the directory is hashed on --threads threads.  Reports the rows whose native is missing or has another MD5, invalid MD5SUMs and the natives no row refers to.  Exits with 3 when anything does not match.")
+    private Path natives;
+
+    @CommandLine.Option(names = "--key-column", description = "The column that identifies the rows for --snapshot and --natives (defaults to BATES, or ID when there is no single BATES column).")
+    private String keyColumn;
+
+    @CommandLine.Option(names = "--top", description = "Number of most frequent values printed per column by --profile (defaults to 5).")
+    private int top = 5;
+
+    @CommandLine.Option(names = "--count-has-value", description = "Count rows with values for --column-name (use --verbose to print the rows as they are found).  --column-name can be a comma separated list of columns, which counts the rows with a value in any of them.")
     private boolean countHasValue;
 
-    @CommandLine.Option(names = "--substring", description = "Substring used to match values for --column-name.")
-    private String substring = "";
+    @CommandLine.Option(names = "--substring", description = "Substring used to match values for --column-name.  Repeat it to count the rows that contain any of the substrings, with a count per substring; they are all searched for in one pass.")
+    private List<String> substrings = new ArrayList<>();
+
+    @CommandLine.Option(names = "--substring-file", description = "A UTF-8 file of substrings for --substring, one per line.")
+    private Path substringFile;
 
     @CommandLine.Option(names = "--count-has-no-value", description = "Count rows without values for header --column-name.")
     private boolean countHasNoValue;
@@ -71,6 +130,28 @@ public class LoadFileService implements Callable<Integer> {
     @CommandLine.Option(names = "--value", description = "Value.")
     private String value;
 
+    @CommandLine.Option(names = "--threads", description = "Number of threads used to read load file volumes and to count columns (defaults to the number of processors).")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(names = "--max-field-size", description = "Values (quoted or not) longer than this many MiB (2^20 characters, or bytes for the modes that do not decode values) are cut, so an unterminated quote or a huge inlined text cannot exhaust memory (defaults to 16).")
+    private int maxFieldSize = 16;
+
+    @CommandLine.Option(names = "--fail-fast", description = "Only decide whether the load files are identical (every volume byte for byte), stopping at the first difference.  Exits with 3 when they differ.")
+    private boolean failFast;
+
+    @CommandLine.Option(names = "--stats", description = "Print the time, rows, bytes and throughput of each phase, the peak heap and the GC time.")
+    private boolean stats;
+
+    @CommandLine.Option(names = "--stats-json", description = "Write the --stats numbers to this file as JSON.")
+    private Path statsJson;
+
+    private Metrics metrics;
+
+    /**
+     * The truncated value counts of the readers opened by this run.
+     */
+    private final List<LongSupplier> truncatedValues = new CopyOnWriteArrayList<>();
+
     /**
      * Diff two load files.
      *
@@ -79,12 +160,26 @@ public class LoadFileService implements Callable<Integer> {
      */
     @Override
     public Integer call() throws IOException {
-        if (!datPath1.toFile().exists()) {
-            throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: --path-1 does not exist", datPath1.toString()));
+        metrics = new Metrics("loadFile", stats || statsJson != null);
+
+        if (nWay) {
+            if (nWayPaths.size() < 2) {
+                throw new CommandLine.ParameterException(spec.commandLine(), "Invalid option: --n-way needs at least two --path");
+            }
+
+            for (Path path : nWayPaths) {
+                validateVolumes(path, optionName(path));
+            }
+        } else {
+            validateVolumes(datPath1, "--path-1");
         }
 
-        if (!(inventory || columnComparison || countHasValue) && !datPath2.toFile().exists()) {
-            throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: --path-2 does not exist", datPath2.toString()));
+        if (!(nWay || inventory || columnComparison || countHasValue || profile || snapshot != null || changedSince != null || natives != null) || (profile && datPath2 != null)) {
+            validateVolumes(datPath2, "--path-2");
+        }
+
+        if (profile && top < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Invalid option: --top must be at least 1");
         }
 
         if (countHasValue && (columnName == null ||  columnName.isBlank())) {
@@ -99,8 +194,61 @@ public class LoadFileService implements Callable<Integer> {
             throw new CommandLine.ParameterException(spec.commandLine(), String.format("--column-name must be a header name", datPath2.toString()));
         }
 
-        if (countRows) {
+        if (natives != null && !Files.isDirectory(natives)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Invalid option: --natives must be a directory");
+        }
+
+        if (substringFile != null && !Files.isRegularFile(substringFile)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Invalid option: --substring-file does not exist");
+        }
+
+        if (changedSince != null && !Files.isRegularFile(changedSince)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Invalid option: --changed-since does not exist");
+        }
+
+        if (changedSince != null && !RowSnapshot.isSnapshot(changedSince)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Invalid option: --changed-since is not a --snapshot file");
+        }
+
+        if (maxFieldSize < 1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Invalid option: --max-field-size must be at least 1");
+        }
+
+        try {
+            int exitCode = run();
+            long truncated = truncatedValues.stream().mapToLong(LongSupplier::getAsLong).sum();
+
+            if (truncated > 0) {
+                System.out.println(String.format("\nWarning: %s values longer than --max-field-size %s MiB were cut.", truncated, maxFieldSize));
+            }
+
+            return exitCode;
+        } finally {
+            metrics.report(stats, statsJson);
+        }
+    }
+
+    private int run() throws IOException {
+        if (failFast) {
+            return failFast();
+        }
+
+        if (snapshot != null || changedSince != null) {
+            return snapshotRows();
+        }
+
+        if (natives != null) {
+            return checkNatives();
+        }
+
+        if (nWay) {
+            nWayComparison();
+        } else if (countRows) {
             countRows();
+        } else if (profile) {
+            profile();
+        } else if (approximate) {
+            approximateComparison();
         } else if (inventory) {
             inventory();
         } else if (columnComparison) {
@@ -123,40 +271,559 @@ public class LoadFileService implements Callable<Integer> {
             compareDatFiles();
         }
 
-        return 0;
+        return ExitCode.OK;
     }
 
+    /**
+     * Checks that the path matches at least one volume and that every volume has the same header.
+     */
+    private void validateVolumes(Path path, String optionName) throws IOException {
+        VolumeSet volumes = VolumeSet.resolve(path, VolumeSet.LOAD_FILE_EXTENSIONS);
+
+        if (volumes.isEmpty()) {
+            throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: %s does not exist", optionName));
+        }
+
+        List<String> inconsistentHeaders = volumes.findInconsistentHeaders();
+
+        if (!inconsistentHeaders.isEmpty()) {
+            throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: %s volumes do not have the same header:\n%s",
+                    optionName, inconsistentHeaders.stream().collect(Collectors.joining("\n"))));
+        }
+    }
+
+    /**
+     * Opens the load file (or all of its volumes) as one logical file.  The read is timed as a phase named after
+     * phaseName and the option the path came from.
+     */
+    private LoadFileReader open(Path path, String phaseName) throws IOException {
+        LoadFileReader reader = VolumeSet.resolve(path, VolumeSet.LOAD_FILE_EXTENSIONS).open(threads, metrics.start(String.format("%s (%s)", phaseName, optionName(path))),
+                maxFieldSize << 20);
+
+        truncatedValues.add(reader::getTruncatedValues);
+
+        return reader;
+    }
+
+    /**
+     * Like open() for the modes that never print a value: the rows are read as bytes and never decoded.
+     */
+    private RawLoadFileReader openRaw(Path path, String phaseName) throws IOException {
+        RawLoadFileReader reader = VolumeSet.resolve(path, VolumeSet.LOAD_FILE_EXTENSIONS).openRaw(metrics.start(String.format("%s (%s)", phaseName, optionName(path))),
+                maxFieldSize << 20);
+
+        truncatedValues.add(reader::getTruncatedValues);
+
+        return reader;
+    }
+
+    private String optionName(Path path) {
+        if (path == datPath1) {
+            return "--path-1";
+        } else if (path == datPath2) {
+            return "--path-2";
+        }
+
+        return String.format("--path %s", nWayPaths.indexOf(path) + 1);
+    }
+
+    /**
+     * Stops at the first difference.  The load files are identical when each volume is byte for byte the same as the
+     * volume in the same position of the other path.  The volume counts and sizes are compared before anything is
+     * read, then the volume pairs are compared on --threads threads until one pair differs.
+     *
+     * @return ExitCode.OK when the load files are identical, otherwise ExitCode.DIFFERENT.
+     * @throws IOException
+     */
+    private int failFast() throws IOException {
+        List<Path> volumes1 = VolumeSet.resolve(datPath1, VolumeSet.LOAD_FILE_EXTENSIONS).getVolumes();
+        List<Path> volumes2 = VolumeSet.resolve(datPath2, VolumeSet.LOAD_FILE_EXTENSIONS).getVolumes();
+        String difference = null;
+
+        if (volumes1.size() != volumes2.size()) {
+            difference = String.format("--path-1 has %s volumes, --path-2 has %s volumes", volumes1.size(), volumes2.size());
+        }
+
+        for (int i = 0; difference == null && i < volumes1.size(); i++) {
+            if (Files.size(volumes1.get(i)) != Files.size(volumes2.get(i))) {
+                difference = String.format("%s and %s sizes differ: %s, %s", volumes1.get(i).getFileName(), volumes2.get(i).getFileName(),
+                        Files.size(volumes1.get(i)), Files.size(volumes2.get(i)));
+            }
+        }
+
+        if (difference == null) {
+            try (Phase phase = metrics.start("Compare volumes")) {
+                List<Callable<String>> tasks = new ArrayList<>();
+
+                for (int i = 0; i < volumes1.size(); i++) {
+                    Path volume1 = volumes1.get(i);
+                    Path volume2 = volumes2.get(i);
+
+                    tasks.add(() -> findFirstMismatch(volume1, volume2, phase));
+                }
+
+                difference = Parallel.firstNonNull(threads, tasks);
+            }
+        }
+
+        if (difference != null) {
+            System.out.println("Different: " + difference);
+
+            return ExitCode.DIFFERENT;
+        }
+
+        System.out.println("Identical.");
+
+        return ExitCode.OK;
+    }
+
+    /**
+     * Returns a description of the first line that differs between the volumes, or null when they are identical.
+     */
+    private static String findFirstMismatch(Path volume1, Path volume2, Phase phase) throws IOException {
+        long mismatch = mismatch(volume1, volume2, phase);
+
+        if (mismatch == -1) {
+            return null;
+        }
+
+        long line = 1;
+        long lineStart = 0;
+
+        try (FileChannel channel = FileChannel.open(volume1, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            long position = 0;
+
+            while (position < mismatch && channel.read(buffer.clear()) > 0) {
+                buffer.flip();
+
+                for (int i = 0; i < buffer.limit() && position < mismatch; i++, position++) {
+                    if (buffer.get(i) == '\n') {
+                        line++;
+                        lineStart = position + 1;
+                    }
+                }
+            }
+        }
+
+        return String.format("%s line %s differs from %s (byte %s):\n--path-1: %s\n--path-2: %s", volume1.getFileName(), line,
+                volume2.getFileName(), mismatch, readLine(volume1, lineStart), readLine(volume2, lineStart));
+    }
+
+    /**
+     * Returns the offset of the first byte that differs between the files (or the length of the shorter file), or -1
+     * when they are identical.  FileChannel reads are interruptible, so a comparison cancelled by
+     * Parallel.firstNonNull() stops promptly.
+     */
+    private static long mismatch(Path path1, Path path2, Phase phase) throws IOException {
+        try (FileChannel channel1 = FileChannel.open(path1, StandardOpenOption.READ);
+             FileChannel channel2 = FileChannel.open(path2, StandardOpenOption.READ)) {
+            ByteBuffer buffer1 = ByteBuffer.allocate(1 << 20);
+            ByteBuffer buffer2 = ByteBuffer.allocate(1 << 20);
+            long position = 0;
+
+            while (true) {
+                int read1 = readFully(channel1, buffer1.clear());
+                int read2 = readFully(channel2, buffer2.clear());
+                int mismatch = buffer1.flip().mismatch(buffer2.flip());
+
+                phase.addBytes(read1 + read2);
+
+                if (mismatch != -1) {
+                    return position + mismatch;
+                }
+
+                if (read1 < buffer1.capacity()) {
+                    return -1;
+                }
+
+                position += read1;
+            }
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int total = 0;
+
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer);
+
+            if (read == -1) {
+                break;
+            }
+
+            total += read;
+        }
+
+        return total;
+    }
+
+    /**
+     * The line starting at offset, shortened to 500 characters for printing.
+     */
+    private static String readLine(Path path, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(offset);
+
+            String line = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8)).readLine();
+
+            if (line == null) {
+                return "[end of file]";
+            }
+
+            return line.length() > 500 ? line.substring(0, 500) + "..." : line;
+        }
+    }
+
+    /**
+     * Compares the MD5s of the dat files.  When either path is a set of volumes, each volume is hashed (concurrently)
+     * and the volumes are compared in name order.
+     */
     private void compareDatHashes() throws IOException {
-        String dat1MD5 = "";
+        List<Path> volumes1 = VolumeSet.resolve(datPath1, VolumeSet.LOAD_FILE_EXTENSIONS).getVolumes();
+        List<Path> volumes2 = VolumeSet.resolve(datPath2, VolumeSet.LOAD_FILE_EXTENSIONS).getVolumes();
+
+        List<Callable<String>> tasks = new ArrayList<>();
+
+        for (Path volume : volumes1) {
+            tasks.add(() -> md5(volume));
+        }
 
-        try (InputStream fileInputStream = new FileInputStream(datPath1.toFile())) {
-            dat1MD5 = DigestUtils.md5Hex(fileInputStream);
+        for (Path volume : volumes2) {
+            tasks.add(() -> md5(volume));
         }
 
-        String dat2MD5 = "";
+        List<String> hashes = Parallel.invokeAll(threads, tasks);
 
-        try (InputStream fileInputStream = new FileInputStream(datPath2.toFile())) {
-            dat2MD5 = DigestUtils.md5Hex(fileInputStream);
+        if (volumes1.size() == 1 && volumes2.size() == 1) {
+            String dat1MD5 = hashes.get(0);
+            String dat2MD5 = hashes.get(1);
+
+            System.out.println(String.format("MD5s are %s: dat1 %s, dat2 %s", dat1MD5.equals(dat2MD5) ? "equal" : "not equal", dat1MD5, dat2MD5));
+
+            return;
+        }
+
+        boolean equal = volumes1.size() == volumes2.size();
+
+        for (int i = 0; i < Math.max(volumes1.size(), volumes2.size()); i++) {
+            String dat1MD5 = i < volumes1.size() ? hashes.get(i) : "";
+            String dat2MD5 = i < volumes2.size() ? hashes.get(volumes1.size() + i) : "";
+            String dat1Name = i < volumes1.size() ? volumes1.get(i).getFileName().toString() : "[missing]";
+            String dat2Name = i < volumes2.size() ? volumes2.get(i).getFileName().toString() : "[missing]";
+
+            equal = equal && dat1MD5.equals(dat2MD5);
+
+            System.out.println(String.format("Volume %s MD5s are %s: dat1 %s %s, dat2 %s %s", i + 1, dat1MD5.equals(dat2MD5) ? "equal" : "not equal", dat1Name, dat1MD5, dat2Name, dat2MD5));
         }
 
-        System.out.println(String.format("MD5s are %s: dat1 %s, dat2 %s", dat1MD5.equals(dat2MD5) ? "equal" : "not equal", dat1MD5, dat2MD5));
+        System.out.println(String.format("MD5s are %s: --path-1 has %s volumes, --path-2 has %s volumes", equal ? "equal" : "not equal", volumes1.size(), volumes2.size()));
+    }
+
+    private String md5(Path path) throws IOException {
+        try (Phase phase = metrics.start("Hash " + path.getFileName())) {
+            phase.addFiles(1);
+            phase.addBytes(Files.size(path));
+
+            return FileCache.shared().get("md5", path, () -> {
+                try (InputStream fileInputStream = new FileInputStream(path.toFile())) {
+                    return DigestUtils.md5Hex(fileInputStream);
+                }
+            }, hash -> 200L + path.toString().length());
+        }
     }
 
     private void countRows() throws IOException {
-        try (BufferedReader br = Files.newBufferedReader(datPath1, StandardCharsets.UTF_8)) {
-            String row;
-            int rowCount = 0;
+        try (RawLoadFileReader reader = openRaw(datPath1, "Count rows")) {
+            // Like the lines of LoadFileReader, the count includes the header.
+            long rowCount = reader.readHeader() == null ? 0 : 1;
 
-            while ((row = br.readLine()) != null) {
-                rowCount++;
+            while (reader.readChunk() != null) {
             }
 
+            rowCount += reader.getRows();
+
             System.out.println("Row count: " + rowCount);
         }
     }
 
+    /**
+     * --snapshot and --changed-since: fingerprints the rows of --path-1 by key in one pass over its bytes, writing them
+     * to --snapshot and comparing them with the --changed-since snapshot.  Only the snapshot is read, never the load
+     * file it was made from.
+     *
+     * @return ExitCode.DIFFERENT when --changed-since found inserted, deleted or modified rows, otherwise ExitCode.OK.
+     * @throws IOException
+     */
+    private int snapshotRows() throws IOException {
+        RowSnapshot previous = null;
+
+        if (changedSince != null) {
+            try (Phase phase = metrics.start("Read --changed-since")) {
+                previous = RowSnapshot.read(changedSince);
+                phase.addFiles(1);
+                phase.addBytes(Files.size(changedSince));
+                phase.addRows(previous.getRows());
+            }
+
+            if (keyColumn != null && !keyColumn.equals(previous.getKeyLabel())) {
+                throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: --changed-since is keyed by %s, not --key-column %s",
+                        previous.getKeyLabel(), keyColumn));
+            }
+        }
+
+        try (RawLoadFileReader reader = openRaw(datPath1, "Fingerprint rows")) {
+            List<String> header = readHeader(reader);
+            List<String> labels = ColumnCounter.labels(header);
+            String keyLabel = previous != null ? previous.getKeyLabel() : keyLabel(header);
+            int keyIndex = columnIndex(labels, keyLabel, datPath1);
+            long[] labelHashes = RowSnapshot.labelHashes(labels);
+            ByteFields fields = new ByteFields();
+            int[] rowColumns = new int[labels.size()];
+            long[] blankKeys = {0};
+            RowSnapshot compared = previous;
+
+            if (compared != null) {
+                compared.setLabels(labels);
+            }
+
+            try (RowSnapshot.Writer writer = snapshot == null ? null : new RowSnapshot.Writer(snapshot, keyLabel, labels)) {
+                RawLoadFileReader.Chunk chunk;
+
+                while ((chunk = reader.readChunk()) != null) {
+                    try {
+                        chunk.forEachRow((bytes, from, to) -> {
+                            fields.split(bytes, from, to);
+
+                            if (keyIndex >= fields.size() || fields.isBlank(keyIndex)) {
+                                blankKeys[0]++;
+
+                                return;
+                            }
+
+                            String key = fields.toString(keyIndex);
+                            long fingerprint = RowSnapshot.fingerprint(fields, labelHashes, rowColumns);
+
+                            if (writer != null) {
+                                try {
+                                    writer.add(key, fingerprint, rowColumns);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            }
+
+                            if (compared != null) {
+                                compared.compare(key, fingerprint, rowColumns);
+                            }
+                        });
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                }
+
+                if (writer != null) {
+                    writer.finish();
+                    System.out.println(String.format("Snapshot of %s rows keyed by %s written to %s.", reader.getRows() - blankKeys[0], keyLabel, snapshot));
+                }
+            }
+
+            if (blankKeys[0] > 0) {
+                System.out.println(String.format("Warning: %s rows without a %s value were skipped.", blankKeys[0], keyLabel));
+            }
+
+            return compared == null ? ExitCode.OK : printChanges(compared, labels, reader.getRows() - blankKeys[0]);
+        }
+    }
+
+    /**
+     * Cross-checks the rows of --path-1 with the files of --natives, which are hashed while the load file is read.  A
+     * row's native is found by its PATH (or its NATIVE_PATH when PATH is blank, see NativeDirectory.find()).
+     *
+     * @return ExitCode.DIFFERENT when a native is missing, has another MD5 or is not referred to, or an MD5SUM is
+     * invalid, otherwise ExitCode.OK.
+     */
+    private int checkNatives() throws IOException {
+        Parallel.Pair<List<String[]>, NativeDirectory> read = Parallel.both(this::readNativeRows, () -> {
+            try (Phase phase = metrics.start("Hash --natives")) {
+                return NativeDirectory.hash(natives, threads, phase);
+            }
+        });
+        List<String[]> rows = read.getFirst();
+        NativeDirectory directory = read.getSecond();
+        BitSet referenced = new BitSet(directory.size());
+        DigestIndex rowDigests = new DigestIndex();
+        List<String> missing = new ArrayList<>();
+        List<String> mismatched = new ArrayList<>();
+        List<String> invalid = new ArrayList<>();
+        List<String> orphans = new ArrayList<>();
+        int matched = 0;
+
+        for (String[] row : rows) {
+            String key = row[0];
+            String path = row[1];
+            String md5 = row[2];
+            boolean valid = DigestIndex.isValid(md5);
+
+            if (valid) {
+                rowDigests.add(md5);
+            } else {
+                invalid.add(String.format("%s: %s", key, md5.isEmpty() ? "[blank string]" : md5));
+            }
+
+            int file = path.isEmpty() ? -1 : directory.find(path);
+
+            if (file == -1) {
+                String sameMd5 = valid && directory.count(md5) > 0 ? " (a native with its MD5SUM exists)" : "";
+
+                missing.add(String.format("%s: %s%s", key, path.isEmpty() ? "[no path]" : path, sameMd5));
+            } else {
+                referenced.set(file);
+
+                if (valid && !directory.getMd5(file).equalsIgnoreCase(md5)) {
+                    mismatched.add(String.format("%s: %s MD5SUM %s, native %s", key, directory.getPath(file), md5, directory.getMd5(file)));
+                } else if (valid) {
+                    matched++;
+                }
+            }
+        }
+
+        for (int file = referenced.nextClearBit(0); file < directory.size(); file = referenced.nextClearBit(file + 1)) {
+            String sameMd5 = rowDigests.count(directory.getMd5(file)) > 0 ? " (its MD5 is the MD5SUM of a row)" : "";
+
+            orphans.add(directory.getPath(file) + sameMd5);
+        }
+
+        System.out.println(String.format("--path-1 rows: %s, --natives files: %s", rows.size(), directory.size()));
+        System.out.println(String.format("Rows whose native matches: %s", matched));
+
+        printNativeIssues("Missing natives", missing);
+        printNativeIssues("MD5SUM mismatches", mismatched);
+        printNativeIssues("Invalid MD5SUMs", invalid);
+        printNativeIssues("Natives no row refers to", orphans);
+
+        if (missing.isEmpty() && mismatched.isEmpty() && invalid.isEmpty() && orphans.isEmpty()) {
+            System.out.println("\nAll tests passed.");
+
+            return ExitCode.OK;
+        }
+
+        System.out.println("\nTests complete.");
+
+        return ExitCode.DIFFERENT;
+    }
+
+    /**
+     * The key, path and MD5SUM of every row of --path-1, read as bytes and decoded for those columns only.
+     */
+    private List<String[]> readNativeRows() throws IOException {
+        try (RawLoadFileReader reader = openRaw(datPath1, "Read native columns")) {
+            List<String> header = readHeader(reader);
+            int keyIndex = columnIndex(header, keyLabel(header), datPath1);
+            int md5Index = columnIndex(header, "MD5SUM", datPath1);
+            int pathIndex = header.indexOf("PATH");
+            int nativePathIndex = header.indexOf("NATIVE_PATH");
+
+            if (pathIndex == -1 && nativePathIndex == -1) {
+                throw new CommandLine.ParameterException(spec.commandLine(), String.format("PATH or NATIVE_PATH not found in %s", datPath1));
+            }
+
+            ByteFields fields = new ByteFields(keyIndex, md5Index, pathIndex, nativePathIndex);
+            List<String[]> rows = new ArrayList<>();
+            RawLoadFileReader.Chunk chunk;
+
+            while ((chunk = reader.readChunk()) != null) {
+                chunk.forEachRow((bytes, from, to) -> {
+                    fields.split(bytes, from, to);
+
+                    String path = value(fields, pathIndex).strip();
+
+                    if (path.isEmpty()) {
+                        path = value(fields, nativePathIndex).strip();
+                    }
+
+                    rows.add(new String[] {value(fields, keyIndex), path, value(fields, md5Index).strip()});
+                });
+            }
+
+            return rows;
+        }
+    }
+
+    /**
+     * The decoded value of a projected field, or "" when the row ends before it or the column does not exist.
+     */
+    private static String value(ByteFields fields, int field) {
+        return field >= 0 && field < fields.size() ? fields.toString(field) : "";
+    }
+
+    private static void printNativeIssues(String title, List<String> issues) {
+        if (!issues.isEmpty()) {
+            System.out.println(String.format("\n%s (%s):", title, issues.size()));
+            issues.forEach(System.out::println);
+        }
+    }
+
+    /**
+     * The --key-column, or else the BATES or ID column when the header has exactly one of it.
+     */
+    private String keyLabel(List<String> header) {
+        if (keyColumn != null) {
+            return keyColumn;
+        } else if (Collections.frequency(header, "BATES") == 1) {
+            return "BATES";
+        } else if (Collections.frequency(header, "ID") == 1) {
+            return "ID";
+        }
+
+        throw new CommandLine.ParameterException(spec.commandLine(), String.format("Invalid option: %s has no single BATES or ID column, use --key-column", datPath1));
+    }
+
+    private int printChanges(RowSnapshot previous, List<String> labels, long rows) {
+        List<String> addedLabels = new ArrayList<>(labels);
+        addedLabels.removeAll(previous.getLabels());
+
+        List<String> removedLabels = new ArrayList<>(previous.getLabels());
+        removedLabels.removeAll(labels);
+
+        Set<String> inserted = previous.getInsertedKeys();
+        List<String> deleted = previous.getDeletedKeys();
+        Map<String, List<String>> modified = previous.getModifiedKeys();
+
+        System.out.println(String.format("Compared %s rows of --path-1 with the %s rows of %s by %s.", rows, previous.getRows(), changedSince, previous.getKeyLabel()));
+
+        if (!addedLabels.isEmpty()) {
+            System.out.println(String.format("\nColumns added since the snapshot (%s):\n%s", addedLabels.size(), String.join("\n", addedLabels)));
+        }
+
+        if (!removedLabels.isEmpty()) {
+            System.out.println(String.format("\nColumns removed since the snapshot (%s):\n%s", removedLabels.size(), String.join("\n", removedLabels)));
+        }
+
+        System.out.println(String.format("\nInserted keys (%s):%s", inserted.size(), inserted.stream().map(key -> "\n" + key).collect(Collectors.joining())));
+        System.out.println(String.format("\nDeleted keys (%s):%s", deleted.size(), deleted.stream().map(key -> "\n" + key).collect(Collectors.joining())));
+        System.out.println(String.format("\nModified keys (%s):%s", modified.size(), modified.entrySet().stream()
+                .map(entry -> String.format("\n%s: %s", entry.getKey(), String.join(", ", entry.getValue()))).collect(Collectors.joining())));
+
+        if (!modified.isEmpty()) {
+            System.out.println(String.format("\nModified columns:%s", previous.getModifiedColumns().entrySet().stream()
+                    .map(entry -> String.format("\n%s: %s rows", entry.getKey(), entry.getValue())).collect(Collectors.joining())));
+        }
+
+        if (previous.getDuplicateKeys() > 0) {
+            System.out.println(String.format("\nWarning: %s rows of %s repeat a key; only the first row of each key was compared.", previous.getDuplicateKeys(), changedSince));
+        }
+
+        if (previous.getComparedDuplicateKeys() > 0) {
+            System.out.println(String.format("\nWarning: %s rows of --path-1 repeat a key; only the first row of each key was compared.", previous.getComparedDuplicateKeys()));
+        }
+
+        return inserted.isEmpty() && deleted.isEmpty() && modified.isEmpty() ? ExitCode.OK : ExitCode.DIFFERENT;
+    }
+
     private void inventory() throws IOException {
-        compareInventoryCounts(getHeaderToCountMap(datPath1), getHeaderToCountMap(datPath2));
+        Parallel.Pair<LinkedHashMap<String, Integer>, LinkedHashMap<String, Integer>> counts = Parallel.both(() -> getHeaderToCountMap(datPath1), () -> getHeaderToCountMap(datPath2));
+
+        compareInventoryCounts(counts.getFirst(), counts.getSecond());
 
         System.out.println("Test complete.");
     }
@@ -167,7 +834,10 @@ public class LoadFileService implements Callable<Integer> {
         // Value to paths is a map of actual value to file path of the native corresponding to the row which has the value.
         Map<String, List<String>> f1ValueToPaths = new HashMap<>();
         Map<String, List<String>> f2ValueToPaths = new HashMap<>();
-        compareInventoryCounts(getValueToCountMap(datPath1, columnName, f1ValueToPaths), getValueToCountMap(datPath2, columnName, f2ValueToPaths), f1ValueToPaths, f2ValueToPaths, true);
+        Parallel.Pair<LinkedHashMap<String, Integer>, LinkedHashMap<String, Integer>> counts = Parallel.both(() -> getValueToCountMap(datPath1, columnName, f1ValueToPaths),
+                () -> getValueToCountMap(datPath2, columnName, f2ValueToPaths));
+
+        compareInventoryCounts(counts.getFirst(), counts.getSecond(), f1ValueToPaths, f2ValueToPaths, true);
 
         System.out.println("\nTest complete.");
     }
@@ -175,7 +845,7 @@ public class LoadFileService implements Callable<Integer> {
     private LinkedHashMap<String, Integer> getValueToCountMap(Path metadataPath, String headerName, Map<String, List<String>> valueToPath) throws IOException {
         LinkedHashMap<String, Integer> valueToCount = new LinkedHashMap<>();
 
-        try (BufferedReader br = Files.newBufferedReader(metadataPath, StandardCharsets.UTF_8)) {
+        try (LoadFileReader br = open(metadataPath, "Count " + headerName + " values")) {
             String row = br.readLine();
 
             if (row.charAt(0) == UTF_8_BOM) {
@@ -185,10 +855,8 @@ public class LoadFileService implements Callable<Integer> {
             StringTokenizer t = new StringTokenizer("", Character.toChars(20)[0], Character.toChars(254)[0]).setIgnoreEmptyTokens(false);
             List<String> header = Arrays.asList(t.reset(row).getTokenArray());
 
-            if (Collections.frequency(header, headerName) != 1) {
-            }
-
-            int columnIndex = header.lastIndexOf(headerName);
+            // Duplicate header names are told apart by their labels (eg: "TITLE [2]").
+            int columnIndex = columnIndex(ColumnCounter.labels(header), headerName, metadataPath);
             int pathIndex = -1;
 
             // Get correct path defined in media manager or content extractor.
@@ -198,22 +866,27 @@ public class LoadFileService implements Callable<Integer> {
                 pathIndex = header.lastIndexOf("NATIVE_PATH");
             }
 
+            RowProjection projection = new RowProjection(columnIndex, pathIndex);
+
             while ((row = br.readLine()) != null) {
-                String[] values = t.reset(row).getTokenArray();
+                String value = projection.split(row).get(columnIndex);
 
-                if (!values[columnIndex].isBlank()) {
+                // A malformed row can end before the column.
+                if (value != null && !value.isBlank()) {
                     // Increment the value occurrence count.
-                    valueToCount.put(values[columnIndex], valueToCount.getOrDefault(values[columnIndex], 0) + 1);
+                    valueToCount.put(value, valueToCount.getOrDefault(value, 0) + 1);
 
-                    if (!valueToPath.containsKey(values[columnIndex])) {
-                        valueToPath.put(values[columnIndex], new ArrayList<>());
+                    if (!valueToPath.containsKey(value)) {
+                        valueToPath.put(value, new ArrayList<>());
                     }
 
+                    String path = Objects.requireNonNullElse(projection.get(pathIndex), "");
+
                     // Determine the correct file separator (linux or windows).
-                    String fileSeparator = values[pathIndex].contains("/") ? "/" : "\\";
+                    String fileSeparator = path.contains("/") ? "/" : "\\";
 
                     // Store the path to the native for logging info to the user.
-                    valueToPath.get(values[columnIndex]).add(values[pathIndex].isBlank() ? values[pathIndex] : values[pathIndex].substring(values[pathIndex].lastIndexOf(fileSeparator)));
+                    valueToPath.get(value).add(path.isBlank() ? path : path.substring(Math.max(0, path.lastIndexOf(fileSeparator))));
                 }
             }
         }
@@ -442,8 +1115,9 @@ public class LoadFileService implements Callable<Integer> {
     }
 
     private void fullComparison() throws IOException {
-        Map<String, Integer> f1ValuesToCount = getHeaderToCountMap(datPath1);
-        Map<String, Integer> f2ValuesToCount = getHeaderToCountMap(datPath2);
+        Parallel.Pair<LinkedHashMap<String, Integer>, LinkedHashMap<String, Integer>> counts = Parallel.both(() -> getHeaderToCountMap(datPath1), () -> getHeaderToCountMap(datPath2));
+        Map<String, Integer> f1ValuesToCount = counts.getFirst();
+        Map<String, Integer> f2ValuesToCount = counts.getSecond();
 
         List<String> f1MinusF2 = new ArrayList<>(f1ValuesToCount.keySet());
         f1MinusF2.removeAll(f2ValuesToCount.keySet());
@@ -527,8 +1201,10 @@ public class LoadFileService implements Callable<Integer> {
             for (String key : countsMatch) {
                 Map<String, List<String>> f1ValueToPaths = new HashMap<>();
                 Map<String, List<String>> f2ValueToPaths = new HashMap<>();
+                Parallel.Pair<LinkedHashMap<String, Integer>, LinkedHashMap<String, Integer>> valueCounts = Parallel.both(() -> getValueToCountMap(datPath1, key, f1ValueToPaths),
+                        () -> getValueToCountMap(datPath2, key, f2ValueToPaths));
 
-                boolean matches = compareInventoryCounts(getValueToCountMap(datPath1, key, f1ValueToPaths), getValueToCountMap(datPath2, key, f2ValueToPaths), f1ValueToPaths, f2ValueToPaths, false);
+                boolean matches = compareInventoryCounts(valueCounts.getFirst(), valueCounts.getSecond(), f1ValueToPaths, f2ValueToPaths, false);
 
                 if (!matches) {
                     System.out.println(String.format("%s exists %s times in both load files, but the aggregations of those values do not match (for more information run the --column-comparison command)", key, f1ValuesToCount.get(key)));
@@ -539,24 +1215,225 @@ public class LoadFileService implements Callable<Integer> {
         System.out.println("\nTest completed.");
     }
 
-    private LinkedHashMap<String, Integer> getHeaderToCountMap(Path metadataPath) throws IOException {
-        LinkedHashMap<String, Integer> headerToCount = new LinkedHashMap<>();
+    /**
+     * Compares every --path at once.  Each load file is counted once (all of them at the same time) and the counts
+     * are compared as matrices of the inputs: the columns, their non-blank value counts, the MD5SUMs and the values of
+     * every column.
+     */
+    private void nWayComparison() throws IOException {
+        List<Callable<ColumnValueCounter>> tasks = new ArrayList<>();
+        int inputs = nWayPaths.size();
 
-        try (BufferedReader br = Files.newBufferedReader(metadataPath, StandardCharsets.UTF_8)) {
-            String row = br.readLine();
+        for (Path path : nWayPaths) {
+            tasks.add(() -> getColumnValueCounts(path, Math.max(1, threads / inputs)));
+        }
 
-            if (row.charAt(0) == UTF_8_BOM) {
-                row = row.substring(1);
+        List<ColumnValueCounter> counters = Parallel.invokeAll(inputs, tasks);
+        List<List<String>> labels = counters.stream().map(counter -> ColumnCounter.labels(counter.getHeader())).collect(Collectors.toList());
+        CountMatrix columns = new CountMatrix(inputs);
+        CountMatrix nonBlank = new CountMatrix(inputs);
+
+        System.out.println("Inputs:");
+
+        for (int i = 0; i < inputs; i++) {
+            System.out.println(String.format("[%s] %s: %s rows, %s columns", i + 1, nWayPaths.get(i), counters.get(i).getRows(), labels.get(i).size()));
+
+            for (int column = 0; column < labels.get(i).size(); column++) {
+                columns.add(i, labels.get(i).get(column), 1);
+                nonBlank.add(i, labels.get(i).get(column), counters.get(i).getNonBlank(column));
             }
+        }
 
-            StringTokenizer t = new StringTokenizer("", Character.toChars(20)[0], Character.toChars(254)[0]);
-            t.setIgnoreEmptyTokens(false);
+        List<String> missingColumns = columns.getDifferentKeys();
 
-            List<String> header = Arrays.asList(t.reset(row).getTokenArray());
+        System.out.println(String.format("\nColumns not in every input (%s of %s):", missingColumns.size(), columns.size()));
+        missingColumns.forEach(label -> System.out.println(columns.format(label)));
+
+        List<String> nonBlankDifferences = nonBlank.getDifferentKeys();
+
+        System.out.println(String.format("\nColumns whose non-blank value counts differ (%s of %s):", nonBlankDifferences.size(), nonBlank.size()));
+        nonBlankDifferences.forEach(label -> System.out.println(nonBlank.format(label)));
+
+        if (columns.getKeys().contains("MD5SUM")) {
+            System.out.println("\nMD5SUMs whose counts differ:");
+
+            if (!printValueMatrix("MD5SUM", getValueMatrix("MD5SUM", counters, labels))) {
+                System.out.println("None");
+            }
+        }
+
+        System.out.println("\nColumn values whose counts differ:");
+
+        boolean valuesDiffer = false;
+
+        for (String label : columns.getKeys()) {
+            if (!label.equals("MD5SUM")) {
+                valuesDiffer |= printValueMatrix(label, getValueMatrix(label, counters, labels));
+            }
+        }
+
+        if (!valuesDiffer) {
+            System.out.println("None");
+        }
+
+        System.out.println("\nTest completed.");
+    }
+
+    private ColumnValueCounter getColumnValueCounts(Path metadataPath, int threads) throws IOException {
+        try (RawLoadFileReader reader = openRaw(metadataPath, "Count values")) {
+            List<String> header = readHeader(reader);
+
+            return ColumnCounter.count(reader, threads, () -> new ColumnValueCounter(header));
+        }
+    }
+
+    /**
+     * The counts of the values of the column with the label in each input that has it.
+     */
+    private static CountMatrix getValueMatrix(String label, List<ColumnValueCounter> counters, List<List<String>> labels) {
+        CountMatrix values = new CountMatrix(counters.size());
+
+        for (int i = 0; i < counters.size(); i++) {
+            int column = labels.get(i).indexOf(label);
+
+            if (column != -1) {
+                values.addAll(i, counters.get(i).getValueCounts(column));
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Prints the number of values of the column whose counts differ by the inputs that have them (all values with
+     * --verbose).  Returns whether any differ.
+     */
+    private boolean printValueMatrix(String label, CountMatrix values) {
+        List<String> differentValues = values.getDifferentKeys();
+
+        if (differentValues.isEmpty()) {
+            return false;
+        }
+
+        System.out.println(String.format("%s: %s of %s values", label, differentValues.size(), values.size()));
+
+        values.formatPresencePatterns().forEach(line -> System.out.println("  " + line));
+
+        if (verbose) {
+            differentValues.forEach(value -> System.out.println("  " + values.format(value)));
+        }
 
-            List<String> orderedHeaders = new ArrayList<>(header);
+        return true;
+    }
+
+    /**
+     * Counts the non-blank values of every column, keyed by column label (see ColumnCounter.labels()) and ordered by
+     * label.
+     */
+    private LinkedHashMap<String, Integer> getHeaderToCountMap(Path metadataPath) throws IOException {
+        return getColumnCounts(metadataPath).toSortedMap();
+    }
 
-            orderedHeaders.sort((h1, h2) -> {
+    private ColumnCounter getColumnCounts(Path metadataPath) throws IOException {
+        try (RawLoadFileReader reader = openRaw(metadataPath, "Count headers")) {
+            List<String> header = readHeader(reader);
+
+            return ColumnCounter.count(reader, threads, () -> new ColumnCounter(header));
+        }
+    }
+
+    /**
+     * Reads the header line (without its BOM) and splits it into column names.
+     */
+    private static List<String> readHeader(LoadFileReader br) throws IOException {
+        String row = br.readLine();
+
+        if (row.charAt(0) == UTF_8_BOM) {
+            row = row.substring(1);
+        }
+
+        return Arrays.asList(ColumnCounter.newTokenizer().reset(row).getTokenArray());
+    }
+
+    private static List<String> readHeader(RawLoadFileReader reader) throws IOException {
+        String row = reader.readHeader();
+
+        return Arrays.asList(ColumnCounter.newTokenizer().reset(row == null ? "" : row).getTokenArray());
+    }
+
+    /**
+     * The index of the column in the header, which must have it.
+     */
+    private int columnIndex(List<String> header, String name, Path metadataPath) {
+        int index = header.indexOf(name);
+
+        if (index == -1) {
+            throw new CommandLine.ParameterException(spec.commandLine(), String.format("%s not found in %s", name, metadataPath));
+        }
+
+        return index;
+    }
+
+    /**
+     * Profiles every column of --path-1 and --path-2 (when given) in one pass each, the two paths at the same time.
+     */
+    private void profile() throws IOException {
+        if (datPath2 == null) {
+            printProfile(datPath1, getProfile(datPath1));
+        } else {
+            Parallel.Pair<ColumnProfiler, ColumnProfiler> profiles = Parallel.both(() -> getProfile(datPath1), () -> getProfile(datPath2));
+
+            printProfile(datPath1, profiles.getFirst());
+            printProfile(datPath2, profiles.getSecond());
+        }
+
+        System.out.println("\nTest complete.");
+    }
+
+    private ColumnProfiler getProfile(Path metadataPath) throws IOException {
+        // Enough counters that the top values are exact for columns with up to 100 distinct values.
+        int topCapacity = Math.max(100, top * 20);
+
+        try (LoadFileReader br = open(metadataPath, "Profile")) {
+            List<String> header = readHeader(br);
+
+            return ColumnCounter.count(br, threads, () -> new ColumnProfiler(header, topCapacity));
+        }
+    }
+
+    /**
+     * Compares sketches of the columns instead of the values.  The Count-Min sketches decide the verdict: equal
+     * columns always have equal sketches, so a difference is certain, while a column reported with no difference could
+     * only hide one if its differing values collide in every row of the sketch.
+     */
+    private void approximateComparison() throws IOException {
+        Parallel.Pair<ColumnSketcher, ColumnSketcher> sketches = Parallel.both(() -> getSketches(datPath1), () -> getSketches(datPath2));
+        ColumnSketcher sketcher1 = sketches.getFirst();
+        ColumnSketcher sketcher2 = sketches.getSecond();
+        List<String> labels1 = ColumnCounter.labels(sketcher1.getHeader());
+        List<String> labels2 = ColumnCounter.labels(sketcher2.getHeader());
+
+        System.out.println(String.format("Approximate comparison (--path-1 %s rows, --path-2 %s rows):", sketcher1.getRows(), sketcher2.getRows()));
+
+        List<String> columns = new ArrayList<>();
+
+        if (columnName != null) {
+            columns.add(columnName);
+        } else {
+            List<String> f1MinusF2 = labels1.stream().filter(label -> !labels2.contains(label)).collect(Collectors.toList());
+            List<String> f2MinusF1 = labels2.stream().filter(label -> !labels1.contains(label)).collect(Collectors.toList());
+
+            if (!f1MinusF2.isEmpty()) {
+                System.out.println(String.format("\nColumns in --path-1 only (%s): %s", f1MinusF2.size(), String.join(", ", f1MinusF2)));
+            }
+
+            if (!f2MinusF1.isEmpty()) {
+                System.out.println(String.format("\nColumns in --path-2 only (%s): %s", f2MinusF1.size(), String.join(", ", f2MinusF1)));
+            }
+
+            labels1.stream().filter(labels2::contains).forEach(columns::add);
+
+            columns.sort((h1, h2) -> {
                 int compareTo = h1.compareToIgnoreCase(h2);
 
                 if (compareTo == 0) {
@@ -565,28 +1442,104 @@ public class LoadFileService implements Callable<Integer> {
 
                 return compareTo;
             });
+        }
+
+        int different = 0;
+
+        for (String column : columns) {
+            int index1 = labels1.indexOf(column);
+            int index2 = labels2.indexOf(column);
 
-            for (String header1 : orderedHeaders) {
-                headerToCount.put(header1, 0);
+            if (index1 == -1 || index2 == -1) {
+                System.out.println(String.format("\n%s: not found in %s", column, index1 == -1 ? "--path-1" : "--path-2"));
+
+                continue;
             }
 
-            while ((row = br.readLine()) != null) {
-                String[] values = t.reset(row).getTokenArray();
+            CountMinSketch counts1 = sketcher1.getCounts(index1);
+            CountMinSketch counts2 = sketcher2.getCounts(index2);
+            CountMinSketch.Difference difference = counts1.compare(counts2);
+            HyperLogLog distinct1 = sketcher1.getDistinct(index1);
+            MinHash values1 = sketcher1.getValues(index1);
+            MinHash values2 = sketcher2.getValues(index2);
+            boolean exactSimilarity = values1.isExact() && values2.isExact();
 
-                for (int i = 0; i < values.length; i++) {
-                    if (!values[i].isBlank()) {
-                        headerToCount.put(header.get(i), headerToCount.get(header.get(i)) + 1);
-                    }
-                }
+            if (!difference.isZero()) {
+                different++;
             }
+
+            System.out.println(String.format("\n%s: %s", column, difference.isZero() ? "no difference found" : "different"));
+            // Equal sketches give every value the same estimate on both sides, and an estimate is within epsilon of the
+            // total of the true count with probability 1 - delta, so the true counts are that close with 1 - 2 delta.
+            long countBound = (long) Math.ceil(counts1.getEpsilon() * Math.max(counts1.getTotal(), counts2.getTotal()));
+
+            System.out.println(String.format("  Value counts: %s", difference.isZero()
+                    ? String.format("equal sketches (epsilon %.2g, delta %.2g: each value's counts differ by at most %s with probability %.4f)",
+                            counts1.getEpsilon(), counts1.getDelta(), countBound, 1 - 2 * counts1.getDelta())
+                    : String.format("at least %s values differ, by at least %s occurrences in total", difference.getValues(), difference.getCount())));
+            System.out.println(String.format("  Has value: --path-1 %s, --path-2 %s", sketcher1.getNonBlank(index1), sketcher2.getNonBlank(index2)));
+            System.out.println(String.format("  Distinct values: --path-1 %s, --path-2 %s%s", sketcher1.getDistinctCount(index1), sketcher2.getDistinctCount(index2),
+                    sketcher1.isDistinctExact(index1) && sketcher2.isDistinctExact(index2) ? "" : String.format(" (+/-%.1f%%)", 100 * distinct1.getErrorBound())));
+            System.out.println(String.format("  Value set similarity (Jaccard): %.3f %s", values1.similarity(values2),
+                    exactSimilarity ? "(exact)" : String.format("(+/-%.3f)", values1.getErrorBound())));
         }
 
-        return headerToCount;
+        System.out.println(String.format("\n%s of %s compared columns differ.", different, columns.size()));
+        System.out.println("\nTest complete.");
+    }
+
+    private ColumnSketcher getSketches(Path metadataPath) throws IOException {
+        try (RawLoadFileReader reader = openRaw(metadataPath, "Sketch columns")) {
+            List<String> header = readHeader(reader);
+
+            return ColumnCounter.count(reader, threads, () -> new ColumnSketcher(header));
+        }
+    }
+
+    private void printProfile(Path metadataPath, ColumnProfiler profiler) {
+        List<String> labels = ColumnCounter.labels(profiler.getHeader());
+        long rows = profiler.getRows();
+
+        System.out.println(String.format("\nProfile of %s (%s rows, %s with the wrong field count):", optionName(metadataPath), rows, profiler.getWrongFieldCountRows()));
+
+        for (int i = 0; i < labels.size(); i++) {
+            long blank = rows - profiler.getNonBlank(i);
+
+            System.out.println(String.format("\n%s", labels.get(i)));
+            System.out.println(String.format("  Blank: %s (%.1f%%)", blank, rows == 0 ? 0.0 : 100.0 * blank / rows));
+            System.out.println(String.format("  Distinct: %s%s", profiler.isDistinctExact(i) ? "" : "~", profiler.getDistinct(i)));
+            System.out.println(String.format("  Length: min %s, avg %.1f, max %s", profiler.getMinLength(i), profiler.getAverageLength(i), profiler.getMaxLength(i)));
+
+            if (profiler.getMissing(i) > 0) {
+                System.out.println(String.format("  Rows without this field: %s", profiler.getMissing(i)));
+            }
+
+            // Once the sketch has run out of counters, only values certain to occur more than once are worth printing
+            // (in an ID column every counter holds a value seen once plus the counts of the values it replaced).
+            SpaceSaving topValues = profiler.getTop(i);
+            String counts = topValues.top(top).stream()
+                    .filter(counter -> topValues.isExact() || counter.getCount() - counter.getError() > 1)
+                    .map(counter -> String.format("(%s%s) %s", topValues.isExact() ? "" : "~", counter.getCount(), counter.getValue()))
+                    .collect(Collectors.joining(", "));
+
+            System.out.println(String.format("  Top %s: %s", top, counts.isEmpty() ? (topValues.isExact() ? "[no values]" : "[no repeated values]") : counts));
+        }
+
+        if (profiler.getExtraValues() > 0) {
+            System.out.println(String.format("\nValues beyond the last column: %s", profiler.getExtraValues()));
+        }
     }
 
     private void compareMD5SUMs() throws IOException {
-        List<String> hashes1 = getHashes(datPath1);
-        List<String> hashes2 = getHashes(datPath2);
+        List<String> warnings1 = new ArrayList<>();
+        List<String> warnings2 = new ArrayList<>();
+        Parallel.Pair<List<String>, List<String>> hashes = Parallel.both(() -> getHashes(datPath1, warnings1), () -> getHashes(datPath2, warnings2));
+        List<String> hashes1 = hashes.getFirst();
+        List<String> hashes2 = hashes.getSecond();
+
+        // The warnings are printed after the join so the output of the two files is not interleaved.
+        warnings1.forEach(System.out::println);
+        warnings2.forEach(System.out::println);
 
         if (hashes1.size() != hashes2.size()) {
             System.out.println(String.format("%s hashes found in --path-1 and %s hashes found in --path-2", hashes1.size(), hashes2.size()));
@@ -607,8 +1560,8 @@ public class LoadFileService implements Callable<Integer> {
         }
     }
 
-    private List<String> getHashes(Path metadataPath) throws IOException {
-        try (BufferedReader br = Files.newBufferedReader(metadataPath, StandardCharsets.UTF_8)) {
+    private List<String> getHashes(Path metadataPath, List<String> warnings) throws IOException {
+        try (LoadFileReader br = open(metadataPath, "Read MD5SUMs")) {
             String row = br.readLine();
 
             if (row.charAt(0) == UTF_8_BOM) {
@@ -636,21 +1589,21 @@ public class LoadFileService implements Callable<Integer> {
             }
 
             List<String> hashes = new ArrayList<>();
+            RowProjection projection = new RowProjection(MD5Index);
 
             while ((row = br.readLine()) != null) {
-                String[] values = t.reset(row).getTokenArray();
-
-                String hash = values[MD5Index];
+                // A malformed row can end before the column.
+                String hash = Objects.requireNonNullElse(projection.split(row).get(MD5Index), "");
 
                 if (!isValidMD5(hash)) {
-                    System.out.println(String.format("Invalid hash %s found in -%s", hash, metadataPath));
+                    warnings.add(String.format("Invalid hash %s found in -%s", hash, metadataPath));
                 }
 
                 if (hashes.contains(hash)) {
-                    System.out.println(String.format("%s exists more than once in %s", hash, metadataPath));
+                    warnings.add(String.format("%s exists more than once in %s", hash, metadataPath));
                 }
 
-                hashes.add(values[MD5Index]);
+                hashes.add(hash);
             }
 
             return hashes;
@@ -663,60 +1616,17 @@ public class LoadFileService implements Callable<Integer> {
 
     private void compareDatFiles() throws IOException {
         boolean passed = true;
-        List<String> header1;
-
-        try (BufferedReader br = Files.newBufferedReader(datPath1, StandardCharsets.UTF_8)) {
-            StringTokenizer t = new StringTokenizer("", Character.toChars(20)[0], Character.toChars(254)[0]);
-            t.setIgnoreEmptyTokens(false);
-
-            // trim/read the header
-            String row = br.readLine();
-
-            if (row.charAt(0) == UTF_8_BOM) {
-                row = row.substring(1);
-            }
-
-            header1 = Arrays.asList(t.reset(row).getTokenArray());
-
-            System.out.println("file1 headers: " + header1.size());
+        List<String> messages1 = new ArrayList<>();
+        List<String> messages2 = new ArrayList<>();
+        Parallel.Pair<List<String>, List<String>> headers = Parallel.both(() -> checkRowColumnCounts(datPath1, messages1), () -> checkRowColumnCounts(datPath2, messages2));
+        List<String> header1 = headers.getFirst();
+        List<String> header2 = headers.getSecond();
 
-            int rowCount = 0;
-
-            while ((row = br.readLine()) != null) {
-                rowCount++;
-                List<String> values = Arrays.asList(t.reset(row).getTokenArray());
-
-                if (header1.size() != values.size()) {
-                    System.out.println("\nRow column count does not match header count for row: " + rowCount);
-                }
-            }
-        }
-        List<String> header2;
-        try (BufferedReader br = new BufferedReader(new FileReader(datPath2.toFile(), StandardCharsets.UTF_8))) {
-            StringTokenizer t = new StringTokenizer("", Character.toChars(20)[0], Character.toChars(254)[0]);
-            t.setIgnoreEmptyTokens(false);
+        System.out.println("file1 headers: " + header1.size());
+        messages1.forEach(System.out::println);
 
-            // trim/read the header
-            String row = br.readLine();
-
-            if (row.charAt(0) == UTF_8_BOM) {
-                row = row.substring(1);
-            }
-
-            header2 = Arrays.asList(t.reset(row).getTokenArray());
-            System.out.println("\nfile2 headers: " + header2.size());
-
-            int rowCount = 0;
-
-            while ((row = br.readLine()) != null) {
-                rowCount++;
-                List<String> values = Arrays.asList(t.reset(row).getTokenArray());
-
-                if (header2.size() != values.size()) {
-                    System.out.println("\nRow column count does not match header count for row: " + rowCount);
-                }
-            }
-        }
+        System.out.println("\nfile2 headers: " + header2.size());
+        messages2.forEach(System.out::println);
 
         List<String> header1MinusHeader2 = new ArrayList<>(header1);
         header1MinusHeader2.removeAll(header2);
@@ -743,6 +1653,32 @@ public class LoadFileService implements Callable<Integer> {
         }
     }
 
+    /**
+     * Returns the header and adds a message for each row whose column count does not match the header's.
+     */
+    private List<String> checkRowColumnCounts(Path metadataPath, List<String> messages) throws IOException {
+        try (RawLoadFileReader reader = openRaw(metadataPath, "Check row columns")) {
+            List<String> header = readHeader(reader);
+            ByteFields fields = new ByteFields();
+            int[] rowCount = {0};
+            RawLoadFileReader.Chunk chunk;
+
+            while ((chunk = reader.readChunk()) != null) {
+                String volumeLabel = reader.isMultiVolume() ? String.format(" (%s)", chunk.getVolume().getFileName()) : "";
+
+                chunk.forEachRow((bytes, from, to) -> {
+                    rowCount[0]++;
+
+                    if (header.size() != fields.split(bytes, from, to).size()) {
+                        messages.add("\nRow column count does not match header count for row: " + rowCount[0] + volumeLabel);
+                    }
+                });
+            }
+
+            return header;
+        }
+    }
+
     /**
      * Counts rows by presence of value for column.
      * Also counts rows by absence of value for column.
@@ -752,97 +1688,170 @@ public class LoadFileService implements Callable<Integer> {
      * @throws IOException
      */
     private void countHasValues(boolean valueExists) throws IOException {
-        try (BufferedReader br = Files.newBufferedReader(datPath1, StandardCharsets.UTF_8)) {
-            String row = br.readLine();
-
-            if (row.charAt(0) == UTF_8_BOM) {
-                row = row.substring(1);
+        try (RawLoadFileReader reader = openRaw(datPath1, valueExists ? "Count has value" : "Count has no value")) {
+            List<String> headerItems = readHeader(reader);
+            String header = reader.readHeader();
+            List<String> columnNames = headerItems.contains(columnName) ? List.of(columnName) : Arrays.asList(columnName.split(","));
+            int[] headerIndexes = columnNames.stream().mapToInt(name -> columnIndex(headerItems, name, datPath1)).toArray();
+            AhoCorasick terms = valueExists ? readSubstrings() : null;
+            ByteFields fields = new ByteFields(headerIndexes);
+            long[] termRows = terms == null ? null : new long[terms.size()];
+            long[] termLastRow = terms == null ? null : new long[terms.size()];
+            // The matching rows, the current row (numbered from 1) and the last row a term was found in.
+            long[] results = {0, 0, 0};
+            IntConsumer termFound = term -> {
+                results[2] = results[1];
+
+                if (termLastRow[term] != results[1]) {
+                    termLastRow[term] = results[1];
+                    termRows[term]++;
+                }
+            };
+            // Matching rows are printed as they are found, as they were read.
+            OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+            RawLoadFileReader.Chunk chunk;
+
+            if (verbose) {
+                out.write((header == null ? "" : header).getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
             }
 
-            StringTokenizer t = new StringTokenizer("", Character.toChars(20)[0], Character.toChars(254)[0]);
-            t.setIgnoreEmptyTokens(false);
-
-            String header = row;
-            List<String> headerItems = Arrays.asList(t.reset(header).getTokenArray());
-            int headerIndex = headerItems.indexOf(columnName);
-            List<String> results = new ArrayList<>();
-            int count = 0;
-            int idIndex = -1;
+            while ((chunk = reader.readChunk()) != null) {
+                chunk.forEachRow((bytes, from, to) -> {
+                    fields.split(bytes, from, to);
+                    results[1]++;
+
+                    boolean blank = true;
+                    boolean found = terms == null;
+
+                    for (int headerIndex : headerIndexes) {
+                        if (headerIndex >= fields.size() || fields.isBlank(headerIndex)) {
+                            continue;
+                        }
+
+                        blank = false;
+
+                        // A single substring only has to be found once, but every value is searched for the counts
+                        // per substring.
+                        if (terms == null) {
+                            break;
+                        } else if (terms.size() == 1) {
+                            if (fields.contains(headerIndex, terms)) {
+                                found = true;
+
+                                break;
+                            }
+                        } else {
+                            fields.search(headerIndex, terms, termFound);
+                            found = results[2] == results[1];
+                        }
+                    }
 
-            if (Collections.frequency(headerItems,"BATES") == 1) {
-                idIndex = headerItems.lastIndexOf("BATES");
-            } else if (Collections.frequency(headerItems,"ID") == 1) {
-                idIndex = headerItems.lastIndexOf("ID");
+                    if (valueExists ? !blank && found : blank) {
+                        results[0]++;
+
+                        if (verbose) {
+                            try {
+                                out.write(bytes, from, to - from);
+                                out.write('\n');
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    }
+                });
             }
 
-            while ((row = br.readLine()) != null) {
-                count++;
-
-                String[] values = t.reset(row).getTokenArray();
+            out.flush();
 
-                if (valueExists && !values[headerIndex].isBlank()) {
-                    if (substring.isEmpty() || (!substring.isEmpty() && values[headerIndex].contains(substring))) {
-                        results.add(row);
-                    }
-                } else if (!valueExists && values[headerIndex].isBlank()) {
-                    results.add(row);
-                }
-            }
+            System.out.println(String.format("The dat contains %s rows.", reader.getRows()));
 
-            System.out.println(String.format("The dat contains %s rows.", count));
+            String searched = String.join(", ", columnNames);
 
-            if (results.isEmpty()) {
+            if (results[0] == 0) {
                 System.out.println("No matches found.");
+            } else if (terms == null) {
+                System.out.println(String.format("%s rows found %s values for %s", results[0], valueExists ? "with" : "without", searched));
+            } else if (terms.size() == 1) {
+                System.out.println(String.format("%s rows found with substring %s for %s", results[0], terms.getTerm(0), searched));
             } else {
-                System.out.println(String.format("%s rows found %s %s for %s", results.size(), valueExists ? "with" : "without", (substring.isEmpty() ? "values" : "substring " + substring), columnName));
+                System.out.println(String.format("%s rows found with any of %s substrings for %s", results[0], terms.size(), searched));
+                System.out.println("Rows per substring:");
 
-                if (verbose) {
-                    System.out.println(header + "\n" + results.stream().collect(Collectors.joining("\n")));
+                for (int term = 0; term < terms.size(); term++) {
+                    System.out.println(String.format("%s: %s rows", terms.getTerm(term), termRows[term]));
                 }
             }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
-    private void compareHasValueByHashes() throws IOException {
-        Set<String> f1HasValue = new HashSet<>();
-        Set<String> f1HasNoValue = new HashSet<>();
+    /**
+     * The distinct non-empty --substring values and --substring-file lines, or null when there are none.
+     */
+    private AhoCorasick readSubstrings() throws IOException {
+        Set<String> terms = new LinkedHashSet<>(substrings);
 
-        try (BufferedReader br = Files.newBufferedReader(datPath1, StandardCharsets.UTF_8)) {
-            String row = br.readLine();
+        if (substringFile != null) {
+            List<String> lines = Files.readAllLines(substringFile, StandardCharsets.UTF_8);
 
-            if (row.charAt(0) == UTF_8_BOM) {
-                row = row.substring(1);
+            if (!lines.isEmpty() && !lines.get(0).isEmpty() && lines.get(0).charAt(0) == UTF_8_BOM) {
+                lines.set(0, lines.get(0).substring(1));
             }
 
-            StringTokenizer t = new StringTokenizer("", Character.toChars(20)[0], Character.toChars(254)[0]);
-            t.setIgnoreEmptyTokens(false);
+            terms.addAll(lines);
+        }
 
-            List<String> header = Arrays.asList(t.reset(row).getTokenArray());
+        terms.remove("");
 
-            int headerIndex = header.indexOf(columnName);
-            int MD5Index = header.indexOf("MD5SUM");
+        if (terms.isEmpty()) {
+            return null;
+        }
 
-            while ((row = br.readLine()) != null) {
-                String[] values = t.reset(row).getTokenArray();
+        try {
+            return new AhoCorasick(new ArrayList<>(terms));
+        } catch (IllegalArgumentException e) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Invalid option: the --substring values are too long to search for together");
+        }
+    }
 
-                if (!values[headerIndex].isBlank()) {
-                    f1HasValue.add(values[MD5Index].isBlank() ? "[Blank MD5]" : values[MD5Index]);
-                } else {
-                    f1HasNoValue.add(values[MD5Index].isBlank() ? "[Blank MD5]" : values[MD5Index]);
-                }
+    private void compareHasValueByHashes() throws IOException {
+        Set<String> f1HasValue = new HashSet<>();
+        Set<String> f1HasNoValue = new HashSet<>();
+        Set<String> f2HasValue = new HashSet<>();
+        Set<String> f2HasNoValue = new HashSet<>();
+
+        Parallel.both(() -> populateHasValueHashes(datPath1, f1HasValue, f1HasNoValue), () -> populateHasValueHashes(datPath2, f2HasValue, f2HasNoValue));
+
+        for (String hash : f1HasValue) {
+            if (f1HasNoValue.contains(hash)) {
+                System.out.println(String.format("Warning: %s is was found in the has values set and the has no values set.", hash));
             }
+        }
 
-            for (String hash : f1HasValue) {
-                if (f1HasNoValue.contains(hash)) {
-                    System.out.println(String.format("Warning: %s is was found in the has values set and the has no values set.", hash));
-                }
+        for (String hash : f2HasValue) {
+            if (f2HasNoValue.contains(hash)) {
+                System.out.println(String.format("Warning: %s is was found in the has values set and the has no values set.", hash));
             }
         }
 
-        Set<String> f2HasValue = new HashSet<>();
-        Set<String> f2HasNoValue = new HashSet<>();
+        Set<String> f1HasValueMinusf2HasValue = new HashSet<>(f1HasValue);
+        f1HasValueMinusf2HasValue.removeAll(f2HasValue);
+
+        System.out.println(String.format("Has value in --path-1 and not in --path-2 (%s):\n%s", f1HasValueMinusf2HasValue.size(), f1HasValueMinusf2HasValue.stream().collect(Collectors.joining("\n"))));
+
+        Set<String> f2HasValueMinusf1HasValue = new HashSet<>(f2HasValue);
+        f2HasValueMinusf1HasValue.removeAll(f1HasValue);
+
+        System.out.println(String.format("Has value in --path-2 and not in --path-1 (%s):\n%s", f2HasValueMinusf1HasValue.size(), f2HasValueMinusf1HasValue.stream().collect(Collectors.joining("\n"))));
+    }
 
-        try (BufferedReader br = Files.newBufferedReader(datPath2, StandardCharsets.UTF_8)) {
+    /**
+     * Splits the MD5SUMs of the rows by whether --column-name has a value.
+     */
+    private Void populateHasValueHashes(Path metadataPath, Set<String> hasValue, Set<String> hasNoValue) throws IOException {
+        try (LoadFileReader br = open(metadataPath, "Hash " + columnName + " values")) {
             String row = br.readLine();
 
             if (row.charAt(0) == UTF_8_BOM) {
@@ -854,35 +1863,26 @@ public class LoadFileService implements Callable<Integer> {
 
             List<String> header = Arrays.asList(t.reset(row).getTokenArray());
 
-            int headerIndex = header.indexOf(columnName);
-            int MD5Index = header.indexOf("MD5SUM");
+            int headerIndex = columnIndex(header, columnName, metadataPath);
+            int MD5Index = columnIndex(header, "MD5SUM", metadataPath);
+            RowProjection projection = new RowProjection(headerIndex, MD5Index);
 
             while ((row = br.readLine()) != null) {
-                String[] values = t.reset(row).getTokenArray();
+                projection.split(row);
 
-                if (!values[headerIndex].isBlank()) {
-                    f2HasValue.add(values[MD5Index].isBlank() ? "[Blank MD5]" : values[MD5Index]);
-                } else {
-                    f2HasNoValue.add(values[MD5Index].isBlank() ? "[Blank MD5]" : values[MD5Index]);
-                }
-            }
+                // A malformed row can end before the columns.
+                String value = Objects.requireNonNullElse(projection.get(headerIndex), "");
+                String hash = Objects.requireNonNullElse(projection.get(MD5Index), "");
 
-            for (String hash : f2HasValue) {
-                if (f2HasNoValue.contains(hash)) {
-                    System.out.println(String.format("Warning: %s is was found in the has values set and the has no values set.", hash));
+                if (!value.isBlank()) {
+                    hasValue.add(hash.isBlank() ? "[Blank MD5]" : hash);
+                } else {
+                    hasNoValue.add(hash.isBlank() ? "[Blank MD5]" : hash);
                 }
             }
         }
 
-        Set<String> f1HasValueMinusf2HasValue = new HashSet<>(f1HasValue);
-        f1HasValueMinusf2HasValue.removeAll(f2HasValue);
-
-        System.out.println(String.format("Has value in --path-1 and not in --path-2 (%s):\n%s", f1HasValueMinusf2HasValue.size(), f1HasValueMinusf2HasValue.stream().collect(Collectors.joining("\n"))));
-
-        Set<String> f2HasValueMinusf1HasValue = new HashSet<>(f2HasValue);
-        f2HasValueMinusf1HasValue.removeAll(f1HasValue);
-
-        System.out.println(String.format("Has value in --path-2 and not in --path-1 (%s):\n%s", f2HasValueMinusf1HasValue.size(), f2HasValueMinusf1HasValue.stream().collect(Collectors.joining("\n"))));
+        return null;
     }
 
     /**
@@ -896,7 +1896,7 @@ public class LoadFileService implements Callable<Integer> {
      * @throws IOException
      */
     private void printRow() throws IOException {
-        try (BufferedReader br = Files.newBufferedReader(datPath1, StandardCharsets.UTF_8)) {
+        try (LoadFileReader br = open(datPath1, "Print rows")) {
             String row = br.readLine();
 
             if (row.charAt(0) == UTF_8_BOM) {
@@ -908,16 +1908,17 @@ public class LoadFileService implements Callable<Integer> {
 
             String header = row;
             List<String> headerItems = Arrays.asList(t.reset(header).getTokenArray());
-            int headerIndex = headerItems.indexOf(columnName);
+            int headerIndex = columnIndex(headerItems, columnName, datPath1);
+            RowProjection projection = new RowProjection(headerIndex);
             List<String> rows = new ArrayList<>();
             int count = 0;
 
             while ((row = br.readLine()) != null) {
                 count++;
 
-                String[] values = t.reset(row).getTokenArray();
+                String rowValue = projection.split(row).get(headerIndex);
 
-                if (values[headerIndex].equals(value)) {
+                if (rowValue != null && rowValue.equals(value)) {
                     rows.add(row);
                 }
             }
@@ -0,0 +1,45 @@
+package com.rationalenterprise.mediadiff.service;
+
+import com.rationalenterprise.mediadiff.cache.FileCache;
+import com.rationalenterprise.mediadiff.daemon.DaemonServer;
+import com.rationalenterprise.mediadiff.daemon.Protocol;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+@CommandLine.Command(name = "serve", description = "Run as a daemon that executes commands sent with the client command, keeping parsed load files, JSON and file hashes cached between commands")
+public class ServeService implements Callable<Integer> {
+    @CommandLine.Spec
+    CommandLine.Model.CommandSpec spec;
+
+    @CommandLine.Option(names = "--socket", description = "The Unix domain socket to listen on (defaults to mediadiff-USER.sock in the temporary directory).")
+    private Path socket = Protocol.defaultSocket();
+
+    @CommandLine.Option(names = "--cache-size", description = "Memory limit of the cache in MB (defaults to half of the maximum heap).  Least recently used entries are evicted first.")
+    private long cacheSize = Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024);
+
+    private final Function<String[], CommandLine> commandLineFactory;
+
+    /**
+     * @param commandLineFactory Creates the mediaDiff command line for the arguments of a request.
+     */
+    public ServeService(Function<String[], CommandLine> commandLineFactory) {
+        this.commandLineFactory = commandLineFactory;
+    }
+
+    @Override
+    public Integer call() throws IOException {
+        if (cacheSize < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--cache-size must not be negative");
+        }
+
+        FileCache.enableShared(cacheSize * 1024 * 1024);
+
+        new DaemonServer(socket, commandLineFactory).run();
+
+        return 0;
+    }
+}
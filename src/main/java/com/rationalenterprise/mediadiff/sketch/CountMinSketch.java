@@ -0,0 +1,187 @@
+package com.rationalenterprise.mediadiff.sketch;
+
+/**
+ * Estimates how often each value occurs in a fixed depth x width table of counters.  An estimate never
+ * underestimates and, with probability 1 - 2^-depth, overestimates by at most e / width of the total count.
+ *
+ * The sketch is linear: the sketch of two value streams is the sum of their sketches, so merge() combines per-thread
+ * sketches and compare() subtracts the sketches of two load file columns.  Equal streams always have equal sketches,
+ * so any cell that differs proves the streams differ.
+ */
+public class CountMinSketch {
+    private final int width;
+
+    private final int depth;
+
+    private final long[][] counts;
+
+    private long total = 0;
+
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException(String.format("width and depth must be positive: %s, %s", width, depth));
+        }
+
+        this.width = width;
+        this.depth = depth;
+        this.counts = new long[depth][width];
+    }
+
+    public void add(CharSequence value) {
+        addHash(Hashing.hash64(value));
+    }
+
+    /**
+     * Adds a value by its 64 bit hash (see Hashing.hash64()).
+     *
+     * @param hash
+     */
+    public void addHash(long hash) {
+        long second = Hashing.mix(hash ^ 0x9e3779b97f4a7c15L);
+
+        for (int row = 0; row < depth; row++) {
+            counts[row][index(hash, second, row)]++;
+        }
+
+        total++;
+    }
+
+    /**
+     * The estimated number of times the value with this hash was added.
+     *
+     * @param hash
+     * @return
+     */
+    public long estimateHash(long hash) {
+        long second = Hashing.mix(hash ^ 0x9e3779b97f4a7c15L);
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[row][index(hash, second, row)]);
+        }
+
+        return estimate;
+    }
+
+    /**
+     * The row indexes are derived from two hashes (Kirsch and Mitzenmacher), so a value is hashed once.
+     */
+    private int index(long hash, long second, int row) {
+        return (int) Long.remainderUnsigned(hash + row * second, width);
+    }
+
+    /**
+     * Adds the counts of other, which must have the same dimensions.
+     *
+     * @param other
+     */
+    public void merge(CountMinSketch other) {
+        checkDimensions(other);
+
+        for (int row = 0; row < depth; row++) {
+            for (int i = 0; i < width; i++) {
+                counts[row][i] += other.counts[row][i];
+            }
+        }
+
+        total += other.total;
+    }
+
+    /**
+     * Compares the counts of two sketches with the same dimensions.
+     *
+     * @param other
+     * @return
+     */
+    public Difference compare(CountMinSketch other) {
+        checkDimensions(other);
+
+        int differentCells = 0;
+        long countDifference = 0;
+
+        // Each row is a partition of the values, so every row gives a lower bound.  The best row is kept.
+        for (int row = 0; row < depth; row++) {
+            int rowCells = 0;
+            long rowDifference = 0;
+
+            for (int i = 0; i < width; i++) {
+                long difference = Math.abs(counts[row][i] - other.counts[row][i]);
+
+                if (difference != 0) {
+                    rowCells++;
+                    rowDifference += difference;
+                }
+            }
+
+            differentCells = Math.max(differentCells, rowCells);
+            countDifference = Math.max(countDifference, rowDifference);
+        }
+
+        return new Difference(differentCells, countDifference);
+    }
+
+    private void checkDimensions(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException(String.format("Cannot combine a %sx%s sketch with a %sx%s sketch", other.depth, other.width, depth, width));
+        }
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * The bound on the overestimate of estimateHash(), as a fraction of getTotal().
+     *
+     * @return
+     */
+    public double getEpsilon() {
+        return Math.E / width;
+    }
+
+    /**
+     * The probability that an estimate is off by more than getEpsilon() of getTotal().
+     *
+     * @return
+     */
+    public double getDelta() {
+        return Math.pow(2, -depth);
+    }
+
+    /**
+     * What compare() proved about the difference between two value streams.  Both numbers are lower bounds: values
+     * that collide in every row can hide each other's differences, never invent one.
+     */
+    public static class Difference {
+        private final int values;
+
+        private final long count;
+
+        Difference(int values, long count) {
+            this.values = values;
+            this.count = count;
+        }
+
+        /**
+         * At least this many values occur a different number of times.
+         *
+         * @return
+         */
+        public int getValues() {
+            return values;
+        }
+
+        /**
+         * The occurrence counts differ by at least this much in total.
+         *
+         * @return
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public boolean isZero() {
+            return values == 0;
+        }
+    }
+}
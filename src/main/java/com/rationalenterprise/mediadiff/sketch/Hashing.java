@@ -0,0 +1,68 @@
+package com.rationalenterprise.mediadiff.sketch;
+
+/**
+ * The 64 bit hash the sketches are built on.  Values are hashed straight from their chars, so no byte array is
+ * encoded per value.
+ */
+public class Hashing {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * FNV-1a over the chars of value followed by the MurmurHash3 finalizer, which spreads every input bit over the
+     * whole hash (the sketches use both the high and the low bits).
+     *
+     * @param value
+     * @return
+     */
+    public static long hash64(CharSequence value) {
+        long hash = FNV_OFFSET;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * Like hash64(CharSequence) over bytes[from, to), for values that are never decoded (see ByteFields).  The hash of
+     * a value's bytes is not the hash of its chars, so sketches that are compared must be filled the same way.
+     *
+     * @param bytes
+     * @param from
+     * @param to
+     * @return
+     */
+    public static long hash64(byte[] bytes, int from, int to) {
+        long hash = FNV_OFFSET;
+
+        for (int i = from; i < to; i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= FNV_PRIME;
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * The MurmurHash3 64 bit finalizer.
+     *
+     * @param hash
+     * @return
+     */
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
@@ -0,0 +1,102 @@
+package com.rationalenterprise.mediadiff.sketch;
+
+/**
+ * Estimates the number of distinct values in a fixed 2^precision bytes, whatever the number of values.  The standard
+ * error is about 1.04 / sqrt(2^precision): 1.6% at the default precision of 12 (4 KB).  Small counts are estimated
+ * by linear counting, so they are close to exact.
+ *
+ * Sketches with the same precision can be merged, which is how per-thread sketches are combined.
+ */
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18: " + precision);
+        }
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(CharSequence value) {
+        addHash(Hashing.hash64(value));
+    }
+
+    /**
+     * Adds a value by its 64 bit hash (see Hashing.hash64()).
+     *
+     * @param hash
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The remaining bits with a stop bit, so the rank is at most 64 - precision + 1.
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Adds the values of other, which must have the same precision.
+     *
+     * @param other
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(String.format("Cannot merge precision %s into precision %s", other.precision, precision));
+        }
+
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * The relative error of estimate() at 95% confidence: twice the standard error.
+     *
+     * @return
+     */
+    public double getErrorBound() {
+        return 2 * 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * The estimated number of distinct values added.
+     *
+     * @return
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+
+        return Math.round(estimate);
+    }
+}
@@ -0,0 +1,165 @@
+package com.rationalenterprise.mediadiff.sketch;
+
+/**
+ * A bottom-k MinHash: the k smallest distinct hashes of a set of values.  The k smallest hashes of the union of two
+ * sets are a uniform sample of the union, so the fraction of them found in both sketches estimates the Jaccard
+ * similarity of the sets (the size of the intersection over the size of the union), with a standard error of at most
+ * 0.5 / sqrt(k).  Each value costs one comparison unless its hash is among the k smallest so far.
+ *
+ * A sketch of a set with fewer than k distinct values holds all of them, so similarity() is exact for such sets.
+ */
+public class MinHash {
+    private final int k;
+
+    /**
+     * The smallest hashes in ascending order.
+     */
+    private final long[] hashes;
+
+    private int size = 0;
+
+    public MinHash(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+
+        this.k = k;
+        this.hashes = new long[k];
+    }
+
+    public void add(CharSequence value) {
+        addHash(Hashing.hash64(value));
+    }
+
+    /**
+     * Adds a value by its 64 bit hash (see Hashing.hash64()).  Hashes are ordered as unsigned numbers.
+     *
+     * @param hash
+     */
+    public void addHash(long hash) {
+        if (size == k && Long.compareUnsigned(hash, hashes[k - 1]) >= 0) {
+            return;
+        }
+
+        int index = search(hash);
+
+        if (index >= 0) {
+            return;
+        }
+
+        index = -index - 1;
+
+        int moved = Math.min(size, k - 1) - index;
+
+        if (moved > 0) {
+            System.arraycopy(hashes, index, hashes, index + 1, moved);
+        }
+
+        hashes[index] = hash;
+        size = Math.min(size + 1, k);
+    }
+
+    /**
+     * Adds the set of other, which must have the same k.
+     *
+     * @param other
+     */
+    public void merge(MinHash other) {
+        checkK(other);
+
+        for (int i = 0; i < other.size; i++) {
+            addHash(other.hashes[i]);
+        }
+    }
+
+    /**
+     * The estimated Jaccard similarity of the sets of this sketch and other, 1 when both are empty.
+     *
+     * @param other
+     * @return
+     */
+    public double similarity(MinHash other) {
+        checkK(other);
+
+        if (size == 0 && other.size == 0) {
+            return 1;
+        }
+
+        // Walk the union of the two sorted samples up to its k smallest hashes.
+        int i = 0;
+        int j = 0;
+        int union = 0;
+        int both = 0;
+
+        while (union < k && (i < size || j < other.size)) {
+            int compare = i == size ? 1 : j == other.size ? -1 : Long.compareUnsigned(hashes[i], other.hashes[j]);
+
+            if (compare == 0) {
+                both++;
+                i++;
+                j++;
+            } else if (compare < 0) {
+                i++;
+            } else {
+                j++;
+            }
+
+            union++;
+        }
+
+        return (double) both / union;
+    }
+
+    /**
+     * True when the sketch holds every distinct hash added, so similarity() with another exact sketch is exact.
+     *
+     * @return
+     */
+    public boolean isExact() {
+        return size < k;
+    }
+
+    /**
+     * The number of hashes held: the number of distinct values added while isExact().
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The 95% error bound of similarity() when it is not exact.
+     *
+     * @return
+     */
+    public double getErrorBound() {
+        return 1 / Math.sqrt(k);
+    }
+
+    private int search(long hash) {
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = Long.compareUnsigned(hashes[middle], hash);
+
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    private void checkK(MinHash other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException(String.format("Cannot combine k %s with k %s", other.k, k));
+        }
+    }
+}
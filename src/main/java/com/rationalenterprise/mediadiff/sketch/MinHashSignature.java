@@ -0,0 +1,143 @@
+package com.rationalenterprise.mediadiff.sketch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A MinHash signature of the contents of a file, for finding files that are nearly the same (a spreadsheet saved
+ * again, a PST a few bytes apart, a text with other line endings).  The set hashed is the file's 8 byte shingles (every
+ * run of 8 consecutive bytes), so a change of a few bytes only changes the shingles around it.
+ *
+ * This is one permutation hashing: each shingle is hashed once, its top bits choose one of SLOTS slots and the slot
+ * keeps its smallest hash.  A slot of two signatures holds the same hash with the probability of the Jaccard
+ * similarity of their shingle sets, so signatures are compared slot by slot (see similarity()) and their bands can be
+ * indexed to find similar files without comparing every pair (see band()).  Unlike MinHash, which keeps the k smallest
+ * hashes of one set, the slots can be compared position by position.
+ */
+public class MinHashSignature {
+    public static final int SLOTS = 64;
+
+    private static final int SHINGLE_BYTES = 8;
+
+    /**
+     * The value of a slot no shingle fell into (the largest unsigned hash).
+     */
+    private static final long EMPTY = -1L;
+
+    private final long[] slots = new long[SLOTS];
+
+    private MinHashSignature() {
+        Arrays.fill(slots, EMPTY);
+    }
+
+    public static MinHashSignature of(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return of(in);
+        }
+    }
+
+    /**
+     * The signature of the bytes read from in, which is not closed.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static MinHashSignature of(InputStream in) throws IOException {
+        MinHashSignature signature = new MinHashSignature();
+        byte[] buffer = new byte[64 * 1024];
+        long shingle = 0;
+        long bytes = 0;
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                shingle = (shingle << 8) | (buffer[i] & 0xFF);
+
+                if (++bytes >= SHINGLE_BYTES) {
+                    signature.add(Hashing.mix(shingle));
+                }
+            }
+        }
+
+        // A file shorter than a shingle is its only shingle.
+        if (bytes > 0 && bytes < SHINGLE_BYTES) {
+            signature.add(Hashing.mix(shingle ^ (bytes << 56)));
+        }
+
+        return signature;
+    }
+
+    private void add(long hash) {
+        int slot = (int) (hash >>> 58);
+
+        if (Long.compareUnsigned(hash, slots[slot]) < 0) {
+            slots[slot] = hash;
+        }
+    }
+
+    /**
+     * The estimated Jaccard similarity of the shingle sets of the two files: the fraction of the slots filled in
+     * either signature that hold the same hash.  1 when both files are empty.
+     *
+     * @param other
+     * @return
+     */
+    public double similarity(MinHashSignature other) {
+        int filled = 0;
+        int same = 0;
+
+        for (int i = 0; i < SLOTS; i++) {
+            if (slots[i] != EMPTY || other.slots[i] != EMPTY) {
+                filled++;
+
+                if (slots[i] == other.slots[i]) {
+                    same++;
+                }
+            }
+        }
+
+        return filled == 0 ? 1 : (double) same / filled;
+    }
+
+    /**
+     * A hash of the rows slots of band band (slots band * rows to band * rows + rows - 1).  Two signatures have the
+     * same band hash with a probability of about similarity ^ rows, so files that share any of SLOTS / rows bands are
+     * likely to be similar (see NearDuplicateIndex).  A band whose slots are all empty (see hasBand()) hashes the same
+     * in every signature, so it says nothing about similarity.
+     *
+     * @param band
+     * @param rows
+     * @return
+     */
+    public long band(int band, int rows) {
+        long hash = band;
+
+        for (int i = band * rows; i < band * rows + rows; i++) {
+            hash = Hashing.mix(hash * 31 + slots[i]);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Whether a shingle fell into any of the rows slots of band band.  A small file fills few of the SLOTS slots, so
+     * most of its bands are empty.
+     *
+     * @param band
+     * @param rows
+     * @return
+     */
+    public boolean hasBand(int band, int rows) {
+        for (int i = band * rows; i < band * rows + rows; i++) {
+            if (slots[i] != EMPTY) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,225 @@
+package com.rationalenterprise.mediadiff.sketch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Space-Saving heavy hitter sketch: the most frequent values and their counts in a fixed number of counters.
+ *
+ * While there are fewer distinct values than counters, every count is exact.  After that a new value takes over the
+ * counter with the smallest count, inheriting that count as its error, so a count never underestimates and
+ * overestimates by at most getError().  Any value occurring more than n / capacity times is guaranteed to be kept.
+ *
+ * The counters are kept in an indexed min-heap, so each value costs a hash lookup and O(log capacity) swaps.
+ */
+public class SpaceSaving {
+    private final int capacity;
+
+    private final Map<String, Counter> counters = new HashMap<>();
+
+    private final Counter[] heap;
+
+    private int size = 0;
+
+    private long total = 0;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.heap = new Counter[capacity];
+    }
+
+    public void add(String value) {
+        add(value, 1, 0);
+    }
+
+    private void add(String value, long count, long error) {
+        total += count;
+
+        Counter counter = counters.get(value);
+
+        if (counter != null) {
+            counter.count += count;
+            counter.error += error;
+            siftDown(counter.index);
+        } else if (size < capacity) {
+            counter = new Counter(value, count, error);
+            counter.index = size;
+            heap[size++] = counter;
+            counters.put(value, counter);
+            siftUp(counter.index);
+        } else {
+            counter = heap[0];
+            counters.remove(counter.value);
+            counter.value = value;
+            counter.error = counter.count + error;
+            counter.count += count;
+            counters.put(value, counter);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Adds the values of other.  A value missing from a full sketch may have been counted up to its smallest count,
+     * so that count is added to the value's count and error, which keeps the counts upper bounds.
+     *
+     * @param other
+     */
+    public void merge(SpaceSaving other) {
+        long mergedTotal = total + other.total;
+        long otherMin = other.size == other.capacity ? other.heap[0].count : 0;
+
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            if (!other.counters.containsKey(entry.getKey()) && otherMin > 0) {
+                entry.getValue().count += otherMin;
+                entry.getValue().error += otherMin;
+            }
+        }
+
+        // The counts changed without the heap, so restore the order before adding.
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+
+        // A value missing from this sketch when it is full takes over its smallest counter and inherits that count.
+        for (int i = 0; i < other.size; i++) {
+            add(other.heap[i].value, other.heap[i].count, other.heap[i].error);
+        }
+
+        total = mergedTotal;
+    }
+
+    /**
+     * The k most frequent values, most frequent first (ties by value).
+     *
+     * @param k
+     * @return
+     */
+    public List<Counter> top(int k) {
+        List<Counter> top = new ArrayList<>(counters.values());
+
+        top.sort((c1, c2) -> {
+            int compareTo = Long.compare(c2.count, c1.count);
+
+            return compareTo != 0 ? compareTo : c1.value.compareTo(c2.value);
+        });
+
+        return new ArrayList<>(top.subList(0, Math.min(k, top.size())));
+    }
+
+    /**
+     * True while every count is exact (the sketch never ran out of counters).
+     *
+     * @return
+     */
+    public boolean isExact() {
+        for (int i = 0; i < size; i++) {
+            if (heap[i].error > 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The number of counters in use: the number of distinct values added while isExact().
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of values added.
+     *
+     * @return
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+
+            move(heap[parent], index);
+            index = parent;
+        }
+
+        move(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+
+        while (true) {
+            int child = 2 * index + 1;
+
+            if (child >= size) {
+                break;
+            }
+
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+
+            move(heap[child], index);
+            index = child;
+        }
+
+        move(counter, index);
+    }
+
+    private void move(Counter counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    /**
+     * A value and its count.  The true count is between getCount() - getError() and getCount().
+     */
+    public static class Counter {
+        private String value;
+
+        private long count;
+
+        private long error;
+
+        private int index;
+
+        Counter(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import com.rationalenterprise.mediadiff.metrics.Metrics;
+import com.rationalenterprise.mediadiff.metrics.Phase;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveIndexTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes a ZIP archive of the entries (name, then contents), with a directory entry first.
+     */
+    private void zip(Path root, String path, String... entries) throws IOException {
+        Files.createDirectories(root.resolve(path).getParent());
+
+        try (OutputStream out = Files.newOutputStream(root.resolve(path)); ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("empty/"));
+            zip.closeEntry();
+
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    void listsAndHashesEntriesAsFilesUnderTheArchive() throws IOException {
+        Path root1 = directory.resolve("1");
+        Path root2 = directory.resolve("2");
+
+        zip(root1, "001/DOC1.zip", "mail/a.msg", "hello", "b.txt", "same", "c.txt", "abc");
+        zip(root2, "001/DOC1.zip", "mail/a.msg", "hello", "b.txt", "same", "c.txt", "abd");
+
+        ArchiveIndex index1 = new ArchiveIndex(root1);
+        ArchiveIndex index2 = new ArchiveIndex(root2);
+        String archive = "001" + File.separator + "DOC1.zip";
+        String a = archive + File.separator + "mail" + File.separator + "a.msg";
+        String b = archive + File.separator + "b.txt";
+        String c = archive + File.separator + "c.txt";
+
+        assertTrue(ArchiveIndex.isArchive("DOC1.ZIP"));
+        assertEquals(List.of(a, b, c), index1.expand(archive));
+        assertEquals(List.of(a, b, c), index2.expand(archive));
+        assertTrue(index1.isEntry(b));
+        assertFalse(index1.isEntry(archive));
+
+        CRC32 crc = new CRC32();
+
+        crc.update("hello".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(5, index1.getSize(a));
+        assertEquals(crc.getValue(), index1.getCrc(a));
+        assertTrue(index1.mayBeEqual(a, index2, a));
+        assertTrue(index1.mayBeEqual(b, index2, b));
+        assertFalse(index1.mayBeEqual(c, index2, c));
+        assertFalse(index1.mayBeEqual(a, index2, b));
+
+        try (Phase phase = new Metrics("test", false).start("Hash")) {
+            index1.hash(List.of(a, c), 2, phase);
+        }
+
+        assertEquals(DigestUtils.md5Hex("hello"), index1.getMd5(a));
+        assertEquals(DigestUtils.md5Hex("abc"), index1.getMd5(c));
+        assertNull(index1.getMd5(b));
+    }
+
+    @Test
+    void leavesAFileThatIsNotAnArchive() throws IOException {
+        Files.writeString(directory.resolve("DOC1.zip"), "not a zip");
+
+        assertNull(new ArchiveIndex(directory).expand("DOC1.zip"));
+    }
+}
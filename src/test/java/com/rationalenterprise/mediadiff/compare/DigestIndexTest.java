@@ -0,0 +1,43 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DigestIndexTest {
+    @Test
+    void countsDigestsLikeAHashMapOfTheirHex() {
+        Random random = new Random(46);
+        DigestIndex index = new DigestIndex();
+        Map<String, Integer> counts = new HashMap<>();
+
+        // Enough distinct digests to grow the arrays several times.
+        for (int i = 0; i < 20_000; i++) {
+            String md5 = DigestUtils.md5Hex(String.valueOf(random.nextInt(10_000)));
+
+            counts.merge(md5, 1, Integer::sum);
+            assertEquals(counts.get(md5), index.add(random.nextBoolean() ? md5 : md5.toUpperCase(Locale.ROOT)));
+        }
+
+        assertEquals(counts.size(), index.size());
+        counts.forEach((md5, count) -> assertEquals(count, index.count(md5.toUpperCase(Locale.ROOT)), md5));
+        assertEquals(0, index.count(DigestUtils.md5Hex("not added")));
+    }
+
+    @Test
+    void acceptsOnlyTheHexOfAnMd5() {
+        assertTrue(DigestIndex.isValid("d41d8cd98f00b204e9800998ecf8427E"));
+        assertFalse(DigestIndex.isValid("d41d8cd98f00b204e9800998ecf8427"));
+        assertFalse(DigestIndex.isValid("d41d8cd98f00b204e9800998ecf8427g"));
+        assertFalse(DigestIndex.isValid(""));
+        assertEquals(0, new DigestIndex().count("not an md5"));
+    }
+}
@@ -0,0 +1,38 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import com.rationalenterprise.mediadiff.sketch.MinHashSignature;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NearDuplicateIndexTest {
+    private static MinHashSignature sign(String text) throws IOException {
+        return MinHashSignature.of(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void unrelatedSmallFilesAreNotCandidates() throws IOException {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+
+        index.add(sign("The quick brown fox jumps."));
+        index.add(sign(""));
+
+        // With a threshold of 0 any candidate is a match, so -1 means no band was shared.
+        assertEquals(-1, index.findMostSimilar(sign("Invoice 20417, due in May."), 0));
+        assertEquals(-1, index.findMostSimilar(sign(""), 0));
+    }
+
+    @Test
+    void similarSmallFilesAreCandidates() throws IOException {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+
+        index.add(sign("Invoice 20417, due in May."));
+        index.add(sign("The quick brown fox jumps over the lazy dog, then sleeps until noon."));
+
+        assertEquals(1, index.findMostSimilar(sign("The quick brown fox jumps over the lazy dog, then sleeps until ten."), 0.5));
+    }
+}
@@ -0,0 +1,111 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextDiffTest {
+    @TempDir
+    Path directory;
+
+    private TextDiff diff(List<String> lines1, List<String> lines2, int maxEdits) throws IOException {
+        Path file1 = directory.resolve("1.txt");
+        Path file2 = directory.resolve("2.txt");
+
+        Files.writeString(file1, text(lines1), StandardCharsets.UTF_8);
+        Files.writeString(file2, text(lines2), StandardCharsets.UTF_8);
+
+        return TextDiff.diff(file1, file2, Long.MAX_VALUE, maxEdits);
+    }
+
+    private static String text(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * The length of the longest common subsequence, by dynamic programming.
+     */
+    private static int lcs(List<String> lines1, List<String> lines2) {
+        int[][] lengths = new int[lines1.size() + 1][lines2.size() + 1];
+
+        for (int i = 1; i <= lines1.size(); i++) {
+            for (int j = 1; j <= lines2.size(); j++) {
+                lengths[i][j] = lines1.get(i - 1).equals(lines2.get(j - 1)) ? lengths[i - 1][j - 1] + 1
+                        : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+
+        return lengths[lines1.size()][lines2.size()];
+    }
+
+    private static List<String> randomLines(Random random) {
+        List<String> lines = new ArrayList<>();
+
+        for (int i = random.nextInt(12); i > 0; i--) {
+            lines.add(String.valueOf((char) ('a' + random.nextInt(3))));
+        }
+
+        return lines;
+    }
+
+    @Test
+    void summarizesTheFirstHunk() throws IOException {
+        TextDiff diff = diff(List.of("a", "b", "c", "d"), List.of("a", "b", "C", "d", "e"), 10);
+
+        assertTrue(diff.isCompared());
+        assertEquals(List.of("first difference at byte 4 (line 3, column 1), 1 lines deleted, 2 lines inserted",
+                "  a", "  b", "- c", "+ C"), diff.format());
+    }
+
+    @Test
+    void givesUpPastMaxEdits() throws IOException {
+        // 4 edits, found by the reverse search.
+        List<String> lines1 = List.of("a", "b");
+        List<String> lines2 = List.of("c", "d");
+
+        assertFalse(diff(lines1, lines2, 3).isCompared());
+        assertTrue(diff(lines1, lines2, 4).isCompared());
+    }
+
+    @Test
+    void countsTheEditsOfTheShortestScript() throws IOException {
+        Random random = new Random(47);
+
+        for (int i = 0; i < 3000; i++) {
+            List<String> lines1 = randomLines(random);
+            List<String> lines2 = randomLines(random);
+            int maxEdits = random.nextInt(10);
+            int common = lcs(lines1, lines2);
+            int edits = lines1.size() + lines2.size() - 2 * common;
+            TextDiff diff = diff(lines1, lines2, maxEdits);
+            String message = lines1 + " " + lines2 + " max " + maxEdits;
+
+            if (edits == 0) {
+                assertEquals(-1, diff.getFirstMismatch(), message);
+            } else if (edits > maxEdits) {
+                assertFalse(diff.isCompared(), message);
+            } else {
+                assertTrue(diff.isCompared(), message);
+                assertEquals(lines1.size() - common, diff.getDeleted(), message);
+                assertEquals(lines2.size() - common, diff.getInserted(), message);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextNormalizerTest {
+    private static String md5(String text) throws IOException {
+        return TextNormalizer.md5(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void largeNonAsciiTextDigestsLikeTheWholeText() throws IOException {
+        // Decomposed Greek words (alpha, epsilon and omicron with a combining acute accent), without ASCII letters.
+        String[] words = {"\u03B1\u0301\u03B2\u03B3", "\u03B4\u03B5\u0301", "\u03BF\u0301\u03BC\u03B1\u0301\u03B4\u03B1"};
+        StringBuilder normalized = new StringBuilder();
+        StringBuilder messy = new StringBuilder("\uFEFF");
+
+        for (int i = 0; i < 20000; i++) {
+            String separator = i % 7 == 6 ? "\n" : " ";
+
+            normalized.append(words[i % words.length]).append(separator);
+            messy.append(words[i % words.length]).append(separator.equals("\n") ? " \t\r\n" : "\u00A0 ");
+        }
+
+        String expected = DigestUtils.md5Hex(Normalizer.normalize(normalized.toString().trim(), Normalizer.Form.NFC));
+
+        assertEquals(expected, md5(normalized.toString()));
+        assertEquals(expected, md5(messy.toString()));
+    }
+}
@@ -0,0 +1,41 @@
+package com.rationalenterprise.mediadiff.compare;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValueComparatorTest {
+    private final ValueComparator comparator = new ValueComparator(Map.of(), ";");
+
+    @Test
+    void numbersEqualIgnoresFormatting() {
+        assertTrue(comparator.numbersEqual("1234.50", "1234.5"));
+        assertTrue(comparator.numbersEqual("+007", " 7 "));
+        assertTrue(comparator.numbersEqual("-0.0", "0"));
+        assertTrue(comparator.numbersEqual("1.5e3", "1500"));
+        assertFalse(comparator.numbersEqual("-1", "1"));
+        assertFalse(comparator.numbersEqual("12", "1.2"));
+    }
+
+    @Test
+    void numbersEqualAcceptsThousandsSeparators() {
+        assertTrue(comparator.numbersEqual("1,234", "1234"));
+        assertTrue(comparator.numbersEqual("1,234,567.25", "1234567.25"));
+        assertTrue(comparator.numbersEqual("-12,345", "-12345.0"));
+    }
+
+    @Test
+    void numbersEqualRejectsMisplacedCommas() {
+        assertFalse(comparator.numbersEqual("1,2,3", "123"));
+        assertFalse(comparator.numbersEqual(",5", "5"));
+        assertFalse(comparator.numbersEqual("5,", "5"));
+        assertFalse(comparator.numbersEqual("1,23", "123"));
+        assertFalse(comparator.numbersEqual("1234,567", "1234567"));
+        assertFalse(comparator.numbersEqual("1,,234", "1234"));
+        assertFalse(comparator.numbersEqual("1.234,5", "1.2345"));
+        assertFalse(comparator.numbersEqual("1,000e3", "1000000"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.rationalenterprise.mediadiff.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelTest {
+    @Test
+    void chunksCoverTheListInOrder() {
+        List<Integer> list = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+        }
+
+        List<List<Integer>> chunks = Parallel.chunks(2, list);
+        List<Integer> joined = new ArrayList<>();
+
+        chunks.forEach(joined::addAll);
+
+        assertEquals(8, chunks.size());
+        assertEquals(list, joined);
+        assertEquals(3, Parallel.chunks(4, list.subList(0, 3)).size());
+        assertEquals(List.of(), Parallel.chunks(4, List.of()));
+    }
+
+    @Test
+    void mapChunksKeepsTheOrderOfTheList() throws IOException {
+        List<Integer> list = new ArrayList<>();
+        List<Integer> doubled = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            list.add(i);
+            doubled.add(2 * i);
+        }
+
+        assertEquals(doubled, Parallel.mapChunks(3, list, i -> {
+            if (i % 7 == 0) {
+                Thread.yield();
+            }
+
+            return 2 * i;
+        }));
+        assertEquals(List.of(), Parallel.mapChunks(3, List.<Integer>of(), i -> i));
+    }
+
+    @Test
+    void mapChunksRethrowsTheFailure() {
+        IOException e = assertThrows(IOException.class, () -> Parallel.mapChunks(2, List.of(1, 2, 3), i -> {
+            if (i == 2) {
+                throw new IOException("2");
+            }
+
+            return i;
+        }));
+
+        assertEquals("2", e.getMessage());
+    }
+
+    @Test
+    void bothReturnsBothResults() throws IOException {
+        Parallel.Pair<String, Integer> pair = Parallel.both(() -> "first", () -> 2);
+
+        assertEquals("first", pair.getFirst());
+        assertEquals(2, pair.getSecond());
+    }
+
+    @Test
+    void bothClosesTheSecondResultWhenFirstFails() {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        IOException e = assertThrows(IOException.class, () -> Parallel.both(() -> {
+            secondDone.await();
+
+            throw new IOException("first");
+        }, () -> {
+            secondDone.countDown();
+
+            return (Closeable) () -> closed.set(true);
+        }));
+
+        assertEquals("first", e.getMessage());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void bothClosesTheFirstResultWhenSecondFails() {
+        AtomicBoolean closed = new AtomicBoolean(false);
+
+        IOException e = assertThrows(IOException.class, () -> Parallel.both(() -> (Closeable) () -> closed.set(true), () -> {
+            throw new IOException("second");
+        }));
+
+        assertEquals("second", e.getMessage());
+        assertTrue(closed.get());
+    }
+}
@@ -0,0 +1,37 @@
+package com.rationalenterprise.mediadiff.daemon;
+
+import com.rationalenterprise.mediadiff.service.DirectoryService;
+import com.rationalenterprise.mediadiff.service.LoadFileService;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DaemonServerTest {
+    private static final Path WORKING_DIRECTORY = Path.of("/work");
+
+    @Test
+    void resolvePathsResolvesPathOptions() {
+        CommandLine.ParseResult parseResult = new CommandLine(new DirectoryService()).parseArgs("--path-1", "a", "--path-2", "/b");
+
+        DaemonServer.resolvePaths(parseResult, WORKING_DIRECTORY);
+
+        assertEquals(Path.of("/work/a"), parseResult.matchedOption("--path-1").getValue());
+        assertEquals(Path.of("/b"), parseResult.matchedOption("--path-2").getValue());
+    }
+
+    @Test
+    void resolvePathsResolvesEveryPathOfRepeatedOptions() {
+        CommandLine.ParseResult directory = new CommandLine(new DirectoryService()).parseArgs("--n-way", "--path", "a", "--path", "/b", "--path", "c/d");
+        CommandLine.ParseResult loadFile = new CommandLine(new LoadFileService()).parseArgs("--n-way", "--path", "VOL*.dat", "--path", "/e.dat");
+
+        DaemonServer.resolvePaths(directory, WORKING_DIRECTORY);
+        DaemonServer.resolvePaths(loadFile, WORKING_DIRECTORY);
+
+        assertEquals(List.of(Path.of("/work/a"), Path.of("/b"), Path.of("/work/c/d")), directory.matchedOption("--path").getValue());
+        assertEquals(List.of(Path.of("/work/VOL*.dat"), Path.of("/e.dat")), loadFile.matchedOption("--path").getValue());
+    }
+}
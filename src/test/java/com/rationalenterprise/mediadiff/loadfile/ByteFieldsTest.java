@@ -0,0 +1,88 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteFieldsTest {
+    private static ByteFields split(String row) {
+        byte[] bytes = row.getBytes(StandardCharsets.UTF_8);
+
+        return new ByteFields().split(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void contentEqualsEncodesTheText() {
+        String[] values = {"plain", "Zo\u00EB caf\u00E9", "\u20AC 5", "\uD83D\uDE00 emoji", ""};
+        ByteFields fields = split(String.join("\u0014", values));
+
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(fields.contentEquals(i, values[i]), values[i]);
+            assertFalse(fields.contentEquals(i, values[i] + "x"), values[i]);
+        }
+
+        assertFalse(fields.contentEquals(1, "Zoe cafe"));
+        assertFalse(fields.contentEquals(2, "\u20AD 5"));
+        assertFalse(fields.contentEquals(3, "\uD83D emoji"));
+        assertFalse(fields.contentEquals(0, "plai"));
+    }
+
+    @Test
+    void charSequenceViewsAsciiValues() {
+        ByteFields fields = split("1,234.50\u0014\u00FE12\u00FE\u00FE3\u00FE\u0014caf\u00E9");
+
+        assertEquals("1,234.50", fields.charSequence(0).toString());
+        assertEquals('4', fields.charSequence(0).charAt(4));
+        assertEquals("12\u00FE3", fields.charSequence(1).toString());
+        assertEquals("caf\u00E9", fields.charSequence(2).toString());
+    }
+
+    private static List<String> values(ByteFields fields) {
+        List<String> values = new ArrayList<>();
+
+        for (int i = 0; i < fields.size(); i++) {
+            values.add(fields.toString(i));
+        }
+
+        return values;
+    }
+
+    @Test
+    void splitsRowsLikeTheTokenizer() {
+        String[] rows = {
+                "a\u0014b\u0014c",
+                "\u00FEa\u00FE\u0014\u00FEb\u0014c\u00FE\u0014\u00FE\u00FE",
+                "\u00FEline 1\r\nline 2\u00FE\u0014\u00FEsaid \u00FE\u00FEhi\u00FE\u00FE\u00FE",
+                "caf\u00E9\u0014\u00FEcaf\u00E9 \u00FE\u00FE\u00E9\u00FE\u0014",
+                "\u0014\u0014",
+                "x\u00FEy\u0014\u00FEa\u00FEb\u00FEc\u00FE",
+                "\uD83D\uDE00\u0014\u00FE\uD83D\uDE00\u00FE"
+        };
+
+        for (String row : rows) {
+            assertEquals(Arrays.asList(ColumnCounter.newTokenizer().reset(row).getTokenArray()), values(split(row)), row);
+        }
+    }
+
+    @Test
+    void projectionCopiesOnlyTheProjectedFields() {
+        byte[] bytes = "a\u0014\u00FEb\u0014x\u00FE\u0014c\u0014\u00FEd\u00FE\u00FE\u00FE\u0014e".getBytes(StandardCharsets.UTF_8);
+        ByteFields fields = new ByteFields(3, 1, -1).split(bytes, 0, bytes.length);
+
+        assertEquals(List.of("", "b\u0014x", "", "d\u00FE"), values(fields));
+        assertEquals(0, fields.length(0));
+
+        // The projected fields past the end of a short row are missing.
+        bytes = "a\u0014b".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(List.of("", "b"), values(fields.split(bytes, 0, bytes.length)));
+        assertEquals(List.of("a", "b", "c"), values(new ByteFields().split("a\u0014b\u0014c".getBytes(StandardCharsets.UTF_8), 0, 5)));
+    }
+}
@@ -0,0 +1,20 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnCounterTest {
+    @Test
+    void labelsNumberDuplicateNames() {
+        assertEquals(List.of("ID", "A", "A [2]", "B", "A [3]"), ColumnCounter.labels(List.of("ID", "A", "A", "B", "A")));
+    }
+
+    @Test
+    void labelsSkipNumbersUsedByOtherColumns() {
+        assertEquals(List.of("A", "A [2]", "A [3]"), ColumnCounter.labels(List.of("A", "A [2]", "A")));
+        assertEquals(List.of("A", "A [3]", "A [2]", "A [4]"), ColumnCounter.labels(List.of("A", "A", "A [2]", "A")));
+    }
+}
@@ -0,0 +1,88 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random dat rows for the reader tests: values quoted or not, quoted values with line breaks, delimiters, doubled
+ * thorns and characters of 2 to 4 bytes (one of which starts with the first byte of a thorn), and a few values long
+ * enough to cross the buffers of the readers.
+ */
+final class RandomDat {
+    static final String DELIMITER = "\u0014";
+
+    static final String THORN = "\u00FE";
+
+    private static final String[] QUOTED = {"a", "b", " ", "\u00E9", "\u20AC", "\uD83D\uDE00", "\n", "\r\n", DELIMITER, THORN + THORN};
+
+    private static final String[] UNQUOTED = {"a", "b", "1", " ", "\u00E9", "\u20AC", "\uD83D\uDE00"};
+
+    private RandomDat() {
+    }
+
+    /**
+     * The values of a row, as they are written in the row (quoted values with their thorns).
+     */
+    static List<String> values(Random random) {
+        List<String> values = new ArrayList<>();
+
+        for (int i = 1 + random.nextInt(20); i > 0; i--) {
+            boolean quoted = random.nextInt(3) > 0;
+            String[] pieces = quoted ? QUOTED : UNQUOTED;
+            int length = random.nextInt(50) == 0 ? 5000 : random.nextInt(30);
+            StringBuilder value = new StringBuilder(quoted ? THORN : "");
+
+            for (int j = 0; j < length; j++) {
+                value.append(pieces[random.nextInt(pieces.length)]);
+            }
+
+            values.add(quoted ? value.append(THORN).toString() : value.toString());
+        }
+
+        // An empty row has no values.
+        if (values.size() == 1 && values.get(0).isEmpty()) {
+            values.set(0, "a");
+        }
+
+        return values;
+    }
+
+    /**
+     * The value the tokenizer gives for a value written in a row.
+     */
+    static String token(String value) {
+        return value.startsWith(THORN) ? value.substring(1, value.length() - 1).replace(THORN + THORN, THORN) : value;
+    }
+
+    static String row(List<String> values) {
+        return String.join(DELIMITER, values);
+    }
+
+    /**
+     * Writes the rows, ended by "\r\n" or "\n", to file.
+     */
+    static void write(Path file, List<List<String>> rows, Random random) throws IOException {
+        StringBuilder text = new StringBuilder();
+
+        for (List<String> values : rows) {
+            text.append(row(values)).append(random.nextBoolean() ? "\r\n" : "\n");
+        }
+
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+    }
+
+    static List<List<String>> rows(Random random, int count) {
+        List<List<String>> rows = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            rows.add(values(random));
+        }
+
+        return rows;
+    }
+}
@@ -0,0 +1,107 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RawLoadFileReaderTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes volumes of random rows larger than a chunk.
+     */
+    private List<Path> volumes(int count) throws IOException {
+        Random random = new Random(40);
+        List<Path> volumes = new ArrayList<>();
+
+        for (int i = 1; i <= count; i++) {
+            Path volume = directory.resolve("VOL00" + i + ".dat");
+
+            RandomDat.write(volume, RandomDat.rows(random, 6000), random);
+            volumes.add(volume);
+        }
+
+        return volumes;
+    }
+
+    /**
+     * Frames the volumes like RawLoadFileReader does: the header of the first volume, then the rows of every volume.
+     */
+    private static long recordReader(List<Path> volumes, int maxFieldLength, List<String> rows) throws IOException {
+        long truncatedValues = 0;
+
+        for (Path volume : volumes) {
+            try (RecordReader records = new RecordReader(Files.newBufferedReader(volume, StandardCharsets.UTF_8), maxFieldLength)) {
+                List<String> volumeRows = RecordReaderTest.readAll(records);
+
+                rows.addAll(rows.isEmpty() ? volumeRows : volumeRows.subList(1, volumeRows.size()));
+                truncatedValues += records.getTruncatedValues();
+            }
+        }
+
+        return truncatedValues;
+    }
+
+    private static long rawReader(List<Path> volumes, int maxFieldLength, List<String> rows) throws IOException {
+        try (RawLoadFileReader reader = new RawLoadFileReader(volumes, null, maxFieldLength)) {
+            rows.add(reader.readHeader());
+
+            RawLoadFileReader.Chunk chunk;
+
+            while ((chunk = reader.readChunk()) != null) {
+                chunk.forEachRow((bytes, from, to) -> rows.add(new String(bytes, from, to - from, StandardCharsets.UTF_8)));
+            }
+
+            assertEquals(rows.size() - 1, reader.getRows());
+
+            return reader.getTruncatedValues();
+        }
+    }
+
+    @Test
+    void framesRowsLikeRecordReaderAcrossChunksAndVolumes() throws IOException {
+        List<Path> volumes = volumes(3);
+        List<String> expected = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+
+        assertEquals(0, recordReader(volumes, RecordReader.DEFAULT_MAX_FIELD_LENGTH, expected));
+        assertEquals(0, rawReader(volumes, RecordReader.DEFAULT_MAX_FIELD_LENGTH, rows));
+        assertEquals(expected, rows);
+    }
+
+    @Test
+    void cutsValuesLikeRecordReader() throws IOException {
+        List<Path> volumes = volumes(2);
+
+        for (int maxFieldLength : new int[] {1, 2, 3, 10, 4000}) {
+            List<String> expected = new ArrayList<>();
+            List<String> rows = new ArrayList<>();
+            long truncatedValues = recordReader(volumes, maxFieldLength, expected);
+
+            assertEquals(truncatedValues, rawReader(volumes, maxFieldLength, rows), "max " + maxFieldLength);
+            assertEquals(expected, rows, "max " + maxFieldLength);
+        }
+    }
+
+    @Test
+    void skipsTheBomOfTheHeader() throws IOException {
+        Path volume = directory.resolve("VOL001.dat");
+
+        Files.writeString(volume, "\uFEFF\u00FEID\u00FE\u0014\u00FEA\u00FE\r\n\u00FE1\u00FE\u0014" + "v".repeat(3_000_000) + "\r\n", StandardCharsets.UTF_8);
+
+        List<String> rows = new ArrayList<>();
+
+        assertEquals(1, rawReader(List.of(volume), 1000, rows));
+        assertEquals(List.of("\u00FEID\u00FE\u0014\u00FEA\u00FE", "\u00FE1\u00FE\u0014" + "v".repeat(1000)), rows);
+    }
+}
@@ -0,0 +1,90 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import org.apache.commons.text.StringTokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecordReaderTest {
+    @TempDir
+    Path directory;
+
+    static List<String> readAll(RecordReader records) throws IOException {
+        List<String> rows = new ArrayList<>();
+        String row;
+
+        while ((row = records.readRecord()) != null) {
+            rows.add(row);
+        }
+
+        return rows;
+    }
+
+    @Test
+    void framesRowsWithQuotedLineBreaksLikeTheTokenizerSplitsThem() throws IOException {
+        Random random = new Random(41);
+        List<List<String>> rows = RandomDat.rows(random, 3000);
+        Path file = directory.resolve("VOL001.dat");
+
+        RandomDat.write(file, rows, random);
+
+        List<String> framed;
+
+        try (RecordReader records = new RecordReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), RecordReader.DEFAULT_MAX_FIELD_LENGTH)) {
+            framed = readAll(records);
+
+            assertEquals(0, records.getTruncatedValues());
+        }
+
+        StringTokenizer tokenizer = ColumnCounter.newTokenizer();
+
+        assertEquals(rows.size(), framed.size());
+
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(RandomDat.row(rows.get(i)), framed.get(i), "row " + i);
+            assertEquals(rows.get(i).stream().map(RandomDat::token).toList(), Arrays.asList(tokenizer.reset(framed.get(i)).getTokenArray()), "row " + i);
+        }
+    }
+
+    @Test
+    void keepsTheBomOfTheFirstRowAndEndsAtEveryLineTerminator() throws IOException {
+        RecordReader records = new RecordReader(new StringReader("\uFEFFa\u0014b\r\nc\rd\n\ne"), 100);
+
+        assertEquals(List.of("\uFEFFa\u0014b", "c", "d", "", "e"), readAll(records));
+        assertNull(records.readRecord());
+    }
+
+    @Test
+    void cutsLongValuesQuotedOrNot() throws IOException {
+        String t = RandomDat.THORN;
+        String d = RandomDat.DELIMITER;
+        RecordReader records = new RecordReader(new StringReader(
+                t + "0123456789abc" + t + d + "0123456789abc" + d + "short" + d + "0123456789" + t + "x" + "\r\n"
+                        + t + "0123\n456789abc" + t + d + "01234567\uD83D\uDE00" + "\n"), 10);
+
+        assertEquals(List.of(t + "012345678" + t + d + "0123456789" + d + "short" + d + "0123456789",
+                t + "0123\n4567" + t + d + "01234567\uD83D\uDE00"), readAll(records));
+        assertEquals(4, records.getTruncatedValues());
+    }
+
+    @Test
+    void cutsAnUnquotedValueLongerThanTheBuffer() throws IOException {
+        String value = "v".repeat(500_000);
+        RecordReader records = new RecordReader(new StringReader("ID" + RandomDat.DELIMITER + value + "\r\nnext"), 1000);
+
+        assertEquals(List.of("ID" + RandomDat.DELIMITER + value.substring(0, 1000), "next"), readAll(records));
+        assertEquals(1, records.getTruncatedValues());
+    }
+}
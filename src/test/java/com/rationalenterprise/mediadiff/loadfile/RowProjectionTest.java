@@ -0,0 +1,44 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RowProjectionTest {
+    private static final String D = "\u0014";
+
+    private static final String T = "\u00FE";
+
+    private static final List<String> ROWS = List.of(
+            T + "a" + T + D + T + "b" + T + D + T + "c" + T,
+            T + "a" + T + T + "x" + T + D + T + "b" + T + D + T + "c" + T,
+            T + "a" + T + "x" + D + T + "b" + T + D + T + "c" + T,
+            T + "a" + T + "x" + T + D + "y" + T + D + T + "b" + T + D + T + "c" + T,
+            T + T + T + T + T + D + T + "b" + T + T + T + D + "c",
+            T + "a" + T + T + T + "x" + D + "b" + D,
+            T + "a" + T + T + D + "b" + D + "c",
+            T + "a" + T + "x" + T + "y");
+
+    @Test
+    void skippedQuotedValuesEndWhereTheTokenizerEndsThem() {
+        for (String row : ROWS) {
+            String[] tokens = ColumnCounter.newTokenizer().reset(row).getTokenArray();
+
+            for (int column = 0; column < 3; column++) {
+                String expected = column < tokens.length ? tokens[column] : null;
+
+                assertEquals(expected, new RowProjection(column).split(row).get(column), row + " column " + column);
+            }
+        }
+    }
+
+    @Test
+    void projectedValuesUndoubleThorns() {
+        RowProjection projection = new RowProjection(0, 2).split(T + "a" + T + T + "b" + T + D + T + T + T + T + D + T + "c" + T + T + T);
+
+        assertEquals("a" + T + "b", projection.get(0));
+        assertEquals("c" + T, projection.get(2));
+    }
+}
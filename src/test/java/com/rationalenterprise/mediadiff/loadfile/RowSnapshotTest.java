@@ -0,0 +1,85 @@
+package com.rationalenterprise.mediadiff.loadfile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void comparesRowsByKeyAndColumnsByLabel() throws IOException {
+        Path path = directory.resolve("snapshot");
+
+        try (RowSnapshot.Writer writer = new RowSnapshot.Writer(path, "ID", List.of("A", "B", "C"))) {
+            writer.add("k1", 1, new int[] {1, 2, 3});
+            writer.add("k2", 2, new int[] {4, 5, 6});
+            writer.add("k2", 9, new int[] {9, 9, 9});
+            writer.add("k3", 3, new int[] {7, 8, 0});
+            writer.finish();
+        }
+
+        assertTrue(RowSnapshot.isSnapshot(path));
+
+        RowSnapshot snapshot = RowSnapshot.read(path);
+
+        assertEquals("ID", snapshot.getKeyLabel());
+        assertEquals(3, snapshot.getRows());
+        assertEquals(1, snapshot.getDuplicateKeys());
+
+        // B and A are swapped, C is removed and D is added.
+        snapshot.setLabels(List.of("B", "A", "D"));
+        snapshot.compare("k1", 1, new int[] {2, 1, 0});
+        snapshot.compare("k2", 20, new int[] {5, 9, 0});
+        snapshot.compare("k4", 4, new int[] {1, 1, 1});
+        snapshot.compare("k1", 1, new int[] {2, 1, 0});
+
+        assertEquals(Map.of("k2", List.of("A", "C")), snapshot.getModifiedKeys());
+        assertEquals(Map.of("A", 1, "C", 1), snapshot.getModifiedColumns());
+        assertEquals(Set.of("k4"), snapshot.getInsertedKeys());
+        assertEquals(List.of("k3"), snapshot.getDeletedKeys());
+        assertEquals(1, snapshot.getComparedDuplicateKeys());
+    }
+
+    @Test
+    void keepsTheColumnsOfRowsPastTheFirstPage() throws IOException {
+        Path path = directory.resolve("snapshot");
+        int rows = 1_200_000;
+
+        try (RowSnapshot.Writer writer = new RowSnapshot.Writer(path, "ID", List.of("A", "B"))) {
+            for (int row = 0; row < rows; row++) {
+                writer.add("k" + row, row, new int[] {row, -row});
+            }
+
+            writer.finish();
+        }
+
+        RowSnapshot snapshot = RowSnapshot.read(path);
+        List<String> changed = new ArrayList<>();
+
+        snapshot.setLabels(List.of("A", "B"));
+
+        for (int row = 0; row < rows; row++) {
+            if (row % 250_000 == 7) {
+                changed.add("k" + row);
+                snapshot.compare("k" + row, -1, new int[] {row, row});
+            } else {
+                snapshot.compare("k" + row, row, new int[] {row, -row});
+            }
+        }
+
+        assertEquals(changed, new ArrayList<>(snapshot.getModifiedKeys().keySet()));
+        assertEquals(Map.of("B", changed.size()), snapshot.getModifiedColumns());
+        assertEquals(List.of(), snapshot.getDeletedKeys());
+    }
+}
@@ -0,0 +1,91 @@
+package com.rationalenterprise.mediadiff.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AhoCorasickTest {
+    private static final String[] PIECES = {"a", "b", "c", "\u00E9", "\u00C3", "\uD83D\uDE00"};
+
+    private static String random(Random random, int maxLength) {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 1 + random.nextInt(maxLength); i > 0; i--) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * The number of (possibly overlapping) occurrences of term in text.
+     */
+    private static int count(String text, String term) {
+        int count = 0;
+
+        for (int i = text.indexOf(term); i != -1; i = text.indexOf(term, i + 1)) {
+            count++;
+        }
+
+        return count;
+    }
+
+    @Test
+    void reportsEveryOccurrenceInTheOrderTheyEnd() {
+        AhoCorasick terms = new AhoCorasick(List.of("he", "she", "his", "hers"));
+        byte[] bytes = "ushers".getBytes(StandardCharsets.UTF_8);
+        List<String> found = new ArrayList<>();
+
+        terms.search(bytes, 0, bytes.length, term -> found.add(terms.getTerm(term)));
+
+        assertEquals(List.of("she", "he", "hers"), found);
+        assertTrue(terms.contains(bytes, 0, bytes.length));
+        assertFalse(terms.contains(bytes, 0, 2));
+        assertFalse(terms.contains(bytes, 3, bytes.length));
+    }
+
+    @Test
+    void matchesLikeStringContains() {
+        Random random = new Random(44);
+
+        for (int i = 0; i < 500; i++) {
+            List<String> termList = new ArrayList<>();
+
+            for (int j = 1 + random.nextInt(6); j > 0; j--) {
+                String term = random(random, 3);
+
+                if (!termList.contains(term)) {
+                    termList.add(term);
+                }
+            }
+
+            AhoCorasick terms = new AhoCorasick(termList);
+            String text = random(random, 40);
+            byte[] bytes = ("x" + text + "x").getBytes(StandardCharsets.UTF_8);
+            int[] counts = new int[terms.size()];
+            boolean any = false;
+
+            terms.search(bytes, 1, bytes.length - 1, term -> counts[term]++);
+
+            for (int term = 0; term < terms.size(); term++) {
+                assertEquals(count(text, termList.get(term)), counts[term], termList + " in " + text);
+                any |= counts[term] > 0;
+            }
+
+            assertEquals(any, terms.contains(bytes, 1, bytes.length - 1), termList + " in " + text);
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyTerm() {
+        assertThrows(IllegalArgumentException.class, () -> new AhoCorasick(List.of("a", "")));
+    }
+}
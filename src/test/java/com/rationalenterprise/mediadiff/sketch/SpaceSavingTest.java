@@ -0,0 +1,79 @@
+package com.rationalenterprise.mediadiff.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+    private static List<String> format(List<SpaceSaving.Counter> counters) {
+        List<String> formatted = new ArrayList<>();
+
+        counters.forEach(counter -> formatted.add(counter.getValue() + " " + counter.getCount()));
+
+        return formatted;
+    }
+
+    @Test
+    void mergesExactSketchesExactly() {
+        SpaceSaving sketch1 = new SpaceSaving(10);
+        SpaceSaving sketch2 = new SpaceSaving(10);
+
+        List.of("a", "b", "a", "c").forEach(sketch1::add);
+        List.of("b", "b", "d").forEach(sketch2::add);
+        sketch1.merge(sketch2);
+
+        assertTrue(sketch1.isExact());
+        assertEquals(7, sketch1.getTotal());
+        assertEquals(List.of("b 3", "a 2", "c 1", "d 1"), format(sketch1.top(10)));
+        assertEquals(List.of("b 3", "a 2"), format(sketch1.top(2)));
+    }
+
+    @Test
+    void mergedCountsBoundTheTrueCounts() {
+        Random random = new Random(38);
+        int capacity = 50;
+        SpaceSaving merged = new SpaceSaving(capacity);
+        Map<String, Long> counts = new HashMap<>();
+        int values = 0;
+
+        for (int part = 0; part < 4; part++) {
+            SpaceSaving sketch = new SpaceSaving(capacity);
+
+            for (int i = 0; i < 20_000; i++) {
+                // A few heavy values over a long tail.
+                String value = random.nextInt(4) == 0 ? "heavy" + random.nextInt(5) : "tail" + random.nextInt(5000);
+
+                sketch.add(value);
+                counts.merge(value, 1L, Long::sum);
+                values++;
+            }
+
+            merged.merge(sketch);
+        }
+
+        assertFalse(merged.isExact());
+        assertEquals(values, merged.getTotal());
+
+        List<String> top = new ArrayList<>();
+
+        for (SpaceSaving.Counter counter : merged.top(capacity)) {
+            long count = counts.get(counter.getValue());
+
+            assertTrue(counter.getCount() >= count, counter.getValue());
+            assertTrue(counter.getCount() - counter.getError() <= count, counter.getValue());
+            top.add(counter.getValue());
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(top.subList(0, 5).contains("heavy" + i), top.toString());
+        }
+    }
+}